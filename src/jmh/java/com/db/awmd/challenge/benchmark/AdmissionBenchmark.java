@@ -0,0 +1,69 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.AdmissionProperties;
+import com.db.awmd.challenge.exception.TransferThrottledException;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.service.admission.TransferAdmission;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of admitting and releasing a transfer with every check switched on, and of turning one
+ * away once its client has run out of tokens.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdmissionBenchmark {
+
+  private TransferAdmission admission;
+
+  private TransferAdmission exhausted;
+
+  @Setup
+  public void setUp() {
+    AdmissionProperties properties = new AdmissionProperties();
+    properties.setEnabled(true);
+    properties.setClientRate(1e9);
+    properties.setAccountRate(1e9);
+    properties.setMaxConcurrency(1_000_000);
+    properties.setInitialConcurrency(1_000_000);
+    admission = new TransferAdmission(properties, new TransferMetrics());
+
+    AdmissionProperties strict = new AdmissionProperties();
+    strict.setEnabled(true);
+    strict.setClientRate(1e-9);
+    strict.setClientBurst(1);
+    exhausted = new TransferAdmission(strict, new TransferMetrics());
+    exhausted.admit("client-1", "Id-1", "Id-2");
+  }
+
+  @Benchmark
+  public long admitted() {
+    long admitted = admission.admit("client-1", "Id-1", "Id-2");
+    admission.release(admitted, false);
+    return admitted;
+  }
+
+  @Benchmark
+  public long throttled() {
+    try {
+      return exhausted.admit("client-1", "Id-1", "Id-2");
+    } catch (TransferThrottledException e) {
+      return e.getRetryAfterMillis();
+    }
+  }
+}
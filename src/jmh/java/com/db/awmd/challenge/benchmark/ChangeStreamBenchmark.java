@@ -0,0 +1,87 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.ChangeStreamProperties;
+import com.db.awmd.challenge.repository.changes.BalanceChangeStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What reporting a transfer to the change stream adds to it. Sustained: the stream would drop
+ * changes that find the ring full, so the writer waits for the publishing thread instead, which
+ * writes the segments in DISK mode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChangeStreamBenchmark {
+
+  public enum Retention {
+    DISABLED,
+    MEMORY,
+    DISK
+  }
+
+  @Param({"DISABLED", "MEMORY", "DISK"})
+  Retention retention;
+
+  private BalanceChangeStream stream;
+
+  private Path directory;
+
+  private long balance;
+
+  private long ringSize;
+
+  @Setup
+  public void setUp() throws IOException {
+    ChangeStreamProperties properties = new ChangeStreamProperties();
+    properties.setEnabled(retention != Retention.DISABLED);
+    if (retention == Retention.DISK) {
+      directory = Files.createTempDirectory("changes");
+      properties.setDirectory(directory.toString());
+    }
+    ringSize = properties.getRingSize();
+    stream = new BalanceChangeStream(properties);
+    stream.start();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    stream.stop();
+    if (directory != null) {
+      for (File file : directory.toFile().listFiles()) {
+        Files.delete(file.toPath());
+      }
+      Files.delete(directory);
+    }
+  }
+
+  @Benchmark
+  public long transferred() {
+    balance++;
+    while (retention != Retention.DISABLED && balance - stream.getEndOffset() > ringSize) {
+      Thread.yield();
+    }
+    stream.transferred("Id-1", -balance, "Id-2", balance);
+    return balance;
+  }
+}
@@ -0,0 +1,70 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.service.fx.FxRateTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link FxRateTable#convert} for ordinary amounts and for amounts beyond the long
+ * product, against converting with BigDecimal every time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FxBenchmark {
+
+  private FxRateTable rates;
+
+  private BigDecimal rate;
+
+  // kept in fields so the JIT cannot fold the arguments into constants
+  private String from = "EUR";
+
+  private String to = "USD";
+
+  private long amount = 123_456L;
+
+  private long hugeAmount = 1_000_000_000_000_000L;
+
+  @Setup
+  public void setUp() throws IOException {
+    rates = FxRateTable.parse(new BufferedReader(new StringReader("EUR,USD,1.08375\n")));
+    rate = rates.rate(from, to);
+  }
+
+  @Benchmark
+  public long convert() {
+    return rates.convert(from, to, amount);
+  }
+
+  @Benchmark
+  public long convertBeyondLong() {
+    return rates.convert(from, to, hugeAmount);
+  }
+
+  @Benchmark
+  public long convertWithBigDecimal() {
+    return BigDecimal.valueOf(amount)
+        .multiply(rate)
+        .setScale(0, RoundingMode.HALF_EVEN)
+        .longValueExact();
+  }
+}
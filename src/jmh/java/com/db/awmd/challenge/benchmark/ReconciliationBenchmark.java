@@ -0,0 +1,113 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.AccountLockProperties;
+import com.db.awmd.challenge.config.AsyncTransferProperties;
+import com.db.awmd.challenge.config.BatchTransferProperties;
+import com.db.awmd.challenge.config.FxProperties;
+import com.db.awmd.challenge.config.HotAccountProperties;
+import com.db.awmd.challenge.config.IdempotencyProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.config.NettingProperties;
+import com.db.awmd.challenge.config.NotificationDispatchProperties;
+import com.db.awmd.challenge.config.ReconciliationProperties;
+import com.db.awmd.challenge.config.TransferExecutionProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.ReconciliationReport;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.ledger.TransferLedger;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AccountsValidator;
+import com.db.awmd.challenge.service.AsyncTransferExecutor;
+import com.db.awmd.challenge.service.StripedAccountLocks;
+import com.db.awmd.challenge.service.TransferNotificationDispatcher;
+import com.db.awmd.challenge.service.fx.FxRateCache;
+import com.db.awmd.challenge.service.idempotency.IdempotencyCache;
+import com.db.awmd.challenge.service.reconciliation.AccountsReconciler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One reconciliation of all accounts, with the scan on one thread and split over parallelism
+ * threads. Each account stripe is read on its own, so a transfer waits at most for one stripe.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class ReconciliationBenchmark {
+
+  @Param({"1000000", "5000000"})
+  int accounts;
+
+  @Param({"1", "4"})
+  int parallelism;
+
+  private AccountsReconciler reconciler;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    AccountIdDictionary dictionary = new AccountIdDictionary();
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(dictionary);
+    SplittableRandom random = new SplittableRandom(42);
+    for (int i = 0; i < accounts; i++) {
+      repository.createAccount(
+          new Account("Id-" + i, random.nextLong(1_000_000), i % 10 == 0 ? "USD" : "EUR"));
+    }
+
+    TransferMetrics metrics = new TransferMetrics();
+    AccountsService service =
+        new AccountsService(
+            repository,
+            new AccountsValidator(),
+            new TransferNotificationDispatcher(
+                (account, description) -> {}, new NotificationDispatchProperties(), metrics),
+            new StripedAccountLocks(new AccountLockProperties()),
+            new BatchTransferProperties(),
+            new TransferExecutionProperties(),
+            metrics,
+            new IdempotencyCache(new IdempotencyProperties()),
+            new AsyncTransferExecutor(new AsyncTransferProperties()),
+            new TransferLedger(new LedgerProperties(), dictionary),
+            new NettingProperties(),
+            new HotAccountProperties(),
+            new FxRateCache(new FxProperties()));
+    // counts the accounts created above as issued
+    service.start();
+
+    ReconciliationProperties properties = new ReconciliationProperties();
+    properties.setParallelism(parallelism);
+    reconciler = new AccountsReconciler(properties, service, dictionary);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    reconciler.stop();
+  }
+
+  @Benchmark
+  public ReconciliationReport reconcile() {
+    ReconciliationReport report = reconciler.reconcile();
+    if (!report.isBalanced()) {
+      throw new IllegalStateException("Unbalanced: " + report.getDrift());
+    }
+    return report;
+  }
+}
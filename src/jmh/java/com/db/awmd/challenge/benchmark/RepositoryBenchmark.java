@@ -0,0 +1,142 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Lookups and inserts against {@link AccountsRepositoryInMemory}. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+  // inserts per thread and iteration, the repository is emptied in between
+  private static final int CREATE_BATCH = 100_000;
+
+  @State(Scope.Benchmark)
+  public static class Filled {
+    @Param({"10000", "1000000"})
+    int accounts;
+
+    AccountsRepositoryInMemory repository;
+
+    String[] accountIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      repository = new AccountsRepositoryInMemory(new AccountIdDictionary());
+      accountIds = new String[accounts];
+      for (int i = 0; i < accounts; i++) {
+        accountIds[i] = "Id-" + i;
+        repository.createAccount(new Account(accountIds[i], 1_000L));
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Lookups {
+    private static final int SIZE = 1 << 14;
+
+    private final String[] hits = new String[SIZE];
+
+    private final String[] misses = new String[SIZE];
+
+    private final int[] handles = new int[SIZE];
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Filled filled) {
+      SplittableRandom random = new SplittableRandom(42);
+      for (int i = 0; i < SIZE; i++) {
+        hits[i] = filled.accountIds[random.nextInt(filled.accountIds.length)];
+        misses[i] = "Missing-" + i;
+        handles[i] = filled.repository.handleOf(hits[i]);
+      }
+    }
+
+    int next() {
+      return next++ & (SIZE - 1);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Empty {
+    AccountsRepositoryInMemory repository;
+
+    final AtomicInteger nextThread = new AtomicInteger();
+
+    // with a fresh dictionary as well, so that every iteration assigns new handles
+    @Setup(Level.Iteration)
+    public void clear() {
+      repository = new AccountsRepositoryInMemory(new AccountIdDictionary());
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class NewAccounts {
+    private final Account[] accounts = new Account[CREATE_BATCH];
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Empty empty) {
+      String prefix = "T" + empty.nextThread.getAndIncrement() + "-";
+      for (int i = 0; i < CREATE_BATCH; i++) {
+        accounts[i] = new Account(prefix + i, 1_000L);
+      }
+    }
+
+    @Setup(Level.Iteration)
+    public void rewind() {
+      next = 0;
+    }
+
+    Account next() {
+      return accounts[next++];
+    }
+  }
+
+  @Benchmark
+  public Account getExisting(Filled filled, Lookups lookups) {
+    return filled.repository.getAccount(lookups.hits[lookups.next()]);
+  }
+
+  // what a transfer pays per account once its ids are resolved
+  @Benchmark
+  public Account getByHandle(Filled filled, Lookups lookups) {
+    return filled.repository.getAccount(lookups.handles[lookups.next()]);
+  }
+
+  @Benchmark
+  public Account getMissing(Filled filled, Lookups lookups) {
+    return filled.repository.getAccount(lookups.misses[lookups.next()]);
+  }
+
+  // an insert-only workload has no steady state, so each iteration is one batch into an empty map
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5, batchSize = CREATE_BATCH)
+  @Measurement(iterations = 10, batchSize = CREATE_BATCH)
+  public void createAccount(Empty empty, NewAccounts newAccounts) {
+    empty.repository.createAccount(newAccounts.next());
+  }
+}
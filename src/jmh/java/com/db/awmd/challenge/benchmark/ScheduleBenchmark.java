@@ -0,0 +1,202 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.AccountLockProperties;
+import com.db.awmd.challenge.config.AsyncTransferProperties;
+import com.db.awmd.challenge.config.BatchTransferProperties;
+import com.db.awmd.challenge.config.DurableRepositoryProperties;
+import com.db.awmd.challenge.config.FxProperties;
+import com.db.awmd.challenge.config.HotAccountProperties;
+import com.db.awmd.challenge.config.IdempotencyProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.config.NettingProperties;
+import com.db.awmd.challenge.config.NotificationDispatchProperties;
+import com.db.awmd.challenge.config.TransferExecutionProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryDurable;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.ledger.TransferLedger;
+import com.db.awmd.challenge.repository.wal.FsyncPolicy;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AccountsValidator;
+import com.db.awmd.challenge.service.AsyncTransferExecutor;
+import com.db.awmd.challenge.service.StripedAccountLocks;
+import com.db.awmd.challenge.service.TransferNotificationDispatcher;
+import com.db.awmd.challenge.service.fx.FxRateCache;
+import com.db.awmd.challenge.service.idempotency.IdempotencyCache;
+import com.db.awmd.challenge.service.schedule.TimingWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The timing wheel with a million pending entries, and runs of schedules that fell due in the
+ * same tick applied in batches of batchSize.
+ */
+@Fork(1)
+public class ScheduleBenchmark {
+  // one tick is 100 ms, so this spreads the pending entries over 30 days
+  private static final int HORIZON_TICKS = 30 * 24 * 36_000;
+
+  private static final int DUE = 10_000;
+
+  private static final int ACCOUNTS = 1_000;
+
+  @State(Scope.Thread)
+  public static class Wheel {
+    @Param({"1000000"})
+    int pending;
+
+    TimingWheel<Object> wheel;
+
+    SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      wheel = new TimingWheel<>(0);
+      for (int i = 0; i < pending; i++) {
+        wheel.add(random.nextInt(HORIZON_TICKS), this);
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class DueRuns {
+    @Param({"in-memory", "durable"})
+    String engine;
+
+    @Param({"1", "1000"})
+    int batchSize;
+
+    Path directory;
+
+    AccountsRepository repository;
+
+    AccountsService service;
+
+    List<ScheduledTransfer> due;
+
+    ConcurrentMap<Long, ScheduledTransfer> schedules;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      AccountIdDictionary dictionary = new AccountIdDictionary();
+      if (engine.equals("durable")) {
+        directory = Files.createTempDirectory("schedule-benchmark");
+        DurableRepositoryProperties properties = new DurableRepositoryProperties();
+        properties.setDirectory(directory.toString());
+        properties.setSnapshotIntervalMs(0);
+        properties.setFsyncPolicy(FsyncPolicy.GROUPED);
+        AccountsRepositoryDurable durable = new AccountsRepositoryDurable(properties, dictionary);
+        durable.open();
+        repository = durable;
+      } else {
+        repository = new AccountsRepositoryInMemory(dictionary);
+      }
+      for (int i = 0; i < ACCOUNTS; i++) {
+        repository.createAccount(new Account("Id-" + i, Long.MAX_VALUE / 4));
+      }
+
+      TransferMetrics metrics = new TransferMetrics();
+      TransferNotificationDispatcher dispatcher =
+          new TransferNotificationDispatcher(
+              (account, description) -> {}, new NotificationDispatchProperties(), metrics);
+      dispatcher.start();
+      service =
+          new AccountsService(
+              repository,
+              new AccountsValidator(),
+              dispatcher,
+              new StripedAccountLocks(new AccountLockProperties()),
+              new BatchTransferProperties(),
+              new TransferExecutionProperties(),
+              metrics,
+              new IdempotencyCache(new IdempotencyProperties()),
+              new AsyncTransferExecutor(new AsyncTransferProperties()),
+              new TransferLedger(new LedgerProperties(), dictionary),
+              new NettingProperties(),
+              new HotAccountProperties(),
+              new FxRateCache(new FxProperties()));
+      service.start();
+    }
+
+    // standing orders that all fell due in the same tick
+    @Setup(Level.Invocation)
+    public void fallDue() {
+      SplittableRandom random = new SplittableRandom(42);
+      due = new ArrayList<>(DUE);
+      schedules = new ConcurrentHashMap<>();
+      for (int i = 0; i < DUE; i++) {
+        int from = random.nextInt(ACCOUNTS);
+        int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        ScheduledTransfer schedule =
+            new ScheduledTransfer(
+                i, "Id-" + from, "Id-" + to, 1, 0, 1000, ScheduledTransfer.UNBOUNDED, 0, null);
+        due.add(schedule);
+        schedules.put(schedule.getId(), schedule);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      if (repository instanceof AccountsRepositoryDurable) {
+        ((AccountsRepositoryDurable) repository).close();
+        try (Stream<Path> files = Files.walk(directory)) {
+          files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+      }
+    }
+  }
+
+  // one tick of the scheduler thread; what expires is added again, so a million stay pending
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Warmup(iterations = 3, time = 1)
+  @Measurement(iterations = 5, time = 1)
+  public void advanceTick(Wheel state) {
+    TimingWheel<Object> wheel = state.wheel;
+    long tick = wheel.getTick();
+    wheel.advance(tick, entry -> wheel.add(tick + 1 + state.random.nextInt(HORIZON_TICKS), entry));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 5)
+  @Measurement(iterations = 10)
+  public int runDue(DueRuns state) {
+    int pending = 0;
+    for (int start = 0; start < DUE; start += state.batchSize) {
+      List<ScheduledTransfer> batch =
+          state.due.subList(start, Math.min(start + state.batchSize, DUE));
+      pending += state.service.performScheduledTransfers(batch, state.schedules).size();
+    }
+    return pending;
+  }
+}
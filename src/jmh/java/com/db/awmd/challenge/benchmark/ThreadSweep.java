@@ -0,0 +1,47 @@
+package com.db.awmd.challenge.benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the selected benchmarks at 1, 2, 4 ... up to the given number of threads and writes all
+ * runs into a single JSON file, each entry carrying its thread count.
+ *
+ * <p>Arguments: max threads (defaults to the number of processors), result file, benchmark regex.
+ */
+public class ThreadSweep {
+
+  public static void main(String[] args) throws IOException, RunnerException {
+    int maxThreads =
+        args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    Path resultFile = Paths.get(args.length > 1 ? args[1] : "build/reports/jmh/sweep.json");
+    String include = args.length > 2 ? args[2] : TransferBenchmark.class.getSimpleName();
+
+    List<RunResult> results = new ArrayList<>();
+    for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+      Options options = new OptionsBuilder().include(include).threads(threads).build();
+      results.addAll(new Runner(options).run());
+      if (threads >= maxThreads) {
+        break;
+      }
+    }
+
+    if (resultFile.getParent() != null) {
+      Files.createDirectories(resultFile.getParent());
+    }
+    ResultFormatFactory.getInstance(ResultFormatType.JSON, resultFile.toString())
+        .writeOut(results);
+  }
+}
@@ -0,0 +1,212 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.config.AccountLockProperties;
+import com.db.awmd.challenge.config.AsyncTransferProperties;
+import com.db.awmd.challenge.config.BatchTransferProperties;
+import com.db.awmd.challenge.config.FxProperties;
+import com.db.awmd.challenge.config.HotAccountProperties;
+import com.db.awmd.challenge.config.IdempotencyProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.config.NettingProperties;
+import com.db.awmd.challenge.config.NotificationDispatchProperties;
+import com.db.awmd.challenge.config.TransferExecutionProperties;
+import com.db.awmd.challenge.config.TransferExecutionProperties.ExecutionMode;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryLockFree;
+import com.db.awmd.challenge.repository.ledger.TransferLedger;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AccountsValidator;
+import com.db.awmd.challenge.service.AsyncTransferExecutor;
+import com.db.awmd.challenge.service.StripedAccountLocks;
+import com.db.awmd.challenge.service.TransferNotificationDispatcher;
+import com.db.awmd.challenge.service.fx.FxRateCache;
+import com.db.awmd.challenge.service.idempotency.IdempotencyCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of {@link AccountsService#performTransfer} for each execution strategy under three
+ * access patterns: uniformly random pairs, Zipfian pairs concentrated on a few hot accounts, and
+ * one private pair per thread, which shows the cost of the transfer path without any contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+  // large enough that no benchmark run can drain an account
+  private static final long INITIAL_BALANCE = 1_000_000_000_000L;
+
+  public enum Strategy {
+    LOCKING,
+    LOCK_FREE,
+    SHARDED,
+    NETTED,
+    HOT_ACCOUNTS
+  }
+
+  public enum Workload {
+    UNIFORM,
+    ZIPFIAN,
+    DISJOINT
+  }
+
+  @State(Scope.Benchmark)
+  public static class Bank {
+    @Param({"LOCKING", "LOCK_FREE", "SHARDED", "NETTED", "HOT_ACCOUNTS"})
+    Strategy strategy;
+
+    @Param({"UNIFORM", "ZIPFIAN", "DISJOINT"})
+    Workload workload;
+
+    @Param({"10000"})
+    int accounts;
+
+    AccountsService service;
+
+    String[] accountIds;
+
+    // hands every benchmark thread its own pair of accounts in the disjoint workload
+    final AtomicInteger nextThread = new AtomicInteger();
+
+    private TransferNotificationDispatcher dispatcher;
+
+    private TransferLedger ledger;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      AccountIdDictionary dictionary = new AccountIdDictionary();
+      AccountsRepository repository =
+          strategy == Strategy.LOCK_FREE
+              ? new AccountsRepositoryLockFree(dictionary)
+              : new AccountsRepositoryInMemory(dictionary);
+      accountIds = new String[accounts];
+      for (int i = 0; i < accounts; i++) {
+        accountIds[i] = "Id-" + i;
+        repository.createAccount(new Account(accountIds[i], INITIAL_BALANCE));
+      }
+
+      // deliveries still run on the dispatcher workers, they just go nowhere
+      TransferMetrics metrics = new TransferMetrics();
+      dispatcher =
+          new TransferNotificationDispatcher(
+              (account, description) -> {}, new NotificationDispatchProperties(), metrics);
+      dispatcher.start();
+
+      TransferExecutionProperties executionProperties = new TransferExecutionProperties();
+      executionProperties.setMode(
+          strategy == Strategy.SHARDED ? ExecutionMode.SHARDED : ExecutionMode.LOCKING);
+      // a short window, every benchmark thread waits for the window holding its transfer
+      NettingProperties nettingProperties = new NettingProperties();
+      nettingProperties.setEnabled(strategy == Strategy.NETTED);
+      nettingProperties.setWindowMicros(100);
+      // locking, with the accounts whose locks keep being contended split into credit slots
+      HotAccountProperties hotAccountProperties = new HotAccountProperties();
+      hotAccountProperties.setAutoDetect(strategy == Strategy.HOT_ACCOUNTS);
+      ledger = new TransferLedger(new LedgerProperties(), dictionary);
+      service =
+          new AccountsService(
+              repository,
+              new AccountsValidator(),
+              dispatcher,
+              new StripedAccountLocks(new AccountLockProperties()),
+              new BatchTransferProperties(),
+              executionProperties,
+              metrics,
+              new IdempotencyCache(new IdempotencyProperties()),
+              new AsyncTransferExecutor(new AsyncTransferProperties()),
+              ledger,
+              nettingProperties,
+              hotAccountProperties,
+              new FxRateCache(new FxProperties()));
+      service.start();
+    }
+
+    // every transfer appends 64 bytes of off-heap history, dropped between iterations
+    @Setup(Level.Iteration)
+    public void clearLedger() {
+      ledger.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+      service.stop();
+      dispatcher.stop();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Pairs {
+    // pairs are drawn up front so the random number generator stays out of the measurement
+    private static final int SIZE = 1 << 14;
+
+    private final String[] from = new String[SIZE];
+
+    private final String[] to = new String[SIZE];
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Bank bank) {
+      int thread = bank.nextThread.getAndIncrement();
+      String[] ids = bank.accountIds;
+      SplittableRandom random = new SplittableRandom(thread);
+      ZipfianGenerator zipfian = new ZipfianGenerator(ids.length, ZipfianGenerator.DEFAULT_THETA);
+      for (int i = 0; i < SIZE; i++) {
+        int fromIndex;
+        int toIndex;
+        switch (bank.workload) {
+          case ZIPFIAN:
+            fromIndex = zipfian.next(random);
+            do {
+              toIndex = zipfian.next(random);
+            } while (toIndex == fromIndex);
+            break;
+          case DISJOINT:
+            // alternate directions so the pair keeps its combined balance in place
+            fromIndex = (2 * thread + (i & 1)) % ids.length;
+            toIndex = (2 * thread + 1 - (i & 1)) % ids.length;
+            break;
+          case UNIFORM:
+          default:
+            fromIndex = random.nextInt(ids.length);
+            do {
+              toIndex = random.nextInt(ids.length);
+            } while (toIndex == fromIndex);
+        }
+        from[i] = ids[fromIndex];
+        to[i] = ids[toIndex];
+      }
+    }
+
+    int next() {
+      return next++ & (SIZE - 1);
+    }
+  }
+
+  @Benchmark
+  public void performTransfer(Bank bank, Pairs pairs) {
+    int i = pairs.next();
+    bank.service.performTransfer(pairs.from[i], pairs.to[i], 1);
+  }
+}
@@ -0,0 +1,392 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.dto.MoneyTransfer;
+import com.db.awmd.challenge.web.binary.BinaryWireFormat;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop HTTP load generator for the transfer endpoints of a running server. Every connection
+ * keeps exactly one transfer in flight, so the number of connections is the number of concurrent
+ * requests. Asynchronous sockets let two client threads drive thousands of connections.
+ *
+ * <p>Arguments are key=value pairs: host, port, path, connections, accounts, warmup and duration
+ * (both in seconds), and format (json or binary, see {@link BinaryWireFormat}).
+ */
+public class TransferLoadTest {
+  private static final int CLIENT_THREADS = 2;
+
+  private static final int BUFFER_SIZE = 16 * 1024;
+
+  private static final byte[] HEADER_END = "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+  private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+  private final String host;
+
+  private final int port;
+
+  private final String path;
+
+  private final boolean binary;
+
+  private final String[] accountIds;
+
+  private final Recorder latencies = new Recorder(3);
+
+  private final LongAdder successes = new LongAdder();
+
+  private final LongAdder clientErrors = new LongAdder();
+
+  private final LongAdder serverErrors = new LongAdder();
+
+  private final LongAdder connectionErrors = new LongAdder();
+
+  private final LongAdder reconnects = new LongAdder();
+
+  private final AtomicInteger openConnections = new AtomicInteger();
+
+  private AsynchronousChannelGroup group;
+
+  private volatile boolean running = true;
+
+  private TransferLoadTest(
+      String host, int port, String path, boolean binary, String[] accountIds) {
+    this.host = host;
+    this.port = port;
+    this.path = path;
+    this.binary = binary;
+    this.accountIds = accountIds;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (separator < 0) {
+        throw new IllegalArgumentException("Expected key=value, got " + arg);
+      }
+      options.put(arg.substring(0, separator), arg.substring(separator + 1));
+    }
+    String host = options.getOrDefault("host", "localhost");
+    int port = Integer.parseInt(options.getOrDefault("port", "18080"));
+    String path = options.getOrDefault("path", "/v1/accounts/transfer");
+    int connections = Integer.parseInt(options.getOrDefault("connections", "1000"));
+    int accounts = Integer.parseInt(options.getOrDefault("accounts", "1000"));
+    int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+    int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+    boolean binary = "binary".equals(options.getOrDefault("format", "json"));
+
+    String[] accountIds = createAccounts(host, port, accounts);
+    TransferLoadTest test = new TransferLoadTest(host, port, path, binary, accountIds);
+    test.run(connections, warmup, duration);
+  }
+
+  private void run(int connections, int warmup, int duration) throws Exception {
+    group =
+        AsynchronousChannelGroup.withFixedThreadPool(
+            CLIENT_THREADS,
+            runnable -> {
+              Thread thread = new Thread(runnable, "load-client");
+              thread.setDaemon(true);
+              return thread;
+            });
+    for (int i = 0; i < connections; i++) {
+      new Connection().connect();
+    }
+
+    TimeUnit.SECONDS.sleep(warmup);
+    latencies.reset();
+    successes.reset();
+    clientErrors.reset();
+    serverErrors.reset();
+    reconnects.reset();
+    long started = System.nanoTime();
+    TimeUnit.SECONDS.sleep(duration);
+    Histogram histogram = latencies.getIntervalHistogram();
+    double seconds = (System.nanoTime() - started) / 1e9;
+    int open = openConnections.get();
+    running = false;
+    group.shutdownNow();
+
+    System.out.printf(
+        Locale.ROOT,
+        "%s %s connections=%d (open %d) duration=%.1fs%n",
+        path,
+        binary ? "binary" : "json",
+        connections,
+        open,
+        seconds);
+    System.out.printf(
+        Locale.ROOT,
+        "throughput=%.0f req/s 2xx=%d 4xx=%d 5xx=%d reconnects=%d connection errors=%d%n",
+        histogram.getTotalCount() / seconds,
+        successes.sum(),
+        clientErrors.sum(),
+        serverErrors.sum(),
+        reconnects.sum(),
+        connectionErrors.sum());
+    System.out.printf(
+        Locale.ROOT,
+        "latency ms p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+        histogram.getValueAtPercentile(50) / 1e6,
+        histogram.getValueAtPercentile(90) / 1e6,
+        histogram.getValueAtPercentile(99) / 1e6,
+        histogram.getValueAtPercentile(99.9) / 1e6,
+        histogram.getMaxValue() / 1e6);
+  }
+
+  // large balances so that no transfer is rejected for insufficient funds during a run
+  private static String[] createAccounts(String host, int port, int count) throws IOException {
+    String prefix = "Load-" + System.currentTimeMillis() + "-";
+    String[] accountIds = new String[count];
+    for (int i = 0; i < count; i++) {
+      accountIds[i] = prefix + i;
+      HttpURLConnection connection =
+          (HttpURLConnection) new URL("http", host, port, "/v1/accounts").openConnection();
+      connection.setRequestMethod("POST");
+      connection.setRequestProperty("Content-Type", "application/json");
+      connection.setDoOutput(true);
+      try (OutputStream body = connection.getOutputStream()) {
+        body.write(
+            ("{\"accountId\":\"" + accountIds[i] + "\",\"balance\":1000000000}")
+                .getBytes(StandardCharsets.UTF_8));
+      }
+      if (connection.getResponseCode() != 201) {
+        throw new IOException(
+            "Creating " + accountIds[i] + " failed with " + connection.getResponseCode());
+      }
+      connection.disconnect();
+    }
+    return accountIds;
+  }
+
+  private byte[] nextRequest() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int from = random.nextInt(accountIds.length);
+    int to = random.nextInt(accountIds.length - 1);
+    if (to >= from) {
+      to++;
+    }
+    byte[] body =
+        binary
+            ? BinaryWireFormat.writeTransfer(
+                new MoneyTransfer(accountIds[from], accountIds[to], 1L, null))
+            : ("{\"accountIdFrom\":\""
+                    + accountIds[from]
+                    + "\",\"accountIdTo\":\""
+                    + accountIds[to]
+                    + "\",\"amount\":0.01}")
+                .getBytes(StandardCharsets.UTF_8);
+    String head =
+        "POST "
+            + path
+            + " HTTP/1.1\r\nHost: "
+            + host
+            + ":"
+            + port
+            + "\r\nContent-Type: "
+            + (binary ? BinaryWireFormat.MEDIA_TYPE_VALUE : "application/json")
+            + "\r\nContent-Length: "
+            + body.length
+            + "\r\n\r\n";
+    byte[] headBytes = head.getBytes(StandardCharsets.ISO_8859_1);
+    byte[] request = new byte[headBytes.length + body.length];
+    System.arraycopy(headBytes, 0, request, 0, headBytes.length);
+    System.arraycopy(body, 0, request, headBytes.length, body.length);
+    return request;
+  }
+
+  private void record(int status, long latencyNanos) {
+    latencies.recordValue(latencyNanos);
+    if (status < 400) {
+      successes.increment();
+    } else if (status < 500) {
+      clientErrors.increment();
+    } else {
+      serverErrors.increment();
+    }
+  }
+
+  // returns the status code once the buffer holds a complete response, else -1
+  private static int parseResponse(ByteBuffer buffer) {
+    String head = responseHead(buffer);
+    if (head == null) {
+      return -1;
+    }
+    int status = Integer.parseInt(head.substring(9, 12));
+    int bodyStart = head.length() + HEADER_END.length;
+    int length = buffer.position();
+
+    int contentLength = head.indexOf("\r\ncontent-length:");
+    if (contentLength >= 0) {
+      int valueStart = contentLength + "\r\ncontent-length:".length();
+      int valueEnd = head.indexOf("\r\n", valueStart);
+      String value = head.substring(valueStart, valueEnd < 0 ? head.length() : valueEnd);
+      int bodyLength = Integer.parseInt(value.trim());
+      return length >= bodyStart + bodyLength ? status : -1;
+    }
+    if (head.contains("\r\ntransfer-encoding: chunked")) {
+      return indexOf(buffer.array(), bodyStart, length, LAST_CHUNK) >= 0 ? status : -1;
+    }
+    return status;
+  }
+
+  // the lower-cased status line and headers, or null while they are still incomplete
+  private static String responseHead(ByteBuffer buffer) {
+    int headerEnd = indexOf(buffer.array(), 0, buffer.position(), HEADER_END);
+    if (headerEnd < 0) {
+      return null;
+    }
+    return new String(buffer.array(), 0, headerEnd, StandardCharsets.ISO_8859_1)
+        .toLowerCase(Locale.ROOT);
+  }
+
+  private static int indexOf(byte[] bytes, int from, int to, byte[] pattern) {
+    outer:
+    for (int i = from; i <= to - pattern.length; i++) {
+      for (int j = 0; j < pattern.length; j++) {
+        if (bytes[i + j] != pattern[j]) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    return -1;
+  }
+
+  private final class Connection implements CompletionHandler<Integer, Void> {
+    private AsynchronousSocketChannel channel;
+
+    private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private ByteBuffer out;
+
+    private boolean connected;
+
+    private boolean writing;
+
+    private long sentNanos;
+
+    void connect() throws IOException {
+      channel = AsynchronousSocketChannel.open(group);
+      channel.connect(
+          new InetSocketAddress(host, port),
+          null,
+          new CompletionHandler<Void, Void>() {
+            @Override
+            public void completed(Void result, Void attachment) {
+              connected = true;
+              openConnections.incrementAndGet();
+              send();
+            }
+
+            @Override
+            public void failed(Throwable failure, Void attachment) {
+              Connection.this.failed(failure, attachment);
+            }
+          });
+    }
+
+    private void send() {
+      if (!running) {
+        close();
+        return;
+      }
+      out = ByteBuffer.wrap(nextRequest());
+      writing = true;
+      sentNanos = System.nanoTime();
+      channel.write(out, null, this);
+    }
+
+    @Override
+    public void completed(Integer transferred, Void attachment) {
+      if (transferred < 0) {
+        failed(new IOException("Connection closed by the server"), attachment);
+        return;
+      }
+      if (writing) {
+        if (out.hasRemaining()) {
+          channel.write(out, null, this);
+          return;
+        }
+        writing = false;
+        in.clear();
+        channel.read(in, null, this);
+        return;
+      }
+
+      int status = parseResponse(in);
+      if (status < 0) {
+        if (!in.hasRemaining()) {
+          ByteBuffer larger = ByteBuffer.allocate(in.capacity() * 2);
+          in.flip();
+          larger.put(in);
+          in = larger;
+        }
+        channel.read(in, null, this);
+        return;
+      }
+      record(status, System.nanoTime() - sentNanos);
+      // Tomcat closes keep-alive connections after a fixed number of requests
+      if (responseHead(in).contains("\r\nconnection: close")) {
+        reconnect();
+      } else {
+        send();
+      }
+    }
+
+    @Override
+    public void failed(Throwable failure, Void attachment) {
+      if (running) {
+        connectionErrors.increment();
+      }
+      close();
+    }
+
+    private void reconnect() {
+      close();
+      if (!running) {
+        return;
+      }
+      reconnects.increment();
+      try {
+        connect();
+      } catch (IOException e) {
+        connectionErrors.increment();
+      }
+    }
+
+    private void close() {
+      if (connected) {
+        connected = false;
+        openConnections.decrementAndGet();
+      }
+      if (channel.isOpen()) {
+        try {
+          channel.close();
+        } catch (IOException ignored) {
+          // nothing left to clean up
+        }
+      }
+    }
+  }
+}
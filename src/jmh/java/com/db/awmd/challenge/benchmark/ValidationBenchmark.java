@@ -0,0 +1,60 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link AccountsValidator#check} on the accepted and the rejected paths, and of rendering
+ * the messages of a rejection the way the HTTP error handler does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValidationBenchmark {
+
+  private final AccountsValidator validator = new AccountsValidator();
+
+  private final Account from = new Account("Id-1", 100_000L);
+
+  private final Account to = new Account("Id-2", 0L);
+
+  // kept in fields so the JIT cannot fold the arguments into constants
+  private long amount = 1_000L;
+
+  private long excessiveAmount = 1_000_000L;
+
+  @Benchmark
+  public int validTransfer() {
+    return validator.check(from, "Id-1", to, "Id-2", amount);
+  }
+
+  @Benchmark
+  public int insufficientBalance() {
+    return validator.check(from, "Id-1", to, "Id-2", excessiveAmount);
+  }
+
+  @Benchmark
+  public int missingAccount() {
+    return validator.check(from, "Id-1", null, "Id-3", amount);
+  }
+
+  @Benchmark
+  public Collection<String> missingAccountRendered() {
+    return validator.validateTransfer(from, "Id-1", null, "Id-3", amount);
+  }
+}
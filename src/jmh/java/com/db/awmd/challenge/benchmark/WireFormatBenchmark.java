@@ -0,0 +1,80 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.MoneyTransfer;
+import com.db.awmd.challenge.web.binary.BinaryWireFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of the transfer and account bodies in JSON, as the controller handles them with
+ * Jackson and {@code @Valid}, against the {@link BinaryWireFormat}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireFormatBenchmark {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final ObjectReader transferReader = objectMapper.readerFor(MoneyTransfer.class);
+
+  private final ObjectWriter accountWriter = objectMapper.writerFor(Account.class);
+
+  private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+  private final byte[] jsonTransfer =
+      "{\"accountIdFrom\":\"Id-1234\",\"accountIdTo\":\"Id-5678\",\"amount\":123.45}"
+          .getBytes(StandardCharsets.UTF_8);
+
+  private final byte[] binaryTransfer =
+      BinaryWireFormat.writeTransfer(new MoneyTransfer("Id-1234", "Id-5678", 12_345L, null));
+
+  private final Account account = new Account("Id-1234", 12_345L);
+
+  @Benchmark
+  public MoneyTransfer readJsonTransfer() throws IOException {
+    MoneyTransfer transfer = transferReader.readValue(jsonTransfer);
+    Set<ConstraintViolation<MoneyTransfer>> violations = validator.validate(transfer);
+    if (!violations.isEmpty()) {
+      throw new IllegalStateException(violations.toString());
+    }
+    return transfer;
+  }
+
+  @Benchmark
+  public MoneyTransfer readBinaryTransfer() {
+    return BinaryWireFormat.readTransfer(binaryTransfer, binaryTransfer.length);
+  }
+
+  @Benchmark
+  public byte[] writeJsonAccount() throws IOException {
+    return accountWriter.writeValueAsBytes(account);
+  }
+
+  @Benchmark
+  public byte[] writeBinaryAccount() {
+    return BinaryWireFormat.writeAccount(account);
+  }
+}
@@ -0,0 +1,54 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * Draws ranks in [0, n) with a Zipfian distribution, rank 0 being the most popular. Uses the
+ * closed-form approximation from Gray et al., "Quickly Generating Billion-Record Synthetic
+ * Databases", as popularised by YCSB.
+ */
+class ZipfianGenerator {
+  // YCSB's default skew, the hottest of 10,000 accounts takes roughly 10% of all draws
+  static final double DEFAULT_THETA = 0.99;
+
+  private final int items;
+
+  private final double theta;
+
+  private final double zetan;
+
+  private final double alpha;
+
+  private final double eta;
+
+  ZipfianGenerator(int items, double theta) {
+    if (items < 2) {
+      throw new IllegalArgumentException("At least two items are needed, got " + items);
+    }
+    this.items = items;
+    this.theta = theta;
+    this.zetan = zeta(items, theta);
+    this.alpha = 1.0 / (1.0 - theta);
+    this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+  }
+
+  int next(SplittableRandom random) {
+    double u = random.nextDouble();
+    double uz = u * zetan;
+    if (uz < 1.0) {
+      return 0;
+    }
+    if (uz < 1.0 + Math.pow(0.5, theta)) {
+      return 1;
+    }
+    return Math.min(items - 1, (int) (items * Math.pow(eta * u - eta + 1, alpha)));
+  }
+
+  private static double zeta(int n, double theta) {
+    double sum = 0;
+    for (int i = 1; i <= n; i++) {
+      sum += 1 / Math.pow(i, theta);
+    }
+    return sum;
+  }
+}
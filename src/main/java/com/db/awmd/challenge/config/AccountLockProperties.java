@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.locks")
+public class AccountLockProperties {
+
+  // rounded up to the next power of two
+  private int stripes = 1024;
+
+  // 0 waits for the locks indefinitely
+  private long timeoutMs = 0;
+}
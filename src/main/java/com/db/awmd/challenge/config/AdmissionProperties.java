@@ -0,0 +1,47 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.admission")
+public class AdmissionProperties {
+
+  // transfers are admitted or rejected with 429 before the service takes any lock
+  private boolean enabled;
+
+  // identifies the client; requests without it are keyed by their remote address
+  private String clientHeader = "X-Client-Id";
+
+  // sustained transfers per second of one client, 0 for no limit
+  private double clientRate;
+
+  // transfers a client may send at once after being idle
+  private int clientBurst = 1_000;
+
+  // sustained transfers per second touching one account, as sender or recipient, 0 for no limit
+  private double accountRate;
+
+  private int accountBurst = 100;
+
+  // clients and accounts with a bucket of their own; beyond this the rest share one
+  private int maxTrackedKeys = 100_000;
+
+  // transfers in progress at once, adapted between min and max; 0 for no limit
+  private int maxConcurrency = 1_024;
+
+  private int minConcurrency = 8;
+
+  private int initialConcurrency = 64;
+
+  // the limit is adapted once per window from the latencies completed in it
+  private long windowMs = 100;
+
+  // latency growth tolerated before the limit shrinks, relative to the long-term average
+  private double latencyTolerance = 2.0;
+
+  // factor applied to the limit when transfers time out on their locks or are turned away
+  private double backoffRatio = 0.9;
+}
@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.async")
+public class AsyncTransferProperties {
+
+  // threads completing asynchronous transfers, independent of the servlet container's pool
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  // transfers waiting for a thread; beyond this new ones are rejected with 503
+  private int queueCapacity = 100_000;
+}
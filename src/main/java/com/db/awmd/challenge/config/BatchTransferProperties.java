@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.batch")
+public class BatchTransferProperties {
+
+  private int maxSize = 100_000;
+
+  // best-effort batches are applied (and streamed back) chunk by chunk, each chunk under one
+  // lock acquisition
+  private int chunkSize = 1_000;
+}
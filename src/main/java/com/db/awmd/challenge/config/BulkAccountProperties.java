@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.bulk")
+public class BulkAccountProperties {
+
+  // imported accounts sharing one durability wait
+  private int batchSize = 1_000;
+
+  // rows reported by id in the import summary, the rest are only counted
+  private int maxReportedIssues = 1_000;
+
+  // longer lines are skipped and rejected, which keeps memory bounded however the input looks
+  private int maxLineLength = 4_096;
+}
@@ -0,0 +1,36 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.changes")
+public class ChangeStreamProperties {
+
+  // publishes every balance change the repository applies to GET /v1/changes
+  private boolean enabled;
+
+  // the latest changes kept in memory, rounded up to a power of two; changes are dropped while
+  // the stream is this far behind the writers
+  private int ringSize = 1 << 16;
+
+  // older changes are kept in segment files here when set, otherwise only the ring is retained
+  private String directory;
+
+  private long segmentBytes = 64L << 20;
+
+  // the oldest segment is deleted once there are more
+  private int maxSegments = 4;
+
+  // every consumer holds a request thread while it tails the stream
+  private int maxConsumers = 32;
+
+  // an idle stream sends a heartbeat this often, so proxies keep the connection open
+  private long heartbeatMs = 15_000;
+
+  // a stream ends after this long, below spring.mvc.async.request-timeout; clients resume from
+  // the next offset
+  private long maxStreamMs = 300_000;
+}
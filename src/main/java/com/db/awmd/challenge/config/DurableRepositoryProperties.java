@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.config;
+
+import com.db.awmd.challenge.repository.wal.FsyncPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.repository.durable")
+public class DurableRepositoryProperties {
+
+  private String directory = "data";
+
+  private FsyncPolicy fsyncPolicy = FsyncPolicy.GROUPED;
+
+  // only used by the INTERVAL policy
+  private long fsyncIntervalMs = 50;
+
+  // 0 disables periodic snapshots
+  private long snapshotIntervalMs = 300_000;
+}
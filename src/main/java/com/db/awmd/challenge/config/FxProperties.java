@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.fx")
+public class FxProperties {
+
+  // lines of from,to,rate, e.g. EUR,USD,1.0845; empty allows same-currency transfers only
+  private String ratesFile = "";
+
+  // how often the file is checked for changes; a file that fails to parse keeps the old rates
+  private long refreshIntervalMs = 60_000;
+}
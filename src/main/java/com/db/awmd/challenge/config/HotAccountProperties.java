@@ -0,0 +1,35 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.hot")
+public class HotAccountProperties {
+
+  // accounts on one side of most transfers, e.g. fee collection; hot from the start
+  private List<String> accountIds = new ArrayList<>();
+
+  // credit slots per hot account, rounded up to the next power of two
+  private int slots = 8;
+
+  // promotes accounts whose locks keep being contended
+  private boolean autoDetect;
+
+  // contended transfers within one detection interval that make an account hot
+  private int contendedTransfers = 1_000;
+
+  private long detectionIntervalMs = 1_000;
+
+  // configured accounts included
+  private int maxAccounts = 64;
+
+  public boolean isEnabled() {
+    return autoDetect || !accountIds.isEmpty();
+  }
+}
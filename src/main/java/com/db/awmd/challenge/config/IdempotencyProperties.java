@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.idempotency")
+public class IdempotencyProperties {
+
+  // outcomes are forgotten after this long, or earlier once the cache is full
+  private long ttlMs = 86_400_000;
+
+  // caps memory, each entry takes a few hundred bytes with keys of up to 64 characters; keyed
+  // transfers are refused with a 503 while a segment is full of transfers still running
+  private int maxEntries = 100_000;
+
+  // rounded up to the next power of two
+  private int segments = 16;
+}
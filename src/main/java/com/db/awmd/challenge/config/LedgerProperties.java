@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.ledger")
+public class LedgerProperties {
+
+  // segments are memory-mapped files in this directory when set, otherwise off-heap buffers that
+  // are gone after a restart
+  private String directory;
+
+  // entries per segment, rounded up to a power of two; every entry takes 72 bytes
+  private int segmentEntries = 1 << 20;
+
+  // off-heap segments kept before the oldest is dropped, 1.1 GB at the default size; mapped
+  // segments are all kept
+  private int maxSegments = 16;
+
+  private int maxPageSize = 1000;
+}
@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.repository.mapped")
+public class MappedRepositoryProperties {
+
+  private String file = "data/accounts.dat";
+
+  // number of slots, rounded up to a power of two; at most three quarters of them can be used
+  private int capacity = 1 << 20;
+}
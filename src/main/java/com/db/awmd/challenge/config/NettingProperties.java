@@ -0,0 +1,23 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.netting")
+public class NettingProperties {
+
+  // single transfers are collected into windows and applied together; needs account locking
+  private boolean enabled;
+
+  // how long a window stays open after its first transfer arrived
+  private long windowMicros = 1_000;
+
+  // a full window is applied right away
+  private int maxTransfers = 1_024;
+
+  // transfers waiting for a window; beyond this new ones are rejected with 503
+  private int queueCapacity = 65_536;
+}
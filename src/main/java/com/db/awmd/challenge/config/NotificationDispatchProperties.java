@@ -0,0 +1,30 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "notifications.dispatch")
+public class NotificationDispatchProperties {
+
+  private int queueCapacity = 10_000;
+
+  private int workers = 2;
+
+  private int batchSize = 64;
+
+  private OverflowPolicy overflowPolicy = OverflowPolicy.DISCARD_NEWEST;
+
+  private long shutdownTimeoutMs = 5_000;
+
+  public enum OverflowPolicy {
+    // drop the notification that did not fit, the transfer itself is already committed
+    DISCARD_NEWEST,
+    // make room by evicting the oldest queued notification
+    DISCARD_OLDEST,
+    // deliver on the request thread; locks are already released at this point
+    CALLER_RUNS
+  }
+}
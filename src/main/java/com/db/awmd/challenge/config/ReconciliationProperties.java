@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.reconciliation")
+public class ReconciliationProperties {
+
+  // checks every intervalMs that the balances add up to the money supply; needs account locking
+  private boolean enabled;
+
+  private long intervalMs = 60_000;
+
+  // threads scanning the accounts; transfers wait while they do
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+
+  // accounts are spread over the buckets by id, each with a checksum of its balances
+  private int buckets = 64;
+
+  // accounts with a negative balance listed by id in a report, all of them are counted
+  private int maxReportedNegatives = 100;
+}
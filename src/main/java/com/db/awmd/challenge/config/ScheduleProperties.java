@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.schedule")
+public class ScheduleProperties {
+
+  // future-dated transfers and standing orders; needs account locking, and an engine that logs
+  // schedules if it is persistent
+  private boolean enabled;
+
+  // resolution of the schedules; due runs of one tick are applied together
+  private long tickMs = 100;
+
+  // runs applied under one acquisition of their account locks
+  private int batchSize = 1_000;
+
+  // pending schedules; beyond this new ones are rejected with 503
+  private int maxScheduled = 10_000_000;
+}
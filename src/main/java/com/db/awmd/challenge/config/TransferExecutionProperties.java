@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.execution")
+public class TransferExecutionProperties {
+
+  private ExecutionMode mode = ExecutionMode.LOCKING;
+
+  private int shards = Runtime.getRuntime().availableProcessors();
+
+  // per shard, rounded up to the next power of two
+  private int ringSize = 8192;
+
+  public enum ExecutionMode {
+    // request threads apply transfers themselves under striped account locks
+    LOCKING,
+    // accounts are partitioned over single-threaded shards which own their balances exclusively
+    SHARDED
+  }
+}
@@ -1,12 +1,14 @@
 package com.db.awmd.challenge.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import org.hibernate.validator.constraints.NotEmpty;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
 import java.math.BigDecimal;
 
 @Data
@@ -14,19 +16,53 @@ public class Account {
 
   @NotNull @NotEmpty private final String accountId;
 
-  @NotNull
-  @Min(value = 0, message = "Initial balance must be positive.")
-  private BigDecimal balance;
+  // in minor units, see Money
+  @JsonIgnore private long balanceMinorUnits;
+
+  // of the balance and of every amount debited from the account
+  @Pattern(regexp = "[A-Z]{3}", message = "Currency must be a three-letter ISO 4217 code.")
+  private final String currency;
 
   public Account(String accountId) {
+    this(accountId, 0L);
+  }
+
+  public Account(String accountId, long balanceMinorUnits) {
+    this(accountId, balanceMinorUnits, Money.DEFAULT_CURRENCY);
+  }
+
+  public Account(String accountId, long balanceMinorUnits, String currency) {
     this.accountId = accountId;
-    this.balance = BigDecimal.ZERO;
+    this.balanceMinorUnits = balanceMinorUnits;
+    this.currency = currency;
+  }
+
+  public Account(String accountId, BigDecimal balance) {
+    this(accountId, balance, null);
   }
 
   @JsonCreator
   public Account(
-      @JsonProperty("accountId") String accountId, @JsonProperty("balance") BigDecimal balance) {
+      @JsonProperty("accountId") String accountId,
+      @JsonProperty("balance") BigDecimal balance,
+      @JsonProperty("currency") String currency) {
     this.accountId = accountId;
-    this.balance = balance;
+    this.balanceMinorUnits = balance == null ? Money.UNSET : Money.toMinorUnits(balance);
+    this.currency = currency == null ? Money.DEFAULT_CURRENCY : currency;
+  }
+
+  @NotNull
+  @Min(value = 0, message = "Initial balance must be positive.")
+  public BigDecimal getBalance() {
+    return Money.toDecimal(balanceMinorUnits);
+  }
+
+  public void setBalance(BigDecimal balance) {
+    this.balanceMinorUnits = Money.toMinorUnits(balance);
+  }
+
+  @Override
+  public String toString() {
+    return "Account(accountId=" + accountId + ", balance=" + getBalance() + ")";
   }
 }
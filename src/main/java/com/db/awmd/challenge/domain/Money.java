@@ -0,0 +1,56 @@
+package com.db.awmd.challenge.domain;
+
+import com.db.awmd.challenge.exception.InvalidAmountException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// amounts are scaled longs in minor units (cents); BigDecimal is only used at the JSON boundary
+public final class Money {
+  public static final int SCALE = 2;
+
+  // marks an amount that was missing from the request, so bean validation can still reject it
+  public static final long UNSET = Long.MIN_VALUE;
+
+  // the currency of accounts that do not name one, including all accounts from before currencies
+  public static final String DEFAULT_CURRENCY = "EUR";
+
+  private Money() {}
+
+  public static long toMinorUnits(BigDecimal amount) {
+    long minorUnits;
+    try {
+      minorUnits =
+          amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    } catch (ArithmeticException e) {
+      throw unrepresentable(amount);
+    }
+    if (minorUnits == UNSET) {
+      throw unrepresentable(amount);
+    }
+    return minorUnits;
+  }
+
+  public static BigDecimal toDecimal(long minorUnits) {
+    return minorUnits == UNSET ? null : BigDecimal.valueOf(minorUnits, SCALE);
+  }
+
+  // an ISO 4217 style code of three upper-case letters; every currency uses SCALE decimal places
+  public static boolean isCurrencyCode(String currency) {
+    if (currency == null || currency.length() != 3) {
+      return false;
+    }
+    for (int i = 0; i < 3; i++) {
+      char c = currency.charAt(i);
+      if (c < 'A' || c > 'Z') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static InvalidAmountException unrepresentable(BigDecimal amount) {
+    return new InvalidAmountException(
+        "Amount " + amount + " cannot be represented with " + SCALE + " decimal places");
+  }
+}
@@ -0,0 +1,76 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * One state of a future-dated transfer or standing order. States are immutable: every run
+ * produces the next one, which the repository logs together with the balances it changed.
+ */
+@Data
+public class ScheduledTransfer {
+  // remainingRuns of a standing order without an end
+  public static final int UNBOUNDED = -1;
+
+  private final long id;
+
+  private final String accountIdFrom;
+
+  private final String accountIdTo;
+
+  // in minor units, see Money
+  @JsonIgnore private final long amountMinorUnits;
+
+  // epoch milliseconds of the next run
+  @JsonIgnore private final long nextRunMillis;
+
+  // 0 for a single future-dated transfer
+  @JsonIgnore private final long intervalMillis;
+
+  // 0 once the schedule is finished
+  private final int remainingRuns;
+
+  private final int completedRuns;
+
+  // why the last run moved no money, null if it did
+  private final String lastError;
+
+  // the state after the next run; a run that failed still counts
+  public ScheduledTransfer afterRun(String error) {
+    int remaining = remainingRuns == UNBOUNDED ? UNBOUNDED : remainingRuns - 1;
+    if (intervalMillis == 0) {
+      remaining = 0;
+    }
+    return new ScheduledTransfer(
+        id,
+        accountIdFrom,
+        accountIdTo,
+        amountMinorUnits,
+        nextRunMillis + intervalMillis,
+        intervalMillis,
+        remaining,
+        completedRuns + 1,
+        error);
+  }
+
+  @JsonIgnore
+  public boolean isFinished() {
+    return remainingRuns == 0;
+  }
+
+  public BigDecimal getAmount() {
+    return Money.toDecimal(amountMinorUnits);
+  }
+
+  public String getNextRunAt() {
+    return isFinished() ? null : Instant.ofEpochMilli(nextRunMillis).toString();
+  }
+
+  public String getInterval() {
+    return intervalMillis == 0 ? null : Duration.ofMillis(intervalMillis).toString();
+  }
+}
@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+// a row that was not imported; line numbers start at 1 and count a CSV header
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AccountImportIssue {
+
+  private final long line;
+
+  private final String accountId;
+
+  private final String error;
+}
@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// issues lists the first rows that were not imported, duplicates and rejected count all of them
+@Data
+public class AccountImportSummary {
+
+  private long imported;
+
+  private long duplicates;
+
+  private long rejected;
+
+  private final List<AccountImportIssue> issues = new ArrayList<>();
+
+  private boolean issuesTruncated;
+}
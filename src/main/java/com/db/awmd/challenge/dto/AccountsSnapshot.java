@@ -0,0 +1,15 @@
+package com.db.awmd.challenge.dto;
+
+import com.db.awmd.challenge.domain.Account;
+import lombok.Data;
+
+import java.util.List;
+
+// balances of several accounts as of a single instant, with the requested ids that do not exist
+@Data
+public class AccountsSnapshot {
+
+  private final List<Account> accounts;
+
+  private final List<String> missing;
+}
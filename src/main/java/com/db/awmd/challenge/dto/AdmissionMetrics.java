@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Builder
+@Data
+public class AdmissionMetrics {
+  private boolean enabled;
+  private int concurrencyLimit;
+  private int inFlight;
+  private int trackedClients;
+  private int trackedAccounts;
+}
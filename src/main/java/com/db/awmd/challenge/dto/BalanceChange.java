@@ -0,0 +1,29 @@
+package com.db.awmd.challenge.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+// one change as the repository applied it; offsets are consecutive and give the order
+@Data
+public class BalanceChange {
+
+  private final long offset;
+
+  private final ChangeType type;
+
+  // epoch milliseconds at which the change entered the stream
+  private final long timestamp;
+
+  private final String accountId;
+
+  // ACCOUNT_CREATED only
+  private final String currency;
+
+  private final BigDecimal balance;
+
+  // TRANSFER only: the credited account and its balance right after the transfer
+  private final String counterpartyId;
+
+  private final BigDecimal counterpartyBalance;
+}
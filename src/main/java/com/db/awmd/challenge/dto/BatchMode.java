@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.dto;
+
+public enum BatchMode {
+  // every transfer is applied or none is
+  ALL_OR_NOTHING,
+  // transfers are applied independently, failures do not affect the rest of the batch
+  BEST_EFFORT
+}
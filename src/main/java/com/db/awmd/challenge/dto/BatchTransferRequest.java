@@ -0,0 +1,28 @@
+package com.db.awmd.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@Data
+@Builder
+public class BatchTransferRequest {
+
+  @NotNull private final BatchMode mode;
+
+  @NotNull @NotEmpty @Valid private final List<MoneyTransfer> transfers;
+
+  @JsonCreator
+  public BatchTransferRequest(
+      @JsonProperty("mode") BatchMode mode,
+      @JsonProperty("transfers") List<MoneyTransfer> transfers) {
+    this.mode = mode == null ? BatchMode.BEST_EFFORT : mode;
+    this.transfers = transfers;
+  }
+}
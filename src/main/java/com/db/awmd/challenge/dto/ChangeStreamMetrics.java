@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Builder
+@Data
+public class ChangeStreamMetrics {
+  private boolean enabled;
+  private long nextOffset;
+  private long publishedOffset;
+  private long oldestOffset;
+  private int consumers;
+  private int segments;
+  private long droppedChanges;
+}
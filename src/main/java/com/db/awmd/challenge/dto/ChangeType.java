@@ -0,0 +1,9 @@
+package com.db.awmd.challenge.dto;
+
+public enum ChangeType {
+  ACCOUNT_CREATED,
+  // both balances changed at once, the debited account's first
+  TRANSFER,
+  // a single balance changed, e.g. a rollback leg or credits folded into a hot account
+  BALANCE_SET
+}
@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Builder
+@Data
+public class LatencySnapshot {
+  private long count;
+  private double meanMicros;
+  private double p50Micros;
+  private double p90Micros;
+  private double p99Micros;
+  private double p999Micros;
+  private double maxMicros;
+}
@@ -0,0 +1,29 @@
+package com.db.awmd.challenge.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+// one applied transfer with the balances both accounts had right after it
+@Data
+public class LedgerEntry {
+
+  private final long id;
+
+  private final String accountIdFrom;
+
+  private final String accountIdTo;
+
+  // debited, in the currency of the source account
+  private final BigDecimal amount;
+
+  // credited, in the currency of the target account
+  private final BigDecimal creditedAmount;
+
+  private final BigDecimal fromBalance;
+
+  private final BigDecimal toBalance;
+
+  // epoch milliseconds
+  private final long timestamp;
+}
@@ -1,6 +1,8 @@
 package com.db.awmd.challenge.dto;
 
+import com.db.awmd.challenge.domain.Money;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 import lombok.Data;
@@ -8,27 +10,74 @@ import org.hibernate.validator.constraints.NotEmpty;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
 import java.math.BigDecimal;
 
 @Data
-@Builder
 public class MoneyTransfer {
 
   @NotNull @NotEmpty private final String accountIdFrom;
 
   @NotNull @NotEmpty private final String accountIdTo;
 
-  @NotNull
-  @Min(value = 0, message = "Amount to transfer must be positive.")
-  private BigDecimal amount;
+  // in minor units, see Money
+  @JsonIgnore private final long amountMinorUnits;
+
+  // optional; the transfer is refused unless the source account holds this currency
+  @Pattern(regexp = "[A-Z]{3}", message = "Currency must be a three-letter ISO 4217 code.")
+  private final String currency;
 
+  // optional; retries carrying the same key are applied at most once; batches refuse keys
+  @Size(max = 64) private final String idempotencyKey;
+
+  @Builder
   @JsonCreator
   public MoneyTransfer(
       @JsonProperty("accountIdFrom") String accountIdFrom,
       @JsonProperty("accountIdTo") String accountIdTo,
-      @JsonProperty("amount") BigDecimal amount) {
+      @JsonProperty("amount") BigDecimal amount,
+      @JsonProperty("currency") String currency,
+      @JsonProperty("idempotencyKey") String idempotencyKey) {
+    this.accountIdFrom = accountIdFrom;
+    this.accountIdTo = accountIdTo;
+    this.amountMinorUnits = amount == null ? Money.UNSET : Money.toMinorUnits(amount);
+    this.currency = currency;
+    this.idempotencyKey = idempotencyKey;
+  }
+
+  public MoneyTransfer(
+      String accountIdFrom, String accountIdTo, BigDecimal amount, String idempotencyKey) {
+    this(accountIdFrom, accountIdTo, amount, null, idempotencyKey);
+  }
+
+  public MoneyTransfer(
+      String accountIdFrom, String accountIdTo, long amountMinorUnits, String idempotencyKey) {
     this.accountIdFrom = accountIdFrom;
     this.accountIdTo = accountIdTo;
-    this.amount = amount;
+    this.amountMinorUnits = amountMinorUnits;
+    this.currency = null;
+    this.idempotencyKey = idempotencyKey;
+  }
+
+  @NotNull
+  @Min(value = 0, message = "Amount to transfer must be positive.")
+  public BigDecimal getAmount() {
+    return Money.toDecimal(amountMinorUnits);
+  }
+
+  @Override
+  public String toString() {
+    return "MoneyTransfer(accountIdFrom="
+        + accountIdFrom
+        + ", accountIdTo="
+        + accountIdTo
+        + ", amount="
+        + getAmount()
+        + ", currency="
+        + currency
+        + ", idempotencyKey="
+        + idempotencyKey
+        + ")";
   }
 }
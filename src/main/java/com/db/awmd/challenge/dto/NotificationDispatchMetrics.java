@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Builder
+@Data
+public class NotificationDispatchMetrics {
+  private long enqueued;
+  private long delivered;
+  private long failed;
+  private long dropped;
+  private long callerRuns;
+  private long batches;
+  private int queueDepth;
+  private int remainingCapacity;
+}
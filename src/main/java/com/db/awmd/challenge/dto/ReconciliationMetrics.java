@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@Builder
+@Data
+public class ReconciliationMetrics {
+  private long runs;
+  private long failedRuns;
+  private long unbalancedRuns;
+  private long lastDurationMicros;
+  private long lastAccounts;
+  private long lastNegativeBalances;
+  private Map<String, BigDecimal> lastDrift;
+}
@@ -0,0 +1,41 @@
+package com.db.awmd.challenge.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+// the balances of all accounts as of one instant, checked against the money supply
+@Builder
+@Data
+public class ReconciliationReport {
+
+  // epoch milliseconds
+  private final long timestamp;
+
+  // transfers waited for the scan this long
+  private final long durationMicros;
+
+  private final long accounts;
+
+  // true if every currency adds up to its supply
+  private final boolean balanced;
+
+  // by currency
+  private final Map<String, BigDecimal> totals;
+
+  private final Map<String, BigDecimal> expected;
+
+  // totals less expected, only for currencies where they differ
+  private final Map<String, BigDecimal> drift;
+
+  private final long negativeBalances;
+
+  // the first of them by handle, up to accounts.reconciliation.max-reported-negatives
+  private final List<String> negativeAccountIds;
+
+  // hex, one per bucket of account ids; equal accounts and balances give equal checksums
+  private final List<String> bucketChecksums;
+}
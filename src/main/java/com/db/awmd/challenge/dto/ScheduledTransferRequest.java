@@ -0,0 +1,74 @@
+package com.db.awmd.challenge.dto;
+
+import com.db.awmd.challenge.domain.Money;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+@Data
+public class ScheduledTransferRequest {
+
+  @NotNull @NotEmpty private final String accountIdFrom;
+
+  @NotNull @NotEmpty private final String accountIdTo;
+
+  // in minor units, see Money
+  @JsonIgnore private final long amountMinorUnits;
+
+  // executeAt in ISO-8601, e.g. 2024-01-31T09:00:00Z
+  @JsonIgnore
+  @NotNull(message = "executeAt is missing")
+  private final Instant firstRun;
+
+  // interval in ISO-8601, e.g. P30D or PT1H; none for a single future-dated transfer
+  @JsonIgnore private final Duration repeatEvery;
+
+  // runs of a standing order; none repeats it until it is cancelled
+  @Min(value = 1, message = "A standing order needs at least one run.")
+  private final Integer occurrences;
+
+  @JsonCreator
+  public ScheduledTransferRequest(
+      @JsonProperty("accountIdFrom") String accountIdFrom,
+      @JsonProperty("accountIdTo") String accountIdTo,
+      @JsonProperty("amount") BigDecimal amount,
+      @JsonProperty("executeAt") String executeAt,
+      @JsonProperty("interval") String interval,
+      @JsonProperty("occurrences") Integer occurrences) {
+    this.accountIdFrom = accountIdFrom;
+    this.accountIdTo = accountIdTo;
+    this.amountMinorUnits = amount == null ? Money.UNSET : Money.toMinorUnits(amount);
+    this.firstRun = executeAt == null ? null : Instant.parse(executeAt);
+    this.repeatEvery = interval == null ? null : Duration.parse(interval);
+    this.occurrences = occurrences;
+  }
+
+  public ScheduledTransferRequest(
+      String accountIdFrom,
+      String accountIdTo,
+      long amountMinorUnits,
+      Instant firstRun,
+      Duration repeatEvery,
+      Integer occurrences) {
+    this.accountIdFrom = accountIdFrom;
+    this.accountIdTo = accountIdTo;
+    this.amountMinorUnits = amountMinorUnits;
+    this.firstRun = firstRun;
+    this.repeatEvery = repeatEvery;
+    this.occurrences = occurrences;
+  }
+
+  @NotNull
+  @Min(value = 0, message = "Amount to transfer must be positive.")
+  public BigDecimal getAmount() {
+    return Money.toDecimal(amountMinorUnits);
+  }
+}
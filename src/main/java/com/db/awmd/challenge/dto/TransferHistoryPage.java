@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+// entries newest first; nextCursor is absent on the last page
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferHistoryPage {
+
+  private final List<LedgerEntry> entries;
+
+  private final String nextCursor;
+}
@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.dto;
+
+import com.db.awmd.challenge.metrics.RejectionReason;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+@Builder
+@Data
+public class TransferMetricsSnapshot {
+  private Map<String, LatencySnapshot> latencies;
+  private Map<RejectionReason, Long> rejections;
+  private NotificationDispatchMetrics notifications;
+  private AdmissionMetrics admission;
+  private ReconciliationMetrics reconciliation;
+  private ChangeStreamMetrics changes;
+}
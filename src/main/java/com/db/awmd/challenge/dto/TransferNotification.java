@@ -0,0 +1,50 @@
+package com.db.awmd.challenge.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+// balances are taken right after the transfer was applied, so later transfers don't leak into the
+// message text; all amounts are in minor units, each in the currency of its account
+@Data
+@EqualsAndHashCode(exclude = "appliedNanos")
+@ToString(exclude = "appliedNanos")
+public class TransferNotification {
+
+  private final String accountIdFrom;
+
+  private final long fromBalance;
+
+  private final String accountIdTo;
+
+  private final long toBalance;
+
+  // debited from the source account
+  private final long amount;
+
+  // credited to the target account, the amount converted if the two hold different currencies
+  private final long creditedAmount;
+
+  // System.nanoTime() when the notification was created, i.e. right after the transfer
+  private final long appliedNanos = System.nanoTime();
+
+  public TransferNotification(
+      String accountIdFrom, long fromBalance, String accountIdTo, long toBalance, long amount) {
+    this(accountIdFrom, fromBalance, accountIdTo, toBalance, amount, amount);
+  }
+
+  public TransferNotification(
+      String accountIdFrom,
+      long fromBalance,
+      String accountIdTo,
+      long toBalance,
+      long amount,
+      long creditedAmount) {
+    this.accountIdFrom = accountIdFrom;
+    this.fromBalance = fromBalance;
+    this.accountIdTo = accountIdTo;
+    this.toBalance = toBalance;
+    this.amount = amount;
+    this.creditedAmount = creditedAmount;
+  }
+}
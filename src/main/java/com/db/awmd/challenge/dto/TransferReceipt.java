@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.dto;
+
+import lombok.Data;
+
+// resulting balances in minor units
+@Data
+public class TransferReceipt {
+  private final long fromBalance;
+  private final long toBalance;
+}
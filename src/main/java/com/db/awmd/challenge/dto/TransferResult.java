@@ -0,0 +1,23 @@
+package com.db.awmd.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferResult {
+
+  private final int index;
+
+  private final TransferStatus status;
+
+  private final String error;
+
+  public static TransferResult applied(int index) {
+    return new TransferResult(index, TransferStatus.APPLIED, null);
+  }
+
+  public static TransferResult rejected(int index, String error) {
+    return new TransferResult(index, TransferStatus.REJECTED, error);
+  }
+}
@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.dto;
+
+public enum TransferStatus {
+  APPLIED,
+  REJECTED,
+  ROLLED_BACK,
+  SKIPPED
+}
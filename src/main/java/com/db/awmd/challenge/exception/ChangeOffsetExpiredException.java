@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.exception;
+
+public class ChangeOffsetExpiredException extends RuntimeException {
+
+  public ChangeOffsetExpiredException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.exception;
+
+public class ChangeStreamUnavailableException extends RuntimeException {
+
+  public ChangeStreamUnavailableException(String message) {
+    super(message);
+  }
+}
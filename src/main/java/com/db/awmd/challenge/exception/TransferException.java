@@ -5,4 +5,9 @@ public class TransferException extends RuntimeException {
   public TransferException(String message) {
     super(message);
   }
+
+  // for rejections thrown often enough that filling in the stack trace would dominate their cost
+  protected TransferException(String message, boolean writableStackTrace) {
+    super(message, null, false, writableStackTrace);
+  }
 }
@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.exception;
+
+public class TransferOverloadedException extends RuntimeException {
+
+  public TransferOverloadedException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,54 @@
+package com.db.awmd.challenge.exception;
+
+import com.db.awmd.challenge.service.validation.TransferError;
+
+/**
+ * A transfer rejected by validation. It carries no stack trace and renders its message only when
+ * asked, which normally happens once at the HTTP boundary. Rejections that name no account are
+ * shared instances created up front, so throwing them allocates nothing.
+ */
+public class TransferRejectedException extends TransferException {
+  private static final TransferRejectedException[] SHARED =
+      new TransferRejectedException[TransferError.ALL + 1];
+
+  static {
+    for (int errors = 1; errors < SHARED.length; errors++) {
+      if ((errors & TransferError.NAMES_ACCOUNT) == 0) {
+        SHARED[errors] = new TransferRejectedException(errors, null, null);
+      }
+    }
+  }
+
+  private final int errors;
+
+  private final String accountIdFrom;
+
+  private final String accountIdTo;
+
+  private TransferRejectedException(int errors, String accountIdFrom, String accountIdTo) {
+    super(null, false);
+    this.errors = errors;
+    this.accountIdFrom = accountIdFrom;
+    this.accountIdTo = accountIdTo;
+  }
+
+  public static TransferRejectedException of(int errors, String accountIdFrom, String accountIdTo) {
+    if (errors <= 0 || errors > TransferError.ALL) {
+      throw new IllegalArgumentException("Not a mask of transfer errors: " + errors);
+    }
+    TransferRejectedException shared = SHARED[errors];
+    return shared != null
+        ? shared
+        : new TransferRejectedException(errors, accountIdFrom, accountIdTo);
+  }
+
+  // a mask of TransferError bits
+  public int getErrors() {
+    return errors;
+  }
+
+  @Override
+  public String getMessage() {
+    return String.join(", ", TransferError.render(errors, accountIdFrom, accountIdTo));
+  }
+}
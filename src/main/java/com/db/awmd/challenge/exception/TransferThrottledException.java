@@ -0,0 +1,15 @@
+package com.db.awmd.challenge.exception;
+
+import lombok.Getter;
+
+public class TransferThrottledException extends RuntimeException {
+
+  // 0 when the client should back off without a specific delay
+  @Getter private final long retryAfterMillis;
+
+  public TransferThrottledException(String message, long retryAfterMillis) {
+    // thrown by the thousand under overload, a stack trace would cost more than the check
+    super(message, null, false, false);
+    this.retryAfterMillis = retryAfterMillis;
+  }
+}
@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.exception;
+
+public class UnsupportedCurrencyException extends RuntimeException {
+
+  public UnsupportedCurrencyException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,50 @@
+package com.db.awmd.challenge.metrics;
+
+import com.db.awmd.challenge.dto.LatencySnapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency histogram in nanoseconds. Recording is wait-free, so it is safe on the transfer path;
+ * readers fold the recorded interval into a cumulative histogram when taking a snapshot.
+ */
+public class LatencyTimer {
+  // three significant digits keep percentiles within 0.1% of the recorded values
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private static final double NANOS_PER_MICRO = 1_000.0;
+
+  private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+
+  private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+
+  private Histogram interval;
+
+  public void record(long nanos) {
+    recorder.recordValue(Math.max(0, nanos));
+  }
+
+  // records the time elapsed since a System.nanoTime() reading
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  public synchronized LatencySnapshot snapshot() {
+    interval = recorder.getIntervalHistogram(interval);
+    total.add(interval);
+    return LatencySnapshot.builder()
+        .count(total.getTotalCount())
+        .meanMicros(total.getMean() / NANOS_PER_MICRO)
+        .p50Micros(total.getValueAtPercentile(50) / NANOS_PER_MICRO)
+        .p90Micros(total.getValueAtPercentile(90) / NANOS_PER_MICRO)
+        .p99Micros(total.getValueAtPercentile(99) / NANOS_PER_MICRO)
+        .p999Micros(total.getValueAtPercentile(99.9) / NANOS_PER_MICRO)
+        .maxMicros(total.getMaxValue() / NANOS_PER_MICRO)
+        .build();
+  }
+
+  public synchronized void reset() {
+    interval = recorder.getIntervalHistogram(interval);
+    total.reset();
+  }
+}
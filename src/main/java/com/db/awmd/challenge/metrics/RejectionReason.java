@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.metrics;
+
+public enum RejectionReason {
+  ACCOUNT_NOT_FOUND,
+  INVALID_AMOUNT,
+  SELF_TRANSFER,
+  INSUFFICIENT_BALANCE,
+  BALANCE_OVERFLOW,
+  LOCK_TIMEOUT,
+  NO_EXCHANGE_RATE,
+  CLIENT_RATE_LIMITED,
+  ACCOUNT_RATE_LIMITED,
+  CONCURRENCY_LIMITED
+}
@@ -0,0 +1,99 @@
+package com.db.awmd.challenge.metrics;
+
+import com.db.awmd.challenge.dto.AdmissionMetrics;
+import com.db.awmd.challenge.dto.ChangeStreamMetrics;
+import com.db.awmd.challenge.dto.LatencySnapshot;
+import com.db.awmd.challenge.dto.NotificationDispatchMetrics;
+import com.db.awmd.challenge.dto.ReconciliationMetrics;
+import com.db.awmd.challenge.dto.TransferMetricsSnapshot;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Breaks the latency of a transfer down into its stages: waiting for and holding the account
+ * locks, validation, the repository write and durability wait, and notification hand-off and
+ * delivery. Rejected transfers are counted by reason.
+ */
+@Component
+public class TransferMetrics {
+
+  // POST /transfer as seen by the controller, including request binding and error mapping
+  @Getter private final LatencyTimer request = new LatencyTimer();
+
+  @Getter private final LatencyTimer transfer = new LatencyTimer();
+
+  @Getter private final LatencyTimer lockWait = new LatencyTimer();
+
+  @Getter private final LatencyTimer lockHold = new LatencyTimer();
+
+  @Getter private final LatencyTimer validation = new LatencyTimer();
+
+  @Getter private final LatencyTimer repositoryWrite = new LatencyTimer();
+
+  @Getter private final LatencyTimer ledgerAppend = new LatencyTimer();
+
+  @Getter private final LatencyTimer durableWait = new LatencyTimer();
+
+  // time the request thread spends handing the notification to the dispatcher
+  @Getter private final LatencyTimer notificationDispatch = new LatencyTimer();
+
+  // from the transfer being applied until both owners have been notified
+  @Getter private final LatencyTimer notificationDelivery = new LatencyTimer();
+
+  private final Map<String, LatencyTimer> timers = new LinkedHashMap<>();
+
+  private final Map<RejectionReason, LongAdder> rejections = new EnumMap<>(RejectionReason.class);
+
+  public TransferMetrics() {
+    timers.put("http.transfer", request);
+    timers.put("transfer", transfer);
+    timers.put("transfer.lock.wait", lockWait);
+    timers.put("transfer.lock.hold", lockHold);
+    timers.put("transfer.validation", validation);
+    timers.put("repository.write", repositoryWrite);
+    timers.put("ledger.append", ledgerAppend);
+    timers.put("repository.durable.wait", durableWait);
+    timers.put("notification.dispatch", notificationDispatch);
+    timers.put("notification.delivery", notificationDelivery);
+    for (RejectionReason reason : RejectionReason.values()) {
+      rejections.put(reason, new LongAdder());
+    }
+  }
+
+  public void recordRejection(RejectionReason reason) {
+    rejections.get(reason).increment();
+  }
+
+  public long getRejections(RejectionReason reason) {
+    return rejections.get(reason).sum();
+  }
+
+  public TransferMetricsSnapshot snapshot(
+      NotificationDispatchMetrics notifications,
+      AdmissionMetrics admission,
+      ReconciliationMetrics reconciliation,
+      ChangeStreamMetrics changes) {
+    Map<String, LatencySnapshot> latencies = new LinkedHashMap<>();
+    timers.forEach((name, timer) -> latencies.put(name, timer.snapshot()));
+    Map<RejectionReason, Long> rejectionCounts = new EnumMap<>(RejectionReason.class);
+    rejections.forEach((reason, count) -> rejectionCounts.put(reason, count.sum()));
+    return TransferMetricsSnapshot.builder()
+        .latencies(latencies)
+        .rejections(rejectionCounts)
+        .notifications(notifications)
+        .admission(admission)
+        .reconciliation(reconciliation)
+        .changes(changes)
+        .build();
+  }
+
+  public void reset() {
+    timers.values().forEach(LatencyTimer::reset);
+    rejections.values().forEach(LongAdder::reset);
+  }
+}
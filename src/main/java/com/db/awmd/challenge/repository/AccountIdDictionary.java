@@ -0,0 +1,100 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps account ids to dense int handles. An id gets the next handle when an account with it is
+ * created and keeps it for the lifetime of the process, so per-account state can live in arrays
+ * indexed by handle and stripes can be picked without hashing. Resolving an id costs one hash
+ * lookup, which a transfer pays once for each of its accounts.
+ *
+ * <p>A repository that indexes its accounts anyway can hand out the handles itself through a
+ * {@link HandleIndex}, so that no id is kept here.
+ */
+@Component
+public class AccountIdDictionary {
+  public static final int NO_HANDLE = -1;
+
+  private final ConcurrentMap<String, Integer> handles = new ConcurrentHashMap<>();
+
+  private final HandleTable<String> accountIds = new HandleTable<>();
+
+  private volatile int size;
+
+  // null unless a repository gives out the handles
+  private volatile HandleIndex index;
+
+  // has to be called before the first handle is given out here
+  public synchronized void useIndex(HandleIndex index) {
+    if (size > 0) {
+      throw new IllegalStateException("Account handles were already given out");
+    }
+    this.index = index;
+  }
+
+  // the handle of the id, assigning the next one if the id has none yet; with an index, the
+  // account has to exist
+  public int intern(String accountId) {
+    HandleIndex external = index;
+    if (external != null) {
+      int handle = external.handleOf(accountId);
+      if (handle == NO_HANDLE) {
+        throw new AccountNotFoundException("No account with id " + accountId + " found");
+      }
+      return handle;
+    }
+    Integer handle = handles.get(accountId);
+    if (handle != null) {
+      return handle;
+    }
+    // new ids are rare next to lookups, so assigning them one at a time costs nothing
+    synchronized (this) {
+      handle = handles.get(accountId);
+      if (handle == null) {
+        handle = size;
+        // stored before the handle is published, so accountIdOf never misses a known handle
+        accountIds.set(handle, accountId);
+        handles.put(accountId, handle);
+        size = handle + 1;
+      }
+      return handle;
+    }
+  }
+
+  // NO_HANDLE if the id was never interned
+  public int handleOf(String accountId) {
+    HandleIndex external = index;
+    if (external != null) {
+      return external.handleOf(accountId);
+    }
+    Integer handle = handles.get(accountId);
+    return handle == null ? NO_HANDLE : handle;
+  }
+
+  // null for NO_HANDLE
+  public String accountIdOf(int handle) {
+    HandleIndex external = index;
+    return external != null ? external.accountIdOf(handle) : accountIds.get(handle);
+  }
+
+  // every handle is below this
+  public int size() {
+    HandleIndex external = index;
+    return external != null ? external.size() : size;
+  }
+
+  /** Handles kept by a repository, e.g. the slots of a mapped table. */
+  public interface HandleIndex {
+    // NO_HANDLE if no account has the id
+    int handleOf(String accountId);
+
+    // null if the handle holds no account
+    String accountIdOf(int handle);
+
+    int size();
+  }
+}
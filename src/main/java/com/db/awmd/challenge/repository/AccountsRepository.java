@@ -1,17 +1,94 @@
 package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.dto.TransferReceipt;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 
-import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface AccountsRepository {
 
   void createAccount(Account account) throws DuplicateAccountIdException;
 
-  Account getAccount(String accountId);
+  // the handle the AccountIdDictionary gave the id, or NO_HANDLE if no account ever had it
+  int handleOf(String accountId);
+
+  // null for NO_HANDLE and for handles whose account no longer exists
+  Account getAccount(int handle);
+
+  default Account getAccount(String accountId) {
+    return getAccount(handleOf(accountId));
+  }
 
   void clearAccounts();
 
-  void transfer(Account from, BigDecimal newFromBalance, Account to, BigDecimal newToBalance);
+  // walks the live accounts without copying them first; accounts created or changed during the
+  // walk may or may not be seen, and the action must not modify them
+  void forEachAccount(Consumer<Account> action);
+
+  // balances are in minor units, see Money
+  void transfer(Account from, long newFromBalance, Account to, long newToBalance);
+
+  // single-account update for callers that own the account exclusively, e.g. a transfer shard
+  void setBalance(Account account, long newBalance);
+
+  // a run of a scheduled transfer, changing both balances and the schedule's state as one; the
+  // caller holds the locks of both accounts
+  default void transfer(
+      Account from,
+      long newFromBalance,
+      Account to,
+      long newToBalance,
+      ScheduledTransfer schedule) {
+    transfer(from, newFromBalance, to, newToBalance);
+    saveSchedule(schedule);
+  }
+
+  // engines that do not log schedules leave them to the TransferScheduler, which loses them on a
+  // restart together with the balances
+  default void saveSchedule(ScheduledTransfer schedule) {}
+
+  default void deleteSchedule(long scheduleId) {}
+
+  // the pending schedules found when the repository was opened
+  default void forEachSchedule(Consumer<ScheduledTransfer> action) {}
+
+  // schedules survive a restart together with the balances they change
+  default boolean isSchedulePersistent() {
+    return false;
+  }
+
+  // blocks until every change made so far survives a crash; called after the account locks are
+  // released so that concurrent transfers can share one fsync
+  default void awaitDurable() {}
+
+  // balances survive a restart, so none of them may live outside the repository
+  default boolean isPersistent() {
+    return false;
+  }
+
+  // writes the balances of several accounts as one change; the caller holds all their locks
+  default void setBalances(List<Account> accounts, long[] newBalances) {
+    for (int i = 0; i < accounts.size(); i++) {
+      setBalance(accounts.get(i), newBalances[i]);
+    }
+  }
+
+  // whether a crash keeps either all or none of the balances of one setBalances call
+  default boolean setsBalancesAtomically() {
+    return !isPersistent();
+  }
+
+  // lock-free engines apply transfers through transferAtomically and need no account locks
+  default boolean isLockFree() {
+    return false;
+  }
+
+  // returns null, leaving both balances untouched, if the source account cannot cover the amount
+  default TransferReceipt transferAtomically(int handleFrom, int handleTo, long amount) {
+    throw new UnsupportedOperationException(
+        getClass().getSimpleName() + " does not support atomic transfers");
+  }
 }
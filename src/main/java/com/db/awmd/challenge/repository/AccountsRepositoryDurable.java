@@ -0,0 +1,365 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.config.ChangeStreamProperties;
+import com.db.awmd.challenge.config.DurableRepositoryProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.repository.changes.BalanceChangeStream;
+import com.db.awmd.challenge.repository.wal.SnapshotFile;
+import com.db.awmd.challenge.repository.wal.WalRecords;
+import com.db.awmd.challenge.repository.wal.WalReplayHandler;
+import com.db.awmd.challenge.repository.wal.WriteAheadLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * In-memory accounts backed by a write-ahead log and periodic snapshots. Balance changes are
+ * logged first and applied in memory only once the log has taken them, before a segment roll can
+ * follow, so a snapshot taken after a roll plus the log from that segment on always reproduces the
+ * latest state, and a change the log refuses never becomes visible. Pending scheduled transfers
+ * are kept the same way, and each run is logged in the same record as the balances it changed.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.repository.engine", havingValue = "durable")
+public class AccountsRepositoryDurable implements AccountsRepository {
+
+  private final AccountIdDictionary dictionary;
+
+  private final HandleTable<Account> accounts = new HandleTable<>();
+
+  private final ConcurrentMap<Long, ScheduledTransfer> schedules = new ConcurrentHashMap<>();
+
+  // for the logs only
+  private final AtomicInteger size = new AtomicInteger();
+
+  private final DurableRepositoryProperties properties;
+
+  private final Path directory;
+
+  private final BalanceChangeStream changes;
+
+  // makes logging and publishing a new account atomic with respect to segment rolls
+  private final Object createLock = new Object();
+
+  private WriteAheadLog writeAheadLog;
+
+  private ScheduledExecutorService snapshotScheduler;
+
+  public AccountsRepositoryDurable(
+      DurableRepositoryProperties properties, AccountIdDictionary dictionary) {
+    this(properties, dictionary, new BalanceChangeStream(new ChangeStreamProperties()));
+  }
+
+  @Autowired
+  public AccountsRepositoryDurable(
+      DurableRepositoryProperties properties,
+      AccountIdDictionary dictionary,
+      BalanceChangeStream changes) {
+    this.properties = properties;
+    this.dictionary = dictionary;
+    this.directory = Paths.get(properties.getDirectory());
+    this.changes = changes;
+  }
+
+  @PostConstruct
+  public void open() throws IOException {
+    Files.createDirectories(directory);
+    long nextSegment = recover();
+    writeAheadLog =
+        new WriteAheadLog(
+            directory, properties.getFsyncPolicy(), properties.getFsyncIntervalMs(), nextSegment);
+
+    long interval = properties.getSnapshotIntervalMs();
+    if (interval > 0) {
+      snapshotScheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "accounts-snapshot");
+                thread.setDaemon(true);
+                return thread;
+              });
+      snapshotScheduler.scheduleWithFixedDelay(
+          this::snapshotQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    if (snapshotScheduler != null) {
+      snapshotScheduler.shutdown();
+    }
+    writeAheadLog.close();
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    // the account is logged before it becomes visible, so no transfer record can precede it
+    synchronized (createLock) {
+      int handle = dictionary.intern(account.getAccountId());
+      if (accounts.get(handle) != null) {
+        throw new DuplicateAccountIdException(
+            "Account id " + account.getAccountId() + " already exists!");
+      }
+      writeAheadLog.append(
+          WalRecords.create(
+              account.getAccountId(), account.getBalanceMinorUnits(), account.getCurrency()));
+      accounts.set(handle, account);
+      size.incrementAndGet();
+      changes.accountCreated(
+          account.getAccountId(), account.getCurrency(), account.getBalanceMinorUnits());
+    }
+  }
+
+  @Override
+  public int handleOf(String accountId) {
+    return dictionary.handleOf(accountId);
+  }
+
+  @Override
+  public Account getAccount(int handle) {
+    return accounts.get(handle);
+  }
+
+  @Override
+  public void clearAccounts() {
+    synchronized (createLock) {
+      writeAheadLog.append(
+          WalRecords.clear(),
+          () -> {
+            accounts.clear();
+            schedules.clear();
+            size.set(0);
+          });
+    }
+  }
+
+  @Override
+  public void forEachAccount(Consumer<Account> action) {
+    accounts.forEach(action);
+  }
+
+  @Override
+  public void transfer(Account from, long newFromBalance, Account to, long newToBalance) {
+    writeAheadLog.append(
+        WalRecords.balances(from.getAccountId(), newFromBalance, to.getAccountId(), newToBalance),
+        () -> {
+          from.setBalanceMinorUnits(newFromBalance);
+          to.setBalanceMinorUnits(newToBalance);
+        });
+    changes.transferred(from.getAccountId(), newFromBalance, to.getAccountId(), newToBalance);
+  }
+
+  @Override
+  public void setBalance(Account account, long newBalance) {
+    writeAheadLog.append(
+        WalRecords.balance(account.getAccountId(), newBalance),
+        () -> account.setBalanceMinorUnits(newBalance));
+    changes.balanceSet(account.getAccountId(), newBalance);
+  }
+
+  // one record, so a crash never keeps part of the group
+  @Override
+  public void setBalances(List<Account> accounts, long[] newBalances) {
+    String[] accountIds = new String[accounts.size()];
+    for (int i = 0; i < accountIds.length; i++) {
+      accountIds[i] = accounts.get(i).getAccountId();
+    }
+    writeAheadLog.append(
+        WalRecords.balances(accountIds, newBalances),
+        () -> {
+          for (int i = 0; i < accountIds.length; i++) {
+            accounts.get(i).setBalanceMinorUnits(newBalances[i]);
+          }
+        });
+    for (int i = 0; i < accountIds.length; i++) {
+      changes.balanceSet(accountIds[i], newBalances[i]);
+    }
+  }
+
+  @Override
+  public boolean setsBalancesAtomically() {
+    return true;
+  }
+
+  @Override
+  public void transfer(
+      Account from,
+      long newFromBalance,
+      Account to,
+      long newToBalance,
+      ScheduledTransfer schedule) {
+    // one record, so a restart sees either the run with its balances or neither
+    writeAheadLog.append(
+        WalRecords.scheduledRun(
+            from.getAccountId(), newFromBalance, to.getAccountId(), newToBalance, schedule),
+        () -> {
+          from.setBalanceMinorUnits(newFromBalance);
+          to.setBalanceMinorUnits(newToBalance);
+          keep(schedule);
+        });
+    changes.transferred(from.getAccountId(), newFromBalance, to.getAccountId(), newToBalance);
+  }
+
+  @Override
+  public void saveSchedule(ScheduledTransfer schedule) {
+    writeAheadLog.append(WalRecords.schedule(schedule), () -> keep(schedule));
+  }
+
+  @Override
+  public void deleteSchedule(long scheduleId) {
+    writeAheadLog.append(
+        WalRecords.unschedule(scheduleId), () -> schedules.remove(scheduleId));
+  }
+
+  @Override
+  public void forEachSchedule(Consumer<ScheduledTransfer> action) {
+    schedules.values().forEach(action);
+  }
+
+  @Override
+  public boolean isSchedulePersistent() {
+    return true;
+  }
+
+  @Override
+  public void awaitDurable() {
+    writeAheadLog.awaitDurable();
+  }
+
+  @Override
+  public boolean isPersistent() {
+    return true;
+  }
+
+  // rolls the log, writes a fuzzy snapshot and drops the segments and snapshots it supersedes
+  public synchronized void snapshot() throws IOException {
+    long segmentId;
+    synchronized (createLock) {
+      segmentId = writeAheadLog.roll();
+    }
+    SnapshotFile.write(directory, segmentId, accounts, schedules.values());
+
+    for (long obsoleteSegment : WriteAheadLog.segmentIds(directory)) {
+      if (obsoleteSegment < segmentId) {
+        Files.deleteIfExists(WriteAheadLog.segmentPath(directory, obsoleteSegment));
+      }
+    }
+    for (long obsoleteSnapshot : SnapshotFile.snapshotIds(directory)) {
+      if (obsoleteSnapshot < segmentId) {
+        Files.deleteIfExists(SnapshotFile.snapshotPath(directory, obsoleteSnapshot));
+      }
+    }
+    log.info(
+        "Wrote accounts snapshot {} with {} accounts and {} schedules",
+        segmentId,
+        size.get(),
+        schedules.size());
+  }
+
+  private void keep(ScheduledTransfer schedule) {
+    if (schedule.isFinished()) {
+      schedules.remove(schedule.getId());
+    } else {
+      schedules.put(schedule.getId(), schedule);
+    }
+  }
+
+  private void snapshotQuietly() {
+    try {
+      snapshot();
+    } catch (IOException | RuntimeException e) {
+      log.error("Failed to write accounts snapshot", e);
+    }
+  }
+
+  // loads the latest snapshot and replays the log tail; returns the id for the next segment
+  private long recover() throws IOException {
+    WalReplayHandler handler =
+        new WalReplayHandler() {
+          @Override
+          public void onCreate(String accountId, long balance, String currency) {
+            int handle = dictionary.intern(accountId);
+            if (accounts.get(handle) == null) {
+              size.incrementAndGet();
+            }
+            accounts.set(handle, new Account(accountId, balance, currency));
+          }
+
+          @Override
+          public void onBalance(String accountId, long balance) {
+            Account account = accounts.get(dictionary.handleOf(accountId));
+            if (account != null) {
+              account.setBalanceMinorUnits(balance);
+            }
+          }
+
+          @Override
+          public void onClear() {
+            accounts.clear();
+            schedules.clear();
+            size.set(0);
+          }
+
+          @Override
+          public void onSchedule(ScheduledTransfer schedule) {
+            keep(schedule);
+          }
+
+          @Override
+          public void onUnschedule(long scheduleId) {
+            schedules.remove(scheduleId);
+          }
+        };
+
+    long firstSegment = 0;
+    List<Long> snapshots = SnapshotFile.snapshotIds(directory);
+    if (!snapshots.isEmpty()) {
+      firstSegment = snapshots.get(snapshots.size() - 1);
+      SnapshotFile.read(SnapshotFile.snapshotPath(directory, firstSegment), handler);
+    }
+
+    long lastSegment = firstSegment;
+    List<Long> segments = WriteAheadLog.segmentIds(directory);
+    for (int i = 0; i < segments.size(); i++) {
+      long segmentId = segments.get(i);
+      if (segmentId < firstSegment) {
+        continue;
+      }
+      Path segment = WriteAheadLog.segmentPath(directory, segmentId);
+      long valid = WriteAheadLog.replay(segment, handler);
+      if (valid < Files.size(segment)) {
+        if (i < segments.size() - 1) {
+          throw new IOException("Write-ahead log segment " + segmentId + " is corrupt");
+        }
+        WriteAheadLog.truncate(segment, valid);
+      }
+      lastSegment = segmentId;
+    }
+    log.info(
+        "Recovered {} accounts and {} schedules from {}",
+        size.get(),
+        schedules.size(),
+        directory.toAbsolutePath());
+    // a fresh segment keeps new records away from a possibly torn tail
+    return lastSegment + 1;
+  }
+}
@@ -1,30 +1,56 @@
 package com.db.awmd.challenge.repository;
 
+import com.db.awmd.challenge.config.ChangeStreamProperties;
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.repository.changes.BalanceChangeStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 @Repository
+@ConditionalOnProperty(
+    name = "accounts.repository.engine",
+    havingValue = "in-memory",
+    matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
-  private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+  private final AccountIdDictionary dictionary;
+
+  private final HandleTable<Account> accounts = new HandleTable<>();
+
+  private final BalanceChangeStream changes;
+
+  public AccountsRepositoryInMemory(AccountIdDictionary dictionary) {
+    this(dictionary, new BalanceChangeStream(new ChangeStreamProperties()));
+  }
+
+  @Autowired
+  public AccountsRepositoryInMemory(AccountIdDictionary dictionary, BalanceChangeStream changes) {
+    this.dictionary = dictionary;
+    this.changes = changes;
+  }
 
   @Override
   public void createAccount(Account account) throws DuplicateAccountIdException {
-    Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
-    if (previousAccount != null) {
+    if (!accounts.setIfAbsent(dictionary.intern(account.getAccountId()), account)) {
       throw new DuplicateAccountIdException(
           "Account id " + account.getAccountId() + " already exists!");
     }
+    changes.accountCreated(
+        account.getAccountId(), account.getCurrency(), account.getBalanceMinorUnits());
   }
 
   @Override
-  public Account getAccount(String accountId) {
-    return accounts.get(accountId);
+  public int handleOf(String accountId) {
+    return dictionary.handleOf(accountId);
+  }
+
+  @Override
+  public Account getAccount(int handle) {
+    return accounts.get(handle);
   }
 
   @Override
@@ -33,9 +59,20 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
   }
 
   @Override
-  public void transfer(
-      Account from, BigDecimal newFromBalance, Account to, BigDecimal newToBalance) {
-    from.setBalance(newFromBalance);
-    to.setBalance(newToBalance);
+  public void forEachAccount(Consumer<Account> action) {
+    accounts.forEach(action);
+  }
+
+  @Override
+  public void transfer(Account from, long newFromBalance, Account to, long newToBalance) {
+    from.setBalanceMinorUnits(newFromBalance);
+    to.setBalanceMinorUnits(newToBalance);
+    changes.transferred(from.getAccountId(), newFromBalance, to.getAccountId(), newToBalance);
+  }
+
+  @Override
+  public void setBalance(Account account, long newBalance) {
+    account.setBalanceMinorUnits(newBalance);
+    changes.balanceSet(account.getAccountId(), newBalance);
   }
 }
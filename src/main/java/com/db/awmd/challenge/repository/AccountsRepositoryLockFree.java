@@ -0,0 +1,150 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.config.ChangeStreamProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.dto.TransferReceipt;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.UnsupportedCurrencyException;
+import com.db.awmd.challenge.repository.changes.BalanceChangeStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+@Repository
+@ConditionalOnProperty(name = "accounts.repository.engine", havingValue = "lock-free")
+public class AccountsRepositoryLockFree implements AccountsRepository {
+
+  private final AccountIdDictionary dictionary;
+
+  // balances in minor units, one atomic cell per account handle
+  private final HandleTable<AtomicLong> balances = new HandleTable<>();
+
+  private final BalanceChangeStream changes;
+
+  public AccountsRepositoryLockFree(AccountIdDictionary dictionary) {
+    this(dictionary, new BalanceChangeStream(new ChangeStreamProperties()));
+  }
+
+  @Autowired
+  public AccountsRepositoryLockFree(AccountIdDictionary dictionary, BalanceChangeStream changes) {
+    this.dictionary = dictionary;
+    this.changes = changes;
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    long balance = account.getBalanceMinorUnits();
+    if (balance < 0) {
+      throw new InvalidAmountException("Initial balance must be positive.");
+    }
+    // balances are bare atomic longs, there is no room to keep a currency next to them
+    if (!Money.DEFAULT_CURRENCY.equals(account.getCurrency())) {
+      throw new UnsupportedCurrencyException(
+          "The lock-free engine only keeps accounts in " + Money.DEFAULT_CURRENCY);
+    }
+    if (!balances.setIfAbsent(
+        dictionary.intern(account.getAccountId()), new AtomicLong(balance))) {
+      throw new DuplicateAccountIdException(
+          "Account id " + account.getAccountId() + " already exists!");
+    }
+    changes.accountCreated(account.getAccountId(), account.getCurrency(), balance);
+  }
+
+  @Override
+  public int handleOf(String accountId) {
+    return dictionary.handleOf(accountId);
+  }
+
+  @Override
+  public Account getAccount(int handle) {
+    AtomicLong balance = balances.get(handle);
+    return balance == null ? null : new Account(dictionary.accountIdOf(handle), balance.get());
+  }
+
+  @Override
+  public void clearAccounts() {
+    balances.clear();
+  }
+
+  @Override
+  public void forEachAccount(Consumer<Account> action) {
+    for (int handle = 0; handle < dictionary.size(); handle++) {
+      AtomicLong balance = balances.get(handle);
+      if (balance != null) {
+        action.accept(new Account(dictionary.accountIdOf(handle), balance.get()));
+      }
+    }
+  }
+
+  @Override
+  public void transfer(Account from, long newFromBalance, Account to, long newToBalance) {
+    // absolute update, only safe while the caller holds both account locks
+    cell(handleOf(from.getAccountId())).set(newFromBalance);
+    cell(handleOf(to.getAccountId())).set(newToBalance);
+    changes.transferred(from.getAccountId(), newFromBalance, to.getAccountId(), newToBalance);
+  }
+
+  @Override
+  public void setBalance(Account account, long newBalance) {
+    cell(handleOf(account.getAccountId())).set(newBalance);
+    changes.balanceSet(account.getAccountId(), newBalance);
+  }
+
+  @Override
+  public boolean isLockFree() {
+    return true;
+  }
+
+  @Override
+  public TransferReceipt transferAtomically(int handleFrom, int handleTo, long amount) {
+    AtomicLong from = cell(handleFrom);
+    AtomicLong to = cell(handleTo);
+
+    long fromBalance;
+    long newFromBalance;
+    do {
+      fromBalance = from.get();
+      if (fromBalance < amount) {
+        return null;
+      }
+      newFromBalance = fromBalance - amount;
+    } while (!from.compareAndSet(fromBalance, newFromBalance));
+
+    // the debit is committed, so the money is only in flight until the credit below lands
+    long toBalance;
+    long newToBalance;
+    do {
+      toBalance = to.get();
+      try {
+        newToBalance = Math.addExact(toBalance, amount);
+      } catch (ArithmeticException e) {
+        from.addAndGet(amount);
+        throw new InvalidAmountException(
+            "Balance of account " + dictionary.accountIdOf(handleTo) + " would overflow");
+      }
+    } while (!to.compareAndSet(toBalance, newToBalance));
+
+    // without locks, racing transfers of an account may be reported in either order
+    changes.transferred(
+        dictionary.accountIdOf(handleFrom),
+        newFromBalance,
+        dictionary.accountIdOf(handleTo),
+        newToBalance);
+    return new TransferReceipt(newFromBalance, newToBalance);
+  }
+
+  private AtomicLong cell(int handle) {
+    AtomicLong balance = balances.get(handle);
+    if (balance == null) {
+      throw new AccountNotFoundException(
+          "No account with id " + dictionary.accountIdOf(handle) + " found");
+    }
+    return balance;
+  }
+}
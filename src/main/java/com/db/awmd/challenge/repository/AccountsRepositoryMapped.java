@@ -0,0 +1,172 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.config.ChangeStreamProperties;
+import com.db.awmd.challenge.config.MappedRepositoryProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InvalidAccountIdException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.UnsupportedCurrencyException;
+import com.db.awmd.challenge.repository.changes.BalanceChangeStream;
+import com.db.awmd.challenge.repository.mapped.MappedAccountTable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+/**
+ * Accounts kept off-heap in a memory-mapped {@link MappedAccountTable}. Accounts returned by
+ * {@link #getAccount} are detached views, so balance changes must go through {@link #transfer} or
+ * {@link #setBalance}. Reopening an existing file makes all accounts available immediately.
+ *
+ * <p>The slots of the table serve as account handles, so the {@link AccountIdDictionary} keeps
+ * nothing per account.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.repository.engine", havingValue = "mapped")
+public class AccountsRepositoryMapped implements AccountsRepository {
+
+  private final MappedRepositoryProperties properties;
+
+  private final AccountIdDictionary dictionary;
+
+  private final BalanceChangeStream changes;
+
+  private MappedAccountTable table;
+
+  public AccountsRepositoryMapped(
+      MappedRepositoryProperties properties, AccountIdDictionary dictionary) {
+    this(properties, dictionary, new BalanceChangeStream(new ChangeStreamProperties()));
+  }
+
+  @Autowired
+  public AccountsRepositoryMapped(
+      MappedRepositoryProperties properties,
+      AccountIdDictionary dictionary,
+      BalanceChangeStream changes) {
+    this.properties = properties;
+    this.dictionary = dictionary;
+    this.changes = changes;
+  }
+
+  @PostConstruct
+  public void open() throws IOException {
+    table = MappedAccountTable.open(Paths.get(properties.getFile()), properties.getCapacity());
+    dictionary.useIndex(
+        new AccountIdDictionary.HandleIndex() {
+          @Override
+          public int handleOf(String accountId) {
+            return table.find(accountId);
+          }
+
+          @Override
+          public String accountIdOf(int handle) {
+            return table.accountId(handle);
+          }
+
+          @Override
+          public int size() {
+            return table.capacity();
+          }
+        });
+    log.info(
+        "Opened {} with {} accounts in {} slots",
+        properties.getFile(),
+        table.size(),
+        table.capacity());
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    table.close();
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    String accountId = account.getAccountId();
+    if (accountId.getBytes(StandardCharsets.UTF_8).length > MappedAccountTable.MAX_ID_LENGTH) {
+      throw new InvalidAccountIdException(
+          "Account id must not exceed " + MappedAccountTable.MAX_ID_LENGTH + " bytes");
+    }
+    long balance = account.getBalanceMinorUnits();
+    if (balance < 0) {
+      throw new InvalidAmountException("Initial balance must be positive.");
+    }
+    // records are a cache line each and have no room left for a currency
+    if (!Money.DEFAULT_CURRENCY.equals(account.getCurrency())) {
+      throw new UnsupportedCurrencyException(
+          "The mapped engine only keeps accounts in " + Money.DEFAULT_CURRENCY);
+    }
+    if (table.insert(accountId, balance) < 0) {
+      throw new DuplicateAccountIdException("Account id " + accountId + " already exists!");
+    }
+    changes.accountCreated(accountId, account.getCurrency(), balance);
+  }
+
+  // the slot, so reopening stays independent of the number of accounts
+  @Override
+  public int handleOf(String accountId) {
+    return table.find(accountId);
+  }
+
+  @Override
+  public Account getAccount(int handle) {
+    String accountId = table.accountId(handle);
+    return accountId == null ? null : new Account(accountId, table.balance(handle));
+  }
+
+  @Override
+  public Account getAccount(String accountId) {
+    int slot = table.find(accountId);
+    return slot < 0 ? null : new Account(accountId, table.balance(slot));
+  }
+
+  @Override
+  public void clearAccounts() {
+    table.clear();
+  }
+
+  @Override
+  public void forEachAccount(Consumer<Account> action) {
+    table.forEach((accountId, balance) -> action.accept(new Account(accountId, balance)));
+  }
+
+  @Override
+  public void transfer(Account from, long newFromBalance, Account to, long newToBalance) {
+    table.transfer(
+        slot(from.getAccountId()), newFromBalance, slot(to.getAccountId()), newToBalance);
+    from.setBalanceMinorUnits(newFromBalance);
+    to.setBalanceMinorUnits(newToBalance);
+    changes.transferred(from.getAccountId(), newFromBalance, to.getAccountId(), newToBalance);
+  }
+
+  @Override
+  public void setBalance(Account account, long newBalance) {
+    table.setBalance(slot(account.getAccountId()), newBalance);
+    account.setBalanceMinorUnits(newBalance);
+    changes.balanceSet(account.getAccountId(), newBalance);
+  }
+
+  @Override
+  public boolean isPersistent() {
+    return true;
+  }
+
+  private int slot(String accountId) {
+    int slot = table.find(accountId);
+    if (slot < 0) {
+      throw new AccountNotFoundException("No account with id " + accountId + " found");
+    }
+    return slot;
+  }
+}
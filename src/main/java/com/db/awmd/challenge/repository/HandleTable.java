@@ -0,0 +1,108 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// values indexed by account handle, in chunks that never move once allocated, so slots are read
+// and written without locks while the table grows
+final class HandleTable<T> implements Iterable<T> {
+  private static final int CHUNK_SHIFT = 12;
+
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private volatile Object[] chunks = new Object[0];
+
+  // null for handles that hold nothing, including AccountIdDictionary.NO_HANDLE
+  T get(int handle) {
+    if (handle < 0) {
+      return null;
+    }
+    AtomicReferenceArray<T> chunk = chunk(chunks, handle >>> CHUNK_SHIFT);
+    return chunk == null ? null : chunk.get(handle & CHUNK_MASK);
+  }
+
+  void set(int handle, T value) {
+    chunkFor(handle).set(handle & CHUNK_MASK, value);
+  }
+
+  // false, leaving the slot untouched, if it already holds a value
+  boolean setIfAbsent(int handle, T value) {
+    return chunkFor(handle).compareAndSet(handle & CHUNK_MASK, null, value);
+  }
+
+  // not safe against concurrent writes, which may land in the dropped chunks
+  synchronized void clear() {
+    chunks = new Object[0];
+  }
+
+  // skips empty slots; values set during the walk may or may not be seen
+  @Override
+  public Iterator<T> iterator() {
+    Object[] current = chunks;
+    return new Iterator<T>() {
+      private int handle = -1;
+
+      private T next = advance();
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public T next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        T value = next;
+        next = advance();
+        return value;
+      }
+
+      private T advance() {
+        while (++handle < current.length << CHUNK_SHIFT) {
+          AtomicReferenceArray<T> chunk = chunk(current, handle >>> CHUNK_SHIFT);
+          if (chunk == null) {
+            handle |= CHUNK_MASK;
+            continue;
+          }
+          T value = chunk.get(handle & CHUNK_MASK);
+          if (value != null) {
+            return value;
+          }
+        }
+        return null;
+      }
+    };
+  }
+
+  private AtomicReferenceArray<T> chunkFor(int handle) {
+    int index = handle >>> CHUNK_SHIFT;
+    AtomicReferenceArray<T> chunk = chunk(chunks, index);
+    if (chunk != null) {
+      return chunk;
+    }
+    synchronized (this) {
+      Object[] current = chunks;
+      chunk = chunk(current, index);
+      if (chunk == null) {
+        // chunks are only published through a new directory, so readers never see them half-made
+        Object[] grown = new Object[Math.max(index + 1, current.length)];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        chunk = new AtomicReferenceArray<>(CHUNK_SIZE);
+        grown[index] = chunk;
+        chunks = grown;
+      }
+      return chunk;
+    }
+  }
+
+  // null if the chunk was never needed
+  @SuppressWarnings("unchecked")
+  private AtomicReferenceArray<T> chunk(Object[] chunks, int index) {
+    return index < chunks.length ? (AtomicReferenceArray<T>) chunks[index] : null;
+  }
+}
@@ -0,0 +1,374 @@
+package com.db.awmd.challenge.repository.changes;
+
+import com.db.awmd.challenge.config.ChangeStreamProperties;
+import com.db.awmd.challenge.dto.BalanceChange;
+import com.db.awmd.challenge.dto.ChangeStreamMetrics;
+import com.db.awmd.challenge.dto.ChangeType;
+import com.db.awmd.challenge.exception.ChangeOffsetExpiredException;
+import com.db.awmd.challenge.exception.ChangeStreamUnavailableException;
+import com.db.awmd.challenge.exception.InvalidPageRequestException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Ordered stream of the balance changes the repository applies. Repositories report each change
+ * while they still hold the account locks, so the changes of an account get increasing offsets.
+ * Reporting takes an offset from a counter and stores the change in a ring, nothing more. A
+ * single publishing thread follows the ring, stamps the changes, appends them to the segment
+ * files and wakes up consumers, each of which reads from its own {@link Cursor}: from the ring
+ * while it keeps up, from the segments once it falls behind. A slow consumer only holds up itself.
+ * Writers never wait: a change that finds the ring full is dropped, and everything before it
+ * expires, so consumers start over from a snapshot rather than miss it.
+ */
+@Slf4j
+@Component
+public class BalanceChangeStream {
+  // the publishing thread's pause when the ring is empty
+  private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private static final int PUBLISH_BATCH = 4096;
+
+  private final ChangeStreamProperties properties;
+
+  private final boolean enabled;
+
+  // null when disabled
+  private final AtomicReferenceArray<ChangeRecord> ring;
+
+  private final int mask;
+
+  private final AtomicLong nextOffset = new AtomicLong();
+
+  private final LongAdder droppedChanges = new LongAdder();
+
+  // a change was dropped right before this offset, so older ones no longer tell the whole story
+  private final AtomicLong lostBefore = new AtomicLong();
+
+  private final AtomicInteger consumers = new AtomicInteger();
+
+  // consumers waiting for new changes wait on this
+  private final Object publication = new Object();
+
+  // changes below this offset are stamped, in the segments if there are any, and readable
+  private volatile long published;
+
+  // the first offset of this run, the ring knows nothing older
+  private volatile long firstOffset;
+
+  // null without a directory, or after the segments failed
+  private volatile ChangeSegments segments;
+
+  private volatile boolean running;
+
+  private Thread publisher;
+
+  @Autowired
+  public BalanceChangeStream(ChangeStreamProperties properties) {
+    this.properties = properties;
+    this.enabled = properties.isEnabled();
+    int capacity = 1;
+    while (capacity < properties.getRingSize()) {
+      capacity <<= 1;
+    }
+    this.ring = enabled ? new AtomicReferenceArray<>(capacity) : null;
+    this.mask = capacity - 1;
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    if (!enabled) {
+      return;
+    }
+    long start = 0;
+    if (StringUtils.hasText(properties.getDirectory())) {
+      ChangeSegments opened =
+          new ChangeSegments(
+              Paths.get(properties.getDirectory()),
+              properties.getSegmentBytes(),
+              properties.getMaxSegments());
+      start = opened.open();
+      segments = opened;
+      log.info("Opened change stream in {} at offset {}", properties.getDirectory(), start);
+    }
+    nextOffset.set(start);
+    firstOffset = start;
+    published = start;
+    running = true;
+    publisher = new Thread(this::publish, "balance-changes");
+    publisher.setDaemon(true);
+    publisher.start();
+  }
+
+  @PreDestroy
+  public void stop() throws IOException, InterruptedException {
+    if (publisher == null) {
+      return;
+    }
+    // the repositories are gone by now, the publisher drains what they reported and ends
+    running = false;
+    publisher.join();
+    publisher = null;
+    ChangeSegments closing = segments;
+    if (closing != null) {
+      closing.close();
+    }
+  }
+
+  public void accountCreated(String accountId, String currency, long balance) {
+    long offset = claim();
+    if (offset >= 0) {
+      store(
+          new ChangeRecord(
+              offset, ChangeType.ACCOUNT_CREATED, accountId, currency, balance, null, 0));
+    }
+  }
+
+  public void transferred(
+      String accountIdFrom, long fromBalance, String accountIdTo, long toBalance) {
+    long offset = claim();
+    if (offset >= 0) {
+      store(
+          new ChangeRecord(
+              offset,
+              ChangeType.TRANSFER,
+              accountIdFrom,
+              null,
+              fromBalance,
+              accountIdTo,
+              toBalance));
+    }
+  }
+
+  public void balanceSet(String accountId, long balance) {
+    long offset = claim();
+    if (offset >= 0) {
+      store(new ChangeRecord(offset, ChangeType.BALANCE_SET, accountId, null, balance, null, 0));
+    }
+  }
+
+  // the offset the next published change will have, where a consumer of new changes starts
+  public long getEndOffset() {
+    return Math.max(published, lostBefore.get());
+  }
+
+  /**
+   * Starts reading at the given offset, which must still be retained and not beyond the end.
+   * The cursor must be closed, it counts against accounts.changes.max-consumers until then.
+   */
+  public Cursor subscribe(long from) {
+    if (!enabled) {
+      throw new ChangeStreamUnavailableException("The change stream is not enabled");
+    }
+    long end = getEndOffset();
+    if (from > end || from < 0) {
+      throw new InvalidPageRequestException(
+          "Offset " + from + " is outside the change stream, which ends at " + end);
+    }
+    long oldest = oldestOffset();
+    if (from < oldest) {
+      throw new ChangeOffsetExpiredException(
+          "Offset " + from + " is no longer retained, the oldest is " + oldest);
+    }
+    if (consumers.incrementAndGet() > properties.getMaxConsumers()) {
+      consumers.decrementAndGet();
+      throw new ChangeStreamUnavailableException("Too many consumers of the change stream");
+    }
+    return new Cursor(from);
+  }
+
+  public ChangeStreamMetrics getMetrics() {
+    ChangeSegments current = segments;
+    return ChangeStreamMetrics.builder()
+        .enabled(enabled)
+        .nextOffset(nextOffset.get())
+        .publishedOffset(published)
+        .oldestOffset(enabled ? oldestOffset() : 0)
+        .consumers(consumers.get())
+        .segments(current == null ? 0 : current.size())
+        .droppedChanges(droppedChanges.sum())
+        .build();
+  }
+
+  // the offset for the next change, or -1 if it is dropped; callers hold account locks, so this
+  // never waits for the publisher
+  private long claim() {
+    if (!enabled) {
+      return -1;
+    }
+    while (true) {
+      long offset = nextOffset.get();
+      // the slot is still needed by a change the publisher has not reached yet
+      if (offset - published > mask) {
+        droppedChanges.increment();
+        lostBefore.accumulateAndGet(offset, Math::max);
+        return -1;
+      }
+      if (nextOffset.compareAndSet(offset, offset + 1)) {
+        return offset;
+      }
+    }
+  }
+
+  private void store(ChangeRecord record) {
+    ring.lazySet((int) record.offset & mask, record);
+  }
+
+  private long oldestOffset() {
+    long inRing = Math.max(firstOffset, nextOffset.get() - ring.length());
+    ChangeSegments current = segments;
+    long onDisk = current == null ? -1 : current.oldestOffset();
+    return Math.max(lostBefore.get(), onDisk < 0 ? inRing : Math.min(onDisk, inRing));
+  }
+
+  private void publish() {
+    while (true) {
+      long from = published;
+      long end = from;
+      long now = System.currentTimeMillis();
+      ChangeSegments current = segments;
+      try {
+        while (end - from < PUBLISH_BATCH) {
+          ChangeRecord record = ring.get((int) end & mask);
+          if (record == null || record.offset != end) {
+            break;
+          }
+          record.timestamp = now;
+          if (current != null) {
+            current.append(record);
+          }
+          end++;
+        }
+        if (current != null && end != from) {
+          current.flush(end);
+        }
+      } catch (IOException | RuntimeException e) {
+        // the ring goes on alone, so transfers are never held up by the disk
+        log.error("Failed to write the change stream segments, keeping changes in memory only", e);
+        segments = null;
+        if (current != null) {
+          closeQuietly(current);
+        }
+        continue;
+      }
+      if (end == from) {
+        if (!running) {
+          return;
+        }
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+        continue;
+      }
+      published = end;
+      synchronized (publication) {
+        publication.notifyAll();
+      }
+    }
+  }
+
+  private static void closeQuietly(ChangeSegments closing) {
+    try {
+      closing.close();
+    } catch (IOException e) {
+      log.warn("Failed to close the change stream segments", e);
+    }
+  }
+
+  /** One consumer's position in the stream; not thread-safe. */
+  public final class Cursor implements Closeable {
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private long position;
+
+    // opened once the consumer falls behind the ring
+    private ChangeSegments.Reader reader;
+
+    private Cursor(long position) {
+      this.position = position;
+    }
+
+    // the offset of the next change to read
+    public long getPosition() {
+      return position;
+    }
+
+    /**
+     * Hands up to max changes published since the last call to the sink, in order; returns how
+     * many. Throws {@link ChangeOffsetExpiredException} if the next change is no longer retained.
+     */
+    public int poll(int max, Consumer<BalanceChange> sink) throws IOException {
+      long end = published;
+      // read after the end: a change dropped later is dropped at or beyond it
+      if (position < lostBefore.get()) {
+        throw new ChangeOffsetExpiredException(
+            "Offset " + position + " is no longer retained, the oldest is " + oldestOffset());
+      }
+      int delivered = 0;
+      while (delivered < max && position < end) {
+        ChangeRecord record = ring.get((int) position & mask);
+        if (record == null || record.offset != position) {
+          record = readRetained();
+        }
+        sink.accept(record.toBalanceChange());
+        position++;
+        delivered++;
+      }
+      return delivered;
+    }
+
+    // waits until a change at the position is published; false on timeout
+    public boolean await(long timeoutMillis) throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      synchronized (publication) {
+        while (published <= position) {
+          long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+          if (remaining <= 0) {
+            return false;
+          }
+          publication.wait(remaining);
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed.compareAndSet(false, true)) {
+        consumers.decrementAndGet();
+        if (reader != null) {
+          reader.close();
+        }
+      }
+    }
+
+    private ChangeRecord readRetained() throws IOException {
+      ChangeSegments current = segments;
+      ChangeRecord record = null;
+      if (current != null) {
+        if (reader == null) {
+          reader = current.reader();
+        }
+        record = reader.read(position);
+      }
+      if (record == null) {
+        throw new ChangeOffsetExpiredException(
+            "Offset " + position + " is no longer retained, the oldest is " + oldestOffset());
+      }
+      return record;
+    }
+  }
+}
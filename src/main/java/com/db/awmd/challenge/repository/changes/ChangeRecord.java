@@ -0,0 +1,56 @@
+package com.db.awmd.challenge.repository.changes;
+
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.dto.BalanceChange;
+import com.db.awmd.challenge.dto.ChangeType;
+
+// a change in the ring and in segment files, with balances in minor units
+final class ChangeRecord {
+  final long offset;
+
+  final ChangeType type;
+
+  final String accountId;
+
+  // null unless the account was created
+  final String currency;
+
+  final long balance;
+
+  // null unless this is a transfer
+  final String counterpartyId;
+
+  final long counterpartyBalance;
+
+  // set by the publishing thread, before the record becomes readable
+  long timestamp;
+
+  ChangeRecord(
+      long offset,
+      ChangeType type,
+      String accountId,
+      String currency,
+      long balance,
+      String counterpartyId,
+      long counterpartyBalance) {
+    this.offset = offset;
+    this.type = type;
+    this.accountId = accountId;
+    this.currency = currency;
+    this.balance = balance;
+    this.counterpartyId = counterpartyId;
+    this.counterpartyBalance = counterpartyBalance;
+  }
+
+  BalanceChange toBalanceChange() {
+    return new BalanceChange(
+        offset,
+        type,
+        timestamp,
+        accountId,
+        currency,
+        Money.toDecimal(balance),
+        counterpartyId,
+        counterpartyId == null ? null : Money.toDecimal(counterpartyBalance));
+  }
+}
@@ -0,0 +1,404 @@
+package com.db.awmd.challenge.repository.changes;
+
+import com.db.awmd.challenge.dto.ChangeType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Published changes in append-only files named by the offset of their first record. Records are
+ * length-prefixed and carry their offset. The position of every INDEX_INTERVAL-th record is kept
+ * in memory, so a reader finds any offset after a scan of at most that many records. Only the
+ * publishing thread appends; readers only read below the end a segment has published.
+ */
+class ChangeSegments implements Closeable {
+  private static final int INDEX_INTERVAL = 256;
+
+  private static final int HEADER_BYTES = 4;
+
+  // offset, timestamp, type, both balances and the lengths of the three strings
+  private static final int FIXED_BYTES = 8 + 8 + 1 + 8 + 8 + 3 * 4;
+
+  // anything longer is taken for a torn length
+  private static final int MAX_RECORD_BYTES = 1 << 24;
+
+  private static final String SUFFIX = ".changes";
+
+  private static final ChangeType[] TYPES = ChangeType.values();
+
+  private final Path directory;
+
+  private final long segmentBytes;
+
+  private final int maxSegments;
+
+  private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+  // the rest belongs to the publishing thread
+
+  private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+  private Segment current;
+
+  private FileChannel channel;
+
+  // bytes of the current segment in its file, not counting the buffer
+  private long written;
+
+  ChangeSegments(Path directory, long segmentBytes, int maxSegments) {
+    this.directory = directory;
+    this.segmentBytes = segmentBytes;
+    this.maxSegments = Math.max(1, maxSegments);
+  }
+
+  // recovers the existing segments; returns the offset after their last complete record
+  long open() throws IOException {
+    Files.createDirectories(directory);
+    List<Long> bases = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        bases.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+      }
+    }
+    Collections.sort(bases);
+    long next = 0;
+    for (int i = 0; i < bases.size(); i++) {
+      Segment segment = new Segment(bases.get(i));
+      long valid = segment.recover();
+      if (valid < Files.size(segment.path)) {
+        if (i < bases.size() - 1) {
+          throw new IOException("Change segment " + segment.path + " is corrupt");
+        }
+        // a torn tail of records that were never published
+        try (FileChannel file = FileChannel.open(segment.path, StandardOpenOption.WRITE)) {
+          file.truncate(valid);
+        }
+      }
+      segments.put(segment.base, segment);
+      current = segment;
+      written = valid;
+      next = segment.end;
+    }
+    if (current != null) {
+      channel = FileChannel.open(current.path, StandardOpenOption.WRITE);
+      channel.position(written);
+    }
+    return next;
+  }
+
+  void append(ChangeRecord record) throws IOException {
+    if (current == null || written + buffer.position() >= segmentBytes) {
+      roll(record.offset);
+    }
+    byte[] accountId = utf8(record.accountId);
+    byte[] currency = utf8(record.currency);
+    byte[] counterpartyId = utf8(record.counterpartyId);
+    int length = FIXED_BYTES + size(accountId) + size(currency) + size(counterpartyId);
+    if (buffer.remaining() < HEADER_BYTES + length) {
+      writeBuffer();
+      if (buffer.capacity() < HEADER_BYTES + length) {
+        buffer = ByteBuffer.allocate(HEADER_BYTES + length);
+      }
+    }
+    if ((record.offset - current.base) % INDEX_INTERVAL == 0) {
+      current.index(written + buffer.position());
+    }
+    buffer
+        .putInt(length)
+        .putLong(record.offset)
+        .putLong(record.timestamp)
+        .put((byte) record.type.ordinal())
+        .putLong(record.balance)
+        .putLong(record.counterpartyBalance);
+    putString(accountId);
+    putString(currency);
+    putString(counterpartyId);
+  }
+
+  // makes everything appended so far, up to end, readable
+  void flush(long end) throws IOException {
+    writeBuffer();
+    if (current != null) {
+      current.end = end;
+    }
+  }
+
+  // -1 without segments
+  long oldestOffset() {
+    Map.Entry<Long, Segment> oldest = segments.firstEntry();
+    return oldest == null ? -1 : oldest.getKey();
+  }
+
+  int size() {
+    return segments.size();
+  }
+
+  Reader reader() {
+    return new Reader();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (channel != null) {
+      writeBuffer();
+      channel.force(false);
+      channel.close();
+      channel = null;
+    }
+  }
+
+  private void roll(long base) throws IOException {
+    if (current != null) {
+      writeBuffer();
+      channel.force(false);
+      channel.close();
+      current.end = base;
+    }
+    Segment segment = new Segment(base);
+    channel =
+        FileChannel.open(
+            segment.path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    written = 0;
+    current = segment;
+    segments.put(base, segment);
+    // readers that have the file open can still finish it
+    while (segments.size() > maxSegments) {
+      Files.deleteIfExists(segments.pollFirstEntry().getValue().path);
+    }
+  }
+
+  private void writeBuffer() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      written += channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private void putString(byte[] bytes) {
+    if (bytes == null) {
+      buffer.putInt(-1);
+    } else {
+      buffer.putInt(bytes.length).put(bytes);
+    }
+  }
+
+  private static byte[] utf8(String value) {
+    return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static int size(byte[] bytes) {
+    return bytes == null ? 0 : bytes.length;
+  }
+
+  private Path segmentPath(long base) {
+    return directory.resolve(String.format("%020d%s", base, SUFFIX));
+  }
+
+  private final class Segment {
+    final long base;
+
+    final Path path;
+
+    // offsets below this are complete in the file
+    volatile long end;
+
+    // file positions of base, base + INDEX_INTERVAL, ...; published by the write of end
+    private volatile long[] positions = new long[64];
+
+    private int indexed;
+
+    Segment(long base) {
+      this.base = base;
+      this.path = segmentPath(base);
+      this.end = base;
+    }
+
+    void index(long position) {
+      long[] grown = positions;
+      if (indexed == grown.length) {
+        grown = Arrays.copyOf(grown, indexed * 2);
+      }
+      grown[indexed++] = position;
+      positions = grown;
+    }
+
+    long positionOf(long offset) {
+      return positions[(int) ((offset - base) / INDEX_INTERVAL)];
+    }
+
+    // indexes the complete records in the file; returns the bytes they take
+    long recover() throws IOException {
+      try (RecordInput input = new RecordInput(path, 0)) {
+        long position = 0;
+        while (true) {
+          ChangeRecord record = input.next();
+          if (record == null || record.offset != end) {
+            return position;
+          }
+          if ((end - base) % INDEX_INTERVAL == 0) {
+            index(position);
+          }
+          end++;
+          position = input.recordPosition;
+        }
+      }
+    }
+  }
+
+  /** Reads records in offset order for one consumer, moving from segment to segment. */
+  final class Reader implements Closeable {
+    private Segment segment;
+
+    private RecordInput input;
+
+    private long next = -1;
+
+    // null if the offset is no longer retained; it must be below the published end
+    ChangeRecord read(long offset) throws IOException {
+      if (input == null || offset != next || offset >= segment.end) {
+        if (!seek(offset)) {
+          return null;
+        }
+      }
+      ChangeRecord record = input.next();
+      while (record != null && record.offset < offset) {
+        record = input.next();
+      }
+      if (record == null || record.offset != offset) {
+        return null;
+      }
+      next = offset + 1;
+      return record;
+    }
+
+    private boolean seek(long offset) throws IOException {
+      close();
+      Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+      if (entry == null || offset >= entry.getValue().end) {
+        return false;
+      }
+      segment = entry.getValue();
+      try {
+        input = new RecordInput(segment.path, segment.positionOf(offset));
+      } catch (NoSuchFileException e) {
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (input != null) {
+        input.close();
+        input = null;
+      }
+    }
+  }
+
+  private static final class RecordInput implements Closeable {
+    private final FileChannel file;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+    // where the buffered bytes end in the file
+    private long filePosition;
+
+    // where the next record starts in the file
+    long recordPosition;
+
+    RecordInput(Path path, long position) throws IOException {
+      this.file = FileChannel.open(path, StandardOpenOption.READ);
+      this.filePosition = position;
+      this.recordPosition = position;
+      buffer.limit(0);
+    }
+
+    // null at the end of the file or at a torn record
+    ChangeRecord next() throws IOException {
+      if (!fill(HEADER_BYTES)) {
+        return null;
+      }
+      int length = buffer.getInt(buffer.position());
+      if (length < FIXED_BYTES
+          || length > MAX_RECORD_BYTES
+          || !fill(HEADER_BYTES + length)) {
+        return null;
+      }
+      buffer.position(buffer.position() + HEADER_BYTES);
+      long offset = buffer.getLong();
+      long timestamp = buffer.getLong();
+      ChangeType type = TYPES[buffer.get()];
+      long balance = buffer.getLong();
+      long counterpartyBalance = buffer.getLong();
+      String accountId = getString();
+      String currency = getString();
+      String counterpartyId = getString();
+      ChangeRecord record =
+          new ChangeRecord(
+              offset, type, accountId, currency, balance, counterpartyId, counterpartyBalance);
+      record.timestamp = timestamp;
+      recordPosition += HEADER_BYTES + length;
+      return record;
+    }
+
+    private String getString() {
+      int length = buffer.getInt();
+      if (length < 0) {
+        return null;
+      }
+      String value =
+          new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+      buffer.position(buffer.position() + length);
+      return value;
+    }
+
+    // false if the file ends before that many bytes are buffered
+    private boolean fill(int bytes) throws IOException {
+      if (buffer.remaining() >= bytes) {
+        return true;
+      }
+      if (buffer.capacity() < bytes) {
+        ByteBuffer grown = ByteBuffer.allocate(bytes);
+        grown.put(buffer);
+        buffer = grown;
+      } else {
+        buffer.compact();
+      }
+      while (buffer.position() < bytes) {
+        int read = file.read(buffer, filePosition);
+        if (read < 0) {
+          buffer.flip();
+          return false;
+        }
+        filePosition += read;
+      }
+      buffer.flip();
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      file.close();
+    }
+  }
+}
@@ -0,0 +1,488 @@
+package com.db.awmd.challenge.repository.ledger;
+
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.dto.LedgerEntry;
+import com.db.awmd.challenge.dto.TransferHistoryPage;
+import com.db.awmd.challenge.dto.TransferNotification;
+import com.db.awmd.challenge.exception.InvalidPageRequestException;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only history of applied transfers. Entries are fixed-width records in chunked segments
+ * outside the heap: off-heap buffers by default, or memory-mapped files that survive restarts when
+ * a directory is configured. Off-heap, only the newest {@code max-segments} segments are kept; the
+ * history of an account ends where its older entries were dropped.
+ *
+ * <p>Every record links to the previous record of both its accounts, so the history of an account
+ * is a chain walked backwards from its newest entry. A page costs one record read per entry however
+ * long the history is, and the heap only holds every account id and its newest entry.
+ *
+ * <p>A segment ends with one long per record after the records: the credited amount minus the
+ * debited one, which is 0 unless the accounts hold different currencies. Segment files written
+ * before it existed grow by that trailer when they are mapped, and read as credited in full.
+ *
+ * <p>Records name accounts by ordinals of the ledger's own, which stay valid across restarts,
+ * unlike account handles. Appends map handles to ordinals through an array. Ids read back from the
+ * directory get their handle the first time they are used, so the ledger can open before the
+ * repository that gives out the handles.
+ */
+@Slf4j
+@Component
+public class TransferLedger {
+  // one cache line per record
+  private static final int RECORD_SHIFT = 6;
+
+  // record layout; the marker is written last and holds id + 1 once the record is complete
+  private static final int TIMESTAMP_OFFSET = 0;
+  private static final int AMOUNT_OFFSET = 8;
+  private static final int FROM_BALANCE_OFFSET = 16;
+  private static final int TO_BALANCE_OFFSET = 24;
+  private static final int PREVIOUS_FROM_OFFSET = 32;
+  private static final int PREVIOUS_TO_OFFSET = 40;
+  private static final int FROM_OFFSET = 48;
+  private static final int TO_OFFSET = 52;
+  private static final int MARKER_OFFSET = 56;
+
+  private static final int CREDIT_SHIFT = 3;
+
+  // a single buffer cannot exceed 2 GB
+  private static final int MAX_SEGMENT_SHIFT = 30 - RECORD_SHIFT;
+
+  private static final long NONE = -1;
+
+  private static final String ACCOUNT_IDS_FILE = "accounts.ids";
+
+  private final LedgerProperties properties;
+
+  private final AccountIdDictionary dictionary;
+
+  private final int segmentShift;
+
+  private final int segmentMask;
+
+  // where the credits start in a segment
+  private final int creditsOffset;
+
+  // null when the segments live off-heap
+  private Path directory;
+
+  // appended whenever an account shows up for the first time, mapped segments only
+  private FileChannel accountIdsFile;
+
+  // indexed by segment number, null once an off-heap segment has been dropped
+  private volatile ByteBuffer[] segments = new ByteBuffer[0];
+
+  private volatile long oldest;
+
+  // indexed by the ordinal records use in place of the id
+  private volatile String[] accountIds = new String[0];
+
+  // the rest is guarded by this
+
+  // ordinal + 1 per account handle, 0 for accounts without entries
+  private int[] ordinalsByHandle = new int[0];
+
+  private int accountCount;
+
+  // ordinals of ids read back from the directory that have no handle yet
+  private final Map<String, Integer> unresolved = new HashMap<>();
+
+  // newest entry per ordinal
+  private long[] heads = new long[0];
+
+  private long size;
+
+  @Autowired
+  public TransferLedger(LedgerProperties properties, AccountIdDictionary dictionary) {
+    this.properties = properties;
+    this.dictionary = dictionary;
+    int entries = Math.max(1, properties.getSegmentEntries());
+    this.segmentShift =
+        Math.min(MAX_SEGMENT_SHIFT, 32 - Integer.numberOfLeadingZeros(entries - 1));
+    this.segmentMask = (1 << segmentShift) - 1;
+    this.creditsOffset = (segmentMask + 1) << RECORD_SHIFT;
+  }
+
+  @PostConstruct
+  public synchronized void open() throws IOException {
+    if (!StringUtils.hasText(properties.getDirectory())) {
+      return;
+    }
+    directory = Paths.get(properties.getDirectory());
+    Files.createDirectories(directory);
+    Path accountIdsPath = directory.resolve(ACCOUNT_IDS_FILE);
+    if (Files.exists(accountIdsPath)) {
+      readAccountIds(accountIdsPath);
+    }
+    accountIdsFile =
+        FileChannel.open(
+            accountIdsPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    for (int index = 0; Files.exists(segmentPath(index)); index++) {
+      addSegment(index);
+    }
+    recover();
+    log.info("Opened ledger in {} with {} entries", directory, size);
+  }
+
+  @PreDestroy
+  public synchronized void close() throws IOException {
+    if (directory == null) {
+      return;
+    }
+    for (ByteBuffer segment : segments) {
+      ((MappedByteBuffer) segment).force();
+    }
+    accountIdsFile.close();
+  }
+
+  // for callers that only know the ids; both accounts must exist
+  public long append(TransferNotification notification) {
+    return append(
+        dictionary.intern(notification.getAccountIdFrom()),
+        dictionary.intern(notification.getAccountIdTo()),
+        notification);
+  }
+
+  // the caller keeps the order in which entries of the same account are appended
+  public synchronized long append(
+      int handleFrom, int handleTo, TransferNotification notification) {
+    long id = size;
+    int from = ordinal(handleFrom);
+    int to = ordinal(handleTo);
+    ByteBuffer segment = segmentFor(id);
+    int offset = offset(id);
+    segment.putLong(offset + TIMESTAMP_OFFSET, System.currentTimeMillis());
+    segment.putLong(offset + AMOUNT_OFFSET, notification.getAmount());
+    segment.putLong(
+        creditOffset(id), notification.getCreditedAmount() - notification.getAmount());
+    segment.putLong(offset + FROM_BALANCE_OFFSET, notification.getFromBalance());
+    segment.putLong(offset + TO_BALANCE_OFFSET, notification.getToBalance());
+    segment.putLong(offset + PREVIOUS_FROM_OFFSET, heads[from]);
+    segment.putLong(offset + PREVIOUS_TO_OFFSET, heads[to]);
+    segment.putInt(offset + FROM_OFFSET, from);
+    segment.putInt(offset + TO_OFFSET, to);
+    segment.putLong(offset + MARKER_OFFSET, id + 1);
+    heads[from] = id;
+    heads[to] = id;
+    size = id + 1;
+    return id;
+  }
+
+  public synchronized long size() {
+    return size;
+  }
+
+  /**
+   * Up to {@code limit} entries of the account, newest first. Without a cursor the page starts with
+   * the newest entry, otherwise right after the entry the cursor names.
+   */
+  public TransferHistoryPage history(String accountId, String cursor, int limit) {
+    if (limit < 1 || limit > properties.getMaxPageSize()) {
+      throw new InvalidPageRequestException(
+          "Page size must be between 1 and " + properties.getMaxPageSize());
+    }
+    long after = cursor == null ? NONE : parseCursor(cursor);
+    int ordinal;
+    long next;
+    int handle = dictionary.handleOf(accountId);
+    synchronized (this) {
+      ordinal = resolvedOrdinal(handle, accountId);
+      if (after >= size || (after != NONE && ordinal < 0)) {
+        throw new InvalidPageRequestException("Unknown cursor " + cursor);
+      }
+      if (ordinal < 0) {
+        return new TransferHistoryPage(new ArrayList<>(), null);
+      }
+      next = heads[ordinal];
+    }
+
+    // records older than the head are complete and never change again, so no lock is needed;
+    // a dropped segment ends the history
+    if (after != NONE) {
+      next = previous(after, ordinal, cursor);
+    }
+    List<LedgerEntry> entries = new ArrayList<>(Math.min(limit, 64));
+    while (next != NONE && entries.size() < limit) {
+      LedgerEntry entry = read(next);
+      if (entry == null) {
+        next = NONE;
+        break;
+      }
+      entries.add(entry);
+      next = previous(next, ordinal, null);
+    }
+    String nextCursor =
+        next == NONE ? null : Long.toString(entries.get(entries.size() - 1).getId());
+    return new TransferHistoryPage(entries, nextCursor);
+  }
+
+  // not safe against concurrent appends or reads, meant for tests
+  public synchronized void clear() {
+    try {
+      if (directory != null) {
+        for (int index = 0; index < segments.length; index++) {
+          Files.deleteIfExists(segmentPath(index));
+        }
+        accountIdsFile.truncate(0);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    segments = new ByteBuffer[0];
+    oldest = 0;
+    accountIds = new String[0];
+    ordinalsByHandle = new int[0];
+    unresolved.clear();
+    accountCount = 0;
+    heads = new long[0];
+    size = 0;
+  }
+
+  // null if the entry was dropped
+  private LedgerEntry read(long id) {
+    ByteBuffer segment = retainedSegment(id);
+    if (segment == null) {
+      return null;
+    }
+    int offset = offset(id);
+    String[] ids = accountIds;
+    long amount = segment.getLong(offset + AMOUNT_OFFSET);
+    return new LedgerEntry(
+        id,
+        ids[segment.getInt(offset + FROM_OFFSET)],
+        ids[segment.getInt(offset + TO_OFFSET)],
+        Money.toDecimal(amount),
+        Money.toDecimal(amount + segment.getLong(creditOffset(id))),
+        Money.toDecimal(segment.getLong(offset + FROM_BALANCE_OFFSET)),
+        Money.toDecimal(segment.getLong(offset + TO_BALANCE_OFFSET)),
+        segment.getLong(offset + TIMESTAMP_OFFSET));
+  }
+
+  // the entry of the same account before the given one
+  private long previous(long id, int ordinal, String cursor) {
+    ByteBuffer segment = retainedSegment(id);
+    if (segment == null) {
+      return NONE;
+    }
+    int offset = offset(id);
+    if (segment.getInt(offset + FROM_OFFSET) == ordinal) {
+      return segment.getLong(offset + PREVIOUS_FROM_OFFSET);
+    }
+    if (segment.getInt(offset + TO_OFFSET) == ordinal) {
+      return segment.getLong(offset + PREVIOUS_TO_OFFSET);
+    }
+    throw new InvalidPageRequestException("Cursor " + cursor + " belongs to another account");
+  }
+
+  private static long parseCursor(String cursor) {
+    try {
+      long id = Long.parseLong(cursor);
+      if (id >= 0) {
+        return id;
+      }
+    } catch (NumberFormatException e) {
+      // rejected below
+    }
+    throw new InvalidPageRequestException("Unknown cursor " + cursor);
+  }
+
+  // -1 if the account has no entries yet
+  private int knownOrdinal(int handle) {
+    return handle >= 0 && handle < ordinalsByHandle.length ? ordinalsByHandle[handle] - 1 : -1;
+  }
+
+  // -1 if the account has no entries yet, binds a read back id to its handle
+  private int resolvedOrdinal(int handle, String accountId) {
+    int known = knownOrdinal(handle);
+    if (known >= 0 || unresolved.isEmpty()) {
+      return known;
+    }
+    Integer restored = unresolved.remove(accountId);
+    if (restored == null) {
+      return -1;
+    }
+    if (handle >= 0) {
+      mapHandle(handle, restored);
+    }
+    return restored;
+  }
+
+  private int ordinal(int handle) {
+    int known = knownOrdinal(handle);
+    if (known >= 0) {
+      return known;
+    }
+    String accountId = dictionary.accountIdOf(handle);
+    int restored = resolvedOrdinal(handle, accountId);
+    if (restored >= 0) {
+      return restored;
+    }
+    if (accountIdsFile != null) {
+      byte[] bytes = accountId.getBytes(StandardCharsets.UTF_8);
+      ByteBuffer record = ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes);
+      record.flip();
+      try {
+        while (record.hasRemaining()) {
+          accountIdsFile.write(record);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return addAccountId(accountId, handle);
+  }
+
+  private int addAccountId(String accountId, int handle) {
+    int next = accountCount++;
+    if (next == heads.length) {
+      int capacity = Math.max(16, next * 2);
+      heads = Arrays.copyOf(heads, capacity);
+      Arrays.fill(heads, next, capacity, NONE);
+      // readers only see the new array once it is filled
+      String[] ids = Arrays.copyOf(accountIds, capacity);
+      ids[next] = accountId;
+      accountIds = ids;
+    } else {
+      accountIds[next] = accountId;
+    }
+    if (handle >= 0) {
+      mapHandle(handle, next);
+    } else {
+      unresolved.put(accountId, next);
+    }
+    return next;
+  }
+
+  private void mapHandle(int handle, int ordinal) {
+    if (handle >= ordinalsByHandle.length) {
+      // handles may be sparse, e.g. the slots of a mapped table, but never reach the size
+      int length = Math.max(16, Math.min(handle * 2, dictionary.size()));
+      ordinalsByHandle = Arrays.copyOf(ordinalsByHandle, Math.max(length, handle + 1));
+    }
+    ordinalsByHandle[handle] = ordinal + 1;
+  }
+
+  private void readAccountIds(Path file) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      while (true) {
+        byte[] bytes;
+        try {
+          bytes = new byte[in.readInt()];
+          in.readFully(bytes);
+        } catch (EOFException e) {
+          // a torn last id belongs to an entry that never made it either
+          break;
+        }
+        String accountId = new String(bytes, StandardCharsets.UTF_8);
+        addAccountId(accountId, AccountIdDictionary.NO_HANDLE);
+      }
+    }
+  }
+
+  // entries end at the first incomplete record or one naming an account that was never stored
+  private void recover() {
+    int known = accountCount;
+    while (true) {
+      int index = (int) (size >>> segmentShift);
+      if (index >= segments.length) {
+        break;
+      }
+      ByteBuffer segment = segments[index];
+      int offset = offset(size);
+      int from = segment.getInt(offset + FROM_OFFSET);
+      int to = segment.getInt(offset + TO_OFFSET);
+      if (segment.getLong(offset + MARKER_OFFSET) != size + 1 || from >= known || to >= known) {
+        break;
+      }
+      heads[from] = size;
+      heads[to] = size;
+      size++;
+    }
+  }
+
+  private ByteBuffer retainedSegment(long id) {
+    return id < oldest ? null : segments[(int) (id >>> segmentShift)];
+  }
+
+  private ByteBuffer segmentFor(long id) {
+    int index = (int) (id >>> segmentShift);
+    if (index == segments.length) {
+      try {
+        addSegment(index);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return segments[index];
+  }
+
+  private void addSegment(int index) throws IOException {
+    int bytes = creditsOffset + ((segmentMask + 1) << CREDIT_SHIFT);
+    ByteBuffer segment;
+    if (directory == null) {
+      segment = ByteBuffer.allocateDirect(bytes);
+    } else {
+      // the mapping stays valid after the channel is closed
+      try (FileChannel channel =
+          FileChannel.open(
+              segmentPath(index),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE)) {
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+      }
+    }
+    ByteBuffer[] grown = Arrays.copyOf(segments, index + 1);
+    grown[index] = segment;
+    int dropped = index - Math.max(1, properties.getMaxSegments());
+    if (directory == null && dropped >= 0 && grown[dropped] != null) {
+      // readers check the oldest entry first; one that already holds the buffer still reads it
+      // until the collector frees its memory
+      oldest = (long) (dropped + 1) << segmentShift;
+      grown[dropped] = null;
+    }
+    segments = grown;
+  }
+
+  private Path segmentPath(int index) {
+    return directory.resolve(String.format("ledger-%06d.seg", index));
+  }
+
+  private int offset(long id) {
+    return (int) (id & segmentMask) << RECORD_SHIFT;
+  }
+
+  private int creditOffset(long id) {
+    return creditsOffset + ((int) (id & segmentMask) << CREDIT_SHIFT);
+  }
+}
@@ -0,0 +1,444 @@
+package com.db.awmd.challenge.repository.mapped;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Open-addressing hash table of fixed-width account records living in a memory-mapped file. A
+ * record holds the balance in minor units, the id hash and the UTF-8 id itself, so lookups and
+ * balance updates never allocate per-account objects and reopening the file needs no rebuild.
+ * Behind the table, a few intent records make the two balance writes of a transfer redoable: a
+ * transfer interrupted by a process crash is completed when the file is reopened.
+ */
+@Slf4j
+public class MappedAccountTable implements Closeable {
+  public static final int MAX_ID_LENGTH = 50;
+
+  private static final long MAGIC = 0x4D41504143435453L;
+  // version 1 files had no intent records and gain them when reopened
+  private static final int VERSION = 2;
+  private static final int VERSION_WITHOUT_INTENTS = 1;
+
+  // one cache line per record, the header takes the first one
+  private static final int RECORD_SHIFT = 6;
+  private static final int RECORD_SIZE = 1 << RECORD_SHIFT;
+
+  // header layout
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 8;
+  private static final int RECORD_SIZE_OFFSET = 12;
+  private static final int CAPACITY_OFFSET = 16;
+  private static final int SIZE_OFFSET = 20;
+
+  // record layout, an id length of 0 marks a free slot
+  private static final int BALANCE_OFFSET = 0;
+  private static final int HASH_OFFSET = 8;
+  private static final int ID_LENGTH_OFFSET = 12;
+  private static final int ID_OFFSET = 14;
+
+  // a single MappedByteBuffer cannot exceed 2 GB, so the file is mapped in 1 GB chunks
+  private static final int CHUNK_SHIFT = 30 - RECORD_SHIFT;
+  private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+  // intent layout, in the records following the table; transfers in flight take one each
+  private static final int INTENTS = 64;
+  private static final int INTENT_BALANCE_FROM_OFFSET = 0;
+  private static final int INTENT_BALANCE_TO_OFFSET = 8;
+  private static final int INTENT_SLOT_FROM_OFFSET = 16;
+  private static final int INTENT_SLOT_TO_OFFSET = 20;
+  private static final int INTENT_STATE_OFFSET = 24;
+  private static final int INTENT_PENDING = 1;
+
+  // probe result when the key is absent and no slot is free
+  private static final int FULL = Integer.MIN_VALUE;
+
+  // slots read per hold of the structure lock when walking the table
+  private static final int WALK_BLOCK = 1024;
+
+  private final FileChannel channel;
+
+  private final MappedByteBuffer[] chunks;
+
+  private final int capacity;
+
+  private final int mask;
+
+  // only structural changes take the write lock, lookups validate an optimistic stamp instead
+  private final StampedLock structure = new StampedLock();
+
+  private final Semaphore freeIntents = new Semaphore(INTENTS);
+
+  // a set bit marks an intent record in use
+  private final AtomicLong usedIntents = new AtomicLong();
+
+  private int size;
+
+  // written only to order the record writes of a transfer, see orderWrites
+  private volatile int writeOrder;
+
+  private MappedAccountTable(FileChannel channel, MappedByteBuffer[] chunks, int capacity) {
+    this.channel = channel;
+    this.chunks = chunks;
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.size = header().getInt(SIZE_OFFSET);
+  }
+
+  public static MappedAccountTable open(Path file, int requestedCapacity) throws IOException {
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+    FileChannel channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      boolean existing = channel.size() > 0;
+      int capacity = existing ? readCapacity(channel, file) : tableSizeFor(requestedCapacity);
+      if (existing && capacity != tableSizeFor(requestedCapacity)) {
+        log.warn("{} was created with capacity {}, keeping it", file, capacity);
+      }
+      // mapping beyond the end grows an older file by its intent records, which read as free
+      MappedByteBuffer[] chunks =
+          map(channel, ((long) capacity + 1 + INTENTS) << RECORD_SHIFT);
+      MappedByteBuffer header = chunks[0];
+      if (!existing) {
+        header.putLong(MAGIC_OFFSET, MAGIC);
+        header.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+        header.putInt(CAPACITY_OFFSET, capacity);
+        header.putInt(SIZE_OFFSET, 0);
+      }
+      header.putInt(VERSION_OFFSET, VERSION);
+      MappedAccountTable table = new MappedAccountTable(channel, chunks, capacity);
+      table.redoIntents(file);
+      return table;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  // returns the slot of the account or -1 if there is none
+  public int find(String accountId) {
+    byte[] key = accountId.getBytes(StandardCharsets.UTF_8);
+    int hash = hash(accountId);
+    long stamp = structure.tryOptimisticRead();
+    int slot = probe(key, hash);
+    if (!structure.validate(stamp)) {
+      stamp = structure.readLock();
+      try {
+        slot = probe(key, hash);
+      } finally {
+        structure.unlockRead(stamp);
+      }
+    }
+    return slot >= 0 ? slot : -1;
+  }
+
+  // returns the slot of the new account or -1 if the id is already taken
+  public int insert(String accountId, long balance) {
+    byte[] key = accountId.getBytes(StandardCharsets.UTF_8);
+    if (key.length == 0 || key.length > MAX_ID_LENGTH) {
+      throw new IllegalArgumentException(
+          "Account id must be between 1 and " + MAX_ID_LENGTH + " bytes long");
+    }
+    int hash = hash(accountId);
+    long stamp = structure.writeLock();
+    try {
+      int slot = probe(key, hash);
+      if (slot >= 0) {
+        return -1;
+      }
+      // linear probing degrades quickly past three quarters full
+      if (slot == FULL || size >= capacity - (capacity >>> 2)) {
+        throw new IllegalStateException(
+            "Account table is full, " + size + " of " + capacity + " slots in use");
+      }
+      slot = ~slot;
+      MappedByteBuffer chunk = chunk(slot);
+      int offset = offset(slot);
+      chunk.putLong(offset + BALANCE_OFFSET, balance);
+      chunk.putInt(offset + HASH_OFFSET, hash);
+      for (int i = 0; i < key.length; i++) {
+        chunk.put(offset + ID_OFFSET + i, key[i]);
+      }
+      chunk.putShort(offset + ID_LENGTH_OFFSET, (short) key.length);
+      header().putInt(SIZE_OFFSET, ++size);
+      return slot;
+    } finally {
+      structure.unlockWrite(stamp);
+    }
+  }
+
+  // null if the slot holds no account
+  public String accountId(int slot) {
+    if (slot < 0 || slot >= capacity) {
+      return null;
+    }
+    long stamp = structure.tryOptimisticRead();
+    int idLength = idLength(slot);
+    String accountId = idLength == 0 ? null : id(slot, idLength);
+    if (!structure.validate(stamp)) {
+      stamp = structure.readLock();
+      try {
+        idLength = idLength(slot);
+        accountId = idLength == 0 ? null : id(slot, idLength);
+      } finally {
+        structure.unlockRead(stamp);
+      }
+    }
+    return accountId;
+  }
+
+  public long balance(int slot) {
+    return chunk(slot).getLong(offset(slot) + BALANCE_OFFSET);
+  }
+
+  // callers serialize updates of the same slot through the account locks
+  public void setBalance(int slot, long balance) {
+    chunk(slot).putLong(offset(slot) + BALANCE_OFFSET, balance);
+  }
+
+  /**
+   * Sets the balances of both accounts of a transfer so that a process crash leaves either
+   * neither or both changed once the file is reopened. Only a crash of the process is covered:
+   * the OS may write pages back in any order, so a power loss before {@link #force} can still
+   * tear a transfer.
+   */
+  public void transfer(int slotFrom, long balanceFrom, int slotTo, long balanceTo) {
+    freeIntents.acquireUninterruptibly();
+    int intent = claimIntent();
+    try {
+      int record = capacity + intent;
+      MappedByteBuffer chunk = chunk(record);
+      int offset = offset(record);
+      chunk.putLong(offset + INTENT_BALANCE_FROM_OFFSET, balanceFrom);
+      chunk.putLong(offset + INTENT_BALANCE_TO_OFFSET, balanceTo);
+      chunk.putInt(offset + INTENT_SLOT_FROM_OFFSET, slotFrom);
+      chunk.putInt(offset + INTENT_SLOT_TO_OFFSET, slotTo);
+      orderWrites();
+      chunk.putInt(offset + INTENT_STATE_OFFSET, INTENT_PENDING);
+      orderWrites();
+      setBalance(slotFrom, balanceFrom);
+      setBalance(slotTo, balanceTo);
+      orderWrites();
+      chunk.putInt(offset + INTENT_STATE_OFFSET, 0);
+    } finally {
+      usedIntents.getAndAdd(-(1L << intent));
+      freeIntents.release();
+    }
+  }
+
+  /**
+   * Visits every account with its balance. The table is read in blocks under the structure read
+   * lock, and the action runs outside of it, so a slow consumer never holds up inserts.
+   */
+  public void forEach(ObjLongConsumer<String> action) {
+    String[] ids = new String[WALK_BLOCK];
+    long[] balances = new long[WALK_BLOCK];
+    for (int start = 0; start < capacity; start += WALK_BLOCK) {
+      int count = 0;
+      long stamp = structure.readLock();
+      try {
+        for (int slot = start; slot < Math.min(start + WALK_BLOCK, capacity); slot++) {
+          int idLength = idLength(slot);
+          if (idLength != 0) {
+            ids[count] = id(slot, idLength);
+            balances[count++] = balance(slot);
+          }
+        }
+      } finally {
+        structure.unlockRead(stamp);
+      }
+      for (int i = 0; i < count; i++) {
+        action.accept(ids[i], balances[i]);
+      }
+    }
+  }
+
+  public int size() {
+    long stamp = structure.readLock();
+    try {
+      return size;
+    } finally {
+      structure.unlockRead(stamp);
+    }
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public void clear() {
+    long stamp = structure.writeLock();
+    try {
+      for (int slot = 0; slot < capacity; slot++) {
+        chunk(slot).putShort(offset(slot) + ID_LENGTH_OFFSET, (short) 0);
+      }
+      size = 0;
+      header().putInt(SIZE_OFFSET, 0);
+    } finally {
+      structure.unlockWrite(stamp);
+    }
+  }
+
+  // pushes dirty pages to disk, without it they survive a process crash but not a power loss
+  public void force() {
+    for (MappedByteBuffer chunk : chunks) {
+      chunk.force();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    force();
+    channel.close();
+  }
+
+  // the semaphore guarantees a free intent
+  private int claimIntent() {
+    while (true) {
+      long used = usedIntents.get();
+      int intent = Long.numberOfTrailingZeros(~used);
+      if (usedIntents.compareAndSet(used, used | (1L << intent))) {
+        return intent;
+      }
+    }
+  }
+
+  // stores to a mapped buffer are plain and may be reordered; HotSpot compiles a volatile write
+  // to a full barrier, which keeps the intent, the balances and its release in program order
+  private void orderWrites() {
+    writeOrder = 0;
+  }
+
+  // completes the transfers a crash interrupted; their balances are absolute, so redoing one
+  // that had already been applied in full changes nothing
+  private void redoIntents(Path file) {
+    int redone = 0;
+    for (int intent = 0; intent < INTENTS; intent++) {
+      int record = capacity + intent;
+      MappedByteBuffer chunk = chunk(record);
+      int offset = offset(record);
+      if (chunk.getInt(offset + INTENT_STATE_OFFSET) != INTENT_PENDING) {
+        continue;
+      }
+      int slotFrom = chunk.getInt(offset + INTENT_SLOT_FROM_OFFSET);
+      int slotTo = chunk.getInt(offset + INTENT_SLOT_TO_OFFSET);
+      if (slotFrom < 0 || slotFrom >= capacity || slotTo < 0 || slotTo >= capacity) {
+        throw new IllegalStateException(file + " has a corrupt intent record " + intent);
+      }
+      setBalance(slotFrom, chunk.getLong(offset + INTENT_BALANCE_FROM_OFFSET));
+      setBalance(slotTo, chunk.getLong(offset + INTENT_BALANCE_TO_OFFSET));
+      chunk.putInt(offset + INTENT_STATE_OFFSET, 0);
+      redone++;
+    }
+    if (redone > 0) {
+      log.warn("Completed {} transfers interrupted by a crash in {}", redone, file);
+    }
+  }
+
+  // returns the slot holding the key, else the complement of the free slot ending the probe
+  private int probe(byte[] key, int hash) {
+    int slot = hash & mask;
+    for (int probes = 0; probes < capacity; probes++) {
+      int idLength = idLength(slot);
+      if (idLength == 0) {
+        return ~slot;
+      }
+      if (matches(slot, idLength, key, hash)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return FULL;
+  }
+
+  private boolean matches(int slot, int idLength, byte[] key, int hash) {
+    MappedByteBuffer chunk = chunk(slot);
+    int offset = offset(slot);
+    if (idLength != key.length || chunk.getInt(offset + HASH_OFFSET) != hash) {
+      return false;
+    }
+    for (int i = 0; i < key.length; i++) {
+      if (chunk.get(offset + ID_OFFSET + i) != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String id(int slot, int idLength) {
+    MappedByteBuffer chunk = chunk(slot);
+    int offset = offset(slot) + ID_OFFSET;
+    byte[] id = new byte[idLength];
+    for (int i = 0; i < idLength; i++) {
+      id[i] = chunk.get(offset + i);
+    }
+    return new String(id, StandardCharsets.UTF_8);
+  }
+
+  private int idLength(int slot) {
+    return chunk(slot).getShort(offset(slot) + ID_LENGTH_OFFSET);
+  }
+
+  private MappedByteBuffer header() {
+    return chunks[0];
+  }
+
+  // record n lives at file position (n + 1) * RECORD_SIZE, behind the header
+  private MappedByteBuffer chunk(int slot) {
+    return chunks[(int) (((long) slot + 1) >>> CHUNK_SHIFT)];
+  }
+
+  private static int offset(int slot) {
+    return ((slot + 1) & CHUNK_MASK) << RECORD_SHIFT;
+  }
+
+  private static int hash(String accountId) {
+    int hash = accountId.hashCode();
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int tableSizeFor(int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    if (size <= 0 || size > 1 << 30) {
+      throw new IllegalArgumentException("Unsupported account table capacity " + capacity);
+    }
+    return size;
+  }
+
+  private static int readCapacity(FileChannel channel, Path file) throws IOException {
+    MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, RECORD_SIZE);
+    int version = header.getInt(VERSION_OFFSET);
+    if (header.getLong(MAGIC_OFFSET) != MAGIC
+        || (version != VERSION && version != VERSION_WITHOUT_INTENTS)
+        || header.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+      throw new IOException(file + " is not an account table");
+    }
+    return header.getInt(CAPACITY_OFFSET);
+  }
+
+  private static MappedByteBuffer[] map(FileChannel channel, long length) throws IOException {
+    long chunkSize = 1L << (CHUNK_SHIFT + RECORD_SHIFT);
+    MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((length + chunkSize - 1) / chunkSize)];
+    for (int i = 0; i < chunks.length; i++) {
+      long position = i * chunkSize;
+      chunks[i] =
+          channel.map(
+              FileChannel.MapMode.READ_WRITE, position, Math.min(chunkSize, length - position));
+    }
+    return chunks;
+  }
+}
@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.repository.wal;
+
+public enum FsyncPolicy {
+  // every record is written and forced on its own before the repository call returns
+  PER_WRITE,
+  // records are buffered; the first waiter forces everything buffered so far on behalf of all
+  GROUPED,
+  // a background thread forces the log periodically, a crash may lose the last interval
+  INTERVAL
+}
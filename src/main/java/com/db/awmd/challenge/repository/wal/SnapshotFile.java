@@ -0,0 +1,127 @@
+package com.db.awmd.challenge.repository.wal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// a snapshot named after segment N covers everything logged before segment N was opened
+public final class SnapshotFile {
+  private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.snap");
+  private static final int MAGIC = 0x41434353;
+  // followed by the pending schedules after the accounts
+  private static final int MAGIC_WITH_SCHEDULES = 0x41434354;
+  // with schedules, and the currency of each account after its balance
+  private static final int MAGIC_WITH_CURRENCIES = 0x41434355;
+
+  private SnapshotFile() {}
+
+  public static Path snapshotPath(Path directory, long segmentId) {
+    return directory.resolve(String.format("snapshot-%020d.snap", segmentId));
+  }
+
+  public static List<Long> snapshotIds(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .map(file -> SNAPSHOT_NAME.matcher(file.getFileName().toString()))
+          .filter(Matcher::matches)
+          .map(matcher -> Long.parseLong(matcher.group(1)))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  // written to a temporary file first and moved into place once it is fully on disk
+  public static void write(
+      Path directory,
+      long segmentId,
+      Iterable<Account> accounts,
+      Iterable<ScheduledTransfer> schedules)
+      throws IOException {
+    Path target = snapshotPath(directory, segmentId);
+    Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+
+    CRC32 crc = new CRC32();
+    try (OutputStream file = Files.newOutputStream(temporary);
+        DataOutputStream out =
+            new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(file), crc))) {
+      out.writeInt(MAGIC_WITH_CURRENCIES);
+      long count = 0;
+      for (Account account : accounts) {
+        out.writeBoolean(true);
+        out.writeUTF(account.getAccountId());
+        out.writeLong(account.getBalanceMinorUnits());
+        out.writeUTF(account.getCurrency());
+        count++;
+      }
+      out.writeBoolean(false);
+      out.writeLong(count);
+      count = 0;
+      for (ScheduledTransfer schedule : schedules) {
+        out.writeBoolean(true);
+        WalRecords.writeSchedule(out, schedule);
+        count++;
+      }
+      out.writeBoolean(false);
+      out.writeLong(count);
+      out.flush();
+      // the trailing checksum itself is not part of the checksum
+      new DataOutputStream(file).writeLong(crc.getValue());
+    }
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+    Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  public static void read(Path snapshot, WalReplayHandler handler) throws IOException {
+    CRC32 crc = new CRC32();
+    try (BufferedInputStream file = new BufferedInputStream(Files.newInputStream(snapshot))) {
+      DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+      int magic = in.readInt();
+      if (magic != MAGIC && magic != MAGIC_WITH_SCHEDULES && magic != MAGIC_WITH_CURRENCIES) {
+        throw new IOException(snapshot + " is not an accounts snapshot");
+      }
+      long count = 0;
+      while (in.readBoolean()) {
+        handler.onCreate(
+            in.readUTF(),
+            in.readLong(),
+            magic == MAGIC_WITH_CURRENCIES ? in.readUTF() : Money.DEFAULT_CURRENCY);
+        count++;
+      }
+      boolean intact = in.readLong() == count;
+      if (magic != MAGIC) {
+        count = 0;
+        while (in.readBoolean()) {
+          handler.onSchedule(WalRecords.readSchedule(in));
+          count++;
+        }
+        intact &= in.readLong() == count;
+      }
+      long checksum = crc.getValue();
+      if (!intact || new DataInputStream(file).readLong() != checksum) {
+        throw new IOException(snapshot + " is corrupt");
+      }
+    }
+  }
+}
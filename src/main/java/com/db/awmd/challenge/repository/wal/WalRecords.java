@@ -0,0 +1,199 @@
+package com.db.awmd.challenge.repository.wal;
+
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// balances and schedules are logged as absolute values, so replaying a record more than once is
+// harmless
+public final class WalRecords {
+  private static final byte CREATE = 1;
+  private static final byte BALANCES = 2;
+  private static final byte CLEAR = 3;
+  private static final byte SCHEDULE = 4;
+  private static final byte UNSCHEDULE = 5;
+  // the balances changed by a run of a scheduled transfer together with the schedule's next state
+  private static final byte SCHEDULED_RUN = 6;
+  // an account in any currency but the default, which keeps using CREATE
+  private static final byte CREATE_IN_CURRENCY = 7;
+  // the balances of any number of accounts, which recover together or not at all
+  private static final byte BALANCE_GROUP = 8;
+
+  private WalRecords() {}
+
+  public static byte[] create(String accountId, long balance, String currency) {
+    boolean defaultCurrency = Money.DEFAULT_CURRENCY.equals(currency);
+    return encode(
+        out -> {
+          out.writeByte(defaultCurrency ? CREATE : CREATE_IN_CURRENCY);
+          out.writeUTF(accountId);
+          out.writeLong(balance);
+          if (!defaultCurrency) {
+            out.writeUTF(currency);
+          }
+        });
+  }
+
+  public static byte[] balance(String accountId, long balance) {
+    return encode(
+        out -> {
+          out.writeByte(BALANCES);
+          out.writeShort(1);
+          out.writeUTF(accountId);
+          out.writeLong(balance);
+        });
+  }
+
+  public static byte[] balances(
+      String accountIdA, long balanceA, String accountIdB, long balanceB) {
+    return encode(
+        out -> {
+          out.writeByte(BALANCES);
+          out.writeShort(2);
+          out.writeUTF(accountIdA);
+          out.writeLong(balanceA);
+          out.writeUTF(accountIdB);
+          out.writeLong(balanceB);
+        });
+  }
+
+  public static byte[] balances(String[] accountIds, long[] balances) {
+    return encode(
+        out -> {
+          out.writeByte(BALANCE_GROUP);
+          out.writeInt(accountIds.length);
+          for (int i = 0; i < accountIds.length; i++) {
+            out.writeUTF(accountIds[i]);
+            out.writeLong(balances[i]);
+          }
+        });
+  }
+
+  public static byte[] clear() {
+    return new byte[] {CLEAR};
+  }
+
+  public static byte[] schedule(ScheduledTransfer schedule) {
+    return encode(
+        out -> {
+          out.writeByte(SCHEDULE);
+          writeSchedule(out, schedule);
+        });
+  }
+
+  public static byte[] unschedule(long scheduleId) {
+    return encode(
+        out -> {
+          out.writeByte(UNSCHEDULE);
+          out.writeLong(scheduleId);
+        });
+  }
+
+  public static byte[] scheduledRun(
+      String accountIdA,
+      long balanceA,
+      String accountIdB,
+      long balanceB,
+      ScheduledTransfer schedule) {
+    return encode(
+        out -> {
+          out.writeByte(SCHEDULED_RUN);
+          out.writeUTF(accountIdA);
+          out.writeLong(balanceA);
+          out.writeUTF(accountIdB);
+          out.writeLong(balanceB);
+          writeSchedule(out, schedule);
+        });
+  }
+
+  public static void decode(byte[] record, WalReplayHandler handler) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+    byte type = in.readByte();
+    switch (type) {
+      case CREATE:
+        handler.onCreate(in.readUTF(), in.readLong(), Money.DEFAULT_CURRENCY);
+        break;
+      case CREATE_IN_CURRENCY:
+        handler.onCreate(in.readUTF(), in.readLong(), in.readUTF());
+        break;
+      case BALANCES:
+        int count = in.readShort();
+        for (int i = 0; i < count; i++) {
+          handler.onBalance(in.readUTF(), in.readLong());
+        }
+        break;
+      case BALANCE_GROUP:
+        int groupSize = in.readInt();
+        for (int i = 0; i < groupSize; i++) {
+          handler.onBalance(in.readUTF(), in.readLong());
+        }
+        break;
+      case CLEAR:
+        handler.onClear();
+        break;
+      case SCHEDULE:
+        handler.onSchedule(readSchedule(in));
+        break;
+      case UNSCHEDULE:
+        handler.onUnschedule(in.readLong());
+        break;
+      case SCHEDULED_RUN:
+        handler.onBalance(in.readUTF(), in.readLong());
+        handler.onBalance(in.readUTF(), in.readLong());
+        handler.onSchedule(readSchedule(in));
+        break;
+      default:
+        throw new IOException("Unknown write-ahead log record type " + type);
+    }
+  }
+
+  static void writeSchedule(DataOutputStream out, ScheduledTransfer schedule)
+      throws IOException {
+    out.writeLong(schedule.getId());
+    out.writeUTF(schedule.getAccountIdFrom());
+    out.writeUTF(schedule.getAccountIdTo());
+    out.writeLong(schedule.getAmountMinorUnits());
+    out.writeLong(schedule.getNextRunMillis());
+    out.writeLong(schedule.getIntervalMillis());
+    out.writeInt(schedule.getRemainingRuns());
+    out.writeInt(schedule.getCompletedRuns());
+    out.writeBoolean(schedule.getLastError() != null);
+    if (schedule.getLastError() != null) {
+      out.writeUTF(schedule.getLastError());
+    }
+  }
+
+  static ScheduledTransfer readSchedule(DataInputStream in) throws IOException {
+    return new ScheduledTransfer(
+        in.readLong(),
+        in.readUTF(),
+        in.readUTF(),
+        in.readLong(),
+        in.readLong(),
+        in.readLong(),
+        in.readInt(),
+        in.readInt(),
+        in.readBoolean() ? in.readUTF() : null);
+  }
+
+  private static byte[] encode(RecordWriter writer) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    try {
+      writer.write(new DataOutputStream(bytes));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  @FunctionalInterface
+  private interface RecordWriter {
+    void write(DataOutputStream out) throws IOException;
+  }
+}
@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.repository.wal;
+
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+
+public interface WalReplayHandler {
+
+  // records from before currencies existed replay with Money.DEFAULT_CURRENCY
+  void onCreate(String accountId, long balance, String currency);
+
+  void onBalance(String accountId, long balance);
+
+  void onClear();
+
+  // a finished schedule is logged like any other state, and removes it
+  default void onSchedule(ScheduledTransfer schedule) {}
+
+  default void onUnschedule(long scheduleId) {}
+}
@@ -0,0 +1,336 @@
+package com.db.awmd.challenge.repository.wal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log split into numbered segments. Every record is framed as length, CRC32 and body,
+ * so a torn write at the tail of the last segment is detected and dropped during replay. Once a
+ * write or force fails, the log refuses every further append and flush until it is reopened, as
+ * nothing written after the failure could be told apart from what was lost.
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+  private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d+)\\.log");
+
+  private final Path directory;
+
+  private final FsyncPolicy fsyncPolicy;
+
+  // serializes writes to the channel, segment rolls and forces
+  private final Object flushLock = new Object();
+
+  // records appended but not yet written, guarded by this
+  private final PendingRecords pending = new PendingRecords();
+
+  private final SegmentOpener segmentOpener;
+
+  private FileChannel channel;
+
+  private long segmentId;
+
+  private volatile long appendedSequence;
+
+  private volatile long durableSequence;
+
+  // the write or force that failed, null while the log is healthy
+  private volatile IOException failure;
+
+  private ScheduledExecutorService intervalFlusher;
+
+  public WriteAheadLog(
+      Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMs, long segmentId)
+      throws IOException {
+    this(directory, fsyncPolicy, fsyncIntervalMs, segmentId, WriteAheadLog::openAppending);
+  }
+
+  public WriteAheadLog(
+      Path directory,
+      FsyncPolicy fsyncPolicy,
+      long fsyncIntervalMs,
+      long segmentId,
+      SegmentOpener segmentOpener)
+      throws IOException {
+    this.directory = directory;
+    this.fsyncPolicy = fsyncPolicy;
+    this.segmentId = segmentId;
+    this.segmentOpener = segmentOpener;
+    this.channel = openSegment(segmentId);
+
+    if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+      intervalFlusher =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "wal-flusher");
+                thread.setDaemon(true);
+                return thread;
+              });
+      intervalFlusher.scheduleWithFixedDelay(
+          this::flushQuietly, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public static Path segmentPath(Path directory, long segmentId) {
+    return directory.resolve(String.format("wal-%020d.log", segmentId));
+  }
+
+  public static List<Long> segmentIds(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+          .filter(Matcher::matches)
+          .map(matcher -> Long.parseLong(matcher.group(1)))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  // returns the length of the intact prefix, shorter than the file if it ended with a torn record
+  public static long replay(Path segment, WalReplayHandler handler) throws IOException {
+    long valid = 0;
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+      while (true) {
+        int length;
+        try {
+          length = in.readInt();
+        } catch (EOFException e) {
+          return valid;
+        }
+        try {
+          long checksum = in.readInt() & 0xFFFFFFFFL;
+          byte[] record = new byte[length];
+          in.readFully(record);
+          if (checksum(record) != checksum) {
+            log.warn("Checksum mismatch in {}, ignoring the rest of the segment", segment);
+            return valid;
+          }
+          WalRecords.decode(record, handler);
+          valid += 8 + length;
+        } catch (EOFException | NegativeArraySizeException e) {
+          log.warn("Torn record at the end of {}, ignoring it", segment);
+          return valid;
+        }
+      }
+    }
+  }
+
+  // drops a torn tail so the segment replays cleanly once newer segments follow it
+  public static void truncate(Path segment, long length) throws IOException {
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.truncate(length);
+      channel.force(true);
+    }
+  }
+
+  public void append(byte[] record) {
+    append(record, () -> {});
+  }
+
+  /**
+   * Appends the record, then runs the given update of the logged state before any segment roll
+   * can follow the record. Nothing runs if the log refuses the record.
+   */
+  public void append(byte[] record, Runnable appended) {
+    byte[] frame = frame(record);
+    if (fsyncPolicy == FsyncPolicy.PER_WRITE) {
+      synchronized (flushLock) {
+        try {
+          checkHealthy();
+          writeFully(ByteBuffer.wrap(frame));
+          channel.force(false);
+        } catch (IOException e) {
+          fail(e);
+          throw new UncheckedIOException(e);
+        }
+        appended.run();
+      }
+      return;
+    }
+    synchronized (this) {
+      if (failure != null) {
+        throw new UncheckedIOException(failed());
+      }
+      pending.write(frame, 0, frame.length);
+      appendedSequence++;
+      // a roll takes the pending records under this lock, so it sees the record and its update
+      // both or neither
+      appended.run();
+    }
+  }
+
+  // group commit: whoever gets the flush lock first forces every record buffered up to that point
+  public void awaitDurable() {
+    if (fsyncPolicy != FsyncPolicy.GROUPED) {
+      return;
+    }
+    long target = appendedSequence;
+    if (durableSequence >= target) {
+      return;
+    }
+    // every waiter of a failed group gets the failure, flushPending does not try again
+    synchronized (flushLock) {
+      if (durableSequence >= target) {
+        return;
+      }
+      try {
+        flushPending();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  // closes the current segment and starts a new one; returns the id of the new segment
+  public long roll() throws IOException {
+    synchronized (flushLock) {
+      flushPending();
+      channel.close();
+      segmentId++;
+      channel = openSegment(segmentId);
+      return segmentId;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (intervalFlusher != null) {
+      intervalFlusher.shutdown();
+    }
+    synchronized (flushLock) {
+      try {
+        if (failure == null) {
+          flushPending();
+        }
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  // caller holds the flush lock; the records stay pending until they are written and forced
+  private void flushPending() throws IOException {
+    checkHealthy();
+    byte[] bytes;
+    long sequence;
+    synchronized (this) {
+      bytes = pending.toByteArray();
+      sequence = appendedSequence;
+    }
+    if (bytes.length > 0) {
+      try {
+        writeFully(ByteBuffer.wrap(bytes));
+        channel.force(false);
+      } catch (IOException e) {
+        fail(e);
+        throw e;
+      }
+      synchronized (this) {
+        pending.discard(bytes.length);
+      }
+    }
+    durableSequence = sequence;
+  }
+
+  private void checkHealthy() throws IOException {
+    if (failure != null) {
+      throw failed();
+    }
+  }
+
+  private IOException failed() {
+    return new IOException("The write-ahead log failed and has to be reopened", failure);
+  }
+
+  private void fail(IOException e) {
+    if (failure == null) {
+      log.error("Write-ahead log segment {} failed, refusing further writes", segmentId, e);
+      failure = e;
+    }
+  }
+
+  private void flushQuietly() {
+    synchronized (flushLock) {
+      if (failure != null) {
+        return;
+      }
+      try {
+        flushPending();
+      } catch (IOException e) {
+        log.error("Failed to flush write-ahead log segment {}", segmentId, e);
+      }
+    }
+  }
+
+  private void writeFully(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private FileChannel openSegment(long id) throws IOException {
+    return segmentOpener.open(segmentPath(directory, id));
+  }
+
+  private static FileChannel openAppending(Path segment) throws IOException {
+    return FileChannel.open(
+        segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private static byte[] frame(byte[] record) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(record.length + 8);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(record.length);
+      out.writeInt((int) checksum(record));
+      out.write(record);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static long checksum(byte[] record) {
+    CRC32 crc = new CRC32();
+    crc.update(record, 0, record.length);
+    return crc.getValue();
+  }
+
+  // opens a segment for appending; replaceable to inject I/O failures
+  public interface SegmentOpener {
+    FileChannel open(Path segment) throws IOException;
+  }
+
+  private static final class PendingRecords extends ByteArrayOutputStream {
+    PendingRecords() {
+      super(64 * 1024);
+    }
+
+    // drops the first length bytes, which have been written
+    void discard(int length) {
+      System.arraycopy(buf, length, buf, 0, count - length);
+      count -= length;
+    }
+  }
+}
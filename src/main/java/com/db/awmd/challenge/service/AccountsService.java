@@ -1,16 +1,52 @@
 package com.db.awmd.challenge.service;
 
+import com.db.awmd.challenge.config.BatchTransferProperties;
+import com.db.awmd.challenge.config.HotAccountProperties;
+import com.db.awmd.challenge.config.NettingProperties;
+import com.db.awmd.challenge.config.TransferExecutionProperties;
+import com.db.awmd.challenge.config.TransferExecutionProperties.ExecutionMode;
 import com.db.awmd.challenge.domain.Account;
-import com.db.awmd.challenge.dto.TransferValidationPayload;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.dto.AccountsSnapshot;
+import com.db.awmd.challenge.dto.BatchMode;
+import com.db.awmd.challenge.dto.MoneyTransfer;
+import com.db.awmd.challenge.dto.TransferHistoryPage;
+import com.db.awmd.challenge.dto.TransferNotification;
+import com.db.awmd.challenge.dto.TransferReceipt;
+import com.db.awmd.challenge.dto.TransferResult;
+import com.db.awmd.challenge.dto.TransferStatus;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InvalidAccountIdException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
 import com.db.awmd.challenge.exception.TransferException;
+import com.db.awmd.challenge.exception.TransferRejectedException;
+import com.db.awmd.challenge.exception.UnsupportedCurrencyException;
+import com.db.awmd.challenge.metrics.RejectionReason;
+import com.db.awmd.challenge.metrics.TransferMetrics;
 import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.ledger.TransferLedger;
+import com.db.awmd.challenge.service.fx.FxRateCache;
+import com.db.awmd.challenge.service.fx.FxRateTable;
+import com.db.awmd.challenge.service.hot.HotAccounts;
+import com.db.awmd.challenge.service.idempotency.IdempotencyCache;
+import com.db.awmd.challenge.service.netting.TransferNettingEngine;
+import com.db.awmd.challenge.service.reconciliation.MoneySupply;
+import com.db.awmd.challenge.service.sequencer.ShardedTransferSequencer;
+import com.db.awmd.challenge.service.validation.TransferError;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.util.CollectionUtils;
 
-import java.math.BigDecimal;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 @Service
 public class AccountsService {
@@ -19,66 +55,776 @@ public class AccountsService {
 
   @Getter private final AccountsValidator accountsValidator;
 
-  @Getter private final NotificationService notificationService;
+  @Getter private final TransferNotificationDispatcher notificationDispatcher;
+
+  @Getter private final StripedAccountLocks accountLocks;
+
+  @Getter private final TransferLedger transferLedger;
+
+  private final BatchTransferProperties batchProperties;
+
+  private final TransferExecutionProperties executionProperties;
+
+  private final TransferMetrics metrics;
+
+  private final IdempotencyCache idempotencyCache;
+
+  private final AsyncTransferExecutor asyncExecutor;
+
+  private final NettingProperties nettingProperties;
+
+  private final HotAccountProperties hotAccountProperties;
+
+  private final FxRateCache fxRates;
+
+  // only present in the sharded execution mode
+  private ShardedTransferSequencer sequencer;
+
+  // only present when netting is enabled
+  private TransferNettingEngine netting;
+
+  // only present when hot accounts are configured or detected
+  @Getter private HotAccounts hotAccounts;
+
+  // what the balances of each currency must add up to, see AccountsReconciler
+  @Getter private final MoneySupply moneySupply;
 
   @Autowired
   public AccountsService(
       AccountsRepository accountsRepository,
       AccountsValidator accountsValidator,
-      NotificationService notificationService) {
+      TransferNotificationDispatcher notificationDispatcher,
+      StripedAccountLocks accountLocks,
+      BatchTransferProperties batchProperties,
+      TransferExecutionProperties executionProperties,
+      TransferMetrics metrics,
+      IdempotencyCache idempotencyCache,
+      AsyncTransferExecutor asyncExecutor,
+      TransferLedger transferLedger,
+      NettingProperties nettingProperties,
+      HotAccountProperties hotAccountProperties,
+      FxRateCache fxRates) {
     this.accountsRepository = accountsRepository;
     this.accountsValidator = accountsValidator;
-    this.notificationService = notificationService;
+    this.notificationDispatcher = notificationDispatcher;
+    this.accountLocks = accountLocks;
+    this.batchProperties = batchProperties;
+    this.executionProperties = executionProperties;
+    this.metrics = metrics;
+    this.idempotencyCache = idempotencyCache;
+    this.asyncExecutor = asyncExecutor;
+    this.transferLedger = transferLedger;
+    this.nettingProperties = nettingProperties;
+    this.hotAccountProperties = hotAccountProperties;
+    this.fxRates = fxRates;
+    this.moneySupply = new MoneySupply(accountLocks.stripeCount());
+  }
+
+  @PostConstruct
+  public void start() {
+    if (executionProperties.getMode() == ExecutionMode.SHARDED) {
+      // each shard logs its side of a cross-shard transfer on its own, so a crash between the
+      // two would keep the debit and lose the credit
+      if (accountsRepository.isPersistent()) {
+        throw new IllegalStateException("The sharded execution mode needs an in-memory engine");
+      }
+      sequencer =
+          new ShardedTransferSequencer(
+              executionProperties,
+              accountsRepository,
+              this::validateTransfer,
+              this::credit,
+              this::record);
+      sequencer.start();
+    }
+    if (nettingProperties.isEnabled()) {
+      // a window changes many accounts at once, which the mapped engine cannot recover together
+      if (!usesAccountLocks() || !accountsRepository.setsBalancesAtomically()) {
+        throw new IllegalStateException(
+            "Transfer netting needs the locking execution mode and a locking engine that writes"
+                + " a window atomically");
+      }
+      netting =
+          new TransferNettingEngine(
+              nettingProperties,
+              accountsRepository,
+              accountLocks,
+              this::validateTransfer,
+              this::credit,
+              this::recordNetted,
+              this::awaitDurable);
+      netting.start();
+    }
+    if (hotAccountProperties.isEnabled()) {
+      // credits held in slots would be lost on a restart, and netting already merges the writes
+      if (!usesAccountLocks() || accountsRepository.isPersistent() || netting != null) {
+        throw new IllegalStateException(
+            "Hot accounts need the locking execution mode, an in-memory engine and no netting");
+      }
+      hotAccounts = new HotAccounts(hotAccountProperties, accountsRepository);
+    }
+    // accounts recovered by a persistent engine count as issued
+    accountsRepository.forEachAccount(
+        account -> moneySupply.issue(account.getCurrency(), account.getBalanceMinorUnits()));
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    if (netting != null) {
+      netting.stop();
+    }
+    if (sequencer != null) {
+      sequencer.stop();
+    }
   }
 
   public void createAccount(Account account) {
-    this.accountsRepository.createAccount(account);
+    long issuing = moneySupply.startIssuing();
+    try {
+      this.accountsRepository.createAccount(account);
+      moneySupply.issue(account.getCurrency(), account.getBalanceMinorUnits());
+    } finally {
+      moneySupply.stopIssuing(issuing);
+    }
+    this.accountsRepository.awaitDurable();
   }
 
+  // one durability wait for all of them; accounts the repository refuses are handed to rejected
+  // with their index, and the others are still created
+  public void createAccounts(List<Account> accounts, ObjIntConsumer<RuntimeException> rejected) {
+    long issuing = moneySupply.startIssuing();
+    try {
+      for (int i = 0; i < accounts.size(); i++) {
+        Account account = accounts.get(i);
+        try {
+          this.accountsRepository.createAccount(account);
+          moneySupply.issue(account.getCurrency(), account.getBalanceMinorUnits());
+        } catch (DuplicateAccountIdException
+            | InvalidAccountIdException
+            | InvalidAmountException
+            | UnsupportedCurrencyException e) {
+          rejected.accept(e, i);
+        }
+      }
+    } finally {
+      moneySupply.stopIssuing(issuing);
+    }
+    this.accountsRepository.awaitDurable();
+  }
+
+  // detached copies of all accounts, streamed from the repository without collecting them first
+  public void forEachAccount(Consumer<Account> action) {
+    accountsRepository.forEachAccount(account -> action.accept(copyOf(account)));
+  }
+
+  // a hot account is returned as a detached copy holding its whole balance
   public Account getAccount(String accountId) {
-    return this.accountsRepository.getAccount(accountId);
+    Account account = this.accountsRepository.getAccount(accountId);
+    if (hotAccounts != null && account != null && hotAccounts.isHot(accountId)) {
+      return copyOf(account);
+    }
+    return account;
+  }
+
+  // a detached copy that never shows a transfer on this account half-applied
+  public Account getAccountSnapshot(String accountId) {
+    if (!usesAccountLocks()) {
+      // balances live in atomic cells or are owned by a single shard thread
+      return copyOf(accountsRepository.getAccount(accountId));
+    }
+    int handle = accountsRepository.handleOf(accountId);
+    return accountLocks.read(
+        new int[] {handle}, () -> copyOf(accountsRepository.getAccount(handle)));
   }
 
-  public void performTransfer(String accountIdFrom, String accountIdTo, BigDecimal amount) {
+  /**
+   * Balances of all the given accounts as of one instant, read without taking the transfer locks.
+   * Money in flight between two of them is never missing from both or counted twice.
+   */
+  public AccountsSnapshot getAccountsSnapshot(Collection<String> accountIds) {
+    if (!usesAccountLocks()) {
+      throw new TransferException(
+          "Consistent multi-account reads are only supported with account locking");
+    }
+    List<String> ids = new ArrayList<>(accountIds);
+    int[] handles = ids.stream().mapToInt(accountsRepository::handleOf).toArray();
+    return accountLocks.read(
+        handles,
+        () -> {
+          List<Account> accounts = new ArrayList<>(handles.length);
+          List<String> missing = new ArrayList<>();
+          for (int i = 0; i < handles.length; i++) {
+            Account account = accountsRepository.getAccount(handles[i]);
+            if (account == null) {
+              missing.add(ids.get(i));
+            } else {
+              accounts.add(copyOf(account));
+            }
+          }
+          return new AccountsSnapshot(accounts, missing);
+        });
+  }
+
+  // newest first; the nextCursor of a page asks for the page after it
+  public TransferHistoryPage getTransferHistory(String accountId, String cursor, int limit) {
+    return transferLedger.history(accountId, cursor, limit);
+  }
+
+  // a transfer naming the currency of its amount is refused unless the source account holds it;
+  // without one the amount is always taken to be in that currency
+  public void requireCurrency(String accountIdFrom, String currency) {
+    if (currency == null) {
+      return;
+    }
     Account accountFrom = accountsRepository.getAccount(accountIdFrom);
-    Account accountTo = accountsRepository.getAccount(accountIdTo);
-
-    Account first = accountFrom;
-    Account second = accountTo;
-    if (accountFrom.getAccountId().compareTo(accountTo.getAccountId()) < 0) {
-      first = accountTo;
-      second = accountFrom;
-    }
-    synchronized (first) {
-      synchronized (second) {
-        TransferValidationPayload validationPayload =
-            TransferValidationPayload.builder()
-                .accountFrom(accountFrom)
-                .accountFromId(accountIdFrom)
-                .accountTo(accountTo)
-                .accountToId(accountIdTo)
-                .amount(amount)
-                .build();
-        Collection<String> errors = accountsValidator.validateTransfer(validationPayload);
-        if (!CollectionUtils.isEmpty(errors)) {
-          throw new TransferException(String.join(", ", errors));
+    if (accountFrom != null && !currency.equals(accountFrom.getCurrency())) {
+      throw new TransferException(
+          "Amount is in "
+              + currency
+              + " but account "
+              + accountIdFrom
+              + " holds "
+              + accountFrom.getCurrency());
+    }
+  }
+
+  // amount in minor units; the successful path allocates nothing but the notification
+  public void performTransfer(String accountIdFrom, String accountIdTo, long amount) {
+    long started = System.nanoTime();
+    try {
+      executeTransfer(accountIdFrom, accountIdTo, amount);
+    } finally {
+      metrics.getTransfer().recordSince(started);
+    }
+  }
+
+  // a retry carrying the same key replays the first outcome without touching locks or validation
+  public void performTransfer(
+      String idempotencyKey,
+      String accountIdFrom,
+      String accountIdTo,
+      long amount,
+      String currency) {
+    if (idempotencyKey == null) {
+      performTransfer(accountIdFrom, accountIdTo, amount);
+      return;
+    }
+    idempotencyCache.execute(
+        idempotencyKey,
+        accountIdFrom,
+        accountIdTo,
+        amount,
+        currency,
+        () -> performTransfer(accountIdFrom, accountIdTo, amount));
+  }
+
+  /**
+   * Same as {@link #performTransfer(String, String, String, long, String)} without blocking the
+   * caller.
+   * Sequenced and netted transfers without a key are queued and only occupy a thread once
+   * applied, the others run on the {@link AsyncTransferExecutor}.
+   */
+  public CompletableFuture<Void> performTransferAsync(
+      String idempotencyKey,
+      String accountIdFrom,
+      String accountIdTo,
+      long amount,
+      String currency) {
+    if ((sequencer == null && netting == null) || idempotencyKey != null) {
+      return CompletableFuture.runAsync(
+          () -> performTransfer(idempotencyKey, accountIdFrom, accountIdTo, amount, currency),
+          asyncExecutor);
+    }
+    long started = System.nanoTime();
+    if (netting != null) {
+      // the netting thread has already recorded the transfer and waited for durability
+      return netting
+          .submit(accountIdFrom, accountIdTo, amount)
+          .thenAcceptAsync(this::dispatch, asyncExecutor)
+          .whenComplete((ignored, failure) -> metrics.getTransfer().recordSince(started));
+    }
+    // the shard has already recorded the transfer; durability waits and dispatch stay off it
+    return sequencer
+        .submit(accountIdFrom, accountIdTo, amount)
+        .thenAcceptAsync(
+            notification -> {
+              awaitDurable();
+              dispatch(notification);
+            },
+            asyncExecutor)
+        .whenComplete((ignored, failure) -> metrics.getTransfer().recordSince(started));
+  }
+
+  private void executeTransfer(String accountIdFrom, String accountIdTo, long amount) {
+    if (sequencer != null) {
+      TransferNotification notification = sequencer.execute(accountIdFrom, accountIdTo, amount);
+      awaitDurable();
+      dispatch(notification);
+      return;
+    }
+    if (netting != null) {
+      dispatch(netting.execute(accountIdFrom, accountIdTo, amount));
+      return;
+    }
+
+    // the ids are resolved once, locks, accounts and the ledger are reached through the handles
+    int from = accountsRepository.handleOf(accountIdFrom);
+    int to = accountsRepository.handleOf(accountIdTo);
+    if (accountsRepository.isLockFree()) {
+      performLockFreeTransfer(accountIdFrom, from, accountIdTo, to, amount);
+      return;
+    }
+
+    // a credit to a hot account only takes the lock of the debited account
+    boolean hotCredit = hotAccounts != null && hotAccounts.isHot(accountIdTo);
+    String lockedIdTo = hotCredit ? accountIdFrom : accountIdTo;
+    int lockedTo = hotCredit ? from : to;
+    TransferNotification notification;
+    long waitStarted = System.nanoTime();
+    try {
+      lock(accountIdFrom, from, lockedIdTo, lockedTo);
+    } catch (AccountLockTimeoutException e) {
+      metrics.recordRejection(RejectionReason.LOCK_TIMEOUT);
+      throw e;
+    } finally {
+      metrics.getLockWait().recordSince(waitStarted);
+    }
+    long locked = System.nanoTime();
+    try {
+      notification =
+          hotCredit
+              ? applyHotCredit(accountIdFrom, from, accountIdTo, to, amount)
+              : applyTransfer(accountIdFrom, from, accountIdTo, to, amount);
+      // appended under the locks, so each account's history follows the order of its balances
+      record(from, to, notification);
+    } finally {
+      accountLocks.unlock(from, lockedTo);
+      metrics.getLockHold().recordSince(locked);
+    }
+    awaitDurable();
+    // delivery happens after the locks are released, the transfer itself never waits for it
+    dispatch(notification);
+  }
+
+  public List<TransferResult> performBatchTransfer(List<MoneyTransfer> transfers, BatchMode mode) {
+    List<TransferResult> results = new ArrayList<>(transfers.size());
+    performBatchTransfer(transfers, mode, results::add);
+    return results;
+  }
+
+  // results are handed to the sink in order, and never while account locks are held
+  public void performBatchTransfer(
+      List<MoneyTransfer> transfers, BatchMode mode, Consumer<TransferResult> sink) {
+    if (transfers.size() > batchProperties.getMaxSize()) {
+      throw new TransferException(
+          "Batch exceeds the maximum of " + batchProperties.getMaxSize() + " transfers");
+    }
+    // batches are not deduplicated, so a retried batch would apply a keyed transfer again
+    for (int i = 0; i < transfers.size(); i++) {
+      if (transfers.get(i).getIdempotencyKey() != null) {
+        throw new TransferException(
+            "Transfer " + i + " of the batch has an idempotency key, which batches do not support");
+      }
+    }
+
+    if (mode == BatchMode.ALL_OR_NOTHING) {
+      if (!usesAccountLocks()) {
+        throw new TransferException(
+            "All-or-nothing batches are only supported with account locking");
+      }
+      applyBatchChunk(transfers, 0, true, sink);
+      return;
+    }
+
+    int chunkSize = batchProperties.getChunkSize();
+    for (int start = 0; start < transfers.size(); start += chunkSize) {
+      List<MoneyTransfer> chunk =
+          transfers.subList(start, Math.min(start + chunkSize, transfers.size()));
+      if (usesAccountLocks()) {
+        applyBatchChunk(chunk, start, false, sink);
+      } else {
+        applyBatchChunkPerTransfer(chunk, start, sink);
+      }
+    }
+  }
+
+  private void applyBatchChunk(
+      List<MoneyTransfer> chunk, int offset, boolean atomic, Consumer<TransferResult> sink) {
+    // handles of the source and target of transfer i at 2i and 2i + 1
+    int[] handles = new int[chunk.size() * 2];
+    for (int i = 0; i < chunk.size(); i++) {
+      handles[2 * i] = accountsRepository.handleOf(chunk.get(i).getAccountIdFrom());
+      handles[2 * i + 1] = accountsRepository.handleOf(chunk.get(i).getAccountIdTo());
+    }
+
+    List<TransferResult> results = new ArrayList<>(chunk.size());
+    List<TransferNotification> notifications = new ArrayList<>(chunk.size());
+    List<Integer> applied = new ArrayList<>(chunk.size());
+    int[] stripes;
+    try {
+      stripes = accountLocks.lockAll(handles);
+    } catch (AccountLockTimeoutException e) {
+      metrics.recordRejection(RejectionReason.LOCK_TIMEOUT);
+      throw e;
+    }
+    try {
+      for (int i = 0; i < chunk.size(); i++) {
+        MoneyTransfer transfer = chunk.get(i);
+        try {
+          requireCurrency(transfer.getAccountIdFrom(), transfer.getCurrency());
+          notifications.add(
+              applyTransfer(
+                  transfer.getAccountIdFrom(),
+                  handles[2 * i],
+                  transfer.getAccountIdTo(),
+                  handles[2 * i + 1],
+                  transfer.getAmountMinorUnits()));
+          applied.add(i);
+          results.add(TransferResult.applied(offset + i));
+        } catch (TransferException | InvalidAmountException e) {
+          results.add(TransferResult.rejected(offset + i, e.getMessage()));
+          if (atomic) {
+            rollBack(chunk, notifications, offset, i, results);
+            notifications.clear();
+            break;
+          }
+        }
+      }
+      // rolled back transfers were dropped from the notifications and never reach the ledger
+      for (int n = 0; n < notifications.size(); n++) {
+        int i = applied.get(n);
+        record(handles[2 * i], handles[2 * i + 1], notifications.get(n));
+      }
+    } finally {
+      accountLocks.unlockAll(stripes);
+    }
+
+    awaitDurable();
+    notifications.forEach(this::dispatch);
+    results.forEach(sink);
+  }
+
+  /**
+   * Runs every due schedule once, all under one acquisition of their account locks, and returns
+   * the next states of those that are not finished. A schedule only runs while it is still the
+   * current state in schedules, which this updates; a cancellation takes the same locks, so it
+   * never overlaps with a run. The repository logs each run with the balances it changed.
+   */
+  public List<ScheduledTransfer> performScheduledTransfers(
+      List<ScheduledTransfer> due, ConcurrentMap<Long, ScheduledTransfer> schedules) {
+    if (!usesAccountLocks()) {
+      throw new TransferException("Scheduled transfers are only supported with account locking");
+    }
+    // handles of the source and target of schedule i at 2i and 2i + 1
+    int[] handles = new int[due.size() * 2];
+    for (int i = 0; i < due.size(); i++) {
+      handles[2 * i] = accountsRepository.handleOf(due.get(i).getAccountIdFrom());
+      handles[2 * i + 1] = accountsRepository.handleOf(due.get(i).getAccountIdTo());
+    }
+
+    List<ScheduledTransfer> pending = new ArrayList<>(due.size());
+    List<TransferNotification> notifications = new ArrayList<>(due.size());
+    int[] stripes;
+    try {
+      stripes = accountLocks.lockAll(handles);
+    } catch (AccountLockTimeoutException e) {
+      metrics.recordRejection(RejectionReason.LOCK_TIMEOUT);
+      throw e;
+    }
+    try {
+      for (int i = 0; i < due.size(); i++) {
+        ScheduledTransfer schedule = due.get(i);
+        if (schedules.get(schedule.getId()) != schedule) {
+          continue;
+        }
+        ScheduledTransfer next = schedule.afterRun(null);
+        try {
+          TransferNotification notification =
+              applyTransfer(
+                  schedule.getAccountIdFrom(),
+                  handles[2 * i],
+                  schedule.getAccountIdTo(),
+                  handles[2 * i + 1],
+                  schedule.getAmountMinorUnits(),
+                  next);
+          record(handles[2 * i], handles[2 * i + 1], notification);
+          notifications.add(notification);
+        } catch (TransferException | InvalidAmountException e) {
+          // a run that cannot be applied is skipped, not retried, like a bounced standing order
+          next = schedule.afterRun(e.getMessage());
+          accountsRepository.saveSchedule(next);
+        }
+        if (next.isFinished()) {
+          schedules.remove(next.getId());
+        } else {
+          schedules.put(next.getId(), next);
+          pending.add(next);
         }
+      }
+    } finally {
+      accountLocks.unlockAll(stripes);
+    }
+
+    awaitDurable();
+    notifications.forEach(this::dispatch);
+    return pending;
+  }
+
+  // reverts transfers [0, failedIndex), whose notifications are in applied, in reverse order; the
+  // caller still holds all their locks
+  private void rollBack(
+      List<MoneyTransfer> chunk,
+      List<TransferNotification> applied,
+      int offset,
+      int failedIndex,
+      List<TransferResult> results) {
+    for (int i = failedIndex - 1; i >= 0; i--) {
+      TransferNotification notification = applied.get(i);
+      Account accountFrom = accountsRepository.getAccount(notification.getAccountIdFrom());
+      Account accountTo = accountsRepository.getAccount(notification.getAccountIdTo());
+      // the credit is taken back as it was converted, whatever the rates are now
+      accountsRepository.transfer(
+          accountTo,
+          accountTo.getBalanceMinorUnits() - notification.getCreditedAmount(),
+          accountFrom,
+          accountFrom.getBalanceMinorUnits() + notification.getAmount());
+      countMove(
+          accountsRepository.handleOf(notification.getAccountIdFrom()),
+          accountFrom,
+          accountsRepository.handleOf(notification.getAccountIdTo()),
+          accountTo,
+          -notification.getAmount(),
+          -notification.getCreditedAmount());
+      results.set(i, new TransferResult(offset + i, TransferStatus.ROLLED_BACK, null));
+    }
+    for (int i = failedIndex + 1; i < chunk.size(); i++) {
+      results.add(new TransferResult(offset + i, TransferStatus.SKIPPED, null));
+    }
+  }
 
-        accountsRepository.transfer(
-            accountFrom,
-            accountFrom.getBalance().subtract(amount),
-            accountTo,
-            accountTo.getBalance().add(amount));
+  private Account copyOf(Account account) {
+    if (account == null) {
+      return null;
+    }
+    long balance =
+        hotAccounts == null ? account.getBalanceMinorUnits() : hotAccounts.balanceOf(account);
+    return new Account(account.getAccountId(), balance, account.getCurrency());
+  }
 
-        notifyAboutTransfer(amount, accountFrom, accountTo);
+  public boolean usesAccountLocks() {
+    return sequencer == null && !accountsRepository.isLockFree();
+  }
+
+  private void applyBatchChunkPerTransfer(
+      List<MoneyTransfer> chunk, int offset, Consumer<TransferResult> sink) {
+    for (int i = 0; i < chunk.size(); i++) {
+      MoneyTransfer transfer = chunk.get(i);
+      try {
+        requireCurrency(transfer.getAccountIdFrom(), transfer.getCurrency());
+        performTransfer(
+            transfer.getAccountIdFrom(),
+            transfer.getAccountIdTo(),
+            transfer.getAmountMinorUnits());
+        sink.accept(TransferResult.applied(offset + i));
+      } catch (TransferException | InvalidAmountException e) {
+        sink.accept(TransferResult.rejected(offset + i, e.getMessage()));
       }
     }
   }
 
-  private void notifyAboutTransfer(BigDecimal amount, Account accountFrom, Account accountTo) {
-    notificationService.notifyAboutTransfer(
-        accountTo, String.format("Transfer from account %s, quantity: %s", accountFrom, amount));
-    notificationService.notifyAboutTransfer(
-        accountFrom, String.format("Transfer to account %s, quantity: %s", accountTo, amount));
+  private void lock(String accountIdA, int handleA, String accountIdB, int handleB) {
+    if (hotAccounts == null) {
+      accountLocks.lock(handleA, handleB);
+    } else if (!accountLocks.tryLock(handleA, handleB)) {
+      hotAccounts.recordContention(accountIdA, accountIdB);
+      accountLocks.lock(handleA, handleB);
+    }
+  }
+
+  // the caller must hold the locks of both accounts
+  private TransferNotification applyTransfer(
+      String accountIdFrom, int from, String accountIdTo, int to, long amount) {
+    return applyTransfer(accountIdFrom, from, accountIdTo, to, amount, null);
+  }
+
+  // schedule is the state a scheduled transfer is in after this run, null for other transfers
+  private TransferNotification applyTransfer(
+      String accountIdFrom,
+      int from,
+      String accountIdTo,
+      int to,
+      long amount,
+      ScheduledTransfer schedule) {
+    Account accountFrom = accountsRepository.getAccount(from);
+    Account accountTo = accountsRepository.getAccount(to);
+    coverDebit(accountFrom, amount);
+    validateTransfer(accountFrom, accountIdFrom, accountTo, accountIdTo, amount);
+    long credit = credit(accountFrom, accountTo, amount);
+
+    long newFromBalance = accountFrom.getBalanceMinorUnits() - amount;
+    long newToBalance;
+    try {
+      newToBalance = Math.addExact(accountTo.getBalanceMinorUnits(), credit);
+    } catch (ArithmeticException e) {
+      metrics.recordRejection(RejectionReason.BALANCE_OVERFLOW);
+      throw new InvalidAmountException("Balance of account " + accountIdTo + " would overflow");
+    }
+    long writeStarted = System.nanoTime();
+    if (schedule == null) {
+      accountsRepository.transfer(accountFrom, newFromBalance, accountTo, newToBalance);
+    } else {
+      accountsRepository.transfer(accountFrom, newFromBalance, accountTo, newToBalance, schedule);
+    }
+    metrics.getRepositoryWrite().recordSince(writeStarted);
+    countMove(from, accountFrom, to, accountTo, amount, credit);
+
+    return new TransferNotification(
+        accountIdFrom, newFromBalance, accountIdTo, newToBalance, amount, credit);
+  }
+
+  // the caller must hold the lock of the debited account; the hot account is credited without
+  private TransferNotification applyHotCredit(
+      String accountIdFrom, int from, String accountIdTo, int to, long amount) {
+    Account accountFrom = accountsRepository.getAccount(from);
+    Account accountTo = accountsRepository.getAccount(to);
+    coverDebit(accountFrom, amount);
+    validateTransfer(accountFrom, accountIdFrom, accountTo, accountIdTo, amount);
+    long credit = credit(accountFrom, accountTo, amount);
+
+    // concurrent credits are not seen here, only a balance close to the long range can overflow
+    try {
+      Math.addExact(hotAccounts.balanceOf(accountTo), credit);
+    } catch (ArithmeticException e) {
+      metrics.recordRejection(RejectionReason.BALANCE_OVERFLOW);
+      throw new InvalidAmountException("Balance of account " + accountIdTo + " would overflow");
+    }
+    long newFromBalance = accountFrom.getBalanceMinorUnits() - amount;
+    long writeStarted = System.nanoTime();
+    accountsRepository.setBalance(accountFrom, newFromBalance);
+    long newToBalance = hotAccounts.credit(accountTo, credit);
+    metrics.getRepositoryWrite().recordSince(writeStarted);
+    // only the debited stripe is locked, the reconciler takes all of them with hot accounts
+    countMove(from, accountFrom, from, accountTo, amount, credit);
+
+    return new TransferNotification(
+        accountIdFrom, newFromBalance, accountIdTo, newToBalance, amount, credit);
+  }
+
+  // credits parked in the slots of a hot account are folded in before they are needed
+  private void coverDebit(Account accountFrom, long amount) {
+    if (hotAccounts != null && accountFrom != null) {
+      hotAccounts.cover(accountFrom, amount);
+    }
+  }
+
+  private void performLockFreeTransfer(
+      String accountIdFrom, int from, String accountIdTo, int to, long amount) {
+    // validation runs against a snapshot, the repository re-checks the balance atomically
+    Account accountFrom = accountsRepository.getAccount(from);
+    Account accountTo = accountsRepository.getAccount(to);
+    validateTransfer(accountFrom, accountIdFrom, accountTo, accountIdTo, amount);
+
+    long writeStarted = System.nanoTime();
+    TransferReceipt receipt = accountsRepository.transferAtomically(from, to, amount);
+    metrics.getRepositoryWrite().recordSince(writeStarted);
+    if (receipt == null) {
+      metrics.recordRejection(RejectionReason.INSUFFICIENT_BALANCE);
+      throw TransferRejectedException.of(
+          TransferError.INSUFFICIENT_BALANCE.mask(), accountIdFrom, accountIdTo);
+    }
+
+    TransferNotification notification =
+        new TransferNotification(
+            accountIdFrom, receipt.getFromBalance(), accountIdTo, receipt.getToBalance(), amount);
+    record(from, to, notification);
+    dispatch(notification);
+  }
+
+  private void validateTransfer(
+      Account accountFrom,
+      String accountIdFrom,
+      Account accountTo,
+      String accountIdTo,
+      long amount) {
+    long started = System.nanoTime();
+    int errors =
+        accountsValidator.check(accountFrom, accountIdFrom, accountTo, accountIdTo, amount);
+    metrics.getValidation().recordSince(started);
+    if (errors != 0) {
+      recordRejections(errors);
+      // the message is only rendered if someone asks for it, usually the HTTP error handler
+      throw TransferRejectedException.of(errors, accountIdFrom, accountIdTo);
+    }
+  }
+
+  // converts against whichever rates are current, without waiting for a refresh in progress
+  private long credit(Account accountFrom, Account accountTo, long amount) {
+    String from = accountFrom.getCurrency();
+    String to = accountTo.getCurrency();
+    if (from.equals(to)) {
+      return amount;
+    }
+    long credit = fxRates.getRates().convert(from, to, amount);
+    if (credit == FxRateTable.NO_RATE) {
+      metrics.recordRejection(RejectionReason.NO_EXCHANGE_RATE);
+      throw new TransferException("No exchange rate from " + from + " to " + to);
+    }
+    return credit;
+  }
+
+  // the caller still holds the locks of both accounts
+  private void countMove(
+      int from, Account accountFrom, int to, Account accountTo, long amount, long credit) {
+    moneySupply.move(
+        accountLocks.stripeOf(from),
+        accountFrom.getCurrency(),
+        amount,
+        accountLocks.stripeOf(to),
+        accountTo.getCurrency(),
+        credit);
+  }
+
+  private void recordRejections(int errors) {
+    for (int remaining = errors; remaining != 0; remaining &= remaining - 1) {
+      metrics.recordRejection(TransferError.lowest(remaining).getRejectionReason());
+    }
+  }
+
+  private void record(TransferNotification notification) {
+    long started = System.nanoTime();
+    transferLedger.append(notification);
+    metrics.getLedgerAppend().recordSince(started);
+  }
+
+  // netting writes each account once per window, so moves are counted from the notification
+  private void recordNetted(TransferNotification notification) {
+    int from = accountsRepository.handleOf(notification.getAccountIdFrom());
+    int to = accountsRepository.handleOf(notification.getAccountIdTo());
+    countMove(
+        from,
+        accountsRepository.getAccount(from),
+        to,
+        accountsRepository.getAccount(to),
+        notification.getAmount(),
+        notification.getCreditedAmount());
+    record(notification);
+  }
+
+  private void record(int from, int to, TransferNotification notification) {
+    long started = System.nanoTime();
+    transferLedger.append(from, to, notification);
+    metrics.getLedgerAppend().recordSince(started);
+  }
+
+  private void awaitDurable() {
+    long started = System.nanoTime();
+    accountsRepository.awaitDurable();
+    metrics.getDurableWait().recordSince(started);
+  }
+
+  private void dispatch(TransferNotification notification) {
+    long started = System.nanoTime();
+    notificationDispatcher.dispatch(notification);
+    metrics.getNotificationDispatch().recordSince(started);
   }
 }
@@ -1,59 +1,65 @@
 package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.Account;
-import com.db.awmd.challenge.dto.TransferValidationPayload;
+import com.db.awmd.challenge.service.validation.StandardTransferRule;
+import com.db.awmd.challenge.service.validation.TransferError;
+import com.db.awmd.challenge.service.validation.TransferRule;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.util.ObjectUtils;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 @Component
 public class AccountsValidator {
-  private static final String NO_ACCOUNT_WITH_ID_FOUND = "No account with id %s found";
 
-  // create an abstraction upon validation, e.g. ErrorsHolder which could be used across app for
-  // business validation,
-  // having valid toString method etc.
+  private final TransferRule[] rules;
 
-  // move validations to separate classes for the sake of better testing(assuming more complex logic
-  // in real life as well)
-
-  public Collection<String> validateTransfer(TransferValidationPayload validationPayload) {
-    List<String> errors = new ArrayList<>();
-
-    Account accountFrom = validationPayload.getAccountFrom();
-    String accountFromId = validationPayload.getAccountFromId();
-    Account accountTo = validationPayload.getAccountTo();
-    String accountToId = validationPayload.getAccountToId();
-    BigDecimal amount = validationPayload.getAmount();
-
-    if (accountFrom == null) {
-      errors.add(String.format(NO_ACCOUNT_WITH_ID_FOUND, accountFromId));
-    }
-    if (accountTo == null) {
-      errors.add(String.format(NO_ACCOUNT_WITH_ID_FOUND, accountToId));
-    }
-
-    if (amount.compareTo(BigDecimal.ZERO) < 0) {
-      errors.add("Amount to transfer must be positive");
-    }
+  public AccountsValidator() {
+    this(Collections.emptyList());
+  }
 
-    if (ObjectUtils.nullSafeEquals(accountTo, accountFrom)) {
-      errors.add("Self transfer is not allowed");
+  // additional rules are merged into the standard ones by their order
+  @Autowired(required = false)
+  public AccountsValidator(List<TransferRule> additionalRules) {
+    List<TransferRule> chain = new ArrayList<>(Arrays.asList(StandardTransferRule.values()));
+    if (additionalRules != null) {
+      chain.addAll(additionalRules);
     }
+    chain.sort(Comparator.comparingInt(TransferRule::order));
+    this.rules = chain.toArray(new TransferRule[0]);
+  }
 
-    if (accountFrom != null && !isWithdrawalPossible(accountFrom, amount)) {
-      errors.add("Insufficient balance to perform transfer");
+  // a mask of TransferError bits from the first failing rule, 0 without allocating when valid
+  public int check(
+      Account accountFrom,
+      String accountFromId,
+      Account accountTo,
+      String accountToId,
+      long amount) {
+    for (TransferRule rule : rules) {
+      int errors = rule.check(accountFrom, accountFromId, accountTo, accountToId, amount);
+      if (errors != 0) {
+        return errors;
+      }
     }
-
-    return errors;
+    return 0;
   }
 
-  private boolean isWithdrawalPossible(Account account, BigDecimal amountToWithdraw) {
-    BigDecimal currentBalance = account.getBalance();
-    return currentBalance.compareTo(amountToWithdraw) > -1;
+  // the rendered messages of check, an empty list without allocating when the transfer is valid
+  public Collection<String> validateTransfer(
+      Account accountFrom,
+      String accountFromId,
+      Account accountTo,
+      String accountToId,
+      long amount) {
+    return TransferError.render(
+        check(accountFrom, accountFromId, accountTo, accountToId, amount),
+        accountFromId,
+        accountToId);
   }
 }
@@ -0,0 +1,63 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.AsyncTransferProperties;
+import com.db.awmd.challenge.exception.TransferOverloadedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small fixed pool that completes asynchronous transfers, so request threads are released as soon
+ * as a transfer has been accepted. Its queue bounds the number of transfers in flight.
+ */
+@Slf4j
+@Component
+public class AsyncTransferExecutor implements Executor {
+  private static final long SHUTDOWN_TIMEOUT_MS = 5_000;
+
+  private final ThreadPoolExecutor executor;
+
+  @Autowired
+  public AsyncTransferExecutor(AsyncTransferProperties properties) {
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor =
+        new ThreadPoolExecutor(
+            properties.getThreads(),
+            properties.getThreads(),
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "async-transfer-" + threadCount.getAndIncrement());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    try {
+      executor.execute(command);
+    } catch (RejectedExecutionException e) {
+      throw new TransferOverloadedException("Too many transfers in flight, retry later");
+    }
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    executor.shutdown();
+    if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+      log.warn("{} asynchronous transfers did not finish in time", executor.getQueue().size());
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.AccountLockProperties;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Account locks striped by account handle, see AccountIdDictionary. Handles are dense, so
+ * consecutive accounts fall on consecutive stripes without hashing. Transfers take the stripes
+ * exclusively; balance reads validate optimistic stamps of the same stripes instead, so they
+ * neither block nor get blocked by transfers unless they keep overlapping with one.
+ */
+@Component
+public class StripedAccountLocks {
+  // optimistic attempts before a read falls back to read locks
+  private static final int OPTIMISTIC_READ_ATTEMPTS = 3;
+
+  private final StampedLock[] stripes;
+
+  private final int mask;
+
+  private final long timeoutNanos;
+
+  @Autowired
+  public StripedAccountLocks(AccountLockProperties properties) {
+    int size = 1;
+    while (size < properties.getStripes()) {
+      size <<= 1;
+    }
+    this.stripes = new StampedLock[size];
+    for (int i = 0; i < size; i++) {
+      stripes[i] = new StampedLock();
+    }
+    this.mask = size - 1;
+    this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.getTimeoutMs());
+  }
+
+  // NO_HANDLE maps to a stripe like any other handle
+  public int stripeOf(int handle) {
+    return handle & mask;
+  }
+
+  // the stripe of a handle h is h % stripeCount
+  public int stripeCount() {
+    return stripes.length;
+  }
+
+  // stripes are always taken in ascending index order, which rules out lock-order deadlocks
+  public void lock(int handleA, int handleB) {
+    int a = stripeOf(handleA);
+    int b = stripeOf(handleB);
+    int low = Math.min(a, b);
+    int high = Math.max(a, b);
+
+    acquire(stripes[low].asWriteLock());
+    if (high != low) {
+      try {
+        acquire(stripes[high].asWriteLock());
+      } catch (RuntimeException e) {
+        stripes[low].asWriteLock().unlock();
+        throw e;
+      }
+    }
+  }
+
+  // takes both stripes only if neither is held, without waiting and regardless of the timeout
+  public boolean tryLock(int handleA, int handleB) {
+    int a = stripeOf(handleA);
+    int b = stripeOf(handleB);
+    Lock low = stripes[Math.min(a, b)].asWriteLock();
+    if (!low.tryLock()) {
+      return false;
+    }
+    if (a != b && !stripes[Math.max(a, b)].asWriteLock().tryLock()) {
+      low.unlock();
+      return false;
+    }
+    return true;
+  }
+
+  public void unlock(int handleA, int handleB) {
+    int a = stripeOf(handleA);
+    int b = stripeOf(handleB);
+    if (a != b) {
+      stripes[Math.max(a, b)].asWriteLock().unlock();
+    }
+    stripes[Math.min(a, b)].asWriteLock().unlock();
+  }
+
+  // returns the locked stripes, to be handed back to unlockAll
+  public int[] lockAll(int... handles) {
+    int[] indices = stripesOf(handles);
+    lockStripes(indices, false);
+    return indices;
+  }
+
+  public void unlockAll(int[] lockedStripes) {
+    unlockStripes(lockedStripes, lockedStripes.length, false);
+  }
+
+  /**
+   * Runs the read so that it observes no transfer touching these accounts half-applied. The read
+   * runs optimistically, and is repeated if a transfer on one of the stripes overlapped with it, so
+   * it must be free of side effects.
+   */
+  public <T> T read(int[] handles, Supplier<T> read) {
+    return readStripes(stripesOf(handles), read);
+  }
+
+  // like read, for all accounts of the stripes [from, to)
+  public <T> T readStripes(int from, int to, Supplier<T> read) {
+    return readStripes(IntStream.range(from, to).toArray(), read);
+  }
+
+  /**
+   * Runs the read while no transfer holds any stripe, so it sees every account as of one instant.
+   * Transfers wait until it is done; other reads proceed.
+   */
+  public <T> T readAll(Supplier<T> read) {
+    int[] indices = IntStream.range(0, stripes.length).toArray();
+    lockStripes(indices, true);
+    try {
+      return read.get();
+    } finally {
+      unlockStripes(indices, indices.length, true);
+    }
+  }
+
+  private <T> T readStripes(int[] indices, Supplier<T> read) {
+    long[] stamps = new long[indices.length];
+    for (int attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+      if (tryOptimisticRead(indices, stamps)) {
+        T result = read.get();
+        if (validate(indices, stamps)) {
+          return result;
+        }
+      }
+      Thread.yield();
+    }
+
+    // read locks only exclude transfers, concurrent readers still proceed in parallel
+    lockStripes(indices, true);
+    try {
+      return read.get();
+    } finally {
+      unlockStripes(indices, indices.length, true);
+    }
+  }
+
+  private int[] stripesOf(int[] handles) {
+    return Arrays.stream(handles).map(this::stripeOf).sorted().distinct().toArray();
+  }
+
+  private boolean tryOptimisticRead(int[] indices, long[] stamps) {
+    for (int i = 0; i < indices.length; i++) {
+      stamps[i] = stripes[indices[i]].tryOptimisticRead();
+      if (stamps[i] == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean validate(int[] indices, long[] stamps) {
+    for (int i = 0; i < indices.length; i++) {
+      if (!stripes[indices[i]].validate(stamps[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void lockStripes(int[] indices, boolean shared) {
+    int locked = 0;
+    try {
+      for (; locked < indices.length; locked++) {
+        acquire(view(indices[locked], shared));
+      }
+    } catch (RuntimeException e) {
+      unlockStripes(indices, locked, shared);
+      throw e;
+    }
+  }
+
+  private void unlockStripes(int[] indices, int count, boolean shared) {
+    for (int i = count - 1; i >= 0; i--) {
+      view(indices[i], shared).unlock();
+    }
+  }
+
+  private Lock view(int stripe, boolean shared) {
+    return shared ? stripes[stripe].asReadLock() : stripes[stripe].asWriteLock();
+  }
+
+  private void acquire(Lock lock) {
+    if (timeoutNanos <= 0) {
+      lock.lock();
+      return;
+    }
+    try {
+      if (!lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS)) {
+        throw new AccountLockTimeoutException("Timed out waiting for account locks");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AccountLockTimeoutException("Interrupted while waiting for account locks");
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.NotificationDispatchProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.dto.NotificationDispatchMetrics;
+import com.db.awmd.challenge.dto.TransferNotification;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Component
+public class TransferNotificationDispatcher {
+  private static final long POLL_TIMEOUT_MS = 100;
+
+  private final NotificationService notificationService;
+
+  private final NotificationDispatchProperties properties;
+
+  private final TransferMetrics metrics;
+
+  private final BlockingQueue<TransferNotification> queue;
+
+  private final List<Thread> workers = new ArrayList<>();
+
+  private volatile boolean running;
+
+  private final LongAdder enqueued = new LongAdder();
+  private final LongAdder delivered = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder callerRuns = new LongAdder();
+  private final LongAdder batches = new LongAdder();
+
+  @Autowired
+  public TransferNotificationDispatcher(
+      NotificationService notificationService,
+      NotificationDispatchProperties properties,
+      TransferMetrics metrics) {
+    this(
+        notificationService,
+        properties,
+        metrics,
+        new ArrayBlockingQueue<>(properties.getQueueCapacity()));
+  }
+
+  public TransferNotificationDispatcher(
+      NotificationService notificationService,
+      NotificationDispatchProperties properties,
+      TransferMetrics metrics,
+      BlockingQueue<TransferNotification> queue) {
+    this.notificationService = notificationService;
+    this.properties = properties;
+    this.metrics = metrics;
+    this.queue = queue;
+  }
+
+  @PostConstruct
+  public void start() {
+    running = true;
+    for (int i = 0; i < properties.getWorkers(); i++) {
+      Thread worker = new Thread(this::drainLoop, "transfer-notifier-" + i);
+      worker.setDaemon(true);
+      worker.start();
+      workers.add(worker);
+    }
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    for (Thread worker : workers) {
+      worker.join(properties.getShutdownTimeoutMs());
+    }
+    workers.clear();
+
+    // whatever the workers did not manage to flush in time is delivered by the closing thread
+    deliverRemaining();
+  }
+
+  /** Hands the notification over to the workers; never waits for queue space. */
+  public void dispatch(TransferNotification notification) {
+    if (!running) {
+      deliver(notification);
+      return;
+    }
+    if (queue.offer(notification)) {
+      enqueued();
+      return;
+    }
+
+    switch (properties.getOverflowPolicy()) {
+      case DISCARD_OLDEST:
+        while (!queue.offer(notification)) {
+          if (queue.poll() != null) {
+            dropped.increment();
+          }
+        }
+        enqueued();
+        break;
+      case CALLER_RUNS:
+        callerRuns.increment();
+        deliver(notification);
+        break;
+      case DISCARD_NEWEST:
+      default:
+        dropped.increment();
+        log.debug("Notification queue is full, dropping {}", notification);
+    }
+  }
+
+  public NotificationDispatchMetrics getMetrics() {
+    return NotificationDispatchMetrics.builder()
+        .enqueued(enqueued.sum())
+        .delivered(delivered.sum())
+        .failed(failed.sum())
+        .dropped(dropped.sum())
+        .callerRuns(callerRuns.sum())
+        .batches(batches.sum())
+        .queueDepth(queue.size())
+        .remainingCapacity(queue.remainingCapacity())
+        .build();
+  }
+
+  private void enqueued() {
+    enqueued.increment();
+    // stop may have drained the queue for the last time between the check of running and the
+    // offer; either this sees it stopped, or its drain comes after the offer
+    if (!running) {
+      deliverRemaining();
+    }
+  }
+
+  private void deliverRemaining() {
+    List<TransferNotification> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    remaining.forEach(this::deliver);
+  }
+
+  private void drainLoop() {
+    List<TransferNotification> batch = new ArrayList<>(properties.getBatchSize());
+    while (running || !queue.isEmpty()) {
+      try {
+        TransferNotification first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, properties.getBatchSize() - 1);
+        batches.increment();
+        batch.forEach(this::deliver);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  // views and message text are only built here, off the transfer path
+  private void deliver(TransferNotification notification) {
+    Account accountFrom =
+        new Account(notification.getAccountIdFrom(), notification.getFromBalance());
+    Account accountTo = new Account(notification.getAccountIdTo(), notification.getToBalance());
+    // each owner is told the amount in the currency of their own account
+    BigDecimal debited = Money.toDecimal(notification.getAmount());
+    BigDecimal credited = Money.toDecimal(notification.getCreditedAmount());
+
+    send(
+        accountTo, String.format("Transfer from account %s, quantity: %s", accountFrom, credited));
+    send(accountFrom, String.format("Transfer to account %s, quantity: %s", accountTo, debited));
+    metrics.getNotificationDelivery().recordSince(notification.getAppliedNanos());
+  }
+
+  private void send(Account account, String transferDescription) {
+    try {
+      notificationService.notifyAboutTransfer(account, transferDescription);
+      delivered.increment();
+    } catch (RuntimeException e) {
+      failed.increment();
+      log.warn("Failed to notify owner of {}", account.getAccountId(), e);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.db.awmd.challenge.service.admission;
+
+import com.db.awmd.challenge.config.AdmissionProperties;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the transfers in progress and adapts the limit to their latency. Once per window the
+ * average latency of the window is compared with its long-term average: while it stays within
+ * the tolerance the limit grows by its square root, and as queues build up and latency rises it
+ * shrinks in proportion, by at most half. Lock timeouts and full queues cut it multiplicatively,
+ * at most once per window. Admission is one compare-and-set on the in-flight count; only the
+ * thread that closes a window does the arithmetic.
+ */
+class ConcurrencyLimit {
+  // weight of a new window in the long-term average latency
+  private static final double LONG_TERM_WEIGHT = 0.05;
+
+  // weight of a newly computed limit against the current one
+  private static final double SMOOTHING = 0.2;
+
+  // windows with fewer completions keep collecting
+  private static final int MIN_SAMPLES = 10;
+
+  private final int minLimit;
+
+  private final int maxLimit;
+
+  private final long windowNanos;
+
+  private final double tolerance;
+
+  private final double backoffRatio;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final LongAdder latencySum = new LongAdder();
+
+  private final LongAdder samples = new LongAdder();
+
+  private final AtomicBoolean adapting = new AtomicBoolean();
+
+  // adapted by one thread at a time, cut by any; a lost update only delays the next change
+  private volatile double limit;
+
+  // the highest in-flight count seen in the window, racy but only used as a hint
+  private volatile int peakInFlight;
+
+  // written by the adapting thread only
+  private double longTermLatency;
+
+  private volatile long windowEnd;
+
+  private volatile long lastBackoff;
+
+  ConcurrencyLimit(AdmissionProperties properties, long now) {
+    this.minLimit = Math.max(1, properties.getMinConcurrency());
+    this.maxLimit = Math.max(minLimit, properties.getMaxConcurrency());
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(properties.getWindowMs());
+    this.tolerance = properties.getLatencyTolerance();
+    this.backoffRatio = properties.getBackoffRatio();
+    this.limit = Math.min(maxLimit, Math.max(minLimit, properties.getInitialConcurrency()));
+    this.windowEnd = now + windowNanos;
+    this.lastBackoff = now - windowNanos;
+  }
+
+  boolean tryAcquire() {
+    while (true) {
+      int current = inFlight.get();
+      if (current >= (int) limit) {
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        if (current + 1 > peakInFlight) {
+          peakInFlight = current + 1;
+        }
+        return true;
+      }
+    }
+  }
+
+  /** Ends a transfer admitted at startNanos; overloaded if it timed out or was turned away. */
+  void release(long startNanos, boolean overloaded, long now) {
+    inFlight.decrementAndGet();
+    if (overloaded) {
+      backOff(now);
+    } else {
+      latencySum.add(now - startNanos);
+      samples.increment();
+    }
+    if (now - windowEnd >= 0 && adapting.compareAndSet(false, true)) {
+      try {
+        adapt(now);
+      } finally {
+        adapting.set(false);
+      }
+    }
+  }
+
+  int getLimit() {
+    return (int) limit;
+  }
+
+  int getInFlight() {
+    return inFlight.get();
+  }
+
+  private void backOff(long now) {
+    if (now - lastBackoff >= windowNanos) {
+      lastBackoff = now;
+      limit = Math.max(minLimit, limit * backoffRatio);
+    }
+  }
+
+  private void adapt(long now) {
+    long count = samples.sum();
+    if (count < MIN_SAMPLES) {
+      return;
+    }
+    double latency = (double) latencySum.sumThenReset() / samples.sumThenReset();
+    windowEnd = now + windowNanos;
+    int peak = peakInFlight;
+    peakInFlight = 0;
+    if (longTermLatency == 0) {
+      longTermLatency = latency;
+      return;
+    }
+    longTermLatency += (latency - longTermLatency) * LONG_TERM_WEIGHT;
+    // after a slow spell the average would hold the limit high for too long
+    if (longTermLatency > 2 * latency) {
+      longTermLatency = 2 * latency;
+    }
+    double current = limit;
+    // a limit that was never reached says nothing about how much more would fit
+    if (peak < current / 2) {
+      return;
+    }
+    double gradient = Math.max(0.5, Math.min(1.0, tolerance * longTermLatency / latency));
+    double target = current * gradient + Math.sqrt(current);
+    limit = Math.min(maxLimit, Math.max(minLimit, current * (1 - SMOOTHING) + target * SMOOTHING));
+  }
+}
@@ -0,0 +1,97 @@
+package com.db.awmd.challenge.service.admission;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets by key, as the generic cell rate algorithm: each bucket is a single long holding
+ * the time at which it will be full again, so taking a token is one compare-and-set and a bucket
+ * that has filled up is indistinguishable from a missing one. Once more than maxKeys buckets
+ * exist, the full ones are dropped; if that is not enough, new keys share one overflow bucket.
+ */
+class TokenBuckets {
+  // returned by tryAcquire when the token was taken
+  static final long ACQUIRED = 0;
+
+  private final long intervalNanos;
+
+  private final long burstNanos;
+
+  private final int maxKeys;
+
+  // when each bucket is full again, in nanoTime
+  private final ConcurrentMap<String, AtomicLong> fullAt = new ConcurrentHashMap<>();
+
+  private final AtomicLong overflow = new AtomicLong(Long.MIN_VALUE);
+
+  private final AtomicBoolean sweeping = new AtomicBoolean();
+
+  TokenBuckets(double ratePerSecond, int burst, int maxKeys) {
+    this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+    this.burstNanos = intervalNanos * Math.max(1, burst);
+    this.maxKeys = maxKeys;
+  }
+
+  /**
+   * Takes the given number of tokens if the bucket has at least one left. A batch may overdraw
+   * the bucket, which then stays empty until it has paid its debt. Returns {@link #ACQUIRED}, or
+   * the nanoseconds until the next token.
+   */
+  long tryAcquire(String key, int tokens, long now) {
+    AtomicLong bucket = bucketOf(key, now);
+    while (true) {
+      long current = bucket.get();
+      long start = Math.max(current, now);
+      long wait = start + intervalNanos - now - burstNanos;
+      if (wait > 0) {
+        return wait;
+      }
+      if (bucket.compareAndSet(current, start + intervalNanos * tokens)) {
+        return ACQUIRED;
+      }
+    }
+  }
+
+  /**
+   * Gives back tokens taken by {@link #tryAcquire} for a transfer that was turned away by a later
+   * check. A bucket swept away meanwhile was full already and stays so.
+   */
+  void refund(String key, int tokens) {
+    AtomicLong bucket = fullAt.get(key);
+    long refunded = intervalNanos * tokens;
+    (bucket == null ? overflow : bucket)
+        .updateAndGet(
+            current -> current - refunded < current ? current - refunded : Long.MIN_VALUE);
+  }
+
+  int size() {
+    return fullAt.size();
+  }
+
+  private AtomicLong bucketOf(String key, long now) {
+    AtomicLong bucket = fullAt.get(key);
+    if (bucket != null) {
+      return bucket;
+    }
+    if (fullAt.size() >= maxKeys) {
+      sweep(now);
+      if (fullAt.size() >= maxKeys) {
+        return overflow;
+      }
+    }
+    return fullAt.computeIfAbsent(key, ignored -> new AtomicLong(Long.MIN_VALUE));
+  }
+
+  // one thread sweeps at a time, the others go on with the overflow bucket meanwhile
+  private void sweep(long now) {
+    if (sweeping.compareAndSet(false, true)) {
+      try {
+        fullAt.values().removeIf(bucket -> bucket.get() <= now);
+      } finally {
+        sweeping.set(false);
+      }
+    }
+  }
+}
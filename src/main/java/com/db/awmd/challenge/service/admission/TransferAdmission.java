@@ -0,0 +1,185 @@
+package com.db.awmd.challenge.service.admission;
+
+import com.db.awmd.challenge.config.AdmissionProperties;
+import com.db.awmd.challenge.dto.AdmissionMetrics;
+import com.db.awmd.challenge.dto.MoneyTransfer;
+import com.db.awmd.challenge.exception.TransferThrottledException;
+import com.db.awmd.challenge.metrics.RejectionReason;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides whether a transfer may go ahead before it takes any lock or queue slot, so overload is
+ * turned away with a 429 instead of piling up on the locks of a few accounts. A transfer needs a
+ * token from its client's bucket, one from the bucket of each account it touches and a slot under
+ * the adaptive {@link ConcurrencyLimit}; each check is a compare-and-set or two. A transfer turned
+ * away by one check gets back the tokens the earlier ones took, so it costs nothing.
+ */
+@Component
+public class TransferAdmission {
+  // a single transfer costs its sender and its recipient one token each
+  private static final int[] ONE_TOKEN_EACH = {1, 1};
+
+  private final AdmissionProperties properties;
+
+  private final TransferMetrics metrics;
+
+  private final LongSupplier nanoClock;
+
+  // null when the corresponding check is switched off
+  private final TokenBuckets clients;
+
+  private final TokenBuckets accounts;
+
+  private final ConcurrencyLimit concurrency;
+
+  @Autowired
+  public TransferAdmission(AdmissionProperties properties, TransferMetrics metrics) {
+    this(properties, metrics, System::nanoTime);
+  }
+
+  public TransferAdmission(
+      AdmissionProperties properties, TransferMetrics metrics, LongSupplier nanoClock) {
+    this.properties = properties;
+    this.metrics = metrics;
+    this.nanoClock = nanoClock;
+    boolean enabled = properties.isEnabled();
+    this.clients =
+        enabled && properties.getClientRate() > 0
+            ? new TokenBuckets(
+                properties.getClientRate(),
+                properties.getClientBurst(),
+                properties.getMaxTrackedKeys())
+            : null;
+    this.accounts =
+        enabled && properties.getAccountRate() > 0
+            ? new TokenBuckets(
+                properties.getAccountRate(),
+                properties.getAccountBurst(),
+                properties.getMaxTrackedKeys())
+            : null;
+    this.concurrency =
+        enabled && properties.getMaxConcurrency() > 0
+            ? new ConcurrencyLimit(properties, nanoClock.getAsLong())
+            : null;
+  }
+
+  public String getClientHeader() {
+    return properties.getClientHeader();
+  }
+
+  /**
+   * Admits one transfer or throws {@link TransferThrottledException}. Returns the admission time,
+   * to be handed to {@link #release} once the transfer is over, whatever its outcome.
+   */
+  public long admit(String clientId, String accountIdFrom, String accountIdTo) {
+    if (!properties.isEnabled()) {
+      return 0;
+    }
+    return admit(clientId, 1, new String[] {accountIdFrom, accountIdTo}, ONE_TOKEN_EACH);
+  }
+
+  /**
+   * Admits a batch, which costs its client one token per transfer and each account one token per
+   * transfer it takes part in, and takes a single concurrency slot.
+   */
+  public long admitBatch(String clientId, List<MoneyTransfer> transfers) {
+    if (!properties.isEnabled()) {
+      return 0;
+    }
+    String[] accountIds = {};
+    int[] accountTokens = {};
+    if (accounts != null) {
+      Map<String, Integer> tokens = new LinkedHashMap<>();
+      for (MoneyTransfer transfer : transfers) {
+        tokens.merge(transfer.getAccountIdFrom(), 1, Integer::sum);
+        tokens.merge(transfer.getAccountIdTo(), 1, Integer::sum);
+      }
+      accountIds = tokens.keySet().toArray(accountIds);
+      accountTokens = tokens.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+    return admit(clientId, transfers.size(), accountIds, accountTokens);
+  }
+
+  /** Ends an admitted transfer; overloaded if it timed out on its locks or found a queue full. */
+  public void release(long admitted, boolean overloaded) {
+    if (concurrency != null) {
+      concurrency.release(admitted, overloaded, nanoClock.getAsLong());
+    }
+  }
+
+  public AdmissionMetrics getMetrics() {
+    return AdmissionMetrics.builder()
+        .enabled(properties.isEnabled())
+        .concurrencyLimit(concurrency == null ? 0 : concurrency.getLimit())
+        .inFlight(concurrency == null ? 0 : concurrency.getInFlight())
+        .trackedClients(clients == null ? 0 : clients.size())
+        .trackedAccounts(accounts == null ? 0 : accounts.size())
+        .build();
+  }
+
+  private long admit(String clientId, int transfers, String[] accountIds, int[] accountTokens) {
+    long now = nanoClock.getAsLong();
+    boolean clientCharged = false;
+    int accountsCharged = 0;
+    try {
+      if (clients != null) {
+        checkBucket(
+            clients, clientId, transfers, now, RejectionReason.CLIENT_RATE_LIMITED, "client");
+        clientCharged = true;
+      }
+      if (accounts != null) {
+        for (; accountsCharged < accountIds.length; accountsCharged++) {
+          checkBucket(
+              accounts,
+              accountIds[accountsCharged],
+              accountTokens[accountsCharged],
+              now,
+              RejectionReason.ACCOUNT_RATE_LIMITED,
+              "account");
+        }
+      }
+      acquireSlot();
+      return now;
+    } catch (TransferThrottledException e) {
+      if (clientCharged) {
+        clients.refund(clientId, transfers);
+      }
+      for (int i = 0; i < accountsCharged; i++) {
+        accounts.refund(accountIds[i], accountTokens[i]);
+      }
+      throw e;
+    }
+  }
+
+  private void checkBucket(
+      TokenBuckets buckets,
+      String key,
+      int tokens,
+      long now,
+      RejectionReason reason,
+      String kind) {
+    long waitNanos = buckets.tryAcquire(key, tokens, now);
+    if (waitNanos != TokenBuckets.ACQUIRED) {
+      metrics.recordRejection(reason);
+      long retryAfterMillis = TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1;
+      throw new TransferThrottledException(
+          "Too many transfers for " + kind + " " + key + ", retry in " + retryAfterMillis + " ms",
+          retryAfterMillis);
+    }
+  }
+
+  private void acquireSlot() {
+    if (concurrency != null && !concurrency.tryAcquire()) {
+      metrics.recordRejection(RejectionReason.CONCURRENCY_LIMITED);
+      throw new TransferThrottledException("Too many transfers in progress, please retry", 0);
+    }
+  }
+}
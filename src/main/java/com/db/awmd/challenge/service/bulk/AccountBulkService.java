@@ -0,0 +1,311 @@
+package com.db.awmd.challenge.service.bulk;
+
+import com.db.awmd.challenge.config.BulkAccountProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.dto.AccountImportIssue;
+import com.db.awmd.challenge.dto.AccountImportSummary;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.service.AccountsService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Imports and exports accounts one line at a time. An import holds one line and one batch of
+ * accounts in memory, and an export walks the repository while writing, so neither depends on
+ * the number of accounts. Each import batch shares one durability wait.
+ */
+@Service
+@Slf4j
+public class AccountBulkService {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final AccountsService accountsService;
+
+  private final ObjectMapper objectMapper;
+
+  private final ObjectReader accountReader;
+
+  private final BulkAccountProperties properties;
+
+  @Autowired
+  public AccountBulkService(
+      AccountsService accountsService,
+      ObjectMapper objectMapper,
+      BulkAccountProperties properties) {
+    this.accountsService = accountsService;
+    this.objectMapper = objectMapper;
+    this.accountReader = objectMapper.readerFor(Account.class);
+    this.properties = properties;
+  }
+
+  // rows that cannot be imported are reported in the summary, the others are imported regardless
+  public AccountImportSummary importAccounts(InputStream input, AccountFormat format)
+      throws IOException {
+    AccountImportSummary summary = new AccountImportSummary();
+    LineReader reader =
+        new LineReader(
+            new InputStreamReader(input, StandardCharsets.UTF_8),
+            properties.getMaxLineLength(),
+            format == AccountFormat.CSV);
+    StringBuilder line = new StringBuilder();
+    List<Account> batch = new ArrayList<>(properties.getBatchSize());
+    long[] batchLines = new long[properties.getBatchSize()];
+    while (reader.readLine(line)) {
+      long lineNumber = reader.firstLine;
+      if (reader.tooLong) {
+        reject(
+            summary,
+            lineNumber,
+            null,
+            "Line is longer than " + properties.getMaxLineLength() + " characters");
+        continue;
+      }
+      if (isBlank(line) || (format == AccountFormat.CSV && AccountFormat.isCsvHeader(line))) {
+        continue;
+      }
+
+      Account account;
+      try {
+        account =
+            format == AccountFormat.CSV
+                ? AccountFormat.parseCsv(line)
+                : accountReader.readValue(line.toString());
+      } catch (JsonProcessingException e) {
+        reject(summary, lineNumber, null, errorOf(e));
+        continue;
+      } catch (RuntimeException e) {
+        reject(summary, lineNumber, null, e.getMessage());
+        continue;
+      }
+      String violation = validate(account);
+      if (violation != null) {
+        reject(summary, lineNumber, account.getAccountId(), violation);
+        continue;
+      }
+
+      batchLines[batch.size()] = lineNumber;
+      batch.add(account);
+      if (batch.size() == properties.getBatchSize()) {
+        createBatch(batch, batchLines, summary);
+      }
+    }
+    createBatch(batch, batchLines, summary);
+    log.info(
+        "Imported {} accounts, {} duplicates and {} rejected rows",
+        summary.getImported(),
+        summary.getDuplicates(),
+        summary.getRejected());
+    return summary;
+  }
+
+  // balances are read account by account while transfers go on, like a fuzzy snapshot
+  public void exportAccounts(OutputStream output, AccountFormat format) throws IOException {
+    Writer writer =
+        new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+    if (format == AccountFormat.CSV) {
+      writer.write(AccountFormat.CSV_HEADER);
+      writer.write('\n');
+      accountsService.forEachAccount(
+          account -> {
+            try {
+              AccountFormat.writeCsv(account, writer);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+      writer.flush();
+      return;
+    }
+
+    try (SequenceWriter sequence =
+        objectMapper
+            .writer()
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .withRootValueSeparator("\n")
+            .writeValues(writer)) {
+      accountsService.forEachAccount(
+          account -> {
+            try {
+              sequence.write(account);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    }
+  }
+
+  private void createBatch(List<Account> batch, long[] batchLines, AccountImportSummary summary) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    int[] refused = {0};
+    accountsService.createAccounts(
+        batch,
+        (e, index) -> {
+          refused[0]++;
+          Account account = batch.get(index);
+          if (e instanceof DuplicateAccountIdException) {
+            summary.setDuplicates(summary.getDuplicates() + 1);
+            report(summary, batchLines[index], account.getAccountId(), e.getMessage());
+          } else {
+            reject(summary, batchLines[index], account.getAccountId(), e.getMessage());
+          }
+        });
+    summary.setImported(summary.getImported() + batch.size() - refused[0]);
+    batch.clear();
+  }
+
+  // the constraints Account declares for POST /v1/accounts, checked directly because bean
+  // validation costs more than parsing and inserting a row together
+  private static String validate(Account account) {
+    if (account.getAccountId() == null || account.getAccountId().isEmpty()) {
+      return "Account id must not be empty";
+    }
+    if (account.getBalanceMinorUnits() == Money.UNSET) {
+      return "Balance is missing";
+    }
+    if (account.getBalanceMinorUnits() < 0) {
+      return "Initial balance must be positive.";
+    }
+    if (!Money.isCurrencyCode(account.getCurrency())) {
+      return "Currency must be a three-letter ISO 4217 code.";
+    }
+    return null;
+  }
+
+  private void reject(AccountImportSummary summary, long line, String accountId, String error) {
+    summary.setRejected(summary.getRejected() + 1);
+    report(summary, line, accountId, error);
+  }
+
+  private void report(AccountImportSummary summary, long line, String accountId, String error) {
+    if (summary.getIssues().size() < properties.getMaxReportedIssues()) {
+      summary.getIssues().add(new AccountImportIssue(line, accountId, error));
+    } else {
+      summary.setIssuesTruncated(true);
+    }
+  }
+
+  private static boolean isBlank(CharSequence line) {
+    for (int i = 0; i < line.length(); i++) {
+      if (!Character.isWhitespace(line.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // a failing constructor, e.g. a balance with three decimals, is reported by its own message
+  private static String errorOf(JsonProcessingException e) {
+    Throwable cause = e.getCause();
+    if (cause instanceof RuntimeException && cause.getMessage() != null) {
+      return cause.getMessage();
+    }
+    return "Malformed account: " + e.getOriginalMessage();
+  }
+
+  // reads lines of bounded length through its own buffer, without a lock per character
+  private static final class LineReader {
+    private final Reader reader;
+
+    private final int maxLineLength;
+
+    // a \n inside a quoted CSV field belongs to the field, as in RFC 4180
+    private final boolean quotedLines;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int position;
+
+    private int limit;
+
+    // the lines read so far, and the first line of the last one returned
+    private long lines;
+
+    private long firstLine;
+
+    // the last line was longer than the maximum; it was skipped and comes back empty
+    private boolean tooLong;
+
+    private LineReader(Reader reader, int maxLineLength, boolean quotedLines) {
+      this.reader = reader;
+      this.maxLineLength = maxLineLength;
+      this.quotedLines = quotedLines;
+    }
+
+    // reads up to the next \n outside quotes, dropping a trailing \r; false once the input is
+    // exhausted. A line that is too long is skipped up to the next \n, quoted or not.
+    private boolean readLine(StringBuilder line) throws IOException {
+      line.setLength(0);
+      tooLong = false;
+      if (position == limit && !fill()) {
+        return false;
+      }
+      firstLine = ++lines;
+      boolean quoted = false;
+      while (true) {
+        int start = position;
+        int room = maxLineLength - line.length();
+        while (position < limit) {
+          char c = buffer[position];
+          if (c == '\n' && (!quoted || tooLong)) {
+            break;
+          }
+          if (!tooLong && position - start == room) {
+            tooLong = true;
+            continue;
+          }
+          if (c == '\n') {
+            lines++;
+          } else if (c == '"' && quotedLines) {
+            quoted = !quoted;
+          }
+          position++;
+        }
+        if (tooLong) {
+          line.setLength(0);
+        } else {
+          line.append(buffer, start, position - start);
+        }
+        if (position < limit) {
+          position++;
+          break;
+        }
+        if (!fill()) {
+          break;
+        }
+      }
+      if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+        line.setLength(line.length() - 1);
+      }
+      return true;
+    }
+
+    private boolean fill() throws IOException {
+      int read = reader.read(buffer);
+      position = 0;
+      limit = Math.max(read, 0);
+      return read > 0;
+    }
+  }
+}
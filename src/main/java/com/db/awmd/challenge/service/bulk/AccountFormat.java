@@ -0,0 +1,104 @@
+package com.db.awmd.challenge.service.bulk;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+// line formats of the bulk import and export, one account per line
+public enum AccountFormat {
+  NDJSON,
+
+  // accountId,balance,currency with an optional header; ids may be quoted as in RFC 4180, and
+  // rows without a currency are in the default one
+  CSV;
+
+  public static final String CSV_HEADER = "accountId,balance,currency";
+
+  private static final String CSV_HEADER_WITHOUT_CURRENCY = "accountId,balance";
+
+  static boolean isCsvHeader(CharSequence line) {
+    String trimmed = line.toString().trim();
+    return CSV_HEADER.equalsIgnoreCase(trimmed)
+        || CSV_HEADER_WITHOUT_CURRENCY.equalsIgnoreCase(trimmed);
+  }
+
+  static Account parseCsv(CharSequence line) {
+    List<String> fields = splitCsv(line);
+    if (fields.size() != 2 && fields.size() != 3) {
+      throw new IllegalArgumentException(
+          "Expected " + CSV_HEADER + " but found " + fields.size() + " fields");
+    }
+    String currency = fields.size() == 3 ? fields.get(2).trim() : null;
+    String balance = fields.get(1).trim();
+    if (balance.isEmpty()) {
+      return new Account(fields.get(0), null, currency);
+    }
+    try {
+      return new Account(fields.get(0), new BigDecimal(balance), currency);
+    } catch (NumberFormatException e) {
+      throw new InvalidAmountException("Balance " + balance + " is not a number");
+    }
+  }
+
+  static void writeCsv(Account account, Writer writer) throws IOException {
+    String accountId = account.getAccountId();
+    if (needsQuotes(accountId)) {
+      writer.write('"');
+      writer.write(accountId.replace("\"", "\"\""));
+      writer.write('"');
+    } else {
+      writer.write(accountId);
+    }
+    writer.write(',');
+    writer.write(account.getBalance().toPlainString());
+    writer.write(',');
+    writer.write(account.getCurrency());
+    writer.write('\n');
+  }
+
+  private static List<String> splitCsv(CharSequence line) {
+    List<String> fields = new ArrayList<>(3);
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c != '"') {
+          field.append(c);
+        } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else {
+          quoted = false;
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    if (quoted) {
+      throw new IllegalArgumentException("Unterminated quoted field");
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  private static boolean needsQuotes(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+        return true;
+      }
+    }
+    return false;
+  }
+}
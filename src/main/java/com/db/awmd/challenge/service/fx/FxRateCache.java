@@ -0,0 +1,99 @@
+package com.db.awmd.challenge.service.fx;
+
+import com.db.awmd.challenge.config.FxProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exchange rates for cross-currency transfers, read from a local file that stands in for a rate
+ * feed. Whenever the file changes a new {@link FxRateTable} replaces the current one as a whole,
+ * so a transfer converts against one consistent table, without locks, and never waits for a
+ * refresh.
+ */
+@Slf4j
+@Component
+public class FxRateCache {
+  private final FxProperties properties;
+
+  private volatile FxRateTable rates = FxRateTable.EMPTY;
+
+  // last-modified time of the file the current rates came from, guarded by this
+  private FileTime loadedVersion;
+
+  private ScheduledExecutorService refresher;
+
+  @Autowired
+  public FxRateCache(FxProperties properties) {
+    this.properties = properties;
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    if (properties.getRatesFile().isEmpty()) {
+      return;
+    }
+    refresh();
+    long interval = properties.getRefreshIntervalMs();
+    if (interval > 0) {
+      refresher =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "fx-rate-refresh");
+                thread.setDaemon(true);
+                return thread;
+              });
+      refresher.scheduleWithFixedDelay(
+          this::refreshQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (refresher != null) {
+      refresher.shutdown();
+    }
+  }
+
+  public FxRateTable getRates() {
+    return rates;
+  }
+
+  // rereads the file if it changed since it was last read; true if new rates were published
+  public synchronized boolean refresh() throws IOException {
+    Path file = Paths.get(properties.getRatesFile());
+    FileTime modified = Files.getLastModifiedTime(file);
+    if (modified.equals(loadedVersion)) {
+      return false;
+    }
+    FxRateTable table;
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      table = FxRateTable.parse(reader);
+    }
+    rates = table;
+    loadedVersion = modified;
+    log.info("Loaded {} exchange rates from {}", table.size(), file);
+    return true;
+  }
+
+  private void refreshQuietly() {
+    try {
+      refresh();
+    } catch (IOException | RuntimeException e) {
+      log.error("Failed to refresh exchange rates, keeping the previous ones", e);
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package com.db.awmd.challenge.service.fx;
+
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One immutable set of exchange rates. Rates are fixed-point longs with {@link #RATE_SCALE}
+ * decimal places, so a conversion is a multiplication and a division that allocate nothing; only
+ * products beyond the long range fall back to BigDecimal. A refresh builds a new table instead of
+ * changing this one, so readers need no locks.
+ */
+public final class FxRateTable {
+  public static final int RATE_SCALE = 8;
+
+  // returned by convert when the table has no rate for the pair
+  public static final long NO_RATE = -1;
+
+  public static final FxRateTable EMPTY = new FxRateTable(Collections.emptyMap());
+
+  public static final String HEADER = "from,to,rate";
+
+  private static final long ONE = 100_000_000L;
+
+  // rates by target currency by source currency
+  private final Map<String, Map<String, Long>> rates;
+
+  private FxRateTable(Map<String, Map<String, Long>> rates) {
+    this.rates = rates;
+  }
+
+  /**
+   * Parses lines of {@code from,to,rate}, where one unit of from buys rate units of to. Blank
+   * lines, {@code #} comments and a header are skipped. The inverse of a rate is derived unless
+   * the pair is listed both ways.
+   */
+  public static FxRateTable parse(BufferedReader reader) throws IOException {
+    Map<String, Map<String, Long>> listed = new HashMap<>();
+    String line;
+    int number = 0;
+    while ((line = reader.readLine()) != null) {
+      number++;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#") || line.equalsIgnoreCase(HEADER)) {
+        continue;
+      }
+      String[] fields = line.split(",");
+      if (fields.length != 3) {
+        throw new IOException("Line " + number + ": expected " + HEADER);
+      }
+      String from = fields[0].trim();
+      String to = fields[1].trim();
+      if (!Money.isCurrencyCode(from) || !Money.isCurrencyCode(to) || from.equals(to)) {
+        throw new IOException("Line " + number + ": invalid currency pair " + from + "/" + to);
+      }
+      long rate;
+      try {
+        rate =
+            new BigDecimal(fields[2].trim())
+                .setScale(RATE_SCALE, RoundingMode.HALF_EVEN)
+                .unscaledValue()
+                .longValueExact();
+      } catch (ArithmeticException | NumberFormatException e) {
+        throw new IOException("Line " + number + ": invalid rate " + fields[2].trim());
+      }
+      if (rate <= 0) {
+        throw new IOException("Line " + number + ": rate must be positive");
+      }
+      listed.computeIfAbsent(from, currency -> new HashMap<>()).put(to, rate);
+    }
+
+    Map<String, Map<String, Long>> rates = new HashMap<>();
+    listed.forEach((from, byTarget) -> rates.put(from, new HashMap<>(byTarget)));
+    listed.forEach(
+        (from, byTarget) ->
+            byTarget.forEach(
+                (to, rate) -> {
+                  Map<String, Long> reverse = rates.computeIfAbsent(to, c -> new HashMap<>());
+                  // a rate too large to have an inverse at this scale leaves the pair one-way
+                  long inverse = inverse(rate);
+                  if (inverse > 0 && !reverse.containsKey(from)) {
+                    reverse.put(from, inverse);
+                  }
+                }));
+    return new FxRateTable(rates);
+  }
+
+  // amount in minor units of from, converted and rounded half-even to minor units of to
+  public long convert(String from, String to, long amount) {
+    Map<String, Long> byTarget = rates.get(from);
+    Long rate = byTarget == null ? null : byTarget.get(to);
+    return rate == null ? NO_RATE : convert(amount, rate);
+  }
+
+  // null if there is no rate for the pair
+  public BigDecimal rate(String from, String to) {
+    Map<String, Long> byTarget = rates.get(from);
+    Long rate = byTarget == null ? null : byTarget.get(to);
+    return rate == null ? null : BigDecimal.valueOf(rate, RATE_SCALE);
+  }
+
+  // currency pairs with a rate, derived inverses included
+  public int size() {
+    return rates.values().stream().mapToInt(Map::size).sum();
+  }
+
+  private static long convert(long amount, long rate) {
+    if (amount <= Long.MAX_VALUE / rate) {
+      long product = amount * rate;
+      long converted = product / ONE;
+      long twiceRemainder = (product - converted * ONE) * 2;
+      if (twiceRemainder > ONE || (twiceRemainder == ONE && (converted & 1) != 0)) {
+        converted++;
+      }
+      return converted;
+    }
+    try {
+      return BigDecimal.valueOf(amount)
+          .multiply(BigDecimal.valueOf(rate, RATE_SCALE))
+          .setScale(0, RoundingMode.HALF_EVEN)
+          .longValueExact();
+    } catch (ArithmeticException e) {
+      throw new InvalidAmountException(
+          "Amount " + Money.toDecimal(amount) + " is too large to be converted");
+    }
+  }
+
+  private static long inverse(long rate) {
+    return BigDecimal.ONE
+        .divide(BigDecimal.valueOf(rate, RATE_SCALE), RATE_SCALE, RoundingMode.HALF_EVEN)
+        .unscaledValue()
+        .longValue();
+  }
+}
@@ -0,0 +1,131 @@
+package com.db.awmd.challenge.service.hot;
+
+import com.db.awmd.challenge.config.HotAccountProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accounts on one side of most transfers, whose lock would otherwise serialise all of them.
+ * Credits to a hot account go to one of its slots without taking its lock. The balance in the
+ * repository only changes under the lock: when a debit needs more than it holds, the slots are
+ * folded into it first. The balance of a hot account is the repository balance plus its slots.
+ */
+@Slf4j
+public class HotAccounts {
+  // bounds the contention counters between two detection intervals
+  private static final int MAX_TRACKED = 10_000;
+
+  private final HotAccountProperties properties;
+
+  private final AccountsRepository accountsRepository;
+
+  private final int slots;
+
+  private final long intervalNanos;
+
+  private final ConcurrentMap<String, SplitBalance> balances = new ConcurrentHashMap<>();
+
+  private final ConcurrentMap<String, LongAdder> contention = new ConcurrentHashMap<>();
+
+  private volatile long intervalStarted = System.nanoTime();
+
+  public HotAccounts(HotAccountProperties properties, AccountsRepository accountsRepository) {
+    this.properties = properties;
+    this.accountsRepository = accountsRepository;
+    int size = 1;
+    while (size < properties.getSlots()) {
+      size <<= 1;
+    }
+    this.slots = size;
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(properties.getDetectionIntervalMs());
+    properties.getAccountIds().forEach(this::promote);
+  }
+
+  public boolean isHot(String accountId) {
+    return balances.containsKey(accountId);
+  }
+
+  public Set<String> getAccountIds() {
+    return Collections.unmodifiableSet(balances.keySet());
+  }
+
+  // no lock needed; returns the balance of the account right after the credit
+  public long credit(Account account, long amount) {
+    SplitBalance balance = balances.get(account.getAccountId());
+    balance.add(amount);
+    return account.getBalanceMinorUnits() + balance.sum();
+  }
+
+  // the balance including unfolded credits, exact while the account's lock is held or validated
+  public long balanceOf(Account account) {
+    SplitBalance balance = balances.get(account.getAccountId());
+    long base = account.getBalanceMinorUnits();
+    return balance == null ? base : base + balance.sum();
+  }
+
+  // folds the slots into the repository if the account cannot cover the debit without them;
+  // the caller holds the account's lock
+  public void cover(Account account, long amount) {
+    if (account.getBalanceMinorUnits() >= amount) {
+      return;
+    }
+    SplitBalance balance = balances.get(account.getAccountId());
+    if (balance != null) {
+      long drained = balance.drain();
+      if (drained != 0) {
+        accountsRepository.setBalance(account, account.getBalanceMinorUnits() + drained);
+      }
+    }
+  }
+
+  // called when a transfer found the locks of these accounts taken
+  public void recordContention(String accountIdA, String accountIdB) {
+    if (!properties.isAutoDetect()) {
+      return;
+    }
+    long now = System.nanoTime();
+    if (now - intervalStarted > intervalNanos) {
+      intervalStarted = now;
+      contention.clear();
+    }
+    count(accountIdA);
+    if (!accountIdB.equals(accountIdA)) {
+      count(accountIdB);
+    }
+  }
+
+  // both sides of a contended transfer are counted, but only a hot one keeps adding up
+  private void count(String accountId) {
+    if (isHot(accountId)) {
+      return;
+    }
+    LongAdder counter = contention.get(accountId);
+    if (counter == null) {
+      if (contention.size() >= MAX_TRACKED) {
+        return;
+      }
+      counter = contention.computeIfAbsent(accountId, id -> new LongAdder());
+    }
+    counter.increment();
+    if (counter.sum() >= properties.getContendedTransfers()) {
+      promote(accountId);
+    }
+  }
+
+  private void promote(String accountId) {
+    if (balances.size() >= properties.getMaxAccounts()) {
+      return;
+    }
+    if (balances.putIfAbsent(accountId, new SplitBalance(slots)) == null) {
+      log.info("Spreading credits to hot account {} over {} slots", accountId, slots);
+    }
+  }
+}
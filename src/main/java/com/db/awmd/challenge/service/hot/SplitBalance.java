@@ -0,0 +1,41 @@
+package com.db.awmd.challenge.service.hot;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// credits not yet folded into an account's balance, spread over slots on separate cache lines
+class SplitBalance {
+  // 8 longs, so neighbouring slots never share a 64-byte cache line
+  private static final int STRIDE = 8;
+
+  private final AtomicLongArray cells;
+
+  private final int mask;
+
+  SplitBalance(int slots) {
+    this.cells = new AtomicLongArray(slots * STRIDE);
+    this.mask = slots - 1;
+  }
+
+  // each thread sticks to one slot, so concurrent credits rarely touch the same cache line
+  void add(long amount) {
+    int slot = (int) Thread.currentThread().getId() & mask;
+    cells.getAndAdd(slot * STRIDE, amount);
+  }
+
+  long sum() {
+    long sum = 0;
+    for (int slot = 0; slot <= mask; slot++) {
+      sum += cells.get(slot * STRIDE);
+    }
+    return sum;
+  }
+
+  // empties every slot; credits racing with the drain stay behind for the next one
+  long drain() {
+    long drained = 0;
+    for (int slot = 0; slot <= mask; slot++) {
+      drained += cells.getAndSet(slot * STRIDE, 0);
+    }
+    return drained;
+  }
+}
@@ -0,0 +1,229 @@
+package com.db.awmd.challenge.service.idempotency;
+
+import com.db.awmd.challenge.config.IdempotencyProperties;
+import com.db.awmd.challenge.exception.IdempotencyKeyReusedException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.TransferException;
+import com.db.awmd.challenge.exception.TransferOverloadedException;
+import com.db.awmd.challenge.exception.TransferRejectedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the outcome of keyed transfers so that a retry replays it instead of running the
+ * transfer again. Keys are spread over independently locked segments. Each segment is an
+ * insertion-ordered map, so the oldest entries are always at its head and evicting expired entries,
+ * or the eldest one once the segment is full, costs O(1) per entry. Entries whose transfer is still
+ * running are never evicted, or a retry could run it a second time.
+ */
+@Slf4j
+@Component
+public class IdempotencyCache {
+
+  private final Segment[] segments;
+
+  private final int mask;
+
+  private final long ttlNanos;
+
+  private final int maxEntriesPerSegment;
+
+  private final LongSupplier nanoClock;
+
+  @Autowired
+  public IdempotencyCache(IdempotencyProperties properties) {
+    this(properties, System::nanoTime);
+  }
+
+  public IdempotencyCache(IdempotencyProperties properties, LongSupplier nanoClock) {
+    int size = 1;
+    while (size < properties.getSegments()) {
+      size <<= 1;
+    }
+    this.segments = new Segment[size];
+    for (int i = 0; i < size; i++) {
+      segments[i] = new Segment();
+    }
+    this.mask = size - 1;
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(properties.getTtlMs());
+    this.maxEntriesPerSegment = Math.max(1, (properties.getMaxEntries() + size - 1) / size);
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Runs the transfer unless the key has been seen before. A repeated key replays the first
+   * outcome, waiting for it if the first attempt is still running, and is rejected if it was used
+   * for a different transfer. Throws {@link TransferOverloadedException} if the key's segment is
+   * full of transfers still running.
+   */
+  public void execute(
+      String key,
+      String accountIdFrom,
+      String accountIdTo,
+      long amount,
+      String currency,
+      Runnable transfer) {
+    Entry entry = new Entry(accountIdFrom, accountIdTo, amount, currency);
+    Segment segment = segmentFor(key);
+    Entry existing = segment.reserve(key, entry);
+    if (existing != null) {
+      existing.replay(key, accountIdFrom, accountIdTo, amount, currency);
+      return;
+    }
+
+    try {
+      transfer.run();
+      entry.complete(null);
+    } catch (RuntimeException | Error e) {
+      if (!isFinal(e)) {
+        // a later retry has to be able to run the transfer after all
+        segment.remove(key, entry);
+      }
+      entry.complete(e);
+      throw e;
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  // only the transfer's own verdict is final; timeouts, a stopped engine, a missing exchange rate
+  // and unexpected errors may pass on a retry
+  private static boolean isFinal(Throwable failure) {
+    return failure instanceof TransferRejectedException
+        || failure instanceof InvalidAmountException;
+  }
+
+  private Segment segmentFor(String key) {
+    int hash = key.hashCode();
+    return segments[(hash ^ (hash >>> 16)) & mask];
+  }
+
+  private final class Segment {
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    // returns the entry already holding the key, or null once the given entry has been stored
+    synchronized Entry reserve(String key, Entry entry) {
+      long now = nanoClock.getAsLong();
+      evictExpired(now);
+      Entry existing = entries.get(key);
+      if (existing != null) {
+        return existing;
+      }
+      if (entries.size() >= maxEntriesPerSegment && !evictEldestCompleted()) {
+        throw new TransferOverloadedException(
+            "Too many transfers with an idempotency key in flight, retry later");
+      }
+      entry.createdNanos = now;
+      entries.put(key, entry);
+      return null;
+    }
+
+    synchronized void remove(String key, Entry entry) {
+      entries.remove(key, entry);
+    }
+
+    synchronized int size() {
+      return entries.size();
+    }
+
+    // in-flight entries are skipped, there are at most a few of them
+    private void evictExpired(long now) {
+      Iterator<Entry> oldest = entries.values().iterator();
+      while (oldest.hasNext()) {
+        Entry entry = oldest.next();
+        if (now - entry.createdNanos < ttlNanos) {
+          return;
+        }
+        if (entry.isDone()) {
+          oldest.remove();
+        }
+      }
+    }
+
+    private boolean evictEldestCompleted() {
+      Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+      while (eldest.hasNext()) {
+        Map.Entry<String, Entry> candidate = eldest.next();
+        if (candidate.getValue().isDone()) {
+          log.debug("Idempotency cache is full, forgetting key {}", candidate.getKey());
+          eldest.remove();
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class Entry {
+    private final String accountIdFrom;
+
+    private final String accountIdTo;
+
+    private final long amount;
+
+    // null when the transfer named none
+    private final String currency;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    // guarded by the segment lock
+    private long createdNanos;
+
+    // null after a successful transfer, published by the latch
+    private Throwable failure;
+
+    Entry(String accountIdFrom, String accountIdTo, long amount, String currency) {
+      this.accountIdFrom = accountIdFrom;
+      this.accountIdTo = accountIdTo;
+      this.amount = amount;
+      this.currency = currency;
+    }
+
+    boolean isDone() {
+      return done.getCount() == 0;
+    }
+
+    void complete(Throwable failure) {
+      this.failure = failure;
+      done.countDown();
+    }
+
+    void replay(
+        String key, String accountIdFrom, String accountIdTo, long amount, String currency) {
+      if (!Objects.equals(this.accountIdFrom, accountIdFrom)
+          || !Objects.equals(this.accountIdTo, accountIdTo)
+          || this.amount != amount
+          || !Objects.equals(this.currency, currency)) {
+        throw new IdempotencyKeyReusedException(
+            "Idempotency key " + key + " was already used for a different transfer");
+      }
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new TransferException("Interrupted while waiting for the original transfer");
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+    }
+  }
+}
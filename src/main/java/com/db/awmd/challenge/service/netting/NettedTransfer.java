@@ -0,0 +1,26 @@
+package com.db.awmd.challenge.service.netting;
+
+import com.db.awmd.challenge.dto.TransferNotification;
+
+import java.util.concurrent.CompletableFuture;
+
+class NettedTransfer {
+
+  final String accountIdFrom;
+
+  final String accountIdTo;
+
+  // in minor units
+  final long amount;
+
+  final CompletableFuture<TransferNotification> result = new CompletableFuture<>();
+
+  // set once the transfer passed validation against the running balances of its window
+  TransferNotification notification;
+
+  NettedTransfer(String accountIdFrom, String accountIdTo, long amount) {
+    this.accountIdFrom = accountIdFrom;
+    this.accountIdTo = accountIdTo;
+    this.amount = amount;
+  }
+}
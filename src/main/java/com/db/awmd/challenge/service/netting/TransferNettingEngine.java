@@ -0,0 +1,275 @@
+package com.db.awmd.challenge.service.netting;
+
+import com.db.awmd.challenge.config.NettingProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.TransferNotification;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.TransferException;
+import com.db.awmd.challenge.exception.TransferOverloadedException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.StripedAccountLocks;
+import com.db.awmd.challenge.service.sequencer.CurrencyConversion;
+import com.db.awmd.challenge.service.sequencer.TransferValidation;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects single transfers into short windows and applies each window in one pass under one
+ * acquisition of all its account locks. Transfers are validated in arrival order against running
+ * balances, exactly as if they had been applied one by one, so no account is ever overdrawn, not
+ * even in between. Only the net result is written, once per account, and the whole window shares a
+ * single durability wait.
+ */
+@Slf4j
+public class TransferNettingEngine {
+  private static final long POLL_TIMEOUT_MS = 100;
+
+  private final NettingProperties properties;
+
+  private final AccountsRepository accountsRepository;
+
+  private final StripedAccountLocks accountLocks;
+
+  private final TransferValidation validation;
+
+  private final CurrencyConversion conversion;
+
+  // called under the account locks for every applied transfer, in window order
+  private final Consumer<TransferNotification> recorder;
+
+  private final Runnable awaitDurable;
+
+  private final BlockingQueue<NettedTransfer> queue;
+
+  private Thread thread;
+
+  private volatile boolean running;
+
+  public TransferNettingEngine(
+      NettingProperties properties,
+      AccountsRepository accountsRepository,
+      StripedAccountLocks accountLocks,
+      TransferValidation validation,
+      CurrencyConversion conversion,
+      Consumer<TransferNotification> recorder,
+      Runnable awaitDurable) {
+    this.properties = properties;
+    this.accountsRepository = accountsRepository;
+    this.accountLocks = accountLocks;
+    this.validation = validation;
+    this.conversion = conversion;
+    this.recorder = recorder;
+    this.awaitDurable = awaitDurable;
+    this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+  }
+
+  public void start() {
+    running = true;
+    thread = new Thread(this::run, "transfer-netting");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  // transfers already queued are still applied
+  public void stop() throws InterruptedException {
+    running = false;
+    thread.join();
+  }
+
+  // completes once the window holding the transfer has been applied and made durable
+  public CompletableFuture<TransferNotification> submit(
+      String accountIdFrom, String accountIdTo, long amount) {
+    if (!running) {
+      throw new TransferException("Transfer netting is not running");
+    }
+    NettedTransfer transfer = new NettedTransfer(accountIdFrom, accountIdTo, amount);
+    if (!queue.offer(transfer)) {
+      throw new TransferOverloadedException(
+          "Too many transfers waiting for netting, please retry later");
+    }
+    return transfer.result;
+  }
+
+  public TransferNotification execute(String accountIdFrom, String accountIdTo, long amount) {
+    try {
+      return submit(accountIdFrom, accountIdTo, amount).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private void run() {
+    List<NettedTransfer> window = new ArrayList<>(properties.getMaxTransfers());
+    try {
+      while (running || !queue.isEmpty()) {
+        NettedTransfer first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        window.add(first);
+        collect(window);
+        try {
+          apply(window);
+        } catch (RuntimeException e) {
+          log.error("Failed to apply a netting window of {} transfers", window.size(), e);
+          window.forEach(transfer -> transfer.result.completeExceptionally(e));
+        }
+        window.clear();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    NettedTransfer stranded;
+    while ((stranded = queue.poll()) != null) {
+      stranded.result.completeExceptionally(
+          new TransferException("Transfer netting is not running"));
+    }
+  }
+
+  // fills the window until it is full or its time is up
+  private void collect(List<NettedTransfer> window) throws InterruptedException {
+    long deadline =
+        System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(properties.getWindowMicros());
+    while (window.size() < properties.getMaxTransfers()) {
+      queue.drainTo(window, properties.getMaxTransfers() - window.size());
+      long remaining = deadline - System.nanoTime();
+      if (window.size() >= properties.getMaxTransfers() || remaining <= 0) {
+        return;
+      }
+      NettedTransfer next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        return;
+      }
+      window.add(next);
+    }
+  }
+
+  private void apply(List<NettedTransfer> window) {
+    // running balances of the window, the accounts themselves stay untouched until the end
+    Map<String, Position> positions = new LinkedHashMap<>();
+    for (NettedTransfer transfer : window) {
+      positions.computeIfAbsent(transfer.accountIdFrom, this::position);
+      positions.computeIfAbsent(transfer.accountIdTo, this::position);
+    }
+
+    int[] stripes;
+    try {
+      stripes =
+          accountLocks.lockAll(
+              positions.values().stream().mapToInt(position -> position.handle).toArray());
+    } catch (AccountLockTimeoutException e) {
+      window.forEach(transfer -> transfer.result.completeExceptionally(e));
+      return;
+    }
+    List<NettedTransfer> applied = new ArrayList<>(window.size());
+    try {
+      positions.values().forEach(Position::load);
+      for (NettedTransfer transfer : window) {
+        try {
+          Position from = positions.get(transfer.accountIdFrom);
+          Position to = positions.get(transfer.accountIdTo);
+          validation.validate(
+              from.running,
+              transfer.accountIdFrom,
+              to.running,
+              transfer.accountIdTo,
+              transfer.amount);
+          long credit = conversion.credit(from.running, to.running, transfer.amount);
+          long newToBalance = add(to.running, credit);
+          long newFromBalance = from.running.getBalanceMinorUnits() - transfer.amount;
+          from.running.setBalanceMinorUnits(newFromBalance);
+          to.running.setBalanceMinorUnits(newToBalance);
+          transfer.notification =
+              new TransferNotification(
+                  transfer.accountIdFrom,
+                  newFromBalance,
+                  transfer.accountIdTo,
+                  newToBalance,
+                  transfer.amount,
+                  credit);
+          applied.add(transfer);
+        } catch (RuntimeException e) {
+          transfer.result.completeExceptionally(e);
+        }
+      }
+
+      // one write per account, however many transfers of the window moved its balance, and one
+      // write for the window, so a crash never keeps part of it
+      List<Account> changed = new ArrayList<>(positions.size());
+      long[] newBalances = new long[positions.size()];
+      for (Position position : positions.values()) {
+        if (position.account != null
+            && position.running.getBalanceMinorUnits() != position.initialBalance) {
+          newBalances[changed.size()] = position.running.getBalanceMinorUnits();
+          changed.add(position.account);
+        }
+      }
+      if (!changed.isEmpty()) {
+        accountsRepository.setBalances(changed, newBalances);
+      }
+      for (NettedTransfer transfer : applied) {
+        recorder.accept(transfer.notification);
+      }
+    } finally {
+      accountLocks.unlockAll(stripes);
+    }
+
+    awaitDurable.run();
+    for (NettedTransfer transfer : applied) {
+      transfer.result.complete(transfer.notification);
+    }
+  }
+
+  private Position position(String accountId) {
+    return new Position(accountsRepository.handleOf(accountId));
+  }
+
+  private static long add(Account account, long amount) {
+    try {
+      return Math.addExact(account.getBalanceMinorUnits(), amount);
+    } catch (ArithmeticException e) {
+      throw new InvalidAmountException(
+          "Balance of account " + account.getAccountId() + " would overflow");
+    }
+  }
+
+  // an account with the balance it has after the transfers of the window applied so far
+  private final class Position {
+    private final int handle;
+
+    private Account account;
+
+    // a detached copy handed to validation, null if the account does not exist
+    private Account running;
+
+    private long initialBalance;
+
+    private Position(int handle) {
+      this.handle = handle;
+    }
+
+    // once the account's lock is held
+    private void load() {
+      account = accountsRepository.getAccount(handle);
+      initialBalance = account == null ? 0 : account.getBalanceMinorUnits();
+      running =
+          account == null
+              ? null
+              : new Account(account.getAccountId(), initialBalance, account.getCurrency());
+    }
+  }
+}
@@ -0,0 +1,405 @@
+package com.db.awmd.challenge.service.reconciliation;
+
+import com.db.awmd.challenge.config.ReconciliationProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.dto.ReconciliationMetrics;
+import com.db.awmd.challenge.dto.ReconciliationReport;
+import com.db.awmd.challenge.exception.TransferException;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.StripedAccountLocks;
+import com.db.awmd.challenge.service.hot.HotAccounts;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Proves that money is conserved: the balances of each currency add up to its {@link
+ * MoneySupply}. A run holds the issuance lock, and reads a few account stripes at a time together
+ * with what transfers moved into them, under the locks of those stripes only. Stripes are scanned
+ * in parallel on a fork-join pool. Hot accounts are credited without the lock of their stripe,
+ * so with them a run holds every stripe at once. Alongside the totals it lists negative balances
+ * and checksums the balances by bucket of account ids, so two copies of the accounts, e.g. before
+ * and after a restart, can be compared bucket by bucket.
+ */
+@Slf4j
+@Service
+public class AccountsReconciler {
+  // handles scanned by one fork-join task
+  private static final int LEAF_HANDLES = 16_384;
+
+  // stripes read together, so that their accounts are scanned in runs of consecutive handles
+  private static final int STRIPES_PER_READ = 32;
+
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  private final ReconciliationProperties properties;
+
+  private final AccountsService accountsService;
+
+  private final AccountsRepository accountsRepository;
+
+  private final AccountIdDictionary dictionary;
+
+  private final ForkJoinPool pool;
+
+  private final LongAdder runs = new LongAdder();
+
+  private final LongAdder failedRuns = new LongAdder();
+
+  private final LongAdder unbalancedRuns = new LongAdder();
+
+  private volatile ReconciliationReport lastReport;
+
+  private ScheduledExecutorService timer;
+
+  @Autowired
+  public AccountsReconciler(
+      ReconciliationProperties properties,
+      AccountsService accountsService,
+      AccountIdDictionary dictionary) {
+    this.properties = properties;
+    this.accountsService = accountsService;
+    this.accountsRepository = accountsService.getAccountsRepository();
+    this.dictionary = dictionary;
+    this.pool = new ForkJoinPool(Math.max(1, properties.getParallelism()));
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    if (!accountsService.usesAccountLocks()) {
+      throw new IllegalStateException("Reconciliation needs the locking execution mode");
+    }
+    timer =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "accounts-reconciliation");
+              thread.setDaemon(true);
+              return thread;
+            });
+    timer.scheduleWithFixedDelay(
+        this::reconcileQuietly,
+        properties.getIntervalMs(),
+        properties.getIntervalMs(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (timer != null) {
+      timer.shutdownNow();
+    }
+    pool.shutdownNow();
+  }
+
+  // null until the first run
+  public ReconciliationReport getLastReport() {
+    return lastReport;
+  }
+
+  public synchronized ReconciliationReport reconcile() {
+    if (!accountsService.usesAccountLocks()) {
+      throw new TransferException("Reconciliation is only supported with account locking");
+    }
+    long timestamp = System.currentTimeMillis();
+    MoneySupply supply = accountsService.getMoneySupply();
+    StripedAccountLocks locks = accountsService.getAccountLocks();
+    long started = System.nanoTime();
+    Map<String, Long> issued;
+    Partial scanned;
+    long frozen = supply.freeze();
+    try {
+      // no account is created until thaw, so the handles and the issued money stay put
+      issued = supply.issued();
+      int handles = dictionary.size();
+      if (accountsService.getHotAccounts() == null) {
+        scanned = pool.invoke(new Scan(supply, locks, handles, 0, locks.stripeCount()));
+      } else {
+        scanned =
+            locks.readAll(
+                () -> pool.invoke(new Scan(supply, null, handles, 0, locks.stripeCount())));
+      }
+    } finally {
+      supply.thaw(frozen);
+    }
+    long durationMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started);
+
+    issued.forEach(scanned::expect);
+    ReconciliationReport report = report(timestamp, durationMicros, scanned);
+    runs.increment();
+    if (!report.isBalanced()) {
+      unbalancedRuns.increment();
+      log.error("Balances do not add up to the money supply, drift {}", report.getDrift());
+    }
+    if (report.getNegativeBalances() > 0) {
+      log.warn(
+          "{} accounts have a negative balance, e.g. {}",
+          report.getNegativeBalances(),
+          report.getNegativeAccountIds());
+    }
+    lastReport = report;
+    return report;
+  }
+
+  public ReconciliationMetrics getMetrics() {
+    ReconciliationReport report = lastReport;
+    return ReconciliationMetrics.builder()
+        .runs(runs.sum())
+        .failedRuns(failedRuns.sum())
+        .unbalancedRuns(unbalancedRuns.sum())
+        .lastDurationMicros(report == null ? 0 : report.getDurationMicros())
+        .lastAccounts(report == null ? 0 : report.getAccounts())
+        .lastNegativeBalances(report == null ? 0 : report.getNegativeBalances())
+        .lastDrift(report == null ? Collections.emptyMap() : report.getDrift())
+        .build();
+  }
+
+  private void reconcileQuietly() {
+    try {
+      reconcile();
+    } catch (RuntimeException e) {
+      failedRuns.increment();
+      log.error("Reconciliation failed", e);
+    }
+  }
+
+  private ReconciliationReport report(long timestamp, long durationMicros, Partial scanned) {
+    Map<String, BigDecimal> totals = scanned.balances.toDecimals();
+    Map<String, BigDecimal> expectedTotals = scanned.expected.toDecimals();
+    Map<String, BigDecimal> drift = new TreeMap<>();
+    for (String currency : union(totals, expectedTotals)) {
+      BigDecimal difference =
+          totals
+              .getOrDefault(currency, BigDecimal.ZERO)
+              .subtract(expectedTotals.getOrDefault(currency, BigDecimal.ZERO));
+      if (difference.signum() != 0) {
+        drift.put(currency, difference);
+      }
+    }
+    List<String> checksums = new ArrayList<>(scanned.checksums.length);
+    for (long checksum : scanned.checksums) {
+      checksums.add(String.format("%016x", checksum));
+    }
+    return ReconciliationReport.builder()
+        .timestamp(timestamp)
+        .durationMicros(durationMicros)
+        .accounts(scanned.accounts)
+        .balanced(drift.isEmpty())
+        .totals(totals)
+        .expected(expectedTotals)
+        .drift(drift)
+        .negativeBalances(scanned.negatives)
+        .negativeAccountIds(scanned.negativeAccountIds)
+        .bucketChecksums(checksums)
+        .build();
+  }
+
+  private static List<String> union(Map<String, ?> a, Map<String, ?> b) {
+    TreeMap<String, Object> keys = new TreeMap<>(a);
+    keys.putAll(b);
+    return new ArrayList<>(keys.keySet());
+  }
+
+  // the finalizer of SplitMix64
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  // the stripes [from, to); the accounts of stripe s have the handles s, s + stripes, ...
+  private final class Scan extends RecursiveTask<Partial> {
+    private final MoneySupply supply;
+
+    // null when the caller holds every stripe already
+    private final StripedAccountLocks locks;
+
+    private final int handles;
+
+    private final int from;
+
+    private final int to;
+
+    private Scan(MoneySupply supply, StripedAccountLocks locks, int handles, int from, int to) {
+      this.supply = supply;
+      this.locks = locks;
+      this.handles = handles;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected Partial compute() {
+      int stripes = accountsService.getAccountLocks().stripeCount();
+      if (to - from >= 2 * STRIPES_PER_READ
+          && (long) (to - from) * (handles / stripes + 1) > LEAF_HANDLES) {
+        int middle = from + (to - from) / STRIPES_PER_READ / 2 * STRIPES_PER_READ;
+        Scan right = new Scan(supply, locks, handles, middle, to);
+        right.fork();
+        Partial partial = new Scan(supply, locks, handles, from, middle).compute();
+        partial.merge(right.join());
+        return partial;
+      }
+      Partial partial = new Partial();
+      for (int first = from; first < to; first += STRIPES_PER_READ) {
+        int start = first;
+        int end = Math.min(to, first + STRIPES_PER_READ);
+        partial.merge(
+            locks == null
+                ? scan(start, end, stripes)
+                : locks.readStripes(start, end, () -> scan(start, end, stripes)));
+      }
+      return partial;
+    }
+
+    // free of side effects, it may run again when a transfer overlapped with it
+    private Partial scan(int start, int end, int stripes) {
+      Partial partial = new Partial();
+      HotAccounts hotAccounts = accountsService.getHotAccounts();
+      // neighbouring stripes hold runs of consecutive handles
+      for (int base = 0; base < handles; base += stripes) {
+        for (int handle = base + start; handle < Math.min(base + end, handles); handle++) {
+          Account account = accountsRepository.getAccount(handle);
+          if (account == null) {
+            continue;
+          }
+          // slots only change under the lock of the debited account, which is held too
+          long balance =
+              hotAccounts != null
+                  ? hotAccounts.balanceOf(account)
+                  : account.getBalanceMinorUnits();
+          partial.add(account, balance);
+        }
+      }
+      for (int stripe = start; stripe < end; stripe++) {
+        supply.forEachMoved(stripe, partial::expect);
+      }
+      return partial;
+    }
+  }
+
+  // what a range of stripes adds up to
+  private final class Partial {
+    private final long[] checksums = new long[Math.max(1, properties.getBuckets())];
+
+    private final List<String> negativeAccountIds = new ArrayList<>();
+
+    private final Totals balances = new Totals();
+
+    private final Totals expected = new Totals();
+
+    private long accounts;
+
+    private long negatives;
+
+    void add(Account account, long balance) {
+      accounts++;
+      balances.add(account.getCurrency(), balance, 0);
+      if (balance < 0) {
+        negatives++;
+        if (negativeAccountIds.size() < properties.getMaxReportedNegatives()) {
+          negativeAccountIds.add(account.getAccountId());
+        }
+      }
+      int idHash = account.getAccountId().hashCode();
+      long accountHash = mix(idHash * GOLDEN_GAMMA + account.getCurrency().hashCode());
+      checksums[Math.floorMod((int) mix(idHash), checksums.length)] += mix(accountHash ^ balance);
+    }
+
+    void merge(Partial other) {
+      accounts += other.accounts;
+      negatives += other.negatives;
+      for (String accountId : other.negativeAccountIds) {
+        if (negativeAccountIds.size() >= properties.getMaxReportedNegatives()) {
+          break;
+        }
+        negativeAccountIds.add(accountId);
+      }
+      for (int i = 0; i < checksums.length; i++) {
+        checksums[i] += other.checksums[i];
+      }
+      balances.merge(other.balances);
+      expected.merge(other.expected);
+    }
+
+    void expect(String currency, long amount) {
+      expected.add(currency, amount, 0);
+    }
+  }
+
+  // currencies in order of appearance, usually one or two, with their totals as 128-bit
+  // integers: overflows of the long sum are counted in carries
+  private static final class Totals {
+    private String[] currencies = new String[2];
+
+    private long[] sums = new long[2];
+
+    private long[] carries = new long[2];
+
+    private int currencyCount;
+
+    void add(String currency, long amount, long carry) {
+      int index = indexOf(currency);
+      long sum = sums[index];
+      long result = sum + amount;
+      if (((sum ^ result) & (amount ^ result)) < 0) {
+        carries[index] += amount < 0 ? -1 : 1;
+      }
+      sums[index] = result;
+      carries[index] += carry;
+    }
+
+    void merge(Totals other) {
+      for (int i = 0; i < other.currencyCount; i++) {
+        add(other.currencies[i], other.sums[i], other.carries[i]);
+      }
+    }
+
+    Map<String, BigDecimal> toDecimals() {
+      Map<String, BigDecimal> totals = new TreeMap<>();
+      for (int i = 0; i < currencyCount; i++) {
+        BigInteger total =
+            BigInteger.valueOf(carries[i]).shiftLeft(Long.SIZE).add(BigInteger.valueOf(sums[i]));
+        totals.put(currencies[i], new BigDecimal(total, Money.SCALE));
+      }
+      return totals;
+    }
+
+    private int indexOf(String currency) {
+      for (int i = 0; i < currencyCount; i++) {
+        if (currencies[i] == currency || currencies[i].equals(currency)) {
+          return i;
+        }
+      }
+      if (currencyCount == currencies.length) {
+        currencies = Arrays.copyOf(currencies, currencyCount * 2);
+        sums = Arrays.copyOf(sums, currencyCount * 2);
+        carries = Arrays.copyOf(carries, currencyCount * 2);
+      }
+      currencies[currencyCount] = currency;
+      return currencyCount++;
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package com.db.awmd.challenge.service.reconciliation;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * The money each currency should hold across all accounts: the balances accounts were created
+ * with, plus what transfers moved into the accounts, less what they moved out. Creations are
+ * counted under a shared issuance lock. Transfers are counted by account lock stripe, each under
+ * the lock of its stripe, so whoever holds the lock of a stripe sees its balances and what was
+ * moved into them agree to the cent, and needs no other stripe for it.
+ */
+public class MoneySupply {
+  private final ConcurrentMap<String, LongAdder> issued = new ConcurrentHashMap<>();
+
+  private final StampedLock issuance = new StampedLock();
+
+  // the net amount transfers moved into the accounts of each stripe, by currency index; a row
+  // only changes under the lock of its stripe, and grows when a currency shows up
+  private final long[][] moved;
+
+  // indexed like the rows, only ever appended to
+  private volatile String[] currencies = new String[0];
+
+  public MoneySupply(int stripes) {
+    this.moved = new long[stripes][];
+    for (int stripe = 0; stripe < stripes; stripe++) {
+      moved[stripe] = new long[2];
+    }
+  }
+
+  // creations between this and stopIssuing are seen by a reconciliation all or not at all
+  public long startIssuing() {
+    return issuance.readLock();
+  }
+
+  public void stopIssuing(long stamp) {
+    issuance.unlockRead(stamp);
+  }
+
+  public void issue(String currency, long amount) {
+    LongAdder total = issued.get(currency);
+    if (total == null) {
+      total = issued.computeIfAbsent(currency, ignored -> new LongAdder());
+    }
+    total.add(amount);
+  }
+
+  // the caller holds the locks of both stripes; amounts are negative when a transfer is reverted
+  public void move(
+      int stripeFrom,
+      String currencyFrom,
+      long debited,
+      int stripeTo,
+      String currencyTo,
+      long credited) {
+    add(stripeFrom, indexOf(currencyFrom), -debited);
+    add(stripeTo, indexOf(currencyTo), credited);
+  }
+
+  // blocks new creations until thaw, and waits for those under way
+  long freeze() {
+    return issuance.writeLock();
+  }
+
+  void thaw(long stamp) {
+    issuance.unlockWrite(stamp);
+  }
+
+  public Map<String, Long> issued() {
+    Map<String, Long> totals = new TreeMap<>();
+    issued.forEach((currency, total) -> totals.put(currency, total.sum()));
+    return totals;
+  }
+
+  // what transfers moved into the stripe by currency; the caller holds the stripe's lock or
+  // validates an optimistic read of it
+  void forEachMoved(int stripe, ObjLongConsumer<String> action) {
+    String[] known = currencies;
+    long[] row = moved[stripe];
+    for (int i = 0; i < Math.min(known.length, row.length); i++) {
+      if (row[i] != 0) {
+        action.accept(known[i], row[i]);
+      }
+    }
+  }
+
+  // with the accounts themselves, e.g. between tests
+  public void reset() {
+    issued.clear();
+    for (long[] row : moved) {
+      Arrays.fill(row, 0);
+    }
+  }
+
+  private void add(int stripe, int currency, long amount) {
+    long[] row = moved[stripe];
+    if (currency >= row.length) {
+      row = Arrays.copyOf(row, Math.max(currency + 1, row.length * 2));
+      moved[stripe] = row;
+    }
+    row[currency] += amount;
+  }
+
+  // a handful of currencies at most, so a scan beats a hash lookup
+  private int indexOf(String currency) {
+    String[] known = currencies;
+    for (int i = 0; i < known.length; i++) {
+      if (known[i] == currency || known[i].equals(currency)) {
+        return i;
+      }
+    }
+    synchronized (this) {
+      known = currencies;
+      int index = Arrays.asList(known).indexOf(currency);
+      if (index >= 0) {
+        return index;
+      }
+      String[] grown = Arrays.copyOf(known, known.length + 1);
+      grown[known.length] = currency;
+      currencies = grown;
+      return known.length;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.db.awmd.challenge.service.schedule;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: four levels of 256 slots, each level a tick width 256 times that of
+ * the one below. An entry goes into the lowest level whose span covers its deadline and moves one
+ * level down whenever the slot holding it comes round, so adding, advancing a tick and expiring an
+ * entry all cost O(1) however many entries are pending. Deadlines beyond the 2^32 ticks the levels
+ * span wait in the top level and are placed again each time it comes round.
+ *
+ * <p>Not thread-safe; it belongs to one thread. Entries cannot be removed, their owner skips the
+ * ones it no longer wants as they expire.
+ */
+public final class TimingWheel<T> {
+  private static final int LEVELS = 4;
+  private static final int SLOT_BITS = 8;
+  private static final int SLOTS = 1 << SLOT_BITS;
+  private static final int SLOT_MASK = SLOTS - 1;
+  private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+  private final Node<T>[][] slots;
+
+  // the next tick to expire; every tick before it has been expired
+  private long tick;
+
+  private int size;
+
+  @SuppressWarnings("unchecked")
+  public TimingWheel(long startTick) {
+    this.slots = new Node[LEVELS][SLOTS];
+    this.tick = startTick;
+  }
+
+  // a deadline that has already passed expires with the next tick
+  public void add(long deadlineTick, T value) {
+    place(new Node<>(Math.max(deadlineTick, tick), value));
+    size++;
+  }
+
+  // expires every tick up to and including the given one, earliest first
+  public void advance(long toTick, Consumer<T> expired) {
+    for (; tick <= toTick; tick++) {
+      // higher levels first, so that entries moved down are moved further down in the same tick
+      for (int level = LEVELS - 1; level > 0; level--) {
+        if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+          cascade(level, slotOf(tick, level));
+        }
+      }
+      int slot = slotOf(tick, 0);
+      Node<T> node = slots[0][slot];
+      slots[0][slot] = null;
+      for (; node != null; node = node.next) {
+        size--;
+        expired.accept(node.value);
+      }
+    }
+  }
+
+  public long getTick() {
+    return tick;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private void cascade(int level, int slot) {
+    Node<T> node = slots[level][slot];
+    slots[level][slot] = null;
+    while (node != null) {
+      Node<T> next = node.next;
+      place(node);
+      node = next;
+    }
+  }
+
+  private void place(Node<T> node) {
+    long delta = node.deadline - tick;
+    long placed = delta < SPAN ? node.deadline : tick + SPAN - 1;
+    int level = 0;
+    while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+      level++;
+    }
+    int slot = slotOf(placed, level);
+    node.next = slots[level][slot];
+    slots[level][slot] = node;
+  }
+
+  private static int slotOf(long tick, int level) {
+    return (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+  }
+
+  private static final class Node<T> {
+    private final long deadline;
+
+    private final T value;
+
+    private Node<T> next;
+
+    private Node(long deadline, T value) {
+      this.deadline = deadline;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,258 @@
+package com.db.awmd.challenge.service.schedule;
+
+import com.db.awmd.challenge.config.ScheduleProperties;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.dto.ScheduledTransferRequest;
+import com.db.awmd.challenge.exception.InvalidScheduleException;
+import com.db.awmd.challenge.exception.TransferOverloadedException;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.StripedAccountLocks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Future-dated transfers and standing orders. Pending schedules wait in a {@link TimingWheel}
+ * owned by one thread; every tick it collects the schedules that fell due and applies them in
+ * batches, each batch under one acquisition of its account locks. Persistent engines log every
+ * run in the same record as the balances it changed, so a restart neither repeats nor loses one.
+ */
+@Slf4j
+@Service
+public class TransferScheduler {
+  private final ScheduleProperties properties;
+
+  private final AccountsService accountsService;
+
+  private final AccountsRepository accountsRepository;
+
+  private final AccountIdDictionary dictionary;
+
+  private final Clock clock;
+
+  // the current state of every pending schedule; runs and cancellations change it under the
+  // account locks of the schedule
+  private final ConcurrentMap<Long, ScheduledTransfer> schedules = new ConcurrentHashMap<>();
+
+  // new schedules on their way into the wheel, which only the scheduler thread touches
+  private final Queue<ScheduledTransfer> arriving = new ConcurrentLinkedQueue<>();
+
+  private final AtomicLong nextId = new AtomicLong(1);
+
+  private TimingWheel<ScheduledTransfer> wheel;
+
+  private Thread thread;
+
+  private volatile boolean running;
+
+  @Autowired
+  public TransferScheduler(
+      ScheduleProperties properties,
+      AccountsService accountsService,
+      AccountIdDictionary dictionary) {
+    this(properties, accountsService, dictionary, Clock.systemUTC());
+  }
+
+  public TransferScheduler(
+      ScheduleProperties properties,
+      AccountsService accountsService,
+      AccountIdDictionary dictionary,
+      Clock clock) {
+    this.properties = properties;
+    this.accountsService = accountsService;
+    this.accountsRepository = accountsService.getAccountsRepository();
+    this.dictionary = dictionary;
+    this.clock = clock;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    if (!accountsService.usesAccountLocks()
+        || (accountsRepository.isPersistent() && !accountsRepository.isSchedulePersistent())) {
+      throw new IllegalStateException(
+          "Scheduled transfers need the locking execution mode and an engine that keeps them");
+    }
+    wheel = new TimingWheel<>(tickOf(clock.millis()));
+    accountsRepository.forEachSchedule(
+        schedule -> {
+          schedules.put(schedule.getId(), schedule);
+          arriving.add(schedule);
+          nextId.accumulateAndGet(schedule.getId() + 1, Math::max);
+        });
+    if (!schedules.isEmpty()) {
+      log.info("Recovered {} scheduled transfers", schedules.size());
+    }
+
+    running = true;
+    thread = new Thread(this::run, "transfer-scheduler");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    if (thread != null) {
+      running = false;
+      thread.interrupt();
+      thread.join();
+    }
+  }
+
+  public ScheduledTransfer schedule(ScheduledTransferRequest request) {
+    if (!running) {
+      throw new InvalidScheduleException("Scheduled transfers are disabled");
+    }
+    if (request.getAccountIdFrom().equals(request.getAccountIdTo())) {
+      throw new InvalidScheduleException("Cannot schedule a transfer to the same account");
+    }
+    if (schedules.size() >= properties.getMaxScheduled()) {
+      throw new TransferOverloadedException("Too many scheduled transfers, please retry later");
+    }
+    long intervalMillis = 0;
+    if (request.getRepeatEvery() != null) {
+      intervalMillis = request.getRepeatEvery().toMillis();
+      if (intervalMillis < properties.getTickMs()) {
+        throw new InvalidScheduleException(
+            "Interval must be at least " + properties.getTickMs() + " ms");
+      }
+    }
+    int runs = ScheduledTransfer.UNBOUNDED;
+    if (intervalMillis == 0 || request.getOccurrences() != null) {
+      runs = intervalMillis == 0 ? 1 : request.getOccurrences();
+    }
+    ScheduledTransfer schedule =
+        new ScheduledTransfer(
+            nextId.getAndIncrement(),
+            existingAccountId(request.getAccountIdFrom()),
+            existingAccountId(request.getAccountIdTo()),
+            request.getAmountMinorUnits(),
+            request.getFirstRun().toEpochMilli(),
+            intervalMillis,
+            runs,
+            0,
+            null);
+
+    schedules.put(schedule.getId(), schedule);
+    try {
+      accountsRepository.saveSchedule(schedule);
+      accountsRepository.awaitDurable();
+    } catch (RuntimeException e) {
+      schedules.remove(schedule.getId());
+      throw e;
+    }
+    arriving.add(schedule);
+    return schedule;
+  }
+
+  public ScheduledTransfer getSchedule(long scheduleId) {
+    return schedules.get(scheduleId);
+  }
+
+  // the cancelled state, null if there is no such pending schedule; a run that is already under
+  // way completes first
+  public ScheduledTransfer cancel(long scheduleId) {
+    ScheduledTransfer schedule = schedules.get(scheduleId);
+    if (schedule == null) {
+      return null;
+    }
+    StripedAccountLocks locks = accountsService.getAccountLocks();
+    int from = accountsRepository.handleOf(schedule.getAccountIdFrom());
+    int to = accountsRepository.handleOf(schedule.getAccountIdTo());
+    locks.lock(from, to);
+    try {
+      schedule = schedules.remove(scheduleId);
+      if (schedule != null) {
+        accountsRepository.deleteSchedule(scheduleId);
+      }
+    } finally {
+      locks.unlock(from, to);
+    }
+    accountsRepository.awaitDurable();
+    return schedule;
+  }
+
+  public int size() {
+    return schedules.size();
+  }
+
+  // applies every schedule due by now; only the scheduler thread calls this, once per tick
+  public void runDue() {
+    ScheduledTransfer schedule;
+    while ((schedule = arriving.poll()) != null) {
+      wheel.add(tickOf(schedule.getNextRunMillis()), schedule);
+    }
+    List<ScheduledTransfer> due = new ArrayList<>();
+    wheel.advance(
+        tickOf(clock.millis()),
+        expired -> {
+          // cancelled schedules stay in the wheel until their tick comes
+          if (schedules.get(expired.getId()) == expired) {
+            due.add(expired);
+          }
+        });
+    for (int start = 0; start < due.size(); start += properties.getBatchSize()) {
+      List<ScheduledTransfer> batch =
+          due.subList(start, Math.min(start + properties.getBatchSize(), due.size()));
+      try {
+        accountsService
+            .performScheduledTransfers(batch, schedules)
+            .forEach(next -> wheel.add(tickOf(next.getNextRunMillis()), next));
+      } catch (RuntimeException e) {
+        // whatever the batch did not run, e.g. after a lock timeout, is tried again next tick
+        log.error("Failed to run {} scheduled transfers", batch.size(), e);
+        for (ScheduledTransfer ran : batch) {
+          ScheduledTransfer current = schedules.get(ran.getId());
+          if (current != null) {
+            wheel.add(tickOf(current.getNextRunMillis()), current);
+          }
+        }
+      }
+    }
+  }
+
+  private void run() {
+    while (running) {
+      try {
+        runDue();
+        long tickMs = properties.getTickMs();
+        long now = clock.millis();
+        TimeUnit.MILLISECONDS.sleep(tickMs - Math.floorMod(now, tickMs));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        log.error("Scheduled transfers failed", e);
+      }
+    }
+  }
+
+  // the instance the dictionary holds, so that millions of schedules share a few id strings
+  private String existingAccountId(String accountId) {
+    int handle = dictionary.handleOf(accountId);
+    if (handle == AccountIdDictionary.NO_HANDLE || accountsRepository.getAccount(handle) == null) {
+      throw new InvalidScheduleException("Account " + accountId + " does not exist");
+    }
+    return dictionary.accountIdOf(handle);
+  }
+
+  private long tickOf(long millis) {
+    return millis / properties.getTickMs();
+  }
+}
@@ -0,0 +1,65 @@
+package com.db.awmd.challenge.service.sequencer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// bounded multi-producer / single-consumer ring; every slot carries the sequence it expects next
+class CommandRingBuffer<T> {
+
+  private final Object[] slots;
+
+  private final AtomicLongArray sequences;
+
+  private final int mask;
+
+  private final AtomicLong tail = new AtomicLong();
+
+  // only touched by the consuming shard thread
+  private long head;
+
+  CommandRingBuffer(int requestedCapacity) {
+    int capacity = 1;
+    while (capacity < requestedCapacity) {
+      capacity <<= 1;
+    }
+    this.slots = new Object[capacity];
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+    this.mask = capacity - 1;
+  }
+
+  boolean offer(T command) {
+    long position;
+    int index;
+    while (true) {
+      position = tail.get();
+      index = (int) position & mask;
+      long available = sequences.get(index) - position;
+      if (available == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          break;
+        }
+      } else if (available < 0) {
+        return false;
+      }
+    }
+    slots[index] = command;
+    sequences.lazySet(index, position + 1);
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  T poll() {
+    int index = (int) head & mask;
+    if (sequences.get(index) != head + 1) {
+      return null;
+    }
+    T command = (T) slots[index];
+    slots[index] = null;
+    sequences.lazySet(index, head + slots.length);
+    head++;
+    return command;
+  }
+}
@@ -0,0 +1,11 @@
+package com.db.awmd.challenge.service.sequencer;
+
+import com.db.awmd.challenge.domain.Account;
+
+@FunctionalInterface
+public interface CurrencyConversion {
+
+  // the amount, debited in the source account's currency, that the target account is credited
+  // in its own; throws TransferException when there is no rate between the two
+  long credit(Account accountFrom, Account accountTo, long amount);
+}
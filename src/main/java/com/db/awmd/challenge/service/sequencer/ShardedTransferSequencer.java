@@ -0,0 +1,312 @@
+package com.db.awmd.challenge.service.sequencer;
+
+import com.db.awmd.challenge.config.TransferExecutionProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.dto.TransferNotification;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.TransferException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Partitions accounts over single-threaded shards. The shard owning the source account validates
+ * and debits; if the target lives on another shard the command is handed off and the target shard
+ * applies the credit. Every balance is therefore only ever written by one thread, and no locks are
+ * needed. A credit that cannot be applied is handed back to the source shard, which refunds it.
+ * The shard that completes a transfer also records it, before any later transfer it applies.
+ */
+@Slf4j
+public class ShardedTransferSequencer {
+  private static final int SPIN_TRIES = 100;
+  private static final int YIELD_TRIES = 200;
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final AccountsRepository accountsRepository;
+
+  private final TransferValidation validation;
+
+  private final CurrencyConversion conversion;
+
+  // called on the shard thread that completes each applied transfer, right after its last write
+  private final Consumer<TransferNotification> recorder;
+
+  private final Shard[] shards;
+
+  private final AtomicLong inFlight = new AtomicLong();
+
+  private volatile boolean running;
+
+  public ShardedTransferSequencer(
+      TransferExecutionProperties properties,
+      AccountsRepository accountsRepository,
+      TransferValidation validation,
+      CurrencyConversion conversion,
+      Consumer<TransferNotification> recorder) {
+    this.accountsRepository = accountsRepository;
+    this.validation = validation;
+    this.conversion = conversion;
+    this.recorder = recorder;
+    this.shards = new Shard[Math.max(1, properties.getShards())];
+    for (int i = 0; i < shards.length; i++) {
+      shards[i] = new Shard(i, properties.getRingSize());
+    }
+  }
+
+  public void start() {
+    running = true;
+    for (Shard shard : shards) {
+      shard.thread.start();
+    }
+  }
+
+  // stops accepting commands, lets in-flight ones (including pending credits) finish
+  public void stop() throws InterruptedException {
+    running = false;
+    for (Shard shard : shards) {
+      LockSupport.unpark(shard.thread);
+      shard.thread.join();
+    }
+    failStranded();
+  }
+
+  public int shardOf(String accountId) {
+    int hash = accountId.hashCode();
+    return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+  }
+
+  // amount in minor units
+  public CompletableFuture<TransferNotification> submit(
+      String accountIdFrom, String accountIdTo, long amount) {
+    if (!running) {
+      throw new TransferException("Transfer sequencer is not running");
+    }
+    TransferCommand command = new TransferCommand(accountIdFrom, accountIdTo, amount);
+    Shard shard = shards[shardOf(accountIdFrom)];
+
+    inFlight.incrementAndGet();
+    int attempts = 0;
+    while (!shard.ring.offer(command)) {
+      // ring is full: apply backpressure to the caller instead of buffering without bound
+      idle(++attempts);
+    }
+    if (!running) {
+      // raced with stop(): the shard may have exited before seeing the command
+      awaitShardsAndFailStranded();
+    }
+    return command.result;
+  }
+
+  public TransferNotification execute(String accountIdFrom, String accountIdTo, long amount) {
+    try {
+      return submit(accountIdFrom, accountIdTo, amount).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private void debit(Shard shard, TransferCommand command) {
+    try {
+      Account accountFrom = accountsRepository.getAccount(command.accountIdFrom);
+      Account accountTo = accountsRepository.getAccount(command.accountIdTo);
+      validation.validate(
+          accountFrom, command.accountIdFrom, accountTo, command.accountIdTo, command.amount);
+
+      // the rate is fixed here, the target shard credits whatever the debit was converted to
+      command.credit = conversion.credit(accountFrom, accountTo, command.amount);
+
+      long newFromBalance = accountFrom.getBalanceMinorUnits() - command.amount;
+      int targetShard = shardOf(command.accountIdTo);
+      if (targetShard == shard.index) {
+        long newToBalance = add(accountTo, command.credit);
+        accountsRepository.transfer(accountFrom, newFromBalance, accountTo, newToBalance);
+        complete(
+            command,
+            new TransferNotification(
+                command.accountIdFrom,
+                newFromBalance,
+                command.accountIdTo,
+                newToBalance,
+                command.amount,
+                command.credit));
+        return;
+      }
+
+      accountsRepository.setBalance(accountFrom, newFromBalance);
+      command.debitedBalance = newFromBalance;
+      handOff(targetShard, command);
+    } catch (RuntimeException e) {
+      fail(command, e);
+    }
+  }
+
+  private void credit(TransferCommand command) {
+    if (command.refundCause != null) {
+      refund(command);
+      return;
+    }
+    try {
+      Account accountTo = accountsRepository.getAccount(command.accountIdTo);
+      if (accountTo == null) {
+        throw new TransferException(
+            "Account " + command.accountIdTo + " disappeared while the transfer was in flight");
+      }
+      long newToBalance = add(accountTo, command.credit);
+      accountsRepository.setBalance(accountTo, newToBalance);
+      complete(
+          command,
+          new TransferNotification(
+              command.accountIdFrom,
+              command.debitedBalance,
+              command.accountIdTo,
+              newToBalance,
+              command.amount,
+              command.credit));
+    } catch (RuntimeException e) {
+      // the debit is already applied, so the source shard has to take the money back
+      command.refundCause = e;
+      handOff(shardOf(command.accountIdFrom), command);
+    }
+  }
+
+  private void refund(TransferCommand command) {
+    try {
+      Account accountFrom = accountsRepository.getAccount(command.accountIdFrom);
+      if (accountFrom == null) {
+        log.error(
+            "Cannot refund {} to {}, the account disappeared",
+            Money.toDecimal(command.amount),
+            command.accountIdFrom);
+      } else {
+        accountsRepository.setBalance(accountFrom, add(accountFrom, command.amount));
+      }
+    } catch (RuntimeException e) {
+      log.error(
+          "Failed to refund {} to {}", Money.toDecimal(command.amount), command.accountIdFrom, e);
+    }
+    fail(command, command.refundCause);
+  }
+
+  private void handOff(int targetShard, TransferCommand command) {
+    shards[targetShard].handoffs.add(command);
+    LockSupport.unpark(shards[targetShard].thread);
+  }
+
+  private static long add(Account account, long amount) {
+    try {
+      return Math.addExact(account.getBalanceMinorUnits(), amount);
+    } catch (ArithmeticException e) {
+      throw new InvalidAmountException(
+          "Balance of account " + account.getAccountId() + " would overflow");
+    }
+  }
+
+  private void awaitShardsAndFailStranded() {
+    try {
+      for (Shard shard : shards) {
+        shard.thread.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    failStranded();
+  }
+
+  private synchronized void failStranded() {
+    for (Shard shard : shards) {
+      if (shard.thread.isAlive()) {
+        return;
+      }
+    }
+    for (Shard shard : shards) {
+      TransferCommand command;
+      while ((command = shard.ring.poll()) != null) {
+        fail(command, new TransferException("Transfer sequencer is not running"));
+      }
+      while ((command = shard.handoffs.poll()) != null) {
+        fail(command, new TransferException("Transfer sequencer is not running"));
+      }
+    }
+  }
+
+  private void complete(TransferCommand command, TransferNotification notification) {
+    try {
+      recorder.accept(notification);
+    } catch (RuntimeException e) {
+      // applied but not recorded, the caller hears about it like on the locking path
+      fail(command, e);
+      return;
+    }
+    inFlight.decrementAndGet();
+    command.result.complete(notification);
+  }
+
+  private void fail(TransferCommand command, RuntimeException e) {
+    inFlight.decrementAndGet();
+    command.result.completeExceptionally(e);
+  }
+
+  private static void idle(int attempts) {
+    if (attempts < SPIN_TRIES) {
+      return;
+    }
+    if (attempts < YIELD_TRIES) {
+      Thread.yield();
+      return;
+    }
+    LockSupport.parkNanos(PARK_NANOS);
+  }
+
+  private final class Shard implements Runnable {
+
+    private final int index;
+
+    private final CommandRingBuffer<TransferCommand> ring;
+
+    // credits handed over by other shards; unbounded so two shards can never block each other
+    private final Queue<TransferCommand> handoffs = new ConcurrentLinkedQueue<>();
+
+    private final Thread thread;
+
+    private Shard(int index, int ringSize) {
+      this.index = index;
+      this.ring = new CommandRingBuffer<>(ringSize);
+      this.thread = new Thread(this, "transfer-shard-" + index);
+      this.thread.setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      int idleRounds = 0;
+      while (running || inFlight.get() > 0) {
+        // credits first: they complete transfers that are already half applied
+        TransferCommand command = handoffs.poll();
+        if (command != null) {
+          credit(command);
+          idleRounds = 0;
+          continue;
+        }
+        command = ring.poll();
+        if (command != null) {
+          debit(this, command);
+          idleRounds = 0;
+          continue;
+        }
+        idle(++idleRounds);
+      }
+      log.debug("Transfer shard {} stopped", index);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.db.awmd.challenge.service.sequencer;
+
+import com.db.awmd.challenge.dto.TransferNotification;
+
+import java.util.concurrent.CompletableFuture;
+
+class TransferCommand {
+
+  final String accountIdFrom;
+
+  final String accountIdTo;
+
+  // in minor units
+  final long amount;
+
+  final CompletableFuture<TransferNotification> result = new CompletableFuture<>();
+
+  // set by the source shard once the debit is applied, read by the target shard after the handoff
+  long debitedBalance;
+
+  // the amount converted to the target account's currency, set by the source shard with the debit
+  long credit;
+
+  // set when the credit failed and the handoff returns the debited amount to the source shard
+  RuntimeException refundCause;
+
+  TransferCommand(String accountIdFrom, String accountIdTo, long amount) {
+    this.accountIdFrom = accountIdFrom;
+    this.accountIdTo = accountIdTo;
+    this.amount = amount;
+  }
+}
@@ -0,0 +1,15 @@
+package com.db.awmd.challenge.service.sequencer;
+
+import com.db.awmd.challenge.domain.Account;
+
+@FunctionalInterface
+public interface TransferValidation {
+
+  // throws TransferException when the transfer must be rejected
+  void validate(
+      Account accountFrom,
+      String accountIdFrom,
+      Account accountTo,
+      String accountIdTo,
+      long amount);
+}
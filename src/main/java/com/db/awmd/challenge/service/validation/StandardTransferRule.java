@@ -0,0 +1,70 @@
+package com.db.awmd.challenge.service.validation;
+
+import com.db.awmd.challenge.domain.Account;
+
+// the gaps between the orders leave room for additional rules
+public enum StandardTransferRule implements TransferRule {
+  POSITIVE_AMOUNT(100) {
+    @Override
+    public int check(
+        Account accountFrom,
+        String accountIdFrom,
+        Account accountTo,
+        String accountIdTo,
+        long amount) {
+      return amount < 0 ? TransferError.NEGATIVE_AMOUNT.mask() : 0;
+    }
+  },
+
+  DISTINCT_ACCOUNTS(200) {
+    @Override
+    public int check(
+        Account accountFrom,
+        String accountIdFrom,
+        Account accountTo,
+        String accountIdTo,
+        long amount) {
+      return accountIdFrom != null && accountIdFrom.equals(accountIdTo)
+          ? TransferError.SELF_TRANSFER.mask()
+          : 0;
+    }
+  },
+
+  ACCOUNTS_EXIST(300) {
+    @Override
+    public int check(
+        Account accountFrom,
+        String accountIdFrom,
+        Account accountTo,
+        String accountIdTo,
+        long amount) {
+      return (accountFrom == null ? TransferError.ACCOUNT_FROM_NOT_FOUND.mask() : 0)
+          | (accountTo == null ? TransferError.ACCOUNT_TO_NOT_FOUND.mask() : 0);
+    }
+  },
+
+  SUFFICIENT_BALANCE(1000) {
+    @Override
+    public int check(
+        Account accountFrom,
+        String accountIdFrom,
+        Account accountTo,
+        String accountIdTo,
+        long amount) {
+      return accountFrom != null && accountFrom.getBalanceMinorUnits() < amount
+          ? TransferError.INSUFFICIENT_BALANCE.mask()
+          : 0;
+    }
+  };
+
+  private final int order;
+
+  StandardTransferRule(int order) {
+    this.order = order;
+  }
+
+  @Override
+  public int order() {
+    return order;
+  }
+}
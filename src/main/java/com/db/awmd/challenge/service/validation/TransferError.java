@@ -0,0 +1,76 @@
+package com.db.awmd.challenge.service.validation;
+
+import com.db.awmd.challenge.metrics.RejectionReason;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// validation outcomes are bit masks of these, so rejecting a transfer needs no message or list
+public enum TransferError {
+  ACCOUNT_FROM_NOT_FOUND(RejectionReason.ACCOUNT_NOT_FOUND),
+  ACCOUNT_TO_NOT_FOUND(RejectionReason.ACCOUNT_NOT_FOUND),
+  NEGATIVE_AMOUNT(RejectionReason.INVALID_AMOUNT),
+  SELF_TRANSFER(RejectionReason.SELF_TRANSFER),
+  INSUFFICIENT_BALANCE(RejectionReason.INSUFFICIENT_BALANCE);
+
+  // errors whose message contains an account id
+  public static final int NAMES_ACCOUNT =
+      ACCOUNT_FROM_NOT_FOUND.mask() | ACCOUNT_TO_NOT_FOUND.mask();
+
+  private static final TransferError[] VALUES = values();
+
+  public static final int ALL = (1 << VALUES.length) - 1;
+
+  private final RejectionReason rejectionReason;
+
+  TransferError(RejectionReason rejectionReason) {
+    this.rejectionReason = rejectionReason;
+  }
+
+  public int mask() {
+    return 1 << ordinal();
+  }
+
+  public RejectionReason getRejectionReason() {
+    return rejectionReason;
+  }
+
+  public boolean isIn(int errors) {
+    return (errors & mask()) != 0;
+  }
+
+  public String render(String accountIdFrom, String accountIdTo) {
+    switch (this) {
+      case ACCOUNT_FROM_NOT_FOUND:
+        return "No account with id " + accountIdFrom + " found";
+      case ACCOUNT_TO_NOT_FOUND:
+        return "No account with id " + accountIdTo + " found";
+      case NEGATIVE_AMOUNT:
+        return "Amount to transfer must be positive";
+      case SELF_TRANSFER:
+        return "Self transfer is not allowed";
+      default:
+        return "Insufficient balance to perform transfer";
+    }
+  }
+
+  // the error of the lowest bit set in a non-empty mask
+  public static TransferError lowest(int errors) {
+    return VALUES[Integer.numberOfTrailingZeros(errors)];
+  }
+
+  // messages of all errors in the mask in declaration order, an empty list without allocating
+  public static List<String> render(int errors, String accountIdFrom, String accountIdTo) {
+    if (errors == 0) {
+      return Collections.emptyList();
+    }
+    List<String> messages = new ArrayList<>(Integer.bitCount(errors));
+    for (TransferError error : VALUES) {
+      if (error.isIn(errors)) {
+        messages.add(error.render(accountIdFrom, accountIdTo));
+      }
+    }
+    return messages;
+  }
+}
@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.service.validation;
+
+import com.db.awmd.challenge.domain.Account;
+
+/**
+ * One check of the {@link com.db.awmd.challenge.service.AccountsValidator} chain. Rules run in
+ * ascending {@link #order()} and the chain stops at the first rule reporting an error, so cheap
+ * checks on the request alone belong before those reading accounts. Spring beans implementing this
+ * interface are merged into the {@link StandardTransferRule standard rules}.
+ */
+public interface TransferRule {
+
+  // a mask of TransferError bits, 0 when the transfer passes; either account may be null
+  int check(
+      Account accountFrom,
+      String accountIdFrom,
+      Account accountTo,
+      String accountIdTo,
+      long amount);
+
+  default int order() {
+    return 0;
+  }
+}
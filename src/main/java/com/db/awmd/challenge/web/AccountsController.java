@@ -1,27 +1,69 @@
 package com.db.awmd.challenge.web;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.AccountImportSummary;
+import com.db.awmd.challenge.dto.AccountsSnapshot;
+import com.db.awmd.challenge.dto.BatchTransferRequest;
 import com.db.awmd.challenge.dto.MoneyTransfer;
+import com.db.awmd.challenge.dto.TransferHistoryPage;
+import com.db.awmd.challenge.dto.TransferResult;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.exception.TransferOverloadedException;
+import com.db.awmd.challenge.metrics.TransferMetrics;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.admission.TransferAdmission;
+import com.db.awmd.challenge.service.bulk.AccountBulkService;
+import com.db.awmd.challenge.service.bulk.AccountFormat;
+import com.db.awmd.challenge.web.binary.BinaryWireFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountsController {
+  public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+  public static final String TEXT_CSV_VALUE = "text/csv";
 
   private final AccountsService accountsService;
 
+  private final AccountBulkService accountBulkService;
+
+  private final ObjectMapper objectMapper;
+
+  private final TransferMetrics metrics;
+
+  private final TransferAdmission admission;
+
   @Autowired
-  public AccountsController(AccountsService accountsService) {
+  public AccountsController(
+      AccountsService accountsService,
+      AccountBulkService accountBulkService,
+      ObjectMapper objectMapper,
+      TransferMetrics metrics,
+      TransferAdmission admission) {
     this.accountsService = accountsService;
+    this.accountBulkService = accountBulkService;
+    this.objectMapper = objectMapper;
+    this.metrics = metrics;
+    this.admission = admission;
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -31,19 +73,210 @@ public class AccountsController {
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  // one account per line, parsed and inserted as the request body arrives
+  @PostMapping(consumes = APPLICATION_NDJSON_VALUE)
+  public AccountImportSummary importAccounts(InputStream body) throws IOException {
+    log.info("Importing accounts from NDJSON");
+    return this.accountBulkService.importAccounts(body, AccountFormat.NDJSON);
+  }
+
+  @PostMapping(consumes = TEXT_CSV_VALUE)
+  public AccountImportSummary importAccountsCsv(InputStream body) throws IOException {
+    log.info("Importing accounts from CSV");
+    return this.accountBulkService.importAccounts(body, AccountFormat.CSV);
+  }
+
+  // GET /v1/accounts with Accept: application/x-ndjson or text/csv streams every account
+  @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+  public StreamingResponseBody exportAccounts() {
+    log.info("Exporting accounts as NDJSON");
+    return outputStream -> accountBulkService.exportAccounts(outputStream, AccountFormat.NDJSON);
+  }
+
+  @GetMapping(produces = TEXT_CSV_VALUE)
+  public StreamingResponseBody exportAccountsCsv() {
+    log.info("Exporting accounts as CSV");
+    return outputStream -> accountBulkService.exportAccounts(outputStream, AccountFormat.CSV);
+  }
+
+  // also as application/x-awmd-binary, see BinaryWireFormat
   @GetMapping(path = "/{accountId}")
   public Account getAccount(@PathVariable String accountId) {
     log.info("Retrieving account for id {}", accountId);
-    return this.accountsService.getAccount(accountId);
+    return this.accountsService.getAccountSnapshot(accountId);
+  }
+
+  // e.g. GET /v1/accounts?ids=Id-1,Id-2 returns all balances as of one instant
+  @GetMapping(params = "ids")
+  public AccountsSnapshot getAccounts(@RequestParam List<String> ids) {
+    log.info("Retrieving a snapshot of {} accounts", ids.size());
+    return this.accountsService.getAccountsSnapshot(ids);
+  }
+
+  // e.g. GET /v1/accounts/Id-1/transfers?limit=20, then again with &cursor=<nextCursor>
+  @GetMapping(path = "/{accountId}/transfers")
+  public TransferHistoryPage getTransfers(
+      @PathVariable String accountId,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "50") int limit) {
+    log.info("Retrieving transfers of account {} after cursor {}", accountId, cursor);
+    return this.accountsService.getTransferHistory(accountId, cursor, limit);
   }
 
   @PostMapping(path = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> transferMoney(@RequestBody @Valid MoneyTransfer moneyTransfer) {
-    log.info("Performing money transfer {}", moneyTransfer);
-    accountsService.performTransfer(
-        moneyTransfer.getAccountIdFrom(),
-        moneyTransfer.getAccountIdTo(),
-        moneyTransfer.getAmount());
-    return new ResponseEntity<>(HttpStatus.OK);
+  public ResponseEntity<Object> transferMoney(
+      @RequestBody @Valid MoneyTransfer moneyTransfer, HttpServletRequest request) {
+    return transfer(moneyTransfer, request);
+  }
+
+  // the decoder checks the same constraints as @Valid, without bean validation's cost
+  @PostMapping(path = "/transfer", consumes = BinaryWireFormat.MEDIA_TYPE_VALUE)
+  public ResponseEntity<Object> transferMoneyBinary(
+      @RequestBody MoneyTransfer moneyTransfer, HttpServletRequest request) {
+    return transfer(moneyTransfer, request);
+  }
+
+  private ResponseEntity<Object> transfer(MoneyTransfer moneyTransfer, HttpServletRequest request) {
+    long started = System.nanoTime();
+    try {
+      String clientId = clientIdOf(request);
+      long admitted =
+          admission.admit(
+              clientId, moneyTransfer.getAccountIdFrom(), moneyTransfer.getAccountIdTo());
+      boolean overloaded = false;
+      try {
+        log.info("Performing money transfer {}", moneyTransfer);
+        accountsService.requireCurrency(
+            moneyTransfer.getAccountIdFrom(), moneyTransfer.getCurrency());
+        accountsService.performTransfer(
+            moneyTransfer.getIdempotencyKey(),
+            moneyTransfer.getAccountIdFrom(),
+            moneyTransfer.getAccountIdTo(),
+            moneyTransfer.getAmountMinorUnits(),
+            moneyTransfer.getCurrency());
+        return new ResponseEntity<>(HttpStatus.OK);
+      } catch (RuntimeException e) {
+        overloaded = isOverload(e);
+        throw e;
+      } finally {
+        admission.release(admitted, overloaded);
+      }
+    } finally {
+      metrics.getRequest().recordSince(started);
+    }
+  }
+
+  // same contract as /transfer, but the request thread is released while the transfer waits for
+  // its locks, shard or disk
+  @PostMapping(path = "/transfer/async", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public CompletableFuture<ResponseEntity<Object>> transferMoneyAsync(
+      @RequestBody @Valid MoneyTransfer moneyTransfer, HttpServletRequest request) {
+    long started = System.nanoTime();
+    long admitted =
+        admission.admit(
+            clientIdOf(request), moneyTransfer.getAccountIdFrom(), moneyTransfer.getAccountIdTo());
+    log.info("Performing asynchronous money transfer {}", moneyTransfer);
+    CompletableFuture<Void> transfer;
+    try {
+      accountsService.requireCurrency(
+          moneyTransfer.getAccountIdFrom(), moneyTransfer.getCurrency());
+      transfer =
+          accountsService.performTransferAsync(
+              moneyTransfer.getIdempotencyKey(),
+              moneyTransfer.getAccountIdFrom(),
+              moneyTransfer.getAccountIdTo(),
+              moneyTransfer.getAmountMinorUnits(),
+              moneyTransfer.getCurrency());
+    } catch (RuntimeException e) {
+      admission.release(admitted, isOverload(e));
+      throw e;
+    }
+    CompletableFuture<ResponseEntity<Object>> response = new CompletableFuture<>();
+    transfer.whenComplete(
+        (ignored, failure) -> {
+          metrics.getRequest().recordSince(started);
+          if (failure == null) {
+            admission.release(admitted, false);
+            response.complete(new ResponseEntity<>(HttpStatus.OK));
+          } else {
+            // unwrapped so the exception handlers map it exactly like the blocking endpoint
+            Throwable cause =
+                failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause()
+                    : failure;
+            admission.release(admitted, isOverload(cause));
+            response.completeExceptionally(cause);
+          }
+        });
+    return response;
+  }
+
+  @PostMapping(
+      path = "/transfer/batch",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public List<TransferResult> transferMoneyInBatch(
+      @RequestBody @Valid BatchTransferRequest batchTransfer, HttpServletRequest request) {
+    long admitted = admission.admitBatch(clientIdOf(request), batchTransfer.getTransfers());
+    boolean overloaded = false;
+    try {
+      log.info(
+          "Performing {} batch of {} money transfers",
+          batchTransfer.getMode(),
+          batchTransfer.getTransfers().size());
+      return accountsService.performBatchTransfer(
+          batchTransfer.getTransfers(), batchTransfer.getMode());
+    } catch (RuntimeException e) {
+      overloaded = isOverload(e);
+      throw e;
+    } finally {
+      admission.release(admitted, overloaded);
+    }
+  }
+
+  // one JSON result per line, flushed as soon as the chunk it belongs to has been applied
+  @PostMapping(
+      path = "/transfer/batch",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = APPLICATION_NDJSON_VALUE)
+  public StreamingResponseBody streamMoneyTransferBatch(
+      @RequestBody @Valid BatchTransferRequest batchTransfer, HttpServletRequest request) {
+    long admitted = admission.admitBatch(clientIdOf(request), batchTransfer.getTransfers());
+    log.info(
+        "Streaming {} batch of {} money transfers",
+        batchTransfer.getMode(),
+        batchTransfer.getTransfers().size());
+    return outputStream -> {
+      boolean overloaded = false;
+      try (SequenceWriter writer =
+          objectMapper.writer().withRootValueSeparator("\n").writeValues(outputStream)) {
+        accountsService.performBatchTransfer(
+            batchTransfer.getTransfers(),
+            batchTransfer.getMode(),
+            result -> {
+              try {
+                writer.write(result);
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            });
+      } catch (RuntimeException e) {
+        overloaded = isOverload(e);
+        throw e;
+      } finally {
+        admission.release(admitted, overloaded);
+      }
+    };
+  }
+
+  private String clientIdOf(HttpServletRequest request) {
+    String clientId = request.getHeader(admission.getClientHeader());
+    return clientId != null ? clientId : request.getRemoteAddr();
+  }
+
+  // lock timeouts and full queues tell the concurrency limit to back off
+  private static boolean isOverload(Throwable failure) {
+    return failure instanceof AccountLockTimeoutException
+        || failure instanceof TransferOverloadedException;
   }
 }
@@ -0,0 +1,158 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.config.ChangeStreamProperties;
+import com.db.awmd.challenge.dto.BalanceChange;
+import com.db.awmd.challenge.exception.ChangeOffsetExpiredException;
+import com.db.awmd.challenge.repository.changes.BalanceChangeStream;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static com.db.awmd.challenge.web.AccountsController.APPLICATION_NDJSON_VALUE;
+
+/**
+ * Tails the balance changes, e.g. GET /v1/changes?from=0 with Accept: application/x-ndjson, or as
+ * server-sent events with Accept: text/event-stream. Without an offset a stream starts with the
+ * next change. Each stream writes to its own blocking response, so a client that reads slowly
+ * only slows down its own stream, and ends after accounts.changes.max-stream-ms; the client
+ * resumes from the offset after the last change it got, or with Last-Event-ID.
+ */
+@RestController
+@RequestMapping("/v1/changes")
+@Slf4j
+public class ChangeStreamController {
+  // changes written between two flushes
+  private static final int BATCH = 1_000;
+
+  private static final byte[] NEWLINE = "\n".getBytes(StandardCharsets.UTF_8);
+
+  // an SSE comment, ignored by clients
+  private static final byte[] SSE_HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+  private final BalanceChangeStream changes;
+
+  private final ChangeStreamProperties properties;
+
+  private final ObjectMapper objectMapper;
+
+  @Autowired
+  public ChangeStreamController(
+      BalanceChangeStream changes, ChangeStreamProperties properties, ObjectMapper objectMapper) {
+    this.changes = changes;
+    this.properties = properties;
+    this.objectMapper = objectMapper;
+  }
+
+  @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+  public StreamingResponseBody streamChanges(
+      @RequestParam(required = false) Long from,
+      @RequestParam(defaultValue = "9223372036854775807") long limit) {
+    // subscribing here, not in the body, turns a bad offset into a status code
+    BalanceChangeStream.Cursor cursor = subscribe(from);
+    return outputStream ->
+        stream(
+            cursor,
+            limit,
+            outputStream,
+            change -> {
+              outputStream.write(objectMapper.writeValueAsBytes(change));
+              outputStream.write(NEWLINE);
+            },
+            NEWLINE);
+  }
+
+  @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public StreamingResponseBody streamChangeEvents(
+      @RequestParam(required = false) Long from,
+      @RequestParam(defaultValue = "9223372036854775807") long limit,
+      @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+    BalanceChangeStream.Cursor cursor =
+        subscribe(from == null && lastEventId != null ? lastEventId + 1 : from);
+    return outputStream ->
+        stream(
+            cursor,
+            limit,
+            outputStream,
+            change -> {
+              String header =
+                  "id: " + change.getOffset() + "\nevent: " + change.getType() + "\ndata: ";
+              outputStream.write(header.getBytes(StandardCharsets.UTF_8));
+              outputStream.write(objectMapper.writeValueAsBytes(change));
+              outputStream.write(NEWLINE);
+              outputStream.write(NEWLINE);
+            },
+            SSE_HEARTBEAT);
+  }
+
+  private BalanceChangeStream.Cursor subscribe(Long from) {
+    long start = from != null ? from : changes.getEndOffset();
+    BalanceChangeStream.Cursor cursor = changes.subscribe(start);
+    log.info("Streaming balance changes from offset {}", start);
+    return cursor;
+  }
+
+  private void stream(
+      BalanceChangeStream.Cursor cursor,
+      long limit,
+      OutputStream outputStream,
+      ChangeWriter writer,
+      byte[] heartbeat)
+      throws IOException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getMaxStreamMs());
+    long remaining = limit;
+    try {
+      while (remaining > 0) {
+        long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (left <= 0) {
+          break;
+        }
+        int written =
+            cursor.poll(
+                (int) Math.min(BATCH, remaining),
+                change -> {
+                  try {
+                    writer.write(change);
+                  } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                  }
+                });
+        if (written > 0) {
+          remaining -= written;
+          outputStream.flush();
+          continue;
+        }
+        if (!cursor.await(Math.min(properties.getHeartbeatMs(), left))) {
+          outputStream.write(heartbeat);
+          outputStream.flush();
+        }
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } catch (ChangeOffsetExpiredException e) {
+      // the client fell behind what is retained, reconnecting tells it so with a 410
+      log.info("Ending change stream: {}", e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      log.info("Change stream ended at offset {}", cursor.getPosition());
+      cursor.close();
+    }
+  }
+
+  private interface ChangeWriter {
+    void write(BalanceChange change) throws IOException;
+  }
+}
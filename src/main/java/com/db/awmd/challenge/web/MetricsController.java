@@ -0,0 +1,61 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.dto.TransferMetricsSnapshot;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.changes.BalanceChangeStream;
+import com.db.awmd.challenge.service.TransferNotificationDispatcher;
+import com.db.awmd.challenge.service.admission.TransferAdmission;
+import com.db.awmd.challenge.service.reconciliation.AccountsReconciler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/metrics")
+public class MetricsController {
+
+  private final TransferMetrics metrics;
+
+  private final TransferNotificationDispatcher notificationDispatcher;
+
+  private final TransferAdmission admission;
+
+  private final AccountsReconciler reconciler;
+
+  private final BalanceChangeStream changes;
+
+  @Autowired
+  public MetricsController(
+      TransferMetrics metrics,
+      TransferNotificationDispatcher notificationDispatcher,
+      TransferAdmission admission,
+      AccountsReconciler reconciler,
+      BalanceChangeStream changes) {
+    this.metrics = metrics;
+    this.notificationDispatcher = notificationDispatcher;
+    this.admission = admission;
+    this.reconciler = reconciler;
+    this.changes = changes;
+  }
+
+  // latencies are cumulative since startup or the last reset, in microseconds
+  @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+  public TransferMetricsSnapshot getMetrics() {
+    return metrics.snapshot(
+        notificationDispatcher.getMetrics(),
+        admission.getMetrics(),
+        reconciler.getMetrics(),
+        changes.getMetrics());
+  }
+
+  @DeleteMapping
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  public void resetMetrics() {
+    metrics.reset();
+  }
+}
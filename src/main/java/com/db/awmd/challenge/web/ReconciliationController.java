@@ -0,0 +1,42 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.dto.ReconciliationReport;
+import com.db.awmd.challenge.service.reconciliation.AccountsReconciler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/reconciliation")
+@Slf4j
+public class ReconciliationController {
+
+  private final AccountsReconciler reconciler;
+
+  @Autowired
+  public ReconciliationController(AccountsReconciler reconciler) {
+    this.reconciler = reconciler;
+  }
+
+  // the report of the last run, scheduled or not
+  @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> getLastReport() {
+    ReconciliationReport report = reconciler.getLastReport();
+    return report == null
+        ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
+        : new ResponseEntity<>(report, HttpStatus.OK);
+  }
+
+  // transfers wait while the accounts are scanned
+  @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+  public ReconciliationReport reconcile() {
+    log.info("Reconciling accounts on request");
+    return reconciler.reconcile();
+  }
+}
@@ -0,0 +1,58 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.dto.ScheduledTransferRequest;
+import com.db.awmd.challenge.service.schedule.TransferScheduler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+
+@RestController
+@RequestMapping("/v1/accounts/transfer/scheduled")
+@Slf4j
+public class ScheduledTransferController {
+
+  private final TransferScheduler transferScheduler;
+
+  @Autowired
+  public ScheduledTransferController(TransferScheduler transferScheduler) {
+    this.transferScheduler = transferScheduler;
+  }
+
+  // e.g. {"accountIdFrom":"Id-1","accountIdTo":"Id-2","amount":100,
+  // "executeAt":"2030-01-01T09:00:00Z","interval":"P30D","occurrences":12}
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> scheduleTransfer(
+      @RequestBody @Valid ScheduledTransferRequest request) {
+    log.info("Scheduling transfer {}", request);
+    return new ResponseEntity<>(transferScheduler.schedule(request), HttpStatus.CREATED);
+  }
+
+  // finished and cancelled schedules are gone
+  @GetMapping(path = "/{scheduleId}")
+  public ResponseEntity<Object> getScheduledTransfer(@PathVariable long scheduleId) {
+    ScheduledTransfer schedule = transferScheduler.getSchedule(scheduleId);
+    return schedule == null
+        ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
+        : new ResponseEntity<>(schedule, HttpStatus.OK);
+  }
+
+  @DeleteMapping(path = "/{scheduleId}")
+  public ResponseEntity<Object> cancelScheduledTransfer(@PathVariable long scheduleId) {
+    log.info("Cancelling scheduled transfer {}", scheduleId);
+    return transferScheduler.cancel(scheduleId) == null
+        ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
+        : new ResponseEntity<>(HttpStatus.NO_CONTENT);
+  }
+}
@@ -1,8 +1,20 @@
 package com.db.awmd.challenge.web.advice;
 
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.exception.ChangeOffsetExpiredException;
+import com.db.awmd.challenge.exception.ChangeStreamUnavailableException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.IdempotencyKeyReusedException;
+import com.db.awmd.challenge.exception.InvalidAccountIdException;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.InvalidPageRequestException;
+import com.db.awmd.challenge.exception.InvalidScheduleException;
 import com.db.awmd.challenge.exception.TransferException;
+import com.db.awmd.challenge.exception.TransferOverloadedException;
+import com.db.awmd.challenge.exception.TransferThrottledException;
+import com.db.awmd.challenge.exception.UnsupportedCurrencyException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -13,10 +25,62 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
 @Slf4j
 public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionHandler {
 
-  @ExceptionHandler(value = {DuplicateAccountIdException.class, TransferException.class})
+  @ExceptionHandler(
+      value = {
+        DuplicateAccountIdException.class,
+        TransferException.class,
+        InvalidAmountException.class,
+        InvalidAccountIdException.class,
+        InvalidPageRequestException.class,
+        InvalidScheduleException.class,
+        UnsupportedCurrencyException.class
+      })
   protected ResponseEntity<Object> handleException(RuntimeException ex) {
-    log.warn("Exception occurred", ex);
+    // client errors need no stack trace, and rejections are counted by the transfer metrics
+    log.debug("Request rejected: {}", ex.getMessage());
 
     return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
   }
+
+  @ExceptionHandler(
+      value = {AccountLockTimeoutException.class, TransferOverloadedException.class})
+  protected ResponseEntity<Object> handleLockTimeout(RuntimeException ex) {
+    log.warn("Transfer rejected: {}", ex.getMessage());
+
+    return new ResponseEntity<>(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
+  @ExceptionHandler(value = IdempotencyKeyReusedException.class)
+  protected ResponseEntity<Object> handleIdempotencyKeyReused(IdempotencyKeyReusedException ex) {
+    log.warn("Transfer rejected: {}", ex.getMessage());
+
+    return new ResponseEntity<>(ex.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+  }
+
+  @ExceptionHandler(value = TransferThrottledException.class)
+  protected ResponseEntity<Object> handleThrottled(TransferThrottledException ex) {
+    // shed load is expected under overload, logging every rejection would add to it
+    log.debug("Transfer throttled: {}", ex.getMessage());
+
+    HttpHeaders headers = new HttpHeaders();
+    if (ex.getRetryAfterMillis() > 0) {
+      headers.set(HttpHeaders.RETRY_AFTER, Long.toString((ex.getRetryAfterMillis() + 999) / 1000));
+    }
+    return new ResponseEntity<>(ex.getMessage(), headers, HttpStatus.TOO_MANY_REQUESTS);
+  }
+
+  @ExceptionHandler(value = ChangeOffsetExpiredException.class)
+  protected ResponseEntity<Object> handleOffsetExpired(ChangeOffsetExpiredException ex) {
+    // the consumer has to start over from a snapshot of the accounts
+    log.info("Change stream request rejected: {}", ex.getMessage());
+
+    return new ResponseEntity<>(ex.getMessage(), HttpStatus.GONE);
+  }
+
+  @ExceptionHandler(value = ChangeStreamUnavailableException.class)
+  protected ResponseEntity<Object> handleStreamUnavailable(ChangeStreamUnavailableException ex) {
+    log.warn("Change stream unavailable: {}", ex.getMessage());
+
+    return new ResponseEntity<>(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+  }
 }
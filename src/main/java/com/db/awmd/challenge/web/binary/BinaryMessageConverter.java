@@ -0,0 +1,65 @@
+package com.db.awmd.challenge.web.binary;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.MoneyTransfer;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// reads and writes MoneyTransfer and Account bodies in the BinaryWireFormat
+public class BinaryMessageConverter extends AbstractHttpMessageConverter<Object> {
+  private static final int INITIAL_BUFFER_SIZE = 128;
+
+  public BinaryMessageConverter() {
+    super(BinaryWireFormat.MEDIA_TYPE);
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return clazz == MoneyTransfer.class || clazz == Account.class;
+  }
+
+  @Override
+  protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+    InputStream body = inputMessage.getBody();
+    byte[] frame = new byte[INITIAL_BUFFER_SIZE];
+    int length = 0;
+    int read;
+    while ((read = body.read(frame, length, frame.length - length)) > 0) {
+      length += read;
+      if (length == frame.length) {
+        if (length == BinaryWireFormat.MAX_FRAME_LENGTH) {
+          if (body.read() >= 0) {
+            throw new HttpMessageNotReadableException("Frame is longer than the longest transfer");
+          }
+          break;
+        }
+        frame = Arrays.copyOf(frame, Math.min(length * 2, BinaryWireFormat.MAX_FRAME_LENGTH));
+      }
+    }
+
+    // the messages are those of bean validation for JSON bodies, so both map to 400
+    try {
+      return clazz == MoneyTransfer.class
+          ? BinaryWireFormat.readTransfer(frame, length)
+          : BinaryWireFormat.readAccount(frame, length);
+    } catch (IllegalArgumentException e) {
+      throw new HttpMessageNotReadableException(e.getMessage(), e);
+    }
+  }
+
+  @Override
+  protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+    byte[] frame =
+        value instanceof MoneyTransfer
+            ? BinaryWireFormat.writeTransfer((MoneyTransfer) value)
+            : BinaryWireFormat.writeAccount((Account) value);
+    outputMessage.getHeaders().setContentLength(frame.length);
+    outputMessage.getBody().write(frame);
+  }
+}
@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.web.binary;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import java.util.List;
+
+// appended after the JSON converters, so that JSON stays the default for Accept: */*
+@Configuration
+public class BinaryWireConfig extends WebMvcConfigurerAdapter {
+
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.add(new BinaryMessageConverter());
+  }
+}
@@ -0,0 +1,181 @@
+package com.db.awmd.challenge.web.binary;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.dto.MoneyTransfer;
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact encoding of single transfers and account reads. A frame is a version byte, the amount
+ * or balance as a big-endian int64 in minor units, then each string as a big-endian uint16 byte
+ * count followed by its UTF-8 bytes:
+ *
+ * <pre>
+ * transfer: version amount accountIdFrom accountIdTo idempotencyKey (empty for none)
+ * account:  version balance accountId [currency, left out for Money.DEFAULT_CURRENCY]
+ * </pre>
+ *
+ * Decoding checks the constraints that bean validation checks on the JSON bodies.
+ */
+public final class BinaryWireFormat {
+  public static final String MEDIA_TYPE_VALUE = "application/x-awmd-binary";
+
+  public static final MediaType MEDIA_TYPE = MediaType.valueOf(MEDIA_TYPE_VALUE);
+
+  public static final byte VERSION = 1;
+
+  private static final int MAX_STRING_BYTES = 0xFFFF;
+
+  // a transfer frame with three strings at their longest
+  public static final int MAX_FRAME_LENGTH = 1 + 8 + 3 * (2 + MAX_STRING_BYTES);
+
+  private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
+  private BinaryWireFormat() {}
+
+  public static byte[] writeTransfer(MoneyTransfer transfer) {
+    byte[] from = utf8(transfer.getAccountIdFrom());
+    byte[] to = utf8(transfer.getAccountIdTo());
+    byte[] key = utf8(transfer.getIdempotencyKey() == null ? "" : transfer.getIdempotencyKey());
+    byte[] frame = new byte[1 + 8 + 6 + from.length + to.length + key.length];
+    frame[0] = VERSION;
+    int position = putLong(frame, 1, transfer.getAmountMinorUnits());
+    position = putString(frame, position, from);
+    position = putString(frame, position, to);
+    putString(frame, position, key);
+    return frame;
+  }
+
+  public static MoneyTransfer readTransfer(byte[] frame, int length) {
+    Reader reader = new Reader(frame, length);
+    long amount = reader.readLong();
+    String from = reader.readString();
+    String to = reader.readString();
+    String key = reader.readString();
+    reader.expectEnd();
+    if (from.isEmpty() || to.isEmpty()) {
+      throw new IllegalArgumentException("Account ids must not be empty");
+    }
+    if (amount < 0) {
+      throw new IllegalArgumentException("Amount to transfer must be positive.");
+    }
+    if (key.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+      throw new IllegalArgumentException(
+          "Idempotency key is longer than " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+    }
+    return new MoneyTransfer(from, to, amount, key.isEmpty() ? null : key);
+  }
+
+  public static byte[] writeAccount(Account account) {
+    byte[] accountId = utf8(account.getAccountId());
+    byte[] currency =
+        Money.DEFAULT_CURRENCY.equals(account.getCurrency())
+            ? null
+            : utf8(account.getCurrency());
+    byte[] frame =
+        new byte[1 + 8 + 2 + accountId.length + (currency == null ? 0 : 2 + currency.length)];
+    frame[0] = VERSION;
+    int position = putString(frame, putLong(frame, 1, account.getBalanceMinorUnits()), accountId);
+    if (currency != null) {
+      putString(frame, position, currency);
+    }
+    return frame;
+  }
+
+  public static Account readAccount(byte[] frame, int length) {
+    Reader reader = new Reader(frame, length);
+    long balance = reader.readLong();
+    String accountId = reader.readString();
+    String currency = reader.hasMore() ? reader.readString() : Money.DEFAULT_CURRENCY;
+    reader.expectEnd();
+    if (accountId.isEmpty()) {
+      throw new IllegalArgumentException("Account id must not be empty");
+    }
+    if (balance < 0) {
+      throw new IllegalArgumentException("Initial balance must be positive.");
+    }
+    if (!Money.isCurrencyCode(currency)) {
+      throw new IllegalArgumentException("Currency must be a three-letter ISO 4217 code.");
+    }
+    return new Account(accountId, balance, currency);
+  }
+
+  private static byte[] utf8(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > MAX_STRING_BYTES) {
+      throw new IllegalArgumentException(
+          "String of " + bytes.length + " bytes does not fit " + MAX_STRING_BYTES);
+    }
+    return bytes;
+  }
+
+  private static int putLong(byte[] frame, int position, long value) {
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      frame[position++] = (byte) (value >>> shift);
+    }
+    return position;
+  }
+
+  private static int putString(byte[] frame, int position, byte[] value) {
+    frame[position++] = (byte) (value.length >>> 8);
+    frame[position++] = (byte) value.length;
+    System.arraycopy(value, 0, frame, position, value.length);
+    return position + value.length;
+  }
+
+  private static final class Reader {
+    private final byte[] frame;
+
+    private final int length;
+
+    private int position;
+
+    private Reader(byte[] frame, int length) {
+      this.frame = frame;
+      this.length = length;
+      require(1);
+      if (frame[0] != VERSION) {
+        throw new IllegalArgumentException("Unsupported frame version " + frame[0]);
+      }
+      position = 1;
+    }
+
+    private long readLong() {
+      require(8);
+      long value = 0;
+      for (int i = 0; i < 8; i++) {
+        value = (value << 8) | (frame[position++] & 0xFF);
+      }
+      return value;
+    }
+
+    private String readString() {
+      require(2);
+      int size = (frame[position] & 0xFF) << 8 | (frame[position + 1] & 0xFF);
+      position += 2;
+      require(size);
+      String value = new String(frame, position, size, StandardCharsets.UTF_8);
+      position += size;
+      return value;
+    }
+
+    private boolean hasMore() {
+      return position < length;
+    }
+
+    private void expectEnd() {
+      if (position != length) {
+        throw new IllegalArgumentException(
+            "Frame has " + (length - position) + " unexpected trailing bytes");
+      }
+    }
+
+    private void require(int bytes) {
+      if (length - position < bytes) {
+        throw new IllegalArgumentException("Frame ends after " + length + " bytes");
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccountIdDictionaryTest {
+
+  private final AccountIdDictionary dictionary = new AccountIdDictionary();
+
+  @Test
+  public void handlesAreDenseAndStable() {
+    assertThat(dictionary.intern("Id-1")).isEqualTo(0);
+    assertThat(dictionary.intern("Id-2")).isEqualTo(1);
+    assertThat(dictionary.intern("Id-1")).isEqualTo(0);
+
+    assertThat(dictionary.handleOf("Id-2")).isEqualTo(1);
+    assertThat(dictionary.handleOf("Id-3")).isEqualTo(AccountIdDictionary.NO_HANDLE);
+    assertThat(dictionary.accountIdOf(1)).isEqualTo("Id-2");
+    assertThat(dictionary.accountIdOf(AccountIdDictionary.NO_HANDLE)).isNull();
+    assertThat(dictionary.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void accountsKeepTheirHandleWhenCreatedAgain() {
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(dictionary);
+    repository.createAccount(new Account("Id-1", 100L));
+    int handle = repository.handleOf("Id-1");
+
+    repository.clearAccounts();
+    assertThat(repository.getAccount(handle)).isNull();
+    repository.createAccount(new Account("Id-1", 200L));
+
+    assertThat(repository.handleOf("Id-1")).isEqualTo(handle);
+    assertThat(repository.getAccount(handle).getBalanceMinorUnits()).isEqualTo(200L);
+  }
+
+  @Test
+  public void concurrentInternsHandOutEveryHandleOnce() throws Exception {
+    // a handle table chunk holds 4096 handles, so this also grows the table concurrently
+    int ids = 20_000;
+    Set<Integer> handles = ConcurrentHashMap.newKeySet();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                for (int i = 0; i < ids; i++) {
+                  int handle = dictionary.intern("Id-" + i);
+                  assertThat(dictionary.accountIdOf(handle)).isEqualTo("Id-" + i);
+                  handles.add(handle);
+                }
+              }));
+    }
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    assertThat(dictionary.size()).isEqualTo(ids);
+    assertThat(handles).hasSize(ids);
+    assertThat(handles.stream().mapToInt(Integer::intValue).max().getAsInt()).isEqualTo(ids - 1);
+  }
+}
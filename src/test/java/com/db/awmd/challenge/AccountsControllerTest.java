@@ -1,8 +1,13 @@
 package com.db.awmd.challenge;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.BatchMode;
+import com.db.awmd.challenge.dto.BatchTransferRequest;
 import com.db.awmd.challenge.dto.MoneyTransfer;
+import com.db.awmd.challenge.metrics.TransferMetrics;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.web.AccountsController;
+import com.db.awmd.challenge.web.binary.BinaryWireFormat;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,14 +18,21 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -33,6 +45,7 @@ public class AccountsControllerTest {
   private MockMvc mockMvc;
   @Autowired private AccountsService accountsService;
   @Autowired private WebApplicationContext webApplicationContext;
+  @Autowired private TransferMetrics transferMetrics;
 
   @Before
   public void prepareMockMvc() {
@@ -40,6 +53,8 @@ public class AccountsControllerTest {
 
     // Reset the existing accounts before each test.
     accountsService.getAccountsRepository().clearAccounts();
+    accountsService.getTransferLedger().clear();
+    accountsService.getMoneySupply().reset();
   }
 
   @Test
@@ -110,6 +125,16 @@ public class AccountsControllerTest {
         .andExpect(status().isBadRequest());
   }
 
+  @Test
+  public void createAccountBalanceFinerThanMinorUnits() throws Exception {
+    this.mockMvc
+        .perform(
+            post("/v1/accounts")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"balance\":10.001}"))
+        .andExpect(status().isBadRequest());
+  }
+
   @Test
   public void createAccountEmptyAccountId() throws Exception {
     this.mockMvc
@@ -129,7 +154,11 @@ public class AccountsControllerTest {
         .perform(get("/v1/accounts/" + uniqueAccountId))
         .andExpect(status().isOk())
         .andExpect(
-            content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
+            content()
+                .string(
+                    "{\"accountId\":\""
+                        + uniqueAccountId
+                        + "\",\"balance\":123.45,\"currency\":\"EUR\"}"));
   }
 
   @Test
@@ -279,4 +308,454 @@ public class AccountsControllerTest {
         .andExpect(status().isBadRequest())
         .andExpect(content().string("Self transfer is not allowed"));
   }
+
+  @Test
+  public void transferWithIdempotencyKeyIsAppliedOnce() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+    String key = "transfer-" + System.nanoTime();
+
+    String content =
+        OBJECT_MAPPER.writeValueAsString(
+            new MoneyTransfer("Id-1", "Id-2", new BigDecimal("30"), key));
+    for (int attempt = 0; attempt < 2; attempt++) {
+      this.mockMvc
+          .perform(
+              post("/v1/accounts/transfer")
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .content(content))
+          .andExpect(status().isOk());
+    }
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("70");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("30");
+
+    String otherAmount =
+        OBJECT_MAPPER.writeValueAsString(
+            new MoneyTransfer("Id-1", "Id-2", new BigDecimal("40"), key));
+    this.mockMvc
+        .perform(
+            post("/v1/accounts/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(otherAmount))
+        .andExpect(status().isUnprocessableEntity());
+  }
+
+  @Test
+  public void getAccountsSnapshot() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("5.50")));
+
+    this.mockMvc
+        .perform(get("/v1/accounts").param("ids", "Id-1,Id-2,Id-3"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.accounts.length()").value(2))
+        .andExpect(jsonPath("$.accounts[0].accountId").value("Id-1"))
+        .andExpect(jsonPath("$.accounts[0].balance").value(100))
+        .andExpect(jsonPath("$.accounts[1].balance").value(5.5))
+        .andExpect(jsonPath("$.missing[0]").value("Id-3"));
+  }
+
+  @Test
+  public void getTransfersPagesThroughHistory() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+    this.accountsService.performTransfer("Id-1", "Id-2", 1000);
+    this.accountsService.performTransfer("Id-2", "Id-1", 250);
+    this.accountsService.performTransfer("Id-1", "Id-2", 100);
+
+    MvcResult first =
+        this.mockMvc
+            .perform(get("/v1/accounts/Id-1/transfers").param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.entries.length()").value(2))
+            .andExpect(jsonPath("$.entries[0].amount").value(1))
+            .andExpect(jsonPath("$.entries[0].fromBalance").value(91.5))
+            .andExpect(jsonPath("$.entries[1].accountIdFrom").value("Id-2"))
+            .andExpect(jsonPath("$.nextCursor").exists())
+            .andReturn();
+    String cursor =
+        OBJECT_MAPPER.readTree(first.getResponse().getContentAsString()).get("nextCursor").asText();
+
+    this.mockMvc
+        .perform(get("/v1/accounts/Id-1/transfers").param("limit", "2").param("cursor", cursor))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.entries.length()").value(1))
+        .andExpect(jsonPath("$.entries[0].amount").value(10))
+        .andExpect(jsonPath("$.entries[0].toBalance").value(10))
+        .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    this.mockMvc
+        .perform(get("/v1/accounts/Id-1/transfers").param("cursor", "not-a-cursor"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void importAccountsFromNdjsonReportsDuplicatesAndInvalidRows() throws Exception {
+    this.accountsService.createAccount(new Account("Id-2", BigDecimal.ONE));
+
+    this.mockMvc
+        .perform(
+            post("/v1/accounts")
+                .contentType(AccountsController.APPLICATION_NDJSON_VALUE)
+                .content(
+                    "{\"accountId\":\"Id-1\",\"balance\":100.5}\n"
+                        + "{\"accountId\":\"Id-2\",\"balance\":5}\n"
+                        + "\n"
+                        + "{\"accountId\":\"Id-3\",\"balance\":-1}\n"
+                        + "{\"accountId\":\"Id-4\",\"balance\":1.001}\n"
+                        + "not json\n"
+                        + "{\"accountId\":\"Id-5\",\"balance\":0}"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported").value(2))
+        .andExpect(jsonPath("$.duplicates").value(1))
+        .andExpect(jsonPath("$.rejected").value(3))
+        .andExpect(jsonPath("$.issues[0].line").value(4))
+        .andExpect(jsonPath("$.issues[0].accountId").value("Id-3"))
+        .andExpect(jsonPath("$.issues[0].error").value("Initial balance must be positive."))
+        .andExpect(jsonPath("$.issues[1].line").value(5))
+        .andExpect(jsonPath("$.issues[2].line").value(6))
+        .andExpect(jsonPath("$.issues[3].line").value(2))
+        .andExpect(jsonPath("$.issues[3].error").value("Account id Id-2 already exists!"))
+        .andExpect(jsonPath("$.issuesTruncated").value(false));
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100.5");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("1");
+    assertThat(accountsService.getAccount("Id-5")).isNotNull();
+  }
+
+  @Test
+  public void importedCsvComesBackFromTheExport() throws Exception {
+    this.mockMvc
+        .perform(
+            post("/v1/accounts")
+                .contentType(AccountsController.TEXT_CSV_VALUE)
+                .content("accountId,balance\r\nId-1,10.25\r\n\"Id,\"\"2\"\"\",3\r\nId-3\r\n"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported").value(2))
+        .andExpect(jsonPath("$.rejected").value(1))
+        .andExpect(jsonPath("$.issues[0].line").value(4));
+
+    MvcResult csv =
+        this.mockMvc
+            .perform(get("/v1/accounts").accept(AccountsController.TEXT_CSV_VALUE))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    this.mockMvc.perform(asyncDispatch(csv)).andExpect(status().isOk());
+    assertThat(csv.getResponse().getContentAsString().split("\n"))
+        .containsExactlyInAnyOrder(
+            "accountId,balance,currency", "Id-1,10.25,EUR", "\"Id,\"\"2\"\"\",3.00,EUR");
+
+    MvcResult ndjson =
+        this.mockMvc
+            .perform(get("/v1/accounts").accept(AccountsController.APPLICATION_NDJSON_VALUE))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    this.mockMvc.perform(asyncDispatch(ndjson)).andExpect(status().isOk());
+    assertThat(ndjson.getResponse().getContentAsString().split("\n"))
+        .containsExactlyInAnyOrder(
+            "{\"accountId\":\"Id-1\",\"balance\":10.25,\"currency\":\"EUR\"}",
+            "{\"accountId\":\"Id,\\\"2\\\"\",\"balance\":3.00,\"currency\":\"EUR\"}");
+  }
+
+  @Test
+  public void importSkipsOverlongLinesAndKeepsQuotedLineBreaks() throws Exception {
+    StringBuilder overlong = new StringBuilder("\"Id-");
+    for (int i = 0; i < 5_000; i++) {
+      overlong.append('x');
+    }
+    this.mockMvc
+        .perform(
+            post("/v1/accounts")
+                .contentType(AccountsController.TEXT_CSV_VALUE)
+                .content(
+                    "\"Id\r\n1\",5\r\n"
+                        + overlong
+                        + "\n,1\r\n"
+                        + "Id-2,2\r\n"
+                        + "Id-3\r\n"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported").value(2))
+        .andExpect(jsonPath("$.rejected").value(3))
+        .andExpect(jsonPath("$.issues[0].line").value(3))
+        .andExpect(jsonPath("$.issues[0].error").value("Line is longer than 4096 characters"))
+        // the skip ends at the first line break, even inside the runaway quote
+        .andExpect(jsonPath("$.issues[1].line").value(4))
+        .andExpect(jsonPath("$.issues[1].error").value("Account id must not be empty"))
+        .andExpect(jsonPath("$.issues[2].line").value(6));
+
+    assertThat(accountsService.getAccount("Id\r\n1").getBalance()).isEqualByComparingTo("5");
+    MvcResult csv =
+        this.mockMvc
+            .perform(get("/v1/accounts").accept(AccountsController.TEXT_CSV_VALUE))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    this.mockMvc.perform(asyncDispatch(csv)).andExpect(status().isOk());
+    assertThat(csv.getResponse().getContentAsString()).contains("\"Id\r\n1\",5.00,EUR\n");
+  }
+
+  @Test
+  public void binaryTransferAndAccountRead() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", 10_000L));
+    this.accountsService.createAccount(new Account("Id-2", 0L));
+    MoneyTransfer transfer = new MoneyTransfer("Id-1", "Id-2", 2_550L, null);
+
+    this.mockMvc
+        .perform(
+            post("/v1/accounts/transfer")
+                .contentType(BinaryWireFormat.MEDIA_TYPE)
+                .content(BinaryWireFormat.writeTransfer(transfer)))
+        .andExpect(status().isOk());
+
+    byte[] frame =
+        this.mockMvc
+            .perform(get("/v1/accounts/Id-2").accept(BinaryWireFormat.MEDIA_TYPE))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(BinaryWireFormat.MEDIA_TYPE))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+    Account account = BinaryWireFormat.readAccount(frame, frame.length);
+    assertThat(account.getAccountId()).isEqualTo("Id-2");
+    assertThat(account.getBalanceMinorUnits()).isEqualTo(2_550L);
+
+    // JSON stays the default for clients that accept anything
+    this.mockMvc
+        .perform(get("/v1/accounts/Id-2").accept(MediaType.ALL))
+        .andExpect(
+            content().string("{\"accountId\":\"Id-2\",\"balance\":25.50,\"currency\":\"EUR\"}"));
+  }
+
+  @Test
+  public void scheduledTransfersAreOffByDefault() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", 10_000L));
+    this.accountsService.createAccount(new Account("Id-2", 0L));
+
+    this.mockMvc
+        .perform(
+            post("/v1/accounts/transfer/scheduled")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(
+                    "{\"accountIdFrom\":\"Id-1\",\"accountIdTo\":\"Id-2\",\"amount\":10,"
+                        + "\"executeAt\":\"2030-01-01T09:00:00Z\",\"interval\":\"P30D\"}"))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string("Scheduled transfers are disabled"));
+    this.mockMvc
+        .perform(
+            post("/v1/accounts/transfer/scheduled")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(
+                    "{\"accountIdFrom\":\"Id-1\",\"accountIdTo\":\"Id-2\",\"amount\":10,"
+                        + "\"executeAt\":\"tomorrow\"}"))
+        .andExpect(status().isBadRequest());
+    this.mockMvc
+        .perform(get("/v1/accounts/transfer/scheduled/1"))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void binaryTransferNegativeAmount() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", 10_000L));
+    this.accountsService.createAccount(new Account("Id-2", 0L));
+
+    this.mockMvc
+        .perform(
+            post("/v1/accounts/transfer")
+                .contentType(BinaryWireFormat.MEDIA_TYPE)
+                .content(
+                    BinaryWireFormat.writeTransfer(new MoneyTransfer("Id-1", "Id-2", -1L, null))))
+        .andExpect(status().isBadRequest());
+
+    assertThat(accountsService.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(10_000L);
+  }
+
+  @Test
+  public void transferAsync() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+
+    MvcResult result =
+        this.mockMvc
+            .perform(
+                post("/v1/accounts/transfer/async")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(OBJECT_MAPPER.writeValueAsString(transfer("Id-1", "Id-2", "40"))))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    this.mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("60");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("40");
+  }
+
+  @Test
+  public void transferAsyncNotEnoughMoney() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", BigDecimal.TEN));
+    this.accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+
+    MvcResult result =
+        this.mockMvc
+            .perform(
+                post("/v1/accounts/transfer/async")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(OBJECT_MAPPER.writeValueAsString(transfer("Id-1", "Id-2", "40"))))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    this.mockMvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string("Insufficient balance to perform transfer"));
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  public void batchTransferBestEffort() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+
+    BatchTransferRequest batch =
+        BatchTransferRequest.builder()
+            .mode(BatchMode.BEST_EFFORT)
+            .transfers(
+                Arrays.asList(
+                    transfer("Id-1", "Id-2", "60"),
+                    transfer("Id-1", "Id-2", "60"),
+                    transfer("Id-2", "Id-1", "10")))
+            .build();
+
+    String content = OBJECT_MAPPER.writeValueAsString(batch);
+    this.mockMvc
+        .perform(
+            post("/v1/accounts/transfer/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(content))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].status").value("APPLIED"))
+        .andExpect(jsonPath("$[1].status").value("REJECTED"))
+        .andExpect(jsonPath("$[1].error").value("Insufficient balance to perform transfer"))
+        .andExpect(jsonPath("$[2].status").value("APPLIED"));
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("50");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("50");
+  }
+
+  @Test
+  public void batchTransferAllOrNothingRollsBack() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+    this.accountsService.createAccount(new Account("Id-3", BigDecimal.ZERO));
+
+    BatchTransferRequest batch =
+        BatchTransferRequest.builder()
+            .mode(BatchMode.ALL_OR_NOTHING)
+            .transfers(
+                Arrays.asList(
+                    transfer("Id-1", "Id-2", "60"),
+                    transfer("Id-2", "Id-3", "100"),
+                    transfer("Id-1", "Id-3", "10")))
+            .build();
+
+    String content = OBJECT_MAPPER.writeValueAsString(batch);
+    this.mockMvc
+        .perform(
+            post("/v1/accounts/transfer/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(content))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].status").value("ROLLED_BACK"))
+        .andExpect(jsonPath("$[1].status").value("REJECTED"))
+        .andExpect(jsonPath("$[2].status").value("SKIPPED"));
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+    assertThat(accountsService.getAccount("Id-3").getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  public void batchTransferInvalidEntry() throws Exception {
+    BatchTransferRequest batch =
+        BatchTransferRequest.builder()
+            .mode(BatchMode.BEST_EFFORT)
+            .transfers(Arrays.asList(MoneyTransfer.builder().build()))
+            .build();
+
+    String content = OBJECT_MAPPER.writeValueAsString(batch);
+    this.mockMvc
+        .perform(
+            post("/v1/accounts/transfer/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(content))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void batchTransferRefusesIdempotencyKeys() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+    BatchTransferRequest batch =
+        BatchTransferRequest.builder()
+            .mode(BatchMode.BEST_EFFORT)
+            .transfers(
+                Arrays.asList(
+                    transfer("Id-1", "Id-2", "10"),
+                    MoneyTransfer.builder()
+                        .accountIdFrom("Id-1")
+                        .accountIdTo("Id-2")
+                        .amount(BigDecimal.TEN)
+                        .idempotencyKey("key-1")
+                        .build()))
+            .build();
+
+    String content = OBJECT_MAPPER.writeValueAsString(batch);
+    this.mockMvc
+        .perform(
+            post("/v1/accounts/transfer/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(content))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().string(containsString("has an idempotency key")));
+
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  public void metricsCoverTransfersAndRejections() throws Exception {
+    transferMetrics.reset();
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+
+    for (String amount : new String[] {"10", "1000"}) {
+      this.mockMvc.perform(
+          post("/v1/accounts/transfer")
+              .contentType(MediaType.APPLICATION_JSON)
+              .content(OBJECT_MAPPER.writeValueAsString(transfer("Id-1", "Id-2", amount))));
+    }
+
+    this.mockMvc
+        .perform(get("/v1/metrics"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.latencies['http.transfer'].count").value(2))
+        .andExpect(jsonPath("$.latencies['transfer.lock.wait'].count").value(2))
+        .andExpect(jsonPath("$.latencies['transfer.lock.hold'].count").value(2))
+        .andExpect(jsonPath("$.latencies['repository.write'].count").value(1))
+        .andExpect(jsonPath("$.rejections.INSUFFICIENT_BALANCE").value(1))
+        .andExpect(jsonPath("$.rejections.SELF_TRANSFER").value(0));
+
+    this.mockMvc.perform(delete("/v1/metrics")).andExpect(status().isNoContent());
+    this.mockMvc
+        .perform(get("/v1/metrics"))
+        .andExpect(jsonPath("$.latencies['http.transfer'].count").value(0));
+  }
+
+  private static MoneyTransfer transfer(String accountIdFrom, String accountIdTo, String amount) {
+    return MoneyTransfer.builder()
+        .accountIdFrom(accountIdFrom)
+        .accountIdTo(accountIdTo)
+        .amount(new BigDecimal(amount))
+        .build();
+  }
 }
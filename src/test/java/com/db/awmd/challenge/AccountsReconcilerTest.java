@@ -0,0 +1,284 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountLockProperties;
+import com.db.awmd.challenge.config.AsyncTransferProperties;
+import com.db.awmd.challenge.config.BatchTransferProperties;
+import com.db.awmd.challenge.config.FxProperties;
+import com.db.awmd.challenge.config.HotAccountProperties;
+import com.db.awmd.challenge.config.IdempotencyProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.config.MappedRepositoryProperties;
+import com.db.awmd.challenge.config.NettingProperties;
+import com.db.awmd.challenge.config.NotificationDispatchProperties;
+import com.db.awmd.challenge.config.ReconciliationProperties;
+import com.db.awmd.challenge.config.TransferExecutionProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.BatchMode;
+import com.db.awmd.challenge.dto.MoneyTransfer;
+import com.db.awmd.challenge.dto.ReconciliationMetrics;
+import com.db.awmd.challenge.dto.ReconciliationReport;
+import com.db.awmd.challenge.dto.TransferStatus;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryMapped;
+import com.db.awmd.challenge.repository.ledger.TransferLedger;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AccountsValidator;
+import com.db.awmd.challenge.service.AsyncTransferExecutor;
+import com.db.awmd.challenge.service.StripedAccountLocks;
+import com.db.awmd.challenge.service.TransferNotificationDispatcher;
+import com.db.awmd.challenge.service.fx.FxRateCache;
+import com.db.awmd.challenge.service.idempotency.IdempotencyCache;
+import com.db.awmd.challenge.service.reconciliation.AccountsReconciler;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccountsReconcilerTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<AccountsReconciler> reconcilers = new ArrayList<>();
+
+  private AccountIdDictionary dictionary;
+
+  private AccountsRepository repository;
+
+  private AccountsService service;
+
+  @After
+  public void stopReconcilers() {
+    reconcilers.forEach(AccountsReconciler::stop);
+  }
+
+  @Test
+  public void balancesAddUpAcrossConversionsHotAccountsAndRollbacks() throws IOException {
+    AccountsReconciler reconciler = reconciler(new ReconciliationProperties(), "Fees");
+    service.createAccount(new Account("Id-1", 10_000, "EUR"));
+    service.createAccount(new Account("Id-2", 0, "USD"));
+    service.createAccount(new Account("Id-3", 500, "GBP"));
+    service.createAccount(new Account("Fees", 0, "EUR"));
+
+    service.performTransfer("Id-1", "Id-2", 1_000);
+    service.performTransfer("Id-1", "Fees", 250);
+    service.performTransfer("Id-2", "Id-1", 110);
+    // the first transfer is converted, then taken back as it was converted
+    assertThat(
+            service.performBatchTransfer(
+                Arrays.asList(
+                    new MoneyTransfer("Id-1", "Id-2", new BigDecimal("10"), null),
+                    new MoneyTransfer("Id-1", "Id-3", new BigDecimal("10"), null)),
+                BatchMode.ALL_OR_NOTHING))
+        .extracting("status")
+        .containsExactly(TransferStatus.ROLLED_BACK, TransferStatus.REJECTED);
+
+    ReconciliationReport report = reconciler.reconcile();
+    assertThat(report.isBalanced()).isTrue();
+    assertThat(report.getAccounts()).isEqualTo(4);
+    // 8,850 and 250 of fees still in the slots of the hot account
+    assertThat(report.getTotals().get("EUR")).isEqualByComparingTo("91.00");
+    assertThat(report.getTotals().get("USD")).isEqualByComparingTo("9.90");
+    assertThat(report.getTotals()).isEqualTo(report.getExpected());
+    assertThat(report.getDrift()).isEmpty();
+    assertThat(report.getNegativeBalances()).isZero();
+    assertThat(report.getBucketChecksums()).hasSize(64);
+    assertThat(reconciler.getLastReport()).isSameAs(report);
+  }
+
+  @Test
+  public void balancesChangedBehindTheServiceShowAsDrift() throws IOException {
+    ReconciliationProperties properties = new ReconciliationProperties();
+    properties.setMaxReportedNegatives(2);
+    AccountsReconciler reconciler = reconciler(properties);
+    for (int i = 1; i <= 4; i++) {
+      service.createAccount(new Account("Id-" + i, 1_000, "EUR"));
+    }
+    service.createAccount(new Account("Id-5", 1_000, "USD"));
+
+    repository.setBalance(repository.getAccount("Id-2"), -100);
+    repository.setBalance(repository.getAccount("Id-3"), -200);
+    repository.setBalance(repository.getAccount("Id-4"), -300);
+    ReconciliationReport report = reconciler.reconcile();
+
+    assertThat(report.isBalanced()).isFalse();
+    assertThat(report.getDrift()).containsOnlyKeys("EUR");
+    assertThat(report.getDrift().get("EUR")).isEqualByComparingTo("-36.00");
+    assertThat(report.getNegativeBalances()).isEqualTo(3);
+    assertThat(report.getNegativeAccountIds()).containsExactly("Id-2", "Id-3");
+
+    ReconciliationMetrics metrics = reconciler.getMetrics();
+    assertThat(metrics.getRuns()).isEqualTo(1);
+    assertThat(metrics.getUnbalancedRuns()).isEqualTo(1);
+    assertThat(metrics.getLastNegativeBalances()).isEqualTo(3);
+    assertThat(metrics.getLastDrift()).isEqualTo(report.getDrift());
+  }
+
+  @Test
+  public void checksumsDependOnAccountsAndBalancesOnly() throws IOException {
+    AccountsReconciler first = reconciler(new ReconciliationProperties());
+    for (int i = 0; i < 1_000; i++) {
+      service.createAccount(new Account("Id-" + i, i, "EUR"));
+    }
+    List<String> checksums = first.reconcile().getBucketChecksums();
+
+    // the same accounts created in another order get other handles
+    AccountsReconciler second = reconciler(new ReconciliationProperties());
+    for (int i = 999; i >= 0; i--) {
+      service.createAccount(new Account("Id-" + i, i, "EUR"));
+    }
+    assertThat(second.reconcile().getBucketChecksums()).isEqualTo(checksums);
+
+    repository.setBalance(repository.getAccount("Id-500"), 501);
+    List<String> changed = second.reconcile().getBucketChecksums();
+    int differing = 0;
+    for (int i = 0; i < checksums.size(); i++) {
+      differing += checksums.get(i).equals(changed.get(i)) ? 0 : 1;
+    }
+    assertThat(differing).isEqualTo(1);
+  }
+
+  @Test
+  public void reconciliationSeesNoTransferHalfDone() throws Exception {
+    assertBalancedUnderLoad();
+  }
+
+  @Test
+  public void reconciliationWithHotAccountsSeesNoTransferHalfDone() throws Exception {
+    assertBalancedUnderLoad("Id-0");
+  }
+
+  @Test
+  public void reconciliationCountsEveryAccountOfAReopenedMappedTable() throws IOException {
+    MappedRepositoryProperties mappedProperties = new MappedRepositoryProperties();
+    mappedProperties.setFile(folder.getRoot().toPath().resolve("accounts.dat").toString());
+    mappedProperties.setCapacity(4_096);
+    AccountsRepositoryMapped mapped =
+        new AccountsRepositoryMapped(mappedProperties, new AccountIdDictionary());
+    mapped.open();
+    for (int i = 0; i < 1_000; i++) {
+      mapped.createAccount(new Account("Id-" + i, 100));
+    }
+    mapped.close();
+
+    dictionary = new AccountIdDictionary();
+    AccountsRepositoryMapped reopened = new AccountsRepositoryMapped(mappedProperties, dictionary);
+    reopened.open();
+    repository = reopened;
+    service = service();
+    AccountsReconciler reconciler =
+        new AccountsReconciler(new ReconciliationProperties(), service, dictionary);
+    reconcilers.add(reconciler);
+    service.performTransfer("Id-1", "Id-2", 50);
+
+    ReconciliationReport report = reconciler.reconcile();
+    reopened.close();
+    assertThat(report.getAccounts()).isEqualTo(1_000);
+    assertThat(report.isBalanced()).isTrue();
+    assertThat(report.getTotals().get("EUR")).isEqualByComparingTo("1000.00");
+  }
+
+  private void assertBalancedUnderLoad(String... hotAccountIds) throws Exception {
+    ReconciliationProperties properties = new ReconciliationProperties();
+    properties.setParallelism(2);
+    AccountsReconciler reconciler = reconciler(properties, hotAccountIds);
+    for (int i = 0; i < 200; i++) {
+      service.createAccount(new Account("Id-" + i, 1_000_000, i % 2 == 0 ? "EUR" : "USD"));
+    }
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 3; t++) {
+      int seed = t;
+      futures.add(
+          executor.submit(
+              () -> {
+                Random random = new Random(seed);
+                while (running.get()) {
+                  String from = "Id-" + random.nextInt(200);
+                  String to = "Id-" + random.nextInt(200);
+                  if (!from.equals(to)) {
+                    service.performTransfer(from, to, 1 + random.nextInt(100));
+                  }
+                }
+              }));
+    }
+    List<ReconciliationReport> reports = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      reports.add(reconciler.reconcile());
+      // also while accounts are being created
+      service.createAccounts(
+          Collections.singletonList(new Account("New-" + i, 100, "EUR")), (e, index) -> {});
+    }
+    running.set(false);
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    assertThat(reports).extracting("balanced").containsOnly(true);
+    assertThat(reconciler.reconcile().getAccounts()).isEqualTo(220);
+  }
+
+  private AccountsReconciler reconciler(
+      ReconciliationProperties properties, String... hotAccountIds) throws IOException {
+    dictionary = new AccountIdDictionary();
+    repository = new AccountsRepositoryInMemory(dictionary);
+    service = service(hotAccountIds);
+    AccountsReconciler reconciler = new AccountsReconciler(properties, service, dictionary);
+    reconcilers.add(reconciler);
+    return reconciler;
+  }
+
+  private AccountsService service(String... hotAccountIds) throws IOException {
+    Path rates = folder.newFile().toPath();
+    Files.write(rates, "EUR,USD,1.1\n".getBytes(StandardCharsets.UTF_8));
+    FxProperties fxProperties = new FxProperties();
+    fxProperties.setRatesFile(rates.toString());
+    fxProperties.setRefreshIntervalMs(0);
+    FxRateCache fxRates = new FxRateCache(fxProperties);
+    fxRates.start();
+    HotAccountProperties hotAccountProperties = new HotAccountProperties();
+    hotAccountProperties.setAccountIds(new ArrayList<>(Arrays.asList(hotAccountIds)));
+    TransferMetrics metrics = new TransferMetrics();
+    AccountsService service =
+        new AccountsService(
+            repository,
+            new AccountsValidator(),
+            new TransferNotificationDispatcher(
+                (account, description) -> {}, new NotificationDispatchProperties(), metrics),
+            new StripedAccountLocks(new AccountLockProperties()),
+            new BatchTransferProperties(),
+            new TransferExecutionProperties(),
+            metrics,
+            new IdempotencyCache(new IdempotencyProperties()),
+            new AsyncTransferExecutor(new AsyncTransferProperties()),
+            new TransferLedger(new LedgerProperties(), dictionary),
+            new NettingProperties(),
+            hotAccountProperties,
+            fxRates);
+    service.start();
+    return service;
+  }
+}
@@ -0,0 +1,242 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.DurableRepositoryProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepositoryDurable;
+import com.db.awmd.challenge.repository.wal.FsyncPolicy;
+import com.db.awmd.challenge.repository.wal.WalRecords;
+import com.db.awmd.challenge.repository.wal.WriteAheadLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AccountsRepositoryDurableTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void recoversAccountsAndBalancesFromLog() throws IOException {
+    AccountsRepositoryDurable repository = open(FsyncPolicy.GROUPED);
+    Account accountFrom = new Account("Id-1", new BigDecimal("100.50"));
+    Account accountTo = new Account("Id-2", BigDecimal.ZERO);
+    repository.createAccount(accountFrom);
+    repository.createAccount(accountTo);
+    repository.transfer(accountFrom, 9050, accountTo, 1000);
+    repository.awaitDurable();
+    repository.close();
+
+    AccountsRepositoryDurable recovered = open(FsyncPolicy.GROUPED);
+
+    assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("90.50");
+    assertThat(recovered.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+    recovered.close();
+  }
+
+  @Test
+  public void recoversFromSnapshotPlusLogTail() throws IOException {
+    AccountsRepositoryDurable repository = open(FsyncPolicy.PER_WRITE);
+    Account accountFrom = new Account("Id-1", new BigDecimal("100"));
+    Account accountTo = new Account("Id-2", BigDecimal.ZERO);
+    repository.createAccount(accountFrom);
+    repository.createAccount(accountTo);
+    repository.transfer(accountFrom, 6000, accountTo, 4000);
+    repository.snapshot();
+    repository.createAccount(new Account("Id-3", BigDecimal.ONE));
+    repository.setBalance(accountTo, 4500);
+    repository.close();
+
+    assertThat(WriteAheadLog.segmentIds(folder.getRoot().toPath())).hasSize(1);
+
+    AccountsRepositoryDurable recovered = open(FsyncPolicy.PER_WRITE);
+
+    assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("60");
+    assertThat(recovered.getAccount("Id-2").getBalance()).isEqualByComparingTo("45");
+    assertThat(recovered.getAccount("Id-3").getBalance()).isEqualByComparingTo("1");
+    recovered.close();
+  }
+
+  @Test
+  public void replayIgnoresTornTail() throws IOException {
+    AccountsRepositoryDurable repository = open(FsyncPolicy.PER_WRITE);
+    repository.createAccount(new Account("Id-1", BigDecimal.TEN));
+    repository.clearAccounts();
+    repository.createAccount(new Account("Id-2", BigDecimal.ONE));
+    repository.close();
+
+    Path directory = folder.getRoot().toPath();
+    List<Long> segments = WriteAheadLog.segmentIds(directory);
+    Path lastSegment = WriteAheadLog.segmentPath(directory, segments.get(segments.size() - 1));
+    Files.write(lastSegment, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+    AccountsRepositoryDurable recovered = open(FsyncPolicy.PER_WRITE);
+
+    assertThat(recovered.getAccount("Id-1")).isNull();
+    assertThat(recovered.getAccount("Id-2").getBalance()).isEqualByComparingTo("1");
+    recovered.createAccount(new Account("Id-3", BigDecimal.TEN));
+    recovered.close();
+
+    // the torn tail was truncated, so it no longer breaks recovery once followed by a new segment
+    AccountsRepositoryDurable reopened = open(FsyncPolicy.PER_WRITE);
+
+    assertThat(reopened.getAccount("Id-2").getBalance()).isEqualByComparingTo("1");
+    assertThat(reopened.getAccount("Id-3").getBalance()).isEqualByComparingTo("10");
+    reopened.close();
+  }
+
+  @Test
+  public void recoversSchedulesWithTheirRuns() throws IOException {
+    AccountsRepositoryDurable repository = open(FsyncPolicy.PER_WRITE);
+    Account accountFrom = new Account("Id-1", 10_000);
+    Account accountTo = new Account("Id-2", 0);
+    repository.createAccount(accountFrom);
+    repository.createAccount(accountTo);
+    ScheduledTransfer standing =
+        new ScheduledTransfer(
+            1, "Id-1", "Id-2", 1000, 0, 1000, ScheduledTransfer.UNBOUNDED, 0, null);
+    ScheduledTransfer once = new ScheduledTransfer(2, "Id-2", "Id-1", 500, 0, 0, 1, 0, null);
+    repository.saveSchedule(standing);
+    repository.saveSchedule(once);
+    repository.saveSchedule(new ScheduledTransfer(3, "Id-1", "Id-2", 1, 0, 0, 1, 0, null));
+    repository.snapshot();
+    repository.transfer(accountFrom, 9000, accountTo, 1000, standing.afterRun(null));
+    repository.transfer(accountTo, 500, accountFrom, 9500, once.afterRun(null));
+    repository.deleteSchedule(3);
+    repository.close();
+
+    AccountsRepositoryDurable recovered = open(FsyncPolicy.PER_WRITE);
+    List<ScheduledTransfer> schedules = new ArrayList<>();
+    recovered.forEachSchedule(schedules::add);
+
+    assertThat(schedules).containsExactly(standing.afterRun(null));
+    assertThat(recovered.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(9500);
+    assertThat(recovered.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(500);
+    recovered.close();
+  }
+
+  @Test
+  public void recoversAccountCurrencies() throws IOException {
+    AccountsRepositoryDurable repository = open(FsyncPolicy.PER_WRITE);
+    repository.createAccount(new Account("Id-1", 100, "USD"));
+    repository.createAccount(new Account("Id-2", 200));
+    repository.snapshot();
+    repository.createAccount(new Account("Id-3", 300, "JPY"));
+    repository.close();
+
+    AccountsRepositoryDurable recovered = open(FsyncPolicy.PER_WRITE);
+
+    assertThat(recovered.getAccount("Id-1")).isEqualTo(new Account("Id-1", 100, "USD"));
+    assertThat(recovered.getAccount("Id-2").getCurrency()).isEqualTo(Money.DEFAULT_CURRENCY);
+    assertThat(recovered.getAccount("Id-3")).isEqualTo(new Account("Id-3", 300, "JPY"));
+    recovered.close();
+  }
+
+  @Test
+  public void recoversBalancesSetTogether() throws IOException {
+    AccountsRepositoryDurable repository = open(FsyncPolicy.GROUPED);
+    Account first = new Account("Id-1", 100);
+    Account second = new Account("Id-2", 200);
+    Account third = new Account("Id-3", 300);
+    repository.createAccount(first);
+    repository.createAccount(second);
+    repository.createAccount(third);
+    repository.setBalances(Arrays.asList(first, third), new long[] {50, 350, 0});
+    repository.close();
+
+    AccountsRepositoryDurable recovered = open(FsyncPolicy.GROUPED);
+
+    assertThat(recovered.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(50);
+    assertThat(recovered.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(200);
+    assertThat(recovered.getAccount("Id-3").getBalanceMinorUnits()).isEqualTo(350);
+    recovered.close();
+  }
+
+  @Test
+  public void failedForceFailsTheGroupAndEveryLaterWrite() throws IOException {
+    FileChannel channel = mock(FileChannel.class);
+    when(channel.write(any(ByteBuffer.class)))
+        .thenAnswer(
+            invocation -> {
+              ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+              int written = buffer.remaining();
+              buffer.position(buffer.limit());
+              return written;
+            });
+    doThrow(new IOException("Input/output error")).when(channel).force(anyBoolean());
+    WriteAheadLog log =
+        new WriteAheadLog(folder.getRoot().toPath(), FsyncPolicy.GROUPED, 0, 1, path -> channel);
+
+    log.append(WalRecords.balance("Id-1", 100));
+    assertThatThrownBy(log::awaitDurable)
+        .isInstanceOf(UncheckedIOException.class)
+        .hasMessageContaining("Input/output error");
+    // nothing that follows may be acknowledged as durable, not even once the disk recovers
+    assertThatThrownBy(log::awaitDurable)
+        .isInstanceOf(UncheckedIOException.class)
+        .hasMessageContaining("has to be reopened");
+    assertThatThrownBy(() -> log.append(WalRecords.balance("Id-1", 200)))
+        .isInstanceOf(UncheckedIOException.class);
+    // and what a refused record describes is never applied
+    AtomicBoolean applied = new AtomicBoolean();
+    assertThatThrownBy(() -> log.append(WalRecords.balance("Id-1", 300), () -> applied.set(true)))
+        .isInstanceOf(UncheckedIOException.class);
+    assertThat(applied.get()).isFalse();
+    verify(channel, times(1)).force(anyBoolean());
+  }
+
+  @Test
+  public void clearingForgetsSchedulesToo() throws IOException {
+    AccountsRepositoryDurable repository = open(FsyncPolicy.PER_WRITE);
+    repository.createAccount(new Account("Id-1", 100));
+    repository.createAccount(new Account("Id-2", 0));
+    repository.saveSchedule(new ScheduledTransfer(1, "Id-1", "Id-2", 10, 0, 0, 1, 0, null));
+    repository.clearAccounts();
+    List<ScheduledTransfer> schedules = new ArrayList<>();
+    repository.forEachSchedule(schedules::add);
+    assertThat(schedules).isEmpty();
+    repository.close();
+
+    AccountsRepositoryDurable recovered = open(FsyncPolicy.PER_WRITE);
+    recovered.forEachSchedule(schedules::add);
+
+    assertThat(schedules).isEmpty();
+    assertThat(recovered.getAccount("Id-1")).isNull();
+    recovered.close();
+  }
+
+  private AccountsRepositoryDurable open(FsyncPolicy fsyncPolicy) throws IOException {
+    DurableRepositoryProperties properties = new DurableRepositoryProperties();
+    properties.setDirectory(folder.getRoot().getAbsolutePath());
+    properties.setFsyncPolicy(fsyncPolicy);
+    properties.setSnapshotIntervalMs(0);
+    AccountsRepositoryDurable repository =
+        new AccountsRepositoryDurable(properties, new AccountIdDictionary());
+    repository.open();
+    return repository;
+  }
+}
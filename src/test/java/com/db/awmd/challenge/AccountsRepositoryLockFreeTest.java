@@ -0,0 +1,98 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.TransferReceipt;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepositoryLockFree;
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AccountsRepositoryLockFreeTest {
+
+  private final AccountsRepositoryLockFree repository =
+      new AccountsRepositoryLockFree(new AccountIdDictionary());
+
+  @Test
+  public void transferAtomically_movesMoneyAndReturnsResultingBalances() {
+    repository.createAccount(new Account("Id-1", new BigDecimal("10.50")));
+    repository.createAccount(new Account("Id-2", BigDecimal.ZERO));
+
+    TransferReceipt receipt = transfer("Id-1", "Id-2", 50);
+
+    assertThat(receipt.getFromBalance()).isEqualTo(1000);
+    assertThat(receipt.getToBalance()).isEqualTo(50);
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("10");
+    assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("0.5");
+  }
+
+  @Test
+  public void transferAtomically_rejectsOverdraftWithoutChanges() {
+    repository.createAccount(new Account("Id-1", BigDecimal.ONE));
+    repository.createAccount(new Account("Id-2", BigDecimal.ZERO));
+
+    assertThat(transfer("Id-1", "Id-2", 1000)).isNull();
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("1");
+    assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+  }
+
+  @Test
+  public void createAccount_rejectsAmountsFinerThanMinorUnits() {
+    ThrowingCallable callable =
+        () -> repository.createAccount(new Account("Id-1", new BigDecimal("0.001")));
+
+    assertThatThrownBy(callable).isInstanceOf(InvalidAmountException.class);
+    assertThat(repository.getAccount("Id-1")).isNull();
+  }
+
+  @Test
+  public void transferAtomically_conservesMoneyUnderContention() throws Exception {
+    int accounts = 8;
+    for (int i = 0; i < accounts; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 10_000; i++) {
+                  int from = random.nextInt(accounts);
+                  int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                  transfer("Id-" + from, "Id-" + to, random.nextInt(5000));
+                }
+              }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < accounts; i++) {
+      BigDecimal balance = repository.getAccount("Id-" + i).getBalance();
+      assertThat(balance.signum()).isGreaterThanOrEqualTo(0);
+      total = total.add(balance);
+    }
+    assertThat(total).isEqualByComparingTo("800");
+  }
+
+  private TransferReceipt transfer(String accountIdFrom, String accountIdTo, long amount) {
+    return repository.transferAtomically(
+        repository.handleOf(accountIdFrom), repository.handleOf(accountIdTo), amount);
+  }
+}
@@ -0,0 +1,202 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.MappedRepositoryProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.AccountNotFoundException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InvalidAccountIdException;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepositoryMapped;
+import com.db.awmd.challenge.repository.mapped.MappedAccountTable;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+
+public class AccountsRepositoryMappedTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private AccountsRepositoryMapped repository;
+
+  @After
+  public void close() throws IOException {
+    if (repository != null) {
+      repository.close();
+    }
+  }
+
+  @Test
+  public void transferUpdatesBalancesInPlace() throws IOException {
+    repository = open(16);
+    Account accountFrom = new Account("Id-1", new BigDecimal("100.50"));
+    Account accountTo = new Account("Id-2", BigDecimal.ZERO);
+    repository.createAccount(accountFrom);
+    repository.createAccount(accountTo);
+
+    repository.transfer(accountFrom, 9050, accountTo, 1000);
+
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("90.50");
+    assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+    assertThat(repository.getAccount("Id-3")).isNull();
+  }
+
+  @Test
+  public void reopeningKeepsAccounts() throws IOException {
+    repository = open(16);
+    Account account = new Account("Id-1", BigDecimal.ONE);
+    repository.createAccount(account);
+    repository.setBalance(account, 4242);
+    repository.close();
+
+    repository = open(16);
+
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("42.42");
+    // handles are slots, so a reopened table has them right away
+    int handle = repository.handleOf("Id-1");
+    assertThat(handle).isNotEqualTo(AccountIdDictionary.NO_HANDLE);
+    assertThat(repository.getAccount(handle).getBalanceMinorUnits()).isEqualTo(4242);
+    assertThat(repository.handleOf("Id-2")).isEqualTo(AccountIdDictionary.NO_HANDLE);
+  }
+
+  @Test
+  public void slotsServeAsHandlesWithoutDictionaryEntries() throws IOException {
+    MappedRepositoryProperties properties = new MappedRepositoryProperties();
+    properties.setFile(folder.getRoot().toPath().resolve("accounts.dat").toString());
+    properties.setCapacity(16);
+    AccountIdDictionary dictionary = new AccountIdDictionary();
+    repository = new AccountsRepositoryMapped(properties, dictionary);
+    repository.open();
+    repository.createAccount(new Account("Id-1", 100));
+
+    int handle = dictionary.intern("Id-1");
+    assertThat(repository.handleOf("Id-1")).isEqualTo(handle);
+    assertThat(dictionary.accountIdOf(handle)).isEqualTo("Id-1");
+    assertThat(dictionary.size()).isEqualTo(16);
+    assertThat(repository.getAccount(handle).getBalanceMinorUnits()).isEqualTo(100);
+    assertThat(repository.getAccount((handle + 1) % 16)).isNull();
+    assertThatThrownBy(() -> dictionary.intern("Id-2"))
+        .isInstanceOf(AccountNotFoundException.class);
+  }
+
+  @Test
+  public void forEachAccountWalksEverySlotBlock() throws IOException {
+    repository = open(4096);
+    for (int i = 0; i < 3000; i++) {
+      repository.createAccount(new Account("Id-" + i, i));
+    }
+
+    Map<String, Long> seen = new HashMap<>();
+    repository.forEachAccount(
+        account -> seen.put(account.getAccountId(), account.getBalanceMinorUnits()));
+
+    assertThat(seen).hasSize(3000);
+    assertThat(seen.get("Id-2999")).isEqualTo(2999L);
+  }
+
+  @Test
+  public void collidingIdsAreProbedPastEachOther() throws IOException {
+    repository = open(64);
+    for (int i = 0; i < 48; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal(i)));
+    }
+
+    for (int i = 0; i < 48; i++) {
+      assertThat(repository.getAccount("Id-" + i).getBalance()).isEqualByComparingTo("" + i);
+    }
+    try {
+      repository.createAccount(new Account("Id-48"));
+      fail("Should have failed when the table is full");
+    } catch (IllegalStateException ex) {
+      assertThat(ex.getMessage()).contains("48 of 64");
+    }
+  }
+
+  @Test
+  public void reopeningCompletesATransferInterruptedByACrash() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("accounts.dat");
+    MappedAccountTable table = MappedAccountTable.open(file, 16);
+    int slotFrom = table.insert("Id-1", 1000);
+    int slotTo = table.insert("Id-2", 0);
+    table.close();
+
+    // the intent of a transfer of 400 made it to the file, neither balance did
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      ByteBuffer intent = ByteBuffer.allocate(28);
+      intent.putLong(600).putLong(400).putInt(slotFrom).putInt(slotTo).putInt(1).flip();
+      channel.write(intent, (16 + 1) * 64L);
+    }
+    repository = open(16);
+
+    assertThat(repository.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(600);
+    assertThat(repository.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(400);
+    repository.close();
+
+    // and only once
+    repository = open(16);
+    repository.setBalance(repository.getAccount("Id-2"), 100);
+    repository.close();
+    repository = open(16);
+    assertThat(repository.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(100);
+  }
+
+  @Test
+  public void createAccount_failsOnDuplicateId() throws IOException {
+    repository = open(16);
+    repository.createAccount(new Account("Id-1"));
+
+    try {
+      repository.createAccount(new Account("Id-1"));
+      fail("Should have failed when adding duplicate account");
+    } catch (DuplicateAccountIdException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id Id-1 already exists!");
+    }
+  }
+
+  @Test
+  public void createAccount_failsOnOverlongId() throws IOException {
+    repository = open(16);
+
+    try {
+      repository.createAccount(new Account(new String(new char[51]).replace('\0', 'x')));
+      fail("Should have failed when the id does not fit a record");
+    } catch (InvalidAccountIdException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id must not exceed 50 bytes");
+    }
+  }
+
+  @Test
+  public void clearAccountsFreesAllSlots() throws IOException {
+    repository = open(16);
+    repository.createAccount(new Account("Id-1"));
+
+    repository.clearAccounts();
+    repository.createAccount(new Account("Id-2"));
+
+    assertThat(repository.getAccount("Id-1")).isNull();
+    assertThat(repository.getAccount("Id-2")).isNotNull();
+  }
+
+  private AccountsRepositoryMapped open(int capacity) throws IOException {
+    MappedRepositoryProperties properties = new MappedRepositoryProperties();
+    properties.setFile(folder.getRoot().toPath().resolve("accounts.dat").toString());
+    properties.setCapacity(capacity);
+    AccountsRepositoryMapped repository =
+        new AccountsRepositoryMapped(properties, new AccountIdDictionary());
+    repository.open();
+    return repository;
+  }
+}
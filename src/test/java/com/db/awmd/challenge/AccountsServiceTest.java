@@ -1,10 +1,11 @@
 package com.db.awmd.challenge;
 
 import com.db.awmd.challenge.domain.Account;
-import com.db.awmd.challenge.dto.TransferValidationPayload;
+import com.db.awmd.challenge.domain.Money;
 import com.db.awmd.challenge.service.AccountsService;
 import com.db.awmd.challenge.service.AccountsValidator;
 import com.db.awmd.challenge.service.NotificationService;
+import com.db.awmd.challenge.service.validation.TransferError;
 import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -14,14 +15,12 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.BDDMockito.given;
-import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
 @ActiveProfiles("test")
@@ -66,25 +65,17 @@ public class AccountsServiceTest {
     Account accountTo = new Account(uniqueIdTo);
     this.accountsService.createAccount(accountTo);
 
-    TransferValidationPayload validationPayload =
-        TransferValidationPayload.builder()
-            .accountFrom(accountFrom)
-            .accountFromId(uniqueIdFrom)
-            .accountTo(accountTo)
-            .accountToId(uniqueIdTo)
-            .amount(amount)
-            .build();
-
-    List<String> errors = new ArrayList<>();
-    errors.add("error");
-    given(accountsValidator.validateTransfer(eq(validationPayload))).willReturn(errors);
+    given(
+            accountsValidator.check(
+                eq(accountFrom), eq(uniqueIdFrom), eq(accountTo), eq(uniqueIdTo), eq(1000L)))
+        .willReturn(TransferError.INSUFFICIENT_BALANCE.mask());
 
     ThrowingCallable callable =
-        () -> accountsService.performTransfer(uniqueIdFrom, uniqueIdTo, amount);
+        () -> accountsService.performTransfer(uniqueIdFrom, uniqueIdTo, Money.toMinorUnits(amount));
 
-    assertThatThrownBy(callable).hasMessage("error");
-    assertThat(accountFrom.getBalance()).isEqualTo(BigDecimal.TEN);
-    assertThat(accountTo.getBalance()).isEqualTo(BigDecimal.ZERO);
+    assertThatThrownBy(callable).hasMessage("Insufficient balance to perform transfer");
+    assertThat(accountFrom.getBalance()).isEqualByComparingTo(BigDecimal.TEN);
+    assertThat(accountTo.getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
   }
 
   @Test
@@ -99,18 +90,19 @@ public class AccountsServiceTest {
     Account accountTo = new Account(uniqueIdTo);
     this.accountsService.createAccount(accountTo);
 
-    accountsService.performTransfer(uniqueIdFrom, uniqueIdTo, amount);
+    accountsService.performTransfer(uniqueIdFrom, uniqueIdTo, Money.toMinorUnits(amount));
 
-    verify(accountsValidator).validateTransfer(any(TransferValidationPayload.class));
-    assertThat(accountFrom.getBalance()).isEqualTo(BigDecimal.ZERO);
-    assertThat(accountTo.getBalance()).isEqualTo(amount);
+    verify(accountsValidator)
+        .check(
+            eq(accountFrom), eq(uniqueIdFrom), eq(accountTo), eq(uniqueIdTo), eq(1000L));
+    assertThat(accountFrom.getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+    assertThat(accountTo.getBalance()).isEqualByComparingTo(amount);
 
-    verify(notificationService)
+    verify(notificationService, timeout(1000))
         .notifyAboutTransfer(
-            accountTo,
-            String.format("Transfer from account %s, quantity: %s", accountFrom, amount));
-    verify(notificationService)
+            accountTo, String.format("Transfer from account %s, quantity: 10.00", accountFrom));
+    verify(notificationService, timeout(1000))
         .notifyAboutTransfer(
-            accountFrom, String.format("Transfer to account %s, quantity: %s", accountTo, amount));
+            accountFrom, String.format("Transfer to account %s, quantity: 10.00", accountTo));
   }
 }
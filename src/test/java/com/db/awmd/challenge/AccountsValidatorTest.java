@@ -1,8 +1,11 @@
 package com.db.awmd.challenge;
 
 import com.db.awmd.challenge.domain.Account;
-import com.db.awmd.challenge.dto.TransferValidationPayload;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.exception.TransferRejectedException;
 import com.db.awmd.challenge.service.AccountsValidator;
+import com.db.awmd.challenge.service.validation.TransferError;
+import com.db.awmd.challenge.service.validation.TransferRule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,6 +14,7 @@ import org.springframework.test.context.junit4.SpringRunner;
 
 import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.Collections;
 
 import static org.assertj.core.api.Java6Assertions.assertThat;
 
@@ -29,15 +33,9 @@ public class AccountsValidatorTest {
 
     String uniqueIdTo = "IdTo-" + System.currentTimeMillis();
 
-    TransferValidationPayload validationPayload =
-        TransferValidationPayload.builder()
-            .accountFrom(accountFrom)
-            .accountFromId(uniqueIdFrom)
-            .accountToId(uniqueIdTo)
-            .amount(amount)
-            .build();
-
-    Collection<String> errors = validator.validateTransfer(validationPayload);
+    Collection<String> errors =
+        validator.validateTransfer(
+            accountFrom, uniqueIdFrom, null, uniqueIdTo, Money.toMinorUnits(amount));
 
     assertThat(errors).containsExactly("No account with id " + uniqueIdTo + " found");
   }
@@ -52,15 +50,9 @@ public class AccountsValidatorTest {
     String uniqueIdTo = "IdTo-" + System.currentTimeMillis();
     Account accountTo = new Account(uniqueIdTo);
 
-    TransferValidationPayload validationPayload =
-        TransferValidationPayload.builder()
-            .accountFromId(uniqueIdFrom)
-            .accountToId(uniqueIdTo)
-            .accountTo(accountTo)
-            .amount(amount)
-            .build();
-
-    Collection<String> errors = validator.validateTransfer(validationPayload);
+    Collection<String> errors =
+        validator.validateTransfer(
+            null, uniqueIdFrom, accountTo, uniqueIdTo, Money.toMinorUnits(amount));
 
     assertThat(errors).containsExactly("No account with id " + uniqueIdFrom + " found");
   }
@@ -72,16 +64,9 @@ public class AccountsValidatorTest {
     Account accountFrom = new Account(uniqueIdFrom);
     accountFrom.setBalance(amount);
 
-    TransferValidationPayload validationPayload =
-        TransferValidationPayload.builder()
-            .accountFrom(accountFrom)
-            .accountFromId(uniqueIdFrom)
-            .accountTo(accountFrom)
-            .accountToId(uniqueIdFrom)
-            .amount(amount)
-            .build();
-
-    Collection<String> errors = validator.validateTransfer(validationPayload);
+    Collection<String> errors =
+        validator.validateTransfer(
+            accountFrom, uniqueIdFrom, accountFrom, uniqueIdFrom, Money.toMinorUnits(amount));
     assertThat(errors).containsExactly("Self transfer is not allowed");
   }
 
@@ -94,16 +79,9 @@ public class AccountsValidatorTest {
     String uniqueIdTo = "IdTo-" + System.currentTimeMillis();
     Account accountTo = new Account(uniqueIdTo);
 
-    TransferValidationPayload validationPayload =
-        TransferValidationPayload.builder()
-            .accountFromId(uniqueIdFrom)
-            .accountFrom(accountFrom)
-            .accountToId(uniqueIdTo)
-            .accountTo(accountTo)
-            .amount(amount)
-            .build();
-
-    Collection<String> errors = validator.validateTransfer(validationPayload);
+    Collection<String> errors =
+        validator.validateTransfer(
+            accountFrom, uniqueIdFrom, accountTo, uniqueIdTo, Money.toMinorUnits(amount));
 
     assertThat(errors).containsExactly("Insufficient balance to perform transfer");
   }
@@ -118,17 +96,69 @@ public class AccountsValidatorTest {
     String uniqueIdTo = "IdTo-" + System.currentTimeMillis();
     Account accountTo = new Account(uniqueIdTo);
 
-    TransferValidationPayload validationPayload =
-        TransferValidationPayload.builder()
-            .accountFromId(uniqueIdFrom)
-            .accountFrom(accountFrom)
-            .accountToId(uniqueIdTo)
-            .accountTo(accountTo)
-            .amount(amount)
-            .build();
-
-    Collection<String> errors = validator.validateTransfer(validationPayload);
+    Collection<String> errors =
+        validator.validateTransfer(
+            accountFrom, uniqueIdFrom, accountTo, uniqueIdTo, Money.toMinorUnits(amount));
 
     assertThat(errors).isEmpty();
   }
+
+  @Test
+  public void stops_at_the_first_failing_rule() {
+    Account accountFrom = new Account("Id-1");
+
+    // the amount check runs before the accounts are even looked at
+    assertThat(validator.check(accountFrom, "Id-1", null, "Id-2", -1))
+        .isEqualTo(TransferError.NEGATIVE_AMOUNT.mask());
+    int bothMissing =
+        TransferError.ACCOUNT_FROM_NOT_FOUND.mask() | TransferError.ACCOUNT_TO_NOT_FOUND.mask();
+    assertThat(validator.check(null, "Id-1", null, "Id-2", 1)).isEqualTo(bothMissing);
+    assertThat(validator.validateTransfer(null, "Id-1", null, "Id-2", 1))
+        .containsExactly("No account with id Id-1 found", "No account with id Id-2 found");
+  }
+
+  @Test
+  public void runs_additional_rules_by_their_order() {
+    // rejects everything before the balance check could
+    TransferRule frozen =
+        new TransferRule() {
+          @Override
+          public int check(
+              Account accountFrom,
+              String accountIdFrom,
+              Account accountTo,
+              String accountIdTo,
+              long amount) {
+            return TransferError.SELF_TRANSFER.mask();
+          }
+
+          @Override
+          public int order() {
+            return 500;
+          }
+        };
+    AccountsValidator chain = new AccountsValidator(Collections.singletonList(frozen));
+    Account accountFrom = new Account("Id-1");
+    Account accountTo = new Account("Id-2");
+
+    assertThat(chain.check(accountFrom, "Id-1", accountTo, "Id-2", 100))
+        .isEqualTo(TransferError.SELF_TRANSFER.mask());
+    assertThat(chain.check(null, "Id-1", accountTo, "Id-2", 100))
+        .isEqualTo(TransferError.ACCOUNT_FROM_NOT_FOUND.mask());
+  }
+
+  @Test
+  public void rejections_without_account_ids_are_shared_and_stackless() {
+    int errors = TransferError.INSUFFICIENT_BALANCE.mask();
+    TransferRejectedException rejection = TransferRejectedException.of(errors, "Id-1", "Id-2");
+
+    assertThat(TransferRejectedException.of(errors, "Id-3", "Id-4")).isSameAs(rejection);
+    assertThat(rejection.getStackTrace()).isEmpty();
+    assertThat(rejection.getMessage()).isEqualTo("Insufficient balance to perform transfer");
+
+    TransferRejectedException missing =
+        TransferRejectedException.of(TransferError.ACCOUNT_TO_NOT_FOUND.mask(), "Id-1", "Id-2");
+    assertThat(missing.getStackTrace()).isEmpty();
+    assertThat(missing.getMessage()).isEqualTo("No account with id Id-2 found");
+  }
 }
@@ -0,0 +1,302 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.ChangeStreamProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.BalanceChange;
+import com.db.awmd.challenge.dto.ChangeType;
+import com.db.awmd.challenge.exception.ChangeOffsetExpiredException;
+import com.db.awmd.challenge.exception.ChangeStreamUnavailableException;
+import com.db.awmd.challenge.exception.InvalidPageRequestException;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.changes.BalanceChangeStream;
+import com.db.awmd.challenge.web.ChangeStreamController;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BalanceChangeStreamTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<BalanceChangeStream> streams = new ArrayList<>();
+
+  @After
+  public void stopStreams() throws Exception {
+    for (BalanceChangeStream stream : streams) {
+      stream.stop();
+    }
+  }
+
+  @Test
+  public void repositoryChangesArePublishedInOrder() throws Exception {
+    BalanceChangeStream stream = start(properties());
+    AccountsRepositoryInMemory repository =
+        new AccountsRepositoryInMemory(new AccountIdDictionary(), stream);
+    BalanceChangeStream.Cursor cursor = stream.subscribe(0);
+
+    repository.createAccount(new Account("Id-1", 10_000, "EUR"));
+    repository.createAccount(new Account("Id-2", 0, "EUR"));
+    repository.transfer(
+        repository.getAccount("Id-1"), 7_500, repository.getAccount("Id-2"), 2_500);
+    repository.setBalance(repository.getAccount("Id-2"), 2_000);
+
+    List<BalanceChange> changes = read(cursor, 4);
+    assertThat(changes).extracting("offset").containsExactly(0L, 1L, 2L, 3L);
+    assertThat(changes)
+        .extracting("type")
+        .containsExactly(
+            ChangeType.ACCOUNT_CREATED,
+            ChangeType.ACCOUNT_CREATED,
+            ChangeType.TRANSFER,
+            ChangeType.BALANCE_SET);
+    assertThat(changes.get(0).getCurrency()).isEqualTo("EUR");
+    assertThat(changes.get(0).getBalance()).isEqualByComparingTo("100.00");
+    BalanceChange transfer = changes.get(2);
+    assertThat(transfer.getAccountId()).isEqualTo("Id-1");
+    assertThat(transfer.getBalance()).isEqualByComparingTo("75.00");
+    assertThat(transfer.getCounterpartyId()).isEqualTo("Id-2");
+    assertThat(transfer.getCounterpartyBalance()).isEqualByComparingTo("25.00");
+    assertThat(changes.get(3).getCounterpartyBalance()).isNull();
+    assertThat(changes.get(3).getTimestamp()).isPositive();
+    assertThat(cursor.getPosition()).isEqualTo(4);
+    cursor.close();
+  }
+
+  @Test
+  public void consumerBehindTheRingReadsFromTheSegments() throws Exception {
+    ChangeStreamProperties properties = properties();
+    properties.setRingSize(16);
+    properties.setDirectory(folder.getRoot().getPath());
+    properties.setSegmentBytes(4_096);
+    properties.setMaxSegments(100);
+    BalanceChangeStream stream = start(properties);
+    BalanceChangeStream.Cursor cursor = stream.subscribe(0);
+
+    // a ring at a time, so nothing is dropped
+    for (int i = 0; i < 1_000; i++) {
+      stream.transferred("Id-" + i, i, "Id-" + (i + 1), -i);
+      if (i % 16 == 15) {
+        awaitEnd(stream, i + 1);
+      }
+    }
+
+    List<BalanceChange> changes = read(cursor, 1_000);
+    for (int i = 0; i < 1_000; i++) {
+      assertThat(changes.get(i).getOffset()).isEqualTo(i);
+      assertThat(changes.get(i).getAccountId()).isEqualTo("Id-" + i);
+      assertThat(changes.get(i).getCounterpartyBalance().unscaledValue().intValue()).isEqualTo(-i);
+    }
+    assertThat(stream.getMetrics().getSegments()).isGreaterThan(1);
+    cursor.close();
+    assertThat(stream.getMetrics().getConsumers()).isZero();
+  }
+
+  @Test
+  public void changesBeyondWhatIsRetainedHaveExpired() throws Exception {
+    ChangeStreamProperties properties = properties();
+    properties.setRingSize(16);
+    BalanceChangeStream stream = start(properties);
+    BalanceChangeStream.Cursor cursor = stream.subscribe(0);
+
+    for (int i = 0; i < 100; i++) {
+      stream.balanceSet("Id-1", i);
+      if (i % 16 == 15) {
+        awaitEnd(stream, i + 1);
+      }
+    }
+    awaitEnd(stream, 100);
+
+    assertThatThrownBy(() -> cursor.poll(10, change -> {}))
+        .isInstanceOf(ChangeOffsetExpiredException.class);
+    assertThatThrownBy(() -> stream.subscribe(0))
+        .isInstanceOf(ChangeOffsetExpiredException.class)
+        .hasMessage("Offset 0 is no longer retained, the oldest is 84");
+    assertThatThrownBy(() -> stream.subscribe(101)).isInstanceOf(InvalidPageRequestException.class);
+    assertThat(read(stream.subscribe(84), 16)).extracting("offset").startsWith(84L).endsWith(99L);
+    cursor.close();
+  }
+
+  @Test
+  public void reopenedStreamContinuesAtItsLastOffset() throws Exception {
+    ChangeStreamProperties properties = properties();
+    properties.setDirectory(folder.getRoot().getPath());
+    BalanceChangeStream stream = start(properties);
+    for (int i = 0; i < 10; i++) {
+      stream.accountCreated("Id-" + i, "USD", i * 100);
+    }
+    awaitEnd(stream, 10);
+    stream.stop();
+
+    BalanceChangeStream reopened = start(properties);
+    assertThat(reopened.getEndOffset()).isEqualTo(10);
+    reopened.balanceSet("Id-1", 5);
+
+    List<BalanceChange> changes = read(reopened.subscribe(0), 11);
+    assertThat(changes).extracting("offset").startsWith(0L).endsWith(10L);
+    assertThat(changes.get(9).getCurrency()).isEqualTo("USD");
+    assertThat(changes.get(9).getBalance()).isEqualByComparingTo("9.00");
+    assertThat(changes.get(10).getType()).isEqualTo(ChangeType.BALANCE_SET);
+  }
+
+  @Test
+  public void concurrentChangesAreConsumedWithoutGaps() throws Exception {
+    ChangeStreamProperties properties = properties();
+    // large enough that no change is dropped
+    properties.setRingSize(1 << 17);
+    properties.setDirectory(folder.getRoot().getPath());
+    BalanceChangeStream stream = start(properties);
+    BalanceChangeStream.Cursor cursor = stream.subscribe(0);
+
+    int writers = 4;
+    int changesPerWriter = 20_000;
+    ExecutorService executor = Executors.newFixedThreadPool(writers);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int w = 0; w < writers; w++) {
+      String accountId = "Id-" + w;
+      futures.add(
+          executor.submit(
+              () -> {
+                for (int i = 0; i < changesPerWriter; i++) {
+                  stream.balanceSet(accountId, i);
+                }
+              }));
+    }
+    List<BalanceChange> changes = read(cursor, writers * changesPerWriter);
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    // each writer's changes come in the order it made them
+    long[] last = new long[writers];
+    Arrays.fill(last, -1);
+    for (int i = 0; i < changes.size(); i++) {
+      BalanceChange change = changes.get(i);
+      assertThat(change.getOffset()).isEqualTo(i);
+      int writer = Integer.parseInt(change.getAccountId().substring(3));
+      long balance = change.getBalance().unscaledValue().longValue();
+      assertThat(balance).isEqualTo(last[writer] + 1);
+      last[writer] = balance;
+    }
+  }
+
+  @Test
+  public void changesThatFindTheRingFullAreDroppedAndExpireTheOlderOnes() throws Exception {
+    ChangeStreamProperties properties = properties();
+    properties.setRingSize(16);
+    // not started, so nothing is published and the ring fills up
+    BalanceChangeStream stream = new BalanceChangeStream(properties);
+
+    for (int i = 0; i < 20; i++) {
+      stream.balanceSet("Id-1", i);
+    }
+
+    assertThat(stream.getMetrics().getDroppedChanges()).isEqualTo(4);
+    assertThat(stream.getMetrics().getNextOffset()).isEqualTo(16);
+    assertThat(stream.getEndOffset()).isEqualTo(16);
+    assertThatThrownBy(() -> stream.subscribe(0))
+        .isInstanceOf(ChangeOffsetExpiredException.class)
+        .hasMessage("Offset 0 is no longer retained, the oldest is 16");
+    BalanceChangeStream.Cursor cursor = stream.subscribe(16);
+    assertThat(cursor.poll(10, change -> {})).isZero();
+    cursor.close();
+  }
+
+  @Test
+  public void controllerStreamsNdjsonAndServerSentEvents() throws Exception {
+    ChangeStreamProperties properties = properties();
+    BalanceChangeStream stream = start(properties);
+    ChangeStreamController controller =
+        new ChangeStreamController(stream, properties, new ObjectMapper());
+    stream.accountCreated("Id-1", "EUR", 1_000);
+    stream.accountCreated("Id-2", "EUR", 0);
+    stream.transferred("Id-1", 900, "Id-2", 100);
+    awaitEnd(stream, 3);
+
+    ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+    controller.streamChanges(1L, 2).writeTo(ndjson);
+    String[] lines = ndjson.toString(StandardCharsets.UTF_8.name()).split("\n");
+    assertThat(lines).hasSize(2);
+    JsonNode transfer = new ObjectMapper().readTree(lines[1]);
+    assertThat(transfer.get("offset").asLong()).isEqualTo(2);
+    assertThat(transfer.get("type").asText()).isEqualTo("TRANSFER");
+    assertThat(transfer.get("counterpartyBalance").decimalValue()).isEqualByComparingTo("1.00");
+
+    ByteArrayOutputStream events = new ByteArrayOutputStream();
+    controller.streamChangeEvents(null, 1, 1L).writeTo(events);
+    assertThat(events.toString(StandardCharsets.UTF_8.name()))
+        .startsWith("id: 2\nevent: TRANSFER\ndata: {")
+        .endsWith("}\n\n");
+    assertThat(stream.getMetrics().getConsumers()).isZero();
+  }
+
+  @Test
+  public void disabledOrFullStreamTurnsConsumersAway() throws Exception {
+    BalanceChangeStream disabled = start(new ChangeStreamProperties());
+    disabled.balanceSet("Id-1", 1);
+    assertThatThrownBy(() -> disabled.subscribe(0))
+        .isInstanceOf(ChangeStreamUnavailableException.class);
+
+    ChangeStreamProperties properties = properties();
+    properties.setMaxConsumers(1);
+    BalanceChangeStream stream = start(properties);
+    BalanceChangeStream.Cursor cursor = stream.subscribe(0);
+    assertThatThrownBy(() -> stream.subscribe(0))
+        .isInstanceOf(ChangeStreamUnavailableException.class)
+        .hasMessage("Too many consumers of the change stream");
+    cursor.close();
+    stream.subscribe(0).close();
+  }
+
+  private ChangeStreamProperties properties() {
+    ChangeStreamProperties properties = new ChangeStreamProperties();
+    properties.setEnabled(true);
+    return properties;
+  }
+
+  private BalanceChangeStream start(ChangeStreamProperties properties) throws IOException {
+    BalanceChangeStream stream = new BalanceChangeStream(properties);
+    stream.start();
+    streams.add(stream);
+    return stream;
+  }
+
+  private static List<BalanceChange> read(BalanceChangeStream.Cursor cursor, int count)
+      throws IOException, InterruptedException {
+    List<BalanceChange> changes = new ArrayList<>(count);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (changes.size() < count && System.nanoTime() < deadline) {
+      if (cursor.poll(count - changes.size(), changes::add) == 0) {
+        cursor.await(100);
+      }
+    }
+    assertThat(changes).hasSize(count);
+    return changes;
+  }
+
+  private static void awaitEnd(BalanceChangeStream stream, long end) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (stream.getEndOffset() < end && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertThat(stream.getEndOffset()).isEqualTo(end);
+  }
+}
@@ -0,0 +1,64 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.MoneyTransfer;
+import com.db.awmd.challenge.web.binary.BinaryWireFormat;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class BinaryWireFormatTest {
+
+  @Test
+  public void transfersAndAccountsRoundTrip() {
+    byte[] frame =
+        BinaryWireFormat.writeTransfer(new MoneyTransfer("Id-1", "Id-\u00e9", 12_345L, "key-1"));
+    assertThat(frame[0]).isEqualTo(BinaryWireFormat.VERSION);
+
+    MoneyTransfer transfer = BinaryWireFormat.readTransfer(frame, frame.length);
+    assertThat(transfer.getAccountIdFrom()).isEqualTo("Id-1");
+    assertThat(transfer.getAccountIdTo()).isEqualTo("Id-\u00e9");
+    assertThat(transfer.getAmountMinorUnits()).isEqualTo(12_345L);
+    assertThat(transfer.getIdempotencyKey()).isEqualTo("key-1");
+
+    frame = BinaryWireFormat.writeTransfer(new MoneyTransfer("Id-1", "Id-2", 1L, null));
+    assertThat(BinaryWireFormat.readTransfer(frame, frame.length).getIdempotencyKey()).isNull();
+
+    frame = BinaryWireFormat.writeAccount(new Account("Id-1", Long.MAX_VALUE));
+    Account account = BinaryWireFormat.readAccount(frame, frame.length);
+    assertThat(account.getAccountId()).isEqualTo("Id-1");
+    assertThat(account.getBalanceMinorUnits()).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void malformedAndInvalidFramesAreRejected() {
+    byte[] frame = BinaryWireFormat.writeTransfer(new MoneyTransfer("Id-1", "Id-2", 1L, null));
+
+    assertRejected(frame, frame.length - 1, "Frame ends after");
+    assertRejected(Arrays.copyOf(frame, frame.length + 1), frame.length + 1, "trailing bytes");
+    byte[] future = frame.clone();
+    future[0] = 2;
+    assertRejected(future, future.length, "Unsupported frame version 2");
+
+    frame = BinaryWireFormat.writeTransfer(new MoneyTransfer("", "Id-2", 1L, null));
+    assertRejected(frame, frame.length, "must not be empty");
+    frame = BinaryWireFormat.writeTransfer(new MoneyTransfer("Id-1", "Id-2", -1L, null));
+    assertRejected(frame, frame.length, "Amount to transfer must be positive.");
+    char[] key = new char[65];
+    Arrays.fill(key, 'k');
+    frame = BinaryWireFormat.writeTransfer(new MoneyTransfer("Id-1", "Id-2", 1L, new String(key)));
+    assertRejected(frame, frame.length, "longer than 64");
+  }
+
+  private static void assertRejected(byte[] frame, int length, String message) {
+    try {
+      BinaryWireFormat.readTransfer(frame, length);
+      fail("Frame should have been rejected");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains(message);
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountLockProperties;
+import com.db.awmd.challenge.config.AsyncTransferProperties;
+import com.db.awmd.challenge.config.BatchTransferProperties;
+import com.db.awmd.challenge.config.FxProperties;
+import com.db.awmd.challenge.config.HotAccountProperties;
+import com.db.awmd.challenge.config.IdempotencyProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.config.NettingProperties;
+import com.db.awmd.challenge.config.NotificationDispatchProperties;
+import com.db.awmd.challenge.config.TransferExecutionProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.BatchMode;
+import com.db.awmd.challenge.dto.MoneyTransfer;
+import com.db.awmd.challenge.dto.TransferStatus;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.TransferException;
+import com.db.awmd.challenge.metrics.RejectionReason;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.ledger.TransferLedger;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AccountsValidator;
+import com.db.awmd.challenge.service.AsyncTransferExecutor;
+import com.db.awmd.challenge.service.StripedAccountLocks;
+import com.db.awmd.challenge.service.TransferNotificationDispatcher;
+import com.db.awmd.challenge.service.fx.FxRateCache;
+import com.db.awmd.challenge.service.fx.FxRateTable;
+import com.db.awmd.challenge.service.idempotency.IdempotencyCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FxRateCacheTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void convertsWithFixedPointRatesAndDerivedInverses() throws IOException {
+    String file = "from,to,rate\n# spot\nEUR,USD,1.1\n\nUSD,JPY,150\nJPY,USD,0.0067\n";
+    FxRateTable rates = FxRateTable.parse(new BufferedReader(new StringReader(file)));
+
+    assertThat(rates.convert("EUR", "USD", 1000)).isEqualTo(1100);
+    // 0.90909091 per dollar, derived from EUR,USD
+    assertThat(rates.convert("USD", "EUR", 1100)).isEqualTo(1000);
+    // listed both ways, so the inverse is not derived; 100.5 rounds to the even 100
+    assertThat(rates.convert("JPY", "USD", 15_000)).isEqualTo(100);
+    // half-even: 5.5 rounds up, 16.5 rounds down
+    assertThat(rates.convert("EUR", "USD", 5)).isEqualTo(6);
+    assertThat(rates.convert("EUR", "USD", 15)).isEqualTo(16);
+    assertThat(rates.convert("EUR", "JPY", 100)).isEqualTo(FxRateTable.NO_RATE);
+    assertThat(rates.rate("USD", "EUR")).isEqualByComparingTo("0.90909091");
+
+    // beyond the long product the conversion falls back to BigDecimal
+    assertThat(rates.convert("EUR", "USD", 1_000_000_000_000L)).isEqualTo(1_100_000_000_000L);
+    assertThatThrownBy(() -> rates.convert("USD", "JPY", Long.MAX_VALUE / 2))
+        .isInstanceOf(InvalidAmountException.class);
+    assertThatThrownBy(() -> FxRateTable.parse(new BufferedReader(new StringReader("EUR,eur,1"))))
+        .isInstanceOf(IOException.class)
+        .hasMessage("Line 1: invalid currency pair EUR/eur");
+  }
+
+  @Test
+  public void refreshReplacesTheWholeTableAndKeepsItWhenTheFileIsBroken() throws IOException {
+    Path file = folder.newFile("rates.csv").toPath();
+    write(file, "EUR,USD,1.1\nEUR,GBP,0.85", 1);
+    FxRateCache cache = cache(file);
+    FxRateTable first = cache.getRates();
+
+    assertThat(cache.refresh()).isFalse();
+    assertThat(cache.getRates()).isSameAs(first);
+
+    write(file, "EUR,USD,1.2", 2);
+    assertThat(cache.refresh()).isTrue();
+    assertThat(cache.getRates().convert("EUR", "USD", 100)).isEqualTo(120);
+    assertThat(cache.getRates().convert("EUR", "GBP", 100)).isEqualTo(FxRateTable.NO_RATE);
+    // a reader holding the old table keeps converting consistently against it
+    assertThat(first.convert("EUR", "USD", 100)).isEqualTo(110);
+    assertThat(first.convert("EUR", "GBP", 100)).isEqualTo(85);
+
+    write(file, "EUR,USD,one", 3);
+    assertThatThrownBy(cache::refresh).isInstanceOf(IOException.class);
+    assertThat(cache.getRates().convert("EUR", "USD", 100)).isEqualTo(120);
+    cache.stop();
+  }
+
+  @Test
+  public void crossCurrencyTransfersCreditTheConvertedAmount() throws IOException {
+    Path file = folder.newFile("rates.csv").toPath();
+    write(file, "EUR,USD,1.1", 1);
+    AccountsRepository repository = new AccountsRepositoryInMemory(new AccountIdDictionary());
+    repository.createAccount(new Account("Id-1", 10_000, "EUR"));
+    repository.createAccount(new Account("Id-2", 0, "USD"));
+    repository.createAccount(new Account("Id-3", 0, "GBP"));
+    TransferMetrics metrics = new TransferMetrics();
+    AccountsService service = service(repository, cache(file), metrics);
+
+    service.performTransfer("Id-1", "Id-2", 1_000);
+    assertThat(repository.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(9_000);
+    assertThat(repository.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(1_100);
+
+    assertThatThrownBy(() -> service.performTransfer("Id-1", "Id-3", 1_000))
+        .isInstanceOf(TransferException.class)
+        .hasMessage("No exchange rate from EUR to GBP");
+    assertThat(metrics.getRejections(RejectionReason.NO_EXCHANGE_RATE)).isEqualTo(1);
+    assertThatThrownBy(() -> service.requireCurrency("Id-1", "USD"))
+        .hasMessage("Amount is in USD but account Id-1 holds EUR");
+
+    // a rolled back credit is taken back as it was converted
+    assertThat(
+            service.performBatchTransfer(
+                Arrays.asList(
+                    new MoneyTransfer("Id-1", "Id-2", new BigDecimal("10"), null),
+                    new MoneyTransfer("Id-1", "Id-3", new BigDecimal("10"), null)),
+                BatchMode.ALL_OR_NOTHING))
+        .extracting("status")
+        .containsExactly(TransferStatus.ROLLED_BACK, TransferStatus.REJECTED);
+    assertThat(repository.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(9_000);
+    assertThat(repository.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(1_100);
+  }
+
+  private FxRateCache cache(Path file) throws IOException {
+    FxProperties properties = new FxProperties();
+    properties.setRatesFile(file.toString());
+    properties.setRefreshIntervalMs(0);
+    FxRateCache cache = new FxRateCache(properties);
+    cache.start();
+    return cache;
+  }
+
+  private AccountsService service(
+      AccountsRepository repository, FxRateCache fxRates, TransferMetrics metrics) {
+    AccountIdDictionary dictionary = new AccountIdDictionary();
+    TransferNotificationDispatcher dispatcher =
+        new TransferNotificationDispatcher(
+            (account, description) -> {}, new NotificationDispatchProperties(), metrics);
+    AccountsService service =
+        new AccountsService(
+            repository,
+            new AccountsValidator(),
+            dispatcher,
+            new StripedAccountLocks(new AccountLockProperties()),
+            new BatchTransferProperties(),
+            new TransferExecutionProperties(),
+            metrics,
+            new IdempotencyCache(new IdempotencyProperties()),
+            new AsyncTransferExecutor(new AsyncTransferProperties()),
+            new TransferLedger(new LedgerProperties(), dictionary),
+            new NettingProperties(),
+            new HotAccountProperties(),
+            fxRates);
+    service.start();
+    return service;
+  }
+
+  // the modification time is set explicitly, file systems may not tell quick rewrites apart
+  private static void write(Path file, String rates, long version) throws IOException {
+    Files.write(file, rates.getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(file, FileTime.fromMillis(version * 1000));
+  }
+}
@@ -0,0 +1,111 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.HotAccountProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.hot.HotAccounts;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HotAccountsTest {
+
+  private final AccountsRepositoryInMemory repository =
+      new AccountsRepositoryInMemory(new AccountIdDictionary());
+
+  @Test
+  public void creditsStayInSlotsUntilADebitNeedsThem() {
+    HotAccounts hotAccounts = new HotAccounts(properties("Fees"), repository);
+    Account fees = new Account("Fees", 100);
+    repository.createAccount(fees);
+
+    assertThat(hotAccounts.credit(fees, 30)).isEqualTo(130);
+    hotAccounts.credit(fees, 20);
+    assertThat(fees.getBalanceMinorUnits()).isEqualTo(100);
+    assertThat(hotAccounts.balanceOf(fees)).isEqualTo(150);
+
+    hotAccounts.cover(fees, 100);
+    assertThat(fees.getBalanceMinorUnits()).isEqualTo(100);
+
+    hotAccounts.cover(fees, 120);
+    assertThat(fees.getBalanceMinorUnits()).isEqualTo(150);
+    assertThat(hotAccounts.balanceOf(fees)).isEqualTo(150);
+  }
+
+  @Test
+  public void contendedAccountsArePromotedUpToTheLimit() {
+    HotAccountProperties properties = properties();
+    properties.setAutoDetect(true);
+    properties.setContendedTransfers(3);
+    properties.setMaxAccounts(1);
+    HotAccounts hotAccounts = new HotAccounts(properties, repository);
+
+    hotAccounts.recordContention("Id-1", "Fees");
+    hotAccounts.recordContention("Id-2", "Fees");
+    assertThat(hotAccounts.getAccountIds()).isEmpty();
+    hotAccounts.recordContention("Fees", "Id-3");
+    for (int i = 0; i < 3; i++) {
+      hotAccounts.recordContention("Id-2", "Treasury");
+    }
+
+    assertThat(hotAccounts.getAccountIds()).containsExactly("Fees");
+    assertThat(hotAccounts.isHot("Id-2")).isFalse();
+  }
+
+  @Test
+  public void concurrentCreditsAndDebitsKeepEveryMinorUnit() throws Exception {
+    HotAccounts hotAccounts = new HotAccounts(properties("Fees"), repository);
+    Account fees = new Account("Fees", 0);
+    repository.createAccount(fees);
+    AtomicLong debited = new AtomicLong();
+
+    ExecutorService executor = Executors.newFixedThreadPool(5);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                for (int i = 0; i < 100_000; i++) {
+                  hotAccounts.credit(fees, 1);
+                }
+              }));
+    }
+    // the only writer of the repository balance, as the holder of the account's lock would be
+    futures.add(
+        executor.submit(
+            () -> {
+              for (int i = 0; i < 100_000; i++) {
+                hotAccounts.cover(fees, 3);
+                long balance = fees.getBalanceMinorUnits();
+                if (balance >= 3) {
+                  repository.setBalance(fees, balance - 3);
+                  debited.addAndGet(3);
+                }
+                assertThat(fees.getBalanceMinorUnits()).isNotNegative();
+              }
+            }));
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    assertThat(debited.get()).isPositive();
+    assertThat(hotAccounts.balanceOf(fees) + debited.get()).isEqualTo(400_000);
+  }
+
+  private static HotAccountProperties properties(String... accountIds) {
+    HotAccountProperties properties = new HotAccountProperties();
+    properties.setAccountIds(new ArrayList<>(Arrays.asList(accountIds)));
+    return properties;
+  }
+}
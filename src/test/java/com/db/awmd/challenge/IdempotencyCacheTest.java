@@ -0,0 +1,269 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.IdempotencyProperties;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.exception.IdempotencyKeyReusedException;
+import com.db.awmd.challenge.exception.TransferException;
+import com.db.awmd.challenge.exception.TransferOverloadedException;
+import com.db.awmd.challenge.exception.TransferRejectedException;
+import com.db.awmd.challenge.service.idempotency.IdempotencyCache;
+import com.db.awmd.challenge.service.validation.TransferError;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IdempotencyCacheTest {
+
+  private final AtomicLong clock = new AtomicLong();
+
+  private final AtomicInteger runs = new AtomicInteger();
+
+  private IdempotencyProperties properties;
+
+  @Before
+  public void setUp() {
+    properties = new IdempotencyProperties();
+    properties.setTtlMs(1_000);
+    properties.setMaxEntries(4);
+    properties.setSegments(1);
+  }
+
+  @Test
+  public void execute_replaysSuccessWithoutRunningAgain() {
+    IdempotencyCache cache = new IdempotencyCache(properties, clock::get);
+
+    cache.execute("key-1", "Id-1", "Id-2", 100, null, runs::incrementAndGet);
+    cache.execute("key-1", "Id-1", "Id-2", 100, null, runs::incrementAndGet);
+
+    assertThat(runs.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void execute_replaysRejection() {
+    IdempotencyCache cache = new IdempotencyCache(properties, clock::get);
+    TransferRejectedException rejection =
+        TransferRejectedException.of(TransferError.INSUFFICIENT_BALANCE.mask(), "Id-1", "Id-2");
+
+    assertThatThrownBy(() -> cache.execute("key-1", "Id-1", "Id-2", 100, null, fail(rejection)))
+        .isSameAs(rejection);
+    assertThatThrownBy(
+            () -> cache.execute("key-1", "Id-1", "Id-2", 100, null, runs::incrementAndGet))
+        .isSameAs(rejection);
+    assertThat(runs.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void execute_forgetsLockTimeouts() {
+    IdempotencyCache cache = new IdempotencyCache(properties, clock::get);
+
+    assertThatThrownBy(
+            () ->
+                cache.execute(
+                    "key-1",
+                    "Id-1",
+                    "Id-2",
+                    100,
+                    null,
+                    fail(new AccountLockTimeoutException("Timed out waiting for account locks"))))
+        .isInstanceOf(AccountLockTimeoutException.class);
+    cache.execute("key-1", "Id-1", "Id-2", 100, null, runs::incrementAndGet);
+
+    assertThat(runs.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void execute_forgetsFailuresOfTheEngineRatherThanTheTransfer() {
+    IdempotencyCache cache = new IdempotencyCache(properties, clock::get);
+
+    assertThatThrownBy(
+            () ->
+                cache.execute(
+                    "key-1",
+                    "Id-1",
+                    "Id-2",
+                    100,
+                    null,
+                    fail(new TransferException("Transfer sequencer is not running"))))
+        .hasMessage("Transfer sequencer is not running");
+    assertThatThrownBy(
+            () ->
+                cache.execute(
+                    "key-1",
+                    "Id-1",
+                    "Id-2",
+                    100,
+                    null,
+                    fail(new TransferException("No exchange rate from EUR to USD"))))
+        .hasMessage("No exchange rate from EUR to USD");
+    cache.execute("key-1", "Id-1", "Id-2", 100, null, runs::incrementAndGet);
+    cache.execute("key-1", "Id-1", "Id-2", 100, null, runs::incrementAndGet);
+
+    assertThat(runs.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void execute_rejectsKeyReusedForDifferentTransfer() {
+    IdempotencyCache cache = new IdempotencyCache(properties, clock::get);
+    cache.execute("key-1", "Id-1", "Id-2", 100, null, runs::incrementAndGet);
+
+    assertThatThrownBy(
+            () -> cache.execute("key-1", "Id-1", "Id-2", 200, null, runs::incrementAndGet))
+        .isInstanceOf(IdempotencyKeyReusedException.class);
+    assertThat(runs.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void execute_rejectsKeyReusedForDifferentCurrency() {
+    IdempotencyCache cache = new IdempotencyCache(properties, clock::get);
+    cache.execute("key-1", "Id-1", "Id-2", 100, "EUR", runs::incrementAndGet);
+
+    assertThatThrownBy(
+            () -> cache.execute("key-1", "Id-1", "Id-2", 100, "USD", runs::incrementAndGet))
+        .isInstanceOf(IdempotencyKeyReusedException.class);
+    cache.execute("key-1", "Id-1", "Id-2", 100, "EUR", runs::incrementAndGet);
+    assertThat(runs.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void execute_runsAgainOnceExpired() {
+    IdempotencyCache cache = new IdempotencyCache(properties, clock::get);
+    cache.execute("key-1", "Id-1", "Id-2", 100, null, runs::incrementAndGet);
+
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+    cache.execute("key-1", "Id-1", "Id-2", 100, null, runs::incrementAndGet);
+    assertThat(runs.get()).isEqualTo(1);
+
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    cache.execute("key-1", "Id-1", "Id-2", 100, null, runs::incrementAndGet);
+    assertThat(runs.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void execute_evictsOldestBeyondMaxEntries() {
+    IdempotencyCache cache = new IdempotencyCache(properties, clock::get);
+    for (int i = 0; i < 5; i++) {
+      cache.execute("key-" + i, "Id-1", "Id-2", 100, null, runs::incrementAndGet);
+    }
+    assertThat(cache.size()).isEqualTo(4);
+
+    cache.execute("key-0", "Id-1", "Id-2", 100, null, runs::incrementAndGet);
+    cache.execute("key-4", "Id-1", "Id-2", 100, null, runs::incrementAndGet);
+
+    assertThat(runs.get()).isEqualTo(6);
+  }
+
+  @Test
+  public void execute_neverEvictsTransfersStillRunning() throws Exception {
+    IdempotencyCache cache = new IdempotencyCache(properties, clock::get);
+    CountDownLatch started = new CountDownLatch(4);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> running = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        String key = "key-" + i;
+        running.add(
+            executor.submit(
+                () ->
+                    cache.execute(
+                        key,
+                        "Id-1",
+                        "Id-2",
+                        100,
+                        null,
+                        () -> {
+                          started.countDown();
+                          await(release);
+                          runs.incrementAndGet();
+                        })));
+      }
+      started.await();
+
+      assertThatThrownBy(
+              () -> cache.execute("key-4", "Id-1", "Id-2", 100, null, runs::incrementAndGet))
+          .isInstanceOf(TransferOverloadedException.class);
+      // not even once they have expired
+      clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1_000));
+      assertThatThrownBy(
+              () -> cache.execute("key-4", "Id-1", "Id-2", 100, null, runs::incrementAndGet))
+          .isInstanceOf(TransferOverloadedException.class);
+      assertThat(cache.size()).isEqualTo(4);
+
+      release.countDown();
+      for (Future<?> future : running) {
+        future.get(5, TimeUnit.SECONDS);
+      }
+      cache.execute("key-4", "Id-1", "Id-2", 100, null, runs::incrementAndGet);
+      assertThat(runs.get()).isEqualTo(5);
+      assertThat(cache.size()).isEqualTo(1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void execute_concurrentRetryWaitsForFirstAttempt() throws Exception {
+    IdempotencyCache cache = new IdempotencyCache(properties, clock::get);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> first =
+          executor.submit(
+              () ->
+                  cache.execute(
+                      "key-1",
+                      "Id-1",
+                      "Id-2",
+                      100,
+                      null,
+                      () -> {
+                        started.countDown();
+                        await(release);
+                        runs.incrementAndGet();
+                      }));
+      started.await();
+
+      Thread retry =
+          new Thread(
+              () -> cache.execute("key-1", "Id-1", "Id-2", 100, null, runs::incrementAndGet));
+      retry.start();
+      retry.join(100);
+      assertThat(retry.isAlive()).isTrue();
+
+      release.countDown();
+      first.get(5, TimeUnit.SECONDS);
+      retry.join(5_000);
+      assertThat(retry.isAlive()).isFalse();
+      assertThat(runs.get()).isEqualTo(1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static Runnable fail(RuntimeException failure) {
+    return () -> {
+      throw failure;
+    };
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
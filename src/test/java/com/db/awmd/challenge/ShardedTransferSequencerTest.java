@@ -0,0 +1,144 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.TransferExecutionProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.TransferNotification;
+import com.db.awmd.challenge.exception.InvalidAmountException;
+import com.db.awmd.challenge.exception.TransferException;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.sequencer.ShardedTransferSequencer;
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ShardedTransferSequencerTest {
+
+  private final AccountsRepositoryInMemory repository =
+      new AccountsRepositoryInMemory(new AccountIdDictionary());
+
+  // the threads that recorded each applied transfer
+  private final Queue<String> recordedBy = new ConcurrentLinkedQueue<>();
+
+  private ShardedTransferSequencer sequencer;
+
+  @Before
+  public void startSequencer() {
+    TransferExecutionProperties properties = new TransferExecutionProperties();
+    properties.setShards(4);
+    properties.setRingSize(64);
+    sequencer =
+        new ShardedTransferSequencer(
+            properties,
+            repository,
+            (accountFrom, accountIdFrom, accountTo, accountIdTo, amount) -> {
+              if (accountFrom.getBalanceMinorUnits() < amount) {
+                throw new TransferException("Insufficient balance to perform transfer");
+              }
+            },
+            (accountFrom, accountTo, amount) -> amount,
+            notification -> recordedBy.add(Thread.currentThread().getName()));
+    sequencer.start();
+  }
+
+  @After
+  public void stopSequencer() throws InterruptedException {
+    sequencer.stop();
+  }
+
+  @Test
+  public void execute_appliesTransferAcrossShards() {
+    String accountIdFrom = "Id-1";
+    String accountIdTo = accountOnOtherShard(accountIdFrom);
+    repository.createAccount(new Account(accountIdFrom, BigDecimal.TEN));
+    repository.createAccount(new Account(accountIdTo, BigDecimal.ZERO));
+
+    TransferNotification notification =
+        sequencer.execute(accountIdFrom, accountIdTo, 100);
+
+    assertThat(notification.getFromBalance()).isEqualTo(900);
+    assertThat(notification.getToBalance()).isEqualTo(100);
+    assertThat(repository.getAccount(accountIdFrom).getBalance()).isEqualByComparingTo("9");
+    assertThat(repository.getAccount(accountIdTo).getBalance()).isEqualByComparingTo("1");
+    assertThat(recordedBy).containsExactly("transfer-shard-" + sequencer.shardOf(accountIdTo));
+  }
+
+  @Test
+  public void execute_rejectsOverdraftOnSourceShard() {
+    repository.createAccount(new Account("Id-1", BigDecimal.ONE));
+    repository.createAccount(new Account("Id-2", BigDecimal.ZERO));
+
+    ThrowingCallable callable = () -> sequencer.execute("Id-1", "Id-2", 1000);
+
+    assertThatThrownBy(callable).hasMessage("Insufficient balance to perform transfer");
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("1");
+    assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+    assertThat(recordedBy).isEmpty();
+  }
+
+  @Test
+  public void submit_conservesMoneyUnderLoad() {
+    int accounts = 16;
+    for (int i = 0; i < accounts; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+    }
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    List<CompletableFuture<TransferNotification>> results = new ArrayList<>();
+    for (int i = 0; i < 20_000; i++) {
+      int from = random.nextInt(accounts);
+      int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+      results.add(
+          sequencer
+              .submit("Id-" + from, "Id-" + to, random.nextInt(3000))
+              .exceptionally(e -> null));
+    }
+    CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < accounts; i++) {
+      BigDecimal balance = repository.getAccount("Id-" + i).getBalance();
+      assertThat(balance.signum()).isGreaterThanOrEqualTo(0);
+      total = total.add(balance);
+    }
+    assertThat(total).isEqualByComparingTo("1600");
+  }
+
+  @Test
+  public void execute_refundsDebitWhenCreditOverflows() {
+    String accountIdFrom = "Id-1";
+    String accountIdTo = accountOnOtherShard(accountIdFrom);
+    repository.createAccount(new Account(accountIdFrom, BigDecimal.TEN));
+    repository.createAccount(new Account(accountIdTo, Long.MAX_VALUE - 50));
+
+    ThrowingCallable callable = () -> sequencer.execute(accountIdFrom, accountIdTo, 100);
+
+    assertThatThrownBy(callable)
+        .isInstanceOf(InvalidAmountException.class)
+        .hasMessage("Balance of account " + accountIdTo + " would overflow");
+    assertThat(repository.getAccount(accountIdFrom).getBalance()).isEqualByComparingTo("10");
+    assertThat(repository.getAccount(accountIdTo).getBalanceMinorUnits())
+        .isEqualTo(Long.MAX_VALUE - 50);
+  }
+
+  private String accountOnOtherShard(String accountId) {
+    for (int i = 2; ; i++) {
+      String candidate = "Id-" + i;
+      if (sequencer.shardOf(candidate) != sequencer.shardOf(accountId)) {
+        return candidate;
+      }
+    }
+  }
+}
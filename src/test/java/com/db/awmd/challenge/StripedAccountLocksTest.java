@@ -0,0 +1,179 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountLockProperties;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.service.StripedAccountLocks;
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StripedAccountLocksTest {
+
+  @Test
+  public void lock_opposingPairsDoNotDeadlock() throws Exception {
+    StripedAccountLocks locks = new StripedAccountLocks(properties(16, 0));
+    int[] counter = new int[1];
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    Future<?> forward = executor.submit(() -> lockAndCount(locks, 1, 2, counter));
+    Future<?> backward = executor.submit(() -> lockAndCount(locks, 2, 1, counter));
+    forward.get(10, TimeUnit.SECONDS);
+    backward.get(10, TimeUnit.SECONDS);
+    executor.shutdown();
+
+    assertThat(counter[0]).isEqualTo(200_000);
+  }
+
+  @Test
+  public void lock_sameAccountTwiceTakesStripeOnce() {
+    StripedAccountLocks locks = new StripedAccountLocks(properties(16, 0));
+
+    locks.lock(1, 1);
+    locks.unlock(1, 1);
+
+    assertThat(tryLockFromOtherThread(locks, 1)).isTrue();
+  }
+
+  @Test
+  public void lock_failsFastWhenTimeoutExpires() throws Exception {
+    StripedAccountLocks locks = new StripedAccountLocks(properties(16, 50));
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.submit(
+        () -> {
+          locks.lock(1, 2);
+          locked.countDown();
+          release.await();
+          locks.unlock(1, 2);
+          return null;
+        });
+    locked.await();
+
+    ThrowingCallable callable = () -> locks.lock(2, 3);
+    assertThatThrownBy(callable)
+        .isInstanceOf(AccountLockTimeoutException.class)
+        .hasMessage("Timed out waiting for account locks");
+
+    release.countDown();
+    executor.shutdown();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(tryLockFromOtherThread(locks, 3)).isTrue();
+  }
+
+  @Test
+  public void lockAll_locksEachStripeOnceInAscendingOrder() {
+    StripedAccountLocks locks = new StripedAccountLocks(properties(4, 0));
+
+    int[] stripes = locks.lockAll(1, 2, 3, 1, 5, 8);
+    try {
+      for (int i = 1; i < stripes.length; i++) {
+        assertThat(stripes[i]).isGreaterThan(stripes[i - 1]);
+      }
+    } finally {
+      locks.unlockAll(stripes);
+    }
+
+    assertThat(tryLockFromOtherThread(locks, 8)).isTrue();
+  }
+
+  @Test
+  public void read_neverObservesHalfAppliedTransfer() throws Exception {
+    StripedAccountLocks locks = new StripedAccountLocks(properties(16, 0));
+    long[] balances = {1_000, 1_000};
+    AtomicBoolean running = new AtomicBoolean(true);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<?> writer =
+        executor.submit(
+            () -> {
+              for (int i = 0; running.get(); i++) {
+                int from = i & 1;
+                locks.lock(1, 2);
+                try {
+                  balances[from] -= 10;
+                  Thread.yield();
+                  balances[1 - from] += 10;
+                } finally {
+                  locks.unlock(1, 2);
+                }
+              }
+            });
+    try {
+      for (int i = 0; i < 20_000; i++) {
+        long total = locks.read(new int[] {1, 2}, () -> balances[0] + balances[1]);
+        assertThat(total).isEqualTo(2_000);
+      }
+    } finally {
+      running.set(false);
+      writer.get(10, TimeUnit.SECONDS);
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void read_waitsForTransferWhenOptimisticAttemptsFail() throws Exception {
+    StripedAccountLocks locks = new StripedAccountLocks(properties(16, 0));
+    locks.lock(1, 2);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Boolean> read =
+          executor.submit(() -> locks.read(new int[] {1}, () -> true));
+      Thread.sleep(100);
+      assertThat(read.isDone()).isFalse();
+
+      locks.unlock(1, 2);
+      assertThat(read.get(5, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void lockAndCount(
+      StripedAccountLocks locks, int handleA, int handleB, int[] counter) {
+    for (int i = 0; i < 100_000; i++) {
+      locks.lock(handleA, handleB);
+      try {
+        counter[0]++;
+      } finally {
+        locks.unlock(handleA, handleB);
+      }
+    }
+  }
+
+  private static boolean tryLockFromOtherThread(StripedAccountLocks locks, int handle) {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      return executor
+          .submit(
+              () -> {
+                locks.lock(handle, handle);
+                locks.unlock(handle, handle);
+                return true;
+              })
+          .get(5, TimeUnit.SECONDS);
+    } catch (Exception e) {
+      return false;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static AccountLockProperties properties(int stripes, long timeoutMs) {
+    AccountLockProperties properties = new AccountLockProperties();
+    properties.setStripes(stripes);
+    properties.setTimeoutMs(timeoutMs);
+    return properties;
+  }
+}
@@ -0,0 +1,57 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.service.schedule.TimingWheel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingWheelTest {
+
+  @Test
+  public void entriesExpireExactlyAtTheirTickOnEveryLevel() {
+    long start = 1_234_567;
+    TimingWheel<Long> wheel = new TimingWheel<>(start);
+    Random random = new Random(42);
+    List<Long> deadlines = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      // spread over the first three levels, and a few onto the fourth
+      long deadline = start + (i % 100 == 0 ? (1 << 24) + i : random.nextInt(1 << 20));
+      deadlines.add(deadline);
+      wheel.add(deadline, deadline);
+    }
+    assertThat(wheel.size()).isEqualTo(10_000);
+
+    List<Long> expired = new ArrayList<>();
+    long end = start + (1 << 24) + 10_000;
+    while (wheel.getTick() <= end) {
+      wheel.advance(
+          Math.min(end, wheel.getTick() + random.nextInt(5_000)),
+          deadline -> {
+            assertThat(deadline).isEqualTo(wheel.getTick());
+            expired.add(deadline);
+          });
+    }
+
+    assertThat(expired).containsOnlyElementsOf(deadlines).hasSameSizeAs(deadlines);
+    assertThat(wheel.size()).isZero();
+  }
+
+  @Test
+  public void pastDeadlinesExpireWithTheNextTick() {
+    TimingWheel<String> wheel = new TimingWheel<>(100);
+    wheel.advance(150, value -> {});
+    wheel.add(120, "late");
+    wheel.add(151, "due");
+    wheel.add(152, "later");
+
+    List<String> expired = new ArrayList<>();
+    wheel.advance(151, expired::add);
+
+    assertThat(expired).containsExactlyInAnyOrder("late", "due");
+    assertThat(wheel.size()).isEqualTo(1);
+  }
+}
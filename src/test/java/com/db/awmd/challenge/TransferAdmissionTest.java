@@ -0,0 +1,208 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AdmissionProperties;
+import com.db.awmd.challenge.dto.MoneyTransfer;
+import com.db.awmd.challenge.exception.TransferThrottledException;
+import com.db.awmd.challenge.metrics.RejectionReason;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.service.admission.TransferAdmission;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TransferAdmissionTest {
+
+  private final AtomicLong clock = new AtomicLong();
+
+  private final TransferMetrics metrics = new TransferMetrics();
+
+  @Test
+  public void clientBucketAllowsItsBurstThenItsRate() {
+    AdmissionProperties properties = properties();
+    properties.setClientRate(10);
+    properties.setClientBurst(5);
+    TransferAdmission admission = new TransferAdmission(properties, metrics, clock::get);
+
+    for (int i = 0; i < 5; i++) {
+      admission.admit("client-1", "Id-1", "Id-2");
+    }
+    assertThatThrownBy(() -> admission.admit("client-1", "Id-1", "Id-2"))
+        .isInstanceOf(TransferThrottledException.class)
+        .hasMessage("Too many transfers for client client-1, retry in 101 ms")
+        .extracting("retryAfterMillis")
+        .containsExactly(101L);
+    // other clients have buckets of their own
+    admission.admit("client-2", "Id-1", "Id-2");
+
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    admission.admit("client-1", "Id-1", "Id-2");
+    assertThatThrownBy(() -> admission.admit("client-1", "Id-1", "Id-2"))
+        .isInstanceOf(TransferThrottledException.class);
+    assertThat(metrics.getRejections(RejectionReason.CLIENT_RATE_LIMITED)).isEqualTo(2);
+  }
+
+  @Test
+  public void accountBucketCountsTransfersInBothDirections() {
+    AdmissionProperties properties = properties();
+    properties.setAccountRate(1);
+    properties.setAccountBurst(2);
+    TransferAdmission admission = new TransferAdmission(properties, metrics, clock::get);
+
+    admission.admit("client-1", "Id-1", "Id-2");
+    admission.admit("client-2", "Id-3", "Id-1");
+    assertThatThrownBy(() -> admission.admit("client-3", "Id-1", "Id-4"))
+        .isInstanceOf(TransferThrottledException.class)
+        .hasMessageStartingWith("Too many transfers for account Id-1");
+    assertThat(metrics.getRejections(RejectionReason.ACCOUNT_RATE_LIMITED)).isEqualTo(1);
+  }
+
+  @Test
+  public void batchOverdrawsTheBucketAndPaysItBack() {
+    AdmissionProperties properties = properties();
+    properties.setClientRate(100);
+    properties.setClientBurst(10);
+    TransferAdmission admission = new TransferAdmission(properties, metrics, clock::get);
+
+    admission.admitBatch("client-1", Collections.nCopies(50, transfer("Id-1", "Id-2")));
+    // 40 tokens beyond the burst of 10 to pay back, then one to take, at 100 per second
+    assertThatThrownBy(() -> admission.admit("client-1", "Id-1", "Id-2"))
+        .extracting("retryAfterMillis")
+        .containsExactly(411L);
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(410));
+    admission.admit("client-1", "Id-1", "Id-2");
+  }
+
+  @Test
+  public void rejectedTransferGivesBackTheTokensItTook() {
+    AdmissionProperties properties = properties();
+    properties.setClientRate(1);
+    properties.setClientBurst(2);
+    properties.setAccountRate(1);
+    properties.setAccountBurst(1);
+    properties.setInitialConcurrency(1);
+    properties.setMinConcurrency(1);
+    TransferAdmission admission = new TransferAdmission(properties, metrics, clock::get);
+
+    long admitted = admission.admit("client-1", "Id-1", "Id-2");
+    // the recipient is busy, which must not cost the client or the sender anything
+    assertThatThrownBy(() -> admission.admit("client-1", "Id-3", "Id-2"))
+        .hasMessageStartingWith("Too many transfers for account Id-2");
+    assertThatThrownBy(() -> admission.admit("client-1", "Id-3", "Id-4"))
+        .hasMessage("Too many transfers in progress, please retry");
+    admission.release(admitted, false);
+
+    admission.admit("client-1", "Id-3", "Id-4");
+    assertThat(metrics.getRejections(RejectionReason.CLIENT_RATE_LIMITED)).isZero();
+  }
+
+  @Test
+  public void batchChargesEveryAccountItTouches() {
+    AdmissionProperties properties = properties();
+    properties.setAccountRate(1);
+    properties.setAccountBurst(2);
+    TransferAdmission admission = new TransferAdmission(properties, metrics, clock::get);
+
+    admission.admitBatch(
+        "client-1", Arrays.asList(transfer("Id-1", "Id-2"), transfer("Id-2", "Id-3")));
+    assertThatThrownBy(() -> admission.admit("client-2", "Id-2", "Id-4"))
+        .hasMessageStartingWith("Too many transfers for account Id-2");
+    admission.admit("client-2", "Id-1", "Id-3");
+    // Id-1 has no token left, and the batch gives back the one Id-5 took
+    assertThatThrownBy(
+            () ->
+                admission.admitBatch(
+                    "client-1", Arrays.asList(transfer("Id-5", "Id-6"), transfer("Id-6", "Id-1"))))
+        .hasMessageStartingWith("Too many transfers for account Id-1");
+    admission.admit("client-2", "Id-5", "Id-7");
+    admission.admit("client-2", "Id-5", "Id-8");
+  }
+
+  @Test
+  public void concurrencyLimitRejectsBeyondItAndBacksOffOnOverload() {
+    AdmissionProperties properties = properties();
+    properties.setInitialConcurrency(10);
+    properties.setMinConcurrency(5);
+    TransferAdmission admission = new TransferAdmission(properties, metrics, clock::get);
+
+    Deque<Long> admitted = new ArrayDeque<>();
+    for (int i = 0; i < 10; i++) {
+      admitted.push(admission.admit("client-1", "Id-1", "Id-2"));
+    }
+    assertThatThrownBy(() -> admission.admit("client-1", "Id-1", "Id-2"))
+        .isInstanceOf(TransferThrottledException.class)
+        .hasMessage("Too many transfers in progress, please retry");
+    assertThat(metrics.getRejections(RejectionReason.CONCURRENCY_LIMITED)).isEqualTo(1);
+
+    // one cut per window, however many transfers time out in it
+    admission.release(admitted.pop(), true);
+    admission.release(admitted.pop(), true);
+    assertThat(admission.getMetrics().getConcurrencyLimit()).isEqualTo(9);
+    assertThat(admission.getMetrics().getInFlight()).isEqualTo(8);
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    admission.release(admitted.pop(), true);
+    assertThat(admission.getMetrics().getConcurrencyLimit()).isEqualTo(8);
+  }
+
+  @Test
+  public void concurrencyLimitGrowsWhileLatencyHoldsAndShrinksAsItRises() {
+    AdmissionProperties properties = properties();
+    properties.setInitialConcurrency(20);
+    TransferAdmission admission = new TransferAdmission(properties, metrics, clock::get);
+
+    runWindows(admission, 20, 1_000, 5);
+    int grown = admission.getMetrics().getConcurrencyLimit();
+    assertThat(grown).isGreaterThan(20);
+
+    // queueing shows as latency well beyond the tolerance of twice the usual
+    runWindows(admission, grown, 10_000, 5);
+    assertThat(admission.getMetrics().getConcurrencyLimit()).isLessThan(grown);
+  }
+
+  @Test
+  public void disabledAdmissionAdmitsEverything() {
+    AdmissionProperties properties = new AdmissionProperties();
+    properties.setClientRate(1);
+    properties.setClientBurst(1);
+    TransferAdmission admission = new TransferAdmission(properties, metrics, clock::get);
+
+    for (int i = 0; i < 100; i++) {
+      admission.release(admission.admit("client-1", "Id-1", "Id-2"), false);
+    }
+    assertThat(admission.getMetrics().isEnabled()).isFalse();
+  }
+
+  private MoneyTransfer transfer(String accountIdFrom, String accountIdTo) {
+    return new MoneyTransfer(accountIdFrom, accountIdTo, BigDecimal.ONE, null);
+  }
+
+  private AdmissionProperties properties() {
+    AdmissionProperties properties = new AdmissionProperties();
+    properties.setEnabled(true);
+    return properties;
+  }
+
+  // each window admits inFlight transfers at once, which all take latencyNanos
+  private void runWindows(TransferAdmission admission, int inFlight, long latencyNanos, int count) {
+    for (int window = 0; window < count; window++) {
+      int admittedNow = Math.min(inFlight, admission.getMetrics().getConcurrencyLimit());
+      long[] admitted = new long[admittedNow];
+      for (int i = 0; i < admittedNow; i++) {
+        admitted[i] = admission.admit("client-1", "Id-1", "Id-2");
+      }
+      clock.addAndGet(latencyNanos);
+      for (long started : admitted) {
+        admission.release(started, false);
+      }
+      clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+  }
+}
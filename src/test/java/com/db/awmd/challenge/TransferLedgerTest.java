@@ -0,0 +1,144 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.dto.LedgerEntry;
+import com.db.awmd.challenge.dto.TransferHistoryPage;
+import com.db.awmd.challenge.dto.TransferNotification;
+import com.db.awmd.challenge.exception.InvalidPageRequestException;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.ledger.TransferLedger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TransferLedgerTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void historyListsTheAccountsEntriesNewestFirst() throws IOException {
+    TransferLedger ledger = open(null, 4);
+    ledger.append(new TransferNotification("Id-1", 900, "Id-2", 100, 100));
+    ledger.append(new TransferNotification("Id-3", 950, "Id-4", 50, 50));
+    ledger.append(new TransferNotification("Id-2", 70, "Id-1", 930, 30));
+    ledger.append(new TransferNotification("Id-1", 830, "Id-5", 85, 100, 85));
+
+    TransferHistoryPage page = ledger.history("Id-1", null, 10);
+
+    assertThat(page.getEntries()).extracting(LedgerEntry::getId).containsExactly(3L, 2L, 0L);
+    LedgerEntry converted = page.getEntries().get(0);
+    assertThat(converted.getAmount()).isEqualByComparingTo("1.00");
+    assertThat(converted.getCreditedAmount()).isEqualByComparingTo("0.85");
+    LedgerEntry incoming = page.getEntries().get(1);
+    assertThat(incoming.getAccountIdFrom()).isEqualTo("Id-2");
+    assertThat(incoming.getAccountIdTo()).isEqualTo("Id-1");
+    assertThat(incoming.getAmount()).isEqualByComparingTo("0.30");
+    assertThat(incoming.getCreditedAmount()).isEqualByComparingTo("0.30");
+    assertThat(incoming.getFromBalance()).isEqualByComparingTo("0.70");
+    assertThat(incoming.getToBalance()).isEqualByComparingTo("9.30");
+    assertThat(incoming.getTimestamp()).isPositive();
+    assertThat(page.getNextCursor()).isNull();
+    assertThat(ledger.history("Id-6", null, 10).getEntries()).isEmpty();
+  }
+
+  @Test
+  public void cursorsPageThroughHistorySpanningSegments() throws IOException {
+    TransferLedger ledger = open(null, 4);
+    for (int i = 0; i < 25; i++) {
+      // every third transfer leaves Id-1 out
+      String other = i % 3 == 0 ? "Id-3" : "Id-1";
+      ledger.append(new TransferNotification(other, 1000 - i, "Id-2", i, 1));
+    }
+
+    List<Long> ids = new ArrayList<>();
+    String cursor = null;
+    int pages = 0;
+    do {
+      TransferHistoryPage page = ledger.history("Id-1", cursor, 5);
+      page.getEntries().forEach(entry -> ids.add(entry.getId()));
+      cursor = page.getNextCursor();
+      pages++;
+    } while (cursor != null);
+
+    assertThat(pages).isEqualTo(4);
+    assertThat(ids)
+        .containsExactly(23L, 22L, 20L, 19L, 17L, 16L, 14L, 13L, 11L, 10L, 8L, 7L, 5L, 4L, 2L, 1L);
+  }
+
+  @Test
+  public void rejectsForeignAndMalformedCursorsAndOversizedPages() throws IOException {
+    TransferLedger ledger = open(null, 4);
+    ledger.append(new TransferNotification("Id-1", 900, "Id-2", 100, 100));
+    ledger.append(new TransferNotification("Id-3", 950, "Id-4", 50, 50));
+
+    assertThatThrownBy(() -> ledger.history("Id-1", "1", 10))
+        .isInstanceOf(InvalidPageRequestException.class)
+        .hasMessage("Cursor 1 belongs to another account");
+    assertThatThrownBy(() -> ledger.history("Id-1", "abc", 10))
+        .isInstanceOf(InvalidPageRequestException.class);
+    assertThatThrownBy(() -> ledger.history("Id-1", "2", 10))
+        .isInstanceOf(InvalidPageRequestException.class);
+    assertThatThrownBy(() -> ledger.history("Id-1", null, 1001))
+        .isInstanceOf(InvalidPageRequestException.class)
+        .hasMessage("Page size must be between 1 and 1000");
+  }
+
+  @Test
+  public void offHeapLedgerDropsItsOldestSegments() throws IOException {
+    LedgerProperties properties = new LedgerProperties();
+    properties.setSegmentEntries(4);
+    properties.setMaxSegments(2);
+    TransferLedger ledger = new TransferLedger(properties, new AccountIdDictionary());
+    ledger.open();
+    for (int i = 0; i < 13; i++) {
+      ledger.append(new TransferNotification("Id-1", 1000 - i, "Id-2", i, 1));
+    }
+    ledger.append(new TransferNotification("Id-3", 10, "Id-4", 0, 10));
+
+    assertThat(ledger.size()).isEqualTo(14);
+    TransferHistoryPage page = ledger.history("Id-1", null, 3);
+    assertThat(page.getEntries()).extracting(LedgerEntry::getId).containsExactly(12L, 11L, 10L);
+    page = ledger.history("Id-1", page.getNextCursor(), 10);
+    assertThat(page.getEntries()).extracting(LedgerEntry::getId).containsExactly(9L, 8L);
+    assertThat(page.getNextCursor()).isNull();
+    assertThat(ledger.history("Id-2", "3", 10).getEntries()).isEmpty();
+  }
+
+  @Test
+  public void mappedLedgerKeepsHistoryAcrossRestarts() throws IOException {
+    String directory = folder.getRoot().getPath();
+    TransferLedger ledger = open(directory, 4);
+    for (int i = 0; i < 6; i++) {
+      ledger.append(new TransferNotification("Id-1", 1000 - i, "Id-" + (i + 2), i, 1));
+    }
+    ledger.close();
+
+    TransferLedger reopened = open(directory, 4);
+    reopened.append(new TransferNotification("Id-7", 10, "Id-1", 995, 1));
+
+    assertThat(reopened.size()).isEqualTo(7);
+    assertThat(reopened.history("Id-1", null, 10).getEntries())
+        .extracting(LedgerEntry::getId)
+        .containsExactly(6L, 5L, 4L, 3L, 2L, 1L, 0L);
+    assertThat(reopened.history("Id-4", null, 10).getEntries())
+        .extracting(LedgerEntry::getAccountIdTo)
+        .containsExactly("Id-4");
+    reopened.close();
+  }
+
+  private static TransferLedger open(String directory, int segmentEntries) throws IOException {
+    LedgerProperties properties = new LedgerProperties();
+    properties.setDirectory(directory);
+    properties.setSegmentEntries(segmentEntries);
+    TransferLedger ledger = new TransferLedger(properties, new AccountIdDictionary());
+    ledger.open();
+    return ledger;
+  }
+}
@@ -0,0 +1,62 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.dto.LatencySnapshot;
+import com.db.awmd.challenge.dto.TransferMetricsSnapshot;
+import com.db.awmd.challenge.metrics.LatencyTimer;
+import com.db.awmd.challenge.metrics.RejectionReason;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class TransferMetricsTest {
+
+  @Test
+  public void latencyTimer_reportsPercentilesInMicros() {
+    LatencyTimer timer = new LatencyTimer();
+    for (int micros = 1; micros <= 1_000; micros++) {
+      timer.record(TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+
+    LatencySnapshot snapshot = timer.snapshot();
+
+    assertThat(snapshot.getCount()).isEqualTo(1_000);
+    assertThat(snapshot.getP50Micros()).isCloseTo(500, within(1.0));
+    assertThat(snapshot.getP99Micros()).isCloseTo(990, within(1.0));
+    assertThat(snapshot.getMaxMicros()).isCloseTo(1_000, within(1.0));
+    assertThat(snapshot.getMeanMicros()).isCloseTo(500.5, within(1.0));
+  }
+
+  @Test
+  public void latencyTimer_accumulatesAcrossSnapshots() {
+    LatencyTimer timer = new LatencyTimer();
+    timer.record(1_000);
+    assertThat(timer.snapshot().getCount()).isEqualTo(1);
+
+    timer.record(2_000);
+    timer.record(-5);
+    assertThat(timer.snapshot().getCount()).isEqualTo(3);
+
+    timer.reset();
+    assertThat(timer.snapshot().getCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void rejectionsAreCountedByReason() {
+    TransferMetrics metrics = new TransferMetrics();
+    metrics.recordRejection(RejectionReason.INSUFFICIENT_BALANCE);
+    metrics.recordRejection(RejectionReason.INSUFFICIENT_BALANCE);
+    metrics.recordRejection(RejectionReason.LOCK_TIMEOUT);
+
+    TransferMetricsSnapshot snapshot = metrics.snapshot(null, null, null, null);
+
+    assertThat(snapshot.getRejections())
+        .containsEntry(RejectionReason.INSUFFICIENT_BALANCE, 2L)
+        .containsEntry(RejectionReason.LOCK_TIMEOUT, 1L)
+        .containsEntry(RejectionReason.ACCOUNT_NOT_FOUND, 0L);
+    assertThat(snapshot.getLatencies()).containsKeys("transfer.lock.wait", "transfer.lock.hold");
+  }
+}
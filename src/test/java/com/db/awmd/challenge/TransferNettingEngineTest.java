@@ -0,0 +1,135 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountLockProperties;
+import com.db.awmd.challenge.config.NettingProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.TransferNotification;
+import com.db.awmd.challenge.exception.TransferException;
+import com.db.awmd.challenge.exception.TransferRejectedException;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountsValidator;
+import com.db.awmd.challenge.service.StripedAccountLocks;
+import com.db.awmd.challenge.service.netting.TransferNettingEngine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TransferNettingEngineTest {
+
+  private final AtomicInteger writes = new AtomicInteger();
+
+  private final AccountsRepositoryInMemory repository =
+      new AccountsRepositoryInMemory(new AccountIdDictionary()) {
+        @Override
+        public void setBalance(Account account, long newBalance) {
+          writes.incrementAndGet();
+          super.setBalance(account, newBalance);
+        }
+      };
+
+  private final List<TransferNotification> recorded = new ArrayList<>();
+
+  private final AtomicInteger durabilityWaits = new AtomicInteger();
+
+  private TransferNettingEngine engine;
+
+  @Before
+  public void startEngine() {
+    NettingProperties properties = new NettingProperties();
+    // windows close on their fourth transfer long before their time is up
+    properties.setWindowMicros(10_000_000);
+    properties.setMaxTransfers(4);
+    AccountsValidator validator = new AccountsValidator();
+    engine =
+        new TransferNettingEngine(
+            properties,
+            repository,
+            new StripedAccountLocks(new AccountLockProperties()),
+            (accountFrom, accountIdFrom, accountTo, accountIdTo, amount) -> {
+              int errors =
+                  validator.check(accountFrom, accountIdFrom, accountTo, accountIdTo, amount);
+              if (errors != 0) {
+                throw TransferRejectedException.of(errors, accountIdFrom, accountIdTo);
+              }
+            },
+            (accountFrom, accountTo, amount) -> amount,
+            recorded::add,
+            durabilityWaits::incrementAndGet);
+    engine.start();
+  }
+
+  @After
+  public void stopEngine() throws InterruptedException {
+    engine.stop();
+  }
+
+  @Test
+  public void windowIsValidatedAgainstRunningBalancesAndWrittenOncePerAccount() {
+    repository.createAccount(new Account("Id-1", 1000));
+    repository.createAccount(new Account("Id-2", 0));
+
+    CompletableFuture<TransferNotification> first = engine.submit("Id-1", "Id-2", 600);
+    CompletableFuture<TransferNotification> overdraft = engine.submit("Id-1", "Id-2", 600);
+    CompletableFuture<TransferNotification> back = engine.submit("Id-2", "Id-1", 500);
+    CompletableFuture<TransferNotification> last = engine.submit("Id-1", "Id-2", 900);
+
+    assertThat(first.join().getFromBalance()).isEqualTo(400);
+    assertThat(back.join().getToBalance()).isEqualTo(900);
+    assertThat(last.join().getFromBalance()).isEqualTo(0);
+    assertThat(last.join().getToBalance()).isEqualTo(1000);
+    assertThatThrownBy(overdraft::join)
+        .isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(TransferRejectedException.class);
+
+    assertThat(repository.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(0);
+    assertThat(repository.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(1000);
+    assertThat(writes.get()).isEqualTo(2);
+    assertThat(durabilityWaits.get()).isEqualTo(1);
+    assertThat(recorded)
+        .extracting(TransferNotification::getAmount)
+        .containsExactly(600L, 500L, 900L);
+  }
+
+  @Test
+  public void pairsThatNetToZeroAreNotWrittenAndMissingAccountsAreRejected() {
+    repository.createAccount(new Account("Id-1", 100));
+    repository.createAccount(new Account("Id-2", 100));
+    repository.createAccount(new Account("Id-3", 100));
+
+    CompletableFuture<TransferNotification> there = engine.submit("Id-1", "Id-2", 40);
+    CompletableFuture<TransferNotification> back = engine.submit("Id-2", "Id-1", 40);
+    CompletableFuture<TransferNotification> missing = engine.submit("Id-4", "Id-3", 10);
+
+    TransferNotification last = engine.execute("Id-2", "Id-3", 10);
+
+    assertThat(there.join().getToBalance()).isEqualTo(140);
+    assertThat(back.join().getToBalance()).isEqualTo(100);
+    assertThatThrownBy(missing::join)
+        .hasCauseInstanceOf(TransferRejectedException.class)
+        .hasMessageContaining("Id-4");
+    assertThat(last.getFromBalance()).isEqualTo(90);
+    // Id-1 ends the window where it started
+    assertThat(writes.get()).isEqualTo(2);
+    assertThat(repository.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(100);
+    assertThat(repository.getAccount("Id-3").getBalanceMinorUnits()).isEqualTo(110);
+  }
+
+  @Test
+  public void stoppedEngineRejectsTransfers() throws InterruptedException {
+    engine.stop();
+
+    assertThatThrownBy(() -> engine.submit("Id-1", "Id-2", 10))
+        .isInstanceOf(TransferException.class)
+        .hasMessage("Transfer netting is not running");
+  }
+}
@@ -0,0 +1,184 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.NotificationDispatchProperties;
+import com.db.awmd.challenge.config.NotificationDispatchProperties.OverflowPolicy;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.dto.NotificationDispatchMetrics;
+import com.db.awmd.challenge.dto.TransferNotification;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.service.NotificationService;
+import com.db.awmd.challenge.service.TransferNotificationDispatcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class TransferNotificationDispatcherTest {
+
+  private NotificationService notificationService;
+
+  private TransferNotificationDispatcher dispatcher;
+
+  @Before
+  public void prepareMocks() {
+    notificationService = Mockito.mock(NotificationService.class);
+  }
+
+  @After
+  public void stopDispatcher() throws InterruptedException {
+    if (dispatcher != null) {
+      dispatcher.stop();
+    }
+  }
+
+  @Test
+  public void dispatch_deliversBothNotificationsAsynchronously() {
+    dispatcher = startDispatcher(16, 1, OverflowPolicy.DISCARD_NEWEST);
+    Account accountFrom = new Account("Id-1", BigDecimal.ZERO);
+    Account accountTo = new Account("Id-2", BigDecimal.TEN);
+
+    dispatcher.dispatch(new TransferNotification("Id-1", 0, "Id-2", 1000, 1000));
+
+    verify(notificationService, timeout(1000))
+        .notifyAboutTransfer(
+            accountTo, String.format("Transfer from account %s, quantity: 10.00", accountFrom));
+    verify(notificationService, timeout(1000))
+        .notifyAboutTransfer(
+            accountFrom, String.format("Transfer to account %s, quantity: 10.00", accountTo));
+  }
+
+  @Test
+  public void dispatch_discardsNewestWhenQueueIsFull() {
+    dispatcher = startDispatcher(1, 0, OverflowPolicy.DISCARD_NEWEST);
+
+    dispatcher.dispatch(notification());
+    dispatcher.dispatch(notification());
+    dispatcher.dispatch(notification());
+
+    NotificationDispatchMetrics metrics = dispatcher.getMetrics();
+    assertThat(metrics.getEnqueued()).isEqualTo(1);
+    assertThat(metrics.getDropped()).isEqualTo(2);
+    assertThat(metrics.getQueueDepth()).isEqualTo(1);
+    verify(notificationService, never()).notifyAboutTransfer(any(Account.class), anyString());
+  }
+
+  @Test
+  public void dispatch_evictsOldestWhenQueueIsFull() {
+    dispatcher = startDispatcher(1, 0, OverflowPolicy.DISCARD_OLDEST);
+
+    dispatcher.dispatch(notification());
+    dispatcher.dispatch(notification());
+
+    NotificationDispatchMetrics metrics = dispatcher.getMetrics();
+    assertThat(metrics.getEnqueued()).isEqualTo(2);
+    assertThat(metrics.getDropped()).isEqualTo(1);
+    assertThat(metrics.getQueueDepth()).isEqualTo(1);
+  }
+
+  @Test
+  public void dispatch_deliversOnCallerThreadWhenQueueIsFull() {
+    dispatcher = startDispatcher(1, 0, OverflowPolicy.CALLER_RUNS);
+
+    dispatcher.dispatch(notification());
+    dispatcher.dispatch(notification());
+
+    verify(notificationService, times(2)).notifyAboutTransfer(any(Account.class), anyString());
+    assertThat(dispatcher.getMetrics().getCallerRuns()).isEqualTo(1);
+    assertThat(dispatcher.getMetrics().getDelivered()).isEqualTo(2);
+  }
+
+  @Test
+  public void dispatch_countsFailedDeliveries() {
+    doThrow(new IllegalStateException("smtp down"))
+        .when(notificationService)
+        .notifyAboutTransfer(any(Account.class), anyString());
+    dispatcher = startDispatcher(1, 0, OverflowPolicy.CALLER_RUNS);
+
+    dispatcher.dispatch(notification());
+    dispatcher.dispatch(notification());
+
+    assertThat(dispatcher.getMetrics().getFailed()).isEqualTo(2);
+    assertThat(dispatcher.getMetrics().getDelivered()).isEqualTo(0);
+  }
+
+  @Test
+  public void stop_flushesQueuedNotifications() throws InterruptedException {
+    dispatcher = startDispatcher(4, 0, OverflowPolicy.DISCARD_NEWEST);
+    dispatcher.dispatch(notification());
+
+    dispatcher.stop();
+
+    verify(notificationService, times(2)).notifyAboutTransfer(any(Account.class), anyString());
+    assertThat(dispatcher.getMetrics().getQueueDepth()).isEqualTo(0);
+  }
+
+  @Test
+  public void stop_losesNoNotificationOfferedAfterTheLastDrain() throws Exception {
+    CountDownLatch offering = new CountDownLatch(1);
+    CountDownLatch stopped = new CountDownLatch(1);
+    // holds the offer back until stop has drained the queue and returned
+    BlockingQueue<TransferNotification> queue =
+        new ArrayBlockingQueue<TransferNotification>(4) {
+          @Override
+          public boolean offer(TransferNotification notification) {
+            offering.countDown();
+            await(stopped);
+            return super.offer(notification);
+          }
+        };
+    NotificationDispatchProperties properties = new NotificationDispatchProperties();
+    properties.setWorkers(1);
+    dispatcher =
+        new TransferNotificationDispatcher(
+            notificationService, properties, new TransferMetrics(), queue);
+    dispatcher.start();
+    Thread transfer = new Thread(() -> dispatcher.dispatch(notification()));
+    transfer.start();
+    offering.await();
+
+    dispatcher.stop();
+    stopped.countDown();
+    transfer.join();
+
+    verify(notificationService, times(2)).notifyAboutTransfer(any(Account.class), anyString());
+    assertThat(queue).isEmpty();
+  }
+
+  private TransferNotificationDispatcher startDispatcher(
+      int queueCapacity, int workers, OverflowPolicy overflowPolicy) {
+    NotificationDispatchProperties properties = new NotificationDispatchProperties();
+    properties.setQueueCapacity(queueCapacity);
+    properties.setWorkers(workers);
+    properties.setOverflowPolicy(overflowPolicy);
+    TransferNotificationDispatcher dispatcher =
+        new TransferNotificationDispatcher(notificationService, properties, new TransferMetrics());
+    dispatcher.start();
+    return dispatcher;
+  }
+
+  private static TransferNotification notification() {
+    return new TransferNotification("Id-1", 0, "Id-2", 100, 100);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
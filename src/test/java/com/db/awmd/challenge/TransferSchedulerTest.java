@@ -0,0 +1,242 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountLockProperties;
+import com.db.awmd.challenge.config.AsyncTransferProperties;
+import com.db.awmd.challenge.config.BatchTransferProperties;
+import com.db.awmd.challenge.config.DurableRepositoryProperties;
+import com.db.awmd.challenge.config.FxProperties;
+import com.db.awmd.challenge.config.HotAccountProperties;
+import com.db.awmd.challenge.config.IdempotencyProperties;
+import com.db.awmd.challenge.config.LedgerProperties;
+import com.db.awmd.challenge.config.NettingProperties;
+import com.db.awmd.challenge.config.NotificationDispatchProperties;
+import com.db.awmd.challenge.config.ScheduleProperties;
+import com.db.awmd.challenge.config.TransferExecutionProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.dto.ScheduledTransferRequest;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.AccountIdDictionary;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryDurable;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.ledger.TransferLedger;
+import com.db.awmd.challenge.repository.wal.FsyncPolicy;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AccountsValidator;
+import com.db.awmd.challenge.service.AsyncTransferExecutor;
+import com.db.awmd.challenge.service.StripedAccountLocks;
+import com.db.awmd.challenge.service.TransferNotificationDispatcher;
+import com.db.awmd.challenge.service.fx.FxRateCache;
+import com.db.awmd.challenge.service.idempotency.IdempotencyCache;
+import com.db.awmd.challenge.service.schedule.TransferScheduler;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferSchedulerTest {
+  private static final Instant START = Instant.parse("2030-01-01T00:00:00Z");
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final MovableClock clock = new MovableClock();
+
+  private final List<TransferScheduler> schedulers = new ArrayList<>();
+
+  @After
+  public void stopSchedulers() throws InterruptedException {
+    for (TransferScheduler scheduler : schedulers) {
+      scheduler.stop();
+    }
+  }
+
+  @Test
+  public void futureDatedTransferRunsOnceWhenDue() throws Exception {
+    AccountIdDictionary dictionary = new AccountIdDictionary();
+    AccountsRepository repository = accounts(dictionary);
+    TransferScheduler scheduler = scheduler(repository, dictionary);
+
+    ScheduledTransfer schedule =
+        scheduler.schedule(
+            new ScheduledTransferRequest(
+                "Id-1", "Id-2", 2500, START.plusSeconds(60), null, null));
+    Thread.sleep(50);
+    assertThat(repository.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(10_000);
+
+    clock.advance(Duration.ofSeconds(60));
+    awaitTrue(() -> scheduler.getSchedule(schedule.getId()) == null);
+    clock.advance(Duration.ofDays(1));
+    Thread.sleep(50);
+
+    assertThat(repository.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(7_500);
+    assertThat(repository.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(2_500);
+  }
+
+  @Test
+  public void standingOrderRunsEveryIntervalAndSkipsRunsItCannotCover() {
+    AccountIdDictionary dictionary = new AccountIdDictionary();
+    AccountsRepository repository = accounts(dictionary);
+    TransferScheduler scheduler = scheduler(repository, dictionary);
+
+    long id =
+        scheduler
+            .schedule(
+                new ScheduledTransferRequest(
+                    "Id-1", "Id-2", 4000, START.plusSeconds(1), Duration.ofHours(1), 3))
+            .getId();
+    for (int run = 1; run <= 2; run++) {
+      clock.advance(Duration.ofHours(1));
+      int completed = run;
+      awaitTrue(() -> scheduler.getSchedule(id).getCompletedRuns() == completed);
+    }
+    assertThat(scheduler.getSchedule(id).getLastError()).isNull();
+
+    clock.advance(Duration.ofHours(1));
+    awaitTrue(() -> scheduler.getSchedule(id) == null);
+    assertThat(repository.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(2_000);
+    assertThat(repository.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(8_000);
+  }
+
+  @Test
+  public void cancelledScheduleNeverRuns() throws Exception {
+    AccountIdDictionary dictionary = new AccountIdDictionary();
+    AccountsRepository repository = accounts(dictionary);
+    TransferScheduler scheduler = scheduler(repository, dictionary);
+
+    ScheduledTransfer schedule =
+        scheduler.schedule(
+            new ScheduledTransferRequest(
+                "Id-1", "Id-2", 100, START.plusSeconds(10), Duration.ofSeconds(10), null));
+
+    assertThat(scheduler.cancel(schedule.getId())).isEqualTo(schedule);
+    assertThat(scheduler.cancel(schedule.getId())).isNull();
+    clock.advance(Duration.ofMinutes(1));
+    Thread.sleep(50);
+
+    assertThat(repository.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(10_000);
+    assertThat(scheduler.size()).isZero();
+  }
+
+  @Test
+  public void restartNeitherRepeatsNorLosesRuns() throws Exception {
+    AccountIdDictionary dictionary = new AccountIdDictionary();
+    AccountsRepositoryDurable repository = durable(dictionary);
+    repository.createAccount(new Account("Id-1", 10_000));
+    repository.createAccount(new Account("Id-2", 0));
+    TransferScheduler scheduler = scheduler(repository, dictionary);
+    long id =
+        scheduler
+            .schedule(
+                new ScheduledTransferRequest(
+                    "Id-1", "Id-2", 1000, START.plusSeconds(1), Duration.ofDays(1), null))
+            .getId();
+    clock.advance(Duration.ofSeconds(1));
+    awaitTrue(() -> scheduler.getSchedule(id).getCompletedRuns() == 1);
+    scheduler.stop();
+    repository.close();
+
+    // the first run is not repeated, and the one that fell due while down runs right away
+    clock.advance(Duration.ofDays(1));
+    AccountIdDictionary reopenedDictionary = new AccountIdDictionary();
+    AccountsRepositoryDurable reopened = durable(reopenedDictionary);
+    TransferScheduler restarted = scheduler(reopened, reopenedDictionary);
+    awaitTrue(() -> restarted.getSchedule(id).getCompletedRuns() == 2);
+    Thread.sleep(50);
+
+    assertThat(reopened.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(8_000);
+    assertThat(reopened.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(2_000);
+    reopened.close();
+  }
+
+  private AccountsRepository accounts(AccountIdDictionary dictionary) {
+    AccountsRepository repository = new AccountsRepositoryInMemory(dictionary);
+    repository.createAccount(new Account("Id-1", 10_000));
+    repository.createAccount(new Account("Id-2", 0));
+    return repository;
+  }
+
+  private AccountsRepositoryDurable durable(AccountIdDictionary dictionary) throws IOException {
+    DurableRepositoryProperties properties = new DurableRepositoryProperties();
+    properties.setDirectory(folder.getRoot().getAbsolutePath());
+    properties.setFsyncPolicy(FsyncPolicy.PER_WRITE);
+    properties.setSnapshotIntervalMs(0);
+    AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties, dictionary);
+    repository.open();
+    return repository;
+  }
+
+  private TransferScheduler scheduler(
+      AccountsRepository repository, AccountIdDictionary dictionary) {
+    TransferMetrics metrics = new TransferMetrics();
+    TransferNotificationDispatcher dispatcher =
+        new TransferNotificationDispatcher(
+            (account, description) -> {}, new NotificationDispatchProperties(), metrics);
+    AccountsService service =
+        new AccountsService(
+            repository,
+            new AccountsValidator(),
+            dispatcher,
+            new StripedAccountLocks(new AccountLockProperties()),
+            new BatchTransferProperties(),
+            new TransferExecutionProperties(),
+            metrics,
+            new IdempotencyCache(new IdempotencyProperties()),
+            new AsyncTransferExecutor(new AsyncTransferProperties()),
+            new TransferLedger(new LedgerProperties(), dictionary),
+            new NettingProperties(),
+            new HotAccountProperties(),
+            new FxRateCache(new FxProperties()));
+    service.start();
+    ScheduleProperties properties = new ScheduleProperties();
+    properties.setEnabled(true);
+    properties.setTickMs(10);
+    TransferScheduler scheduler = new TransferScheduler(properties, service, dictionary, clock);
+    scheduler.start();
+    schedulers.add(scheduler);
+    return scheduler;
+  }
+
+  private static void awaitTrue(BooleanSupplier condition) {
+    long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+    while (!condition.getAsBoolean()) {
+      assertThat(System.nanoTime()).isLessThan(deadline);
+      Thread.yield();
+    }
+  }
+
+  private static final class MovableClock extends Clock {
+    private volatile Instant now = START;
+
+    private void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}